@@ -1,3 +1,5 @@
+import java.io.OutputStream
+
 plugins {
     id("java")
 }
@@ -9,6 +11,13 @@ repositories {
     mavenCentral()
 }
 
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
 dependencies {
     compileOnly("org.projectlombok:lombok:1.18.30")
     annotationProcessor("org.projectlombok:lombok:1.18.30")
@@ -17,6 +26,9 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter-params:5.9.2")
     testImplementation("org.hamcrest:hamcrest:2.2")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.9.2")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 tasks.jar {
@@ -24,8 +36,49 @@ tasks.jar {
     manifest {
         attributes["Main-Class"] = "org.kotkina.Main"
     }
+    finalizedBy("appCds")
+}
+
+// java -XX:SharedArchiveFile=build/libs/sql-parser.jsa -jar build/libs/sql-parser.jar
+tasks.register<Exec>("appCds") {
+    group = "build"
+    description = "Dumps the classes loaded by a training run of the jar into an AppCDS archive."
+    val jar = tasks.jar.get().archiveFile
+    val training = layout.projectDirectory.file("src/cds/training.sql")
+    val archive = layout.buildDirectory.file("libs/sql-parser.jsa")
+    inputs.file(jar)
+    inputs.file(training)
+    outputs.file(archive)
+
+    executable = File(System.getProperty("java.home"), "bin/java").path
+    args("-XX:ArchiveClassesAtExit=" + archive.get().asFile.path, "-jar", jar.get().asFile.path, "--parse")
+    // the corpus ends with an invalid statement, so the run exits with 1
+    isIgnoreExitValue = true
+    doFirst {
+        standardInput = training.asFile.inputStream()
+        standardOutput = OutputStream.nullOutputStream()
+    }
 }
 
 tasks.getByName<Test>("test") {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+// ./gradlew jmh -Pjmh.includes=ParserBenchmark
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks with the GC profiler."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+
+    val results = layout.buildDirectory.file("reports/jmh/results.json")
+    args(
+        project.findProperty("jmh.includes")?.toString() ?: ".*",
+        "-prof", "gc",
+        "-rf", "json",
+        "-rff", results.get().asFile.path
+    )
+    doFirst {
+        results.get().asFile.parentFile.mkdirs()
+    }
+}
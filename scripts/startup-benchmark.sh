@@ -0,0 +1,34 @@
+#!/usr/bin/env bash
+# Compares the wall-clock startup of a one-shot parse with and without the AppCDS archive.
+# Usage: scripts/startup-benchmark.sh [runs]   (after `gradle jar`)
+set -euo pipefail
+
+runs=${1:-20}
+dir=$(cd "$(dirname "$0")/.." && pwd)
+jar="$dir/build/libs/sql-parser.jar"
+archive="$dir/build/libs/sql-parser.jsa"
+statement="SELECT a.id, b.name FROM author a INNER JOIN book b ON b.author_id = a.id WHERE a.age > 30 ORDER BY b.name"
+
+if [[ ! -f "$jar" || ! -f "$archive" ]]; then
+    echo "Build the jar and the archive first: gradle jar" >&2
+    exit 1
+fi
+
+measure() {
+    local label=$1
+    shift
+    java "$@" -jar "$jar" --parse "$statement" > /dev/null
+    local total=0
+    for ((i = 0; i < runs; i++)); do
+        local start end
+        start=$(date +%s%N)
+        java "$@" -jar "$jar" --parse "$statement" > /dev/null
+        end=$(date +%s%N)
+        total=$((total + end - start))
+    done
+    printf '%-24s %6d ms\n' "$label" $((total / runs / 1000000))
+}
+
+measure "default" -Xshare:auto
+measure "appcds" -XX:SharedArchiveFile="$archive"
+measure "appcds + c1" -XX:SharedArchiveFile="$archive" -XX:TieredStopAtLevel=1
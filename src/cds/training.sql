@@ -0,0 +1,8 @@
+SELECT * FROM book;
+SELECT id, name AS author_name, count(*) FROM author a LEFT JOIN book b ON b.author_id = a.id WHERE a.age > 30 AND (b.title LIKE 'A%' OR b.year IN (1999, 2000)) GROUP BY id, name HAVING count(*) > 1 ORDER BY name DESC LIMIT 10 OFFSET 5;
+SELECT DISTINCT p.name, d.title FROM public.person p INNER JOIN document d ON d.person_id = p.id WHERE p.id = ? AND d.created BETWEEN '2020-01-01' AND '2021-01-01';
+WITH recent AS (SELECT id FROM orders WHERE created > ?) SELECT o.id, CASE WHEN o.total > 100 THEN 'big' ELSE 'small' END FROM orders o WHERE o.id IN (SELECT id FROM recent);
+SELECT a FROM t UNION ALL SELECT b FROM u EXCEPT SELECT c FROM v;
+SELECT name, row_number() OVER (PARTITION BY dept ORDER BY salary DESC) FROM employee;
+SELECT a FROM t WHERE x NOT IN (SELECT y FROM u) AND z IS NOT NULL;
+SELECT FROM broken;
@@ -0,0 +1,58 @@
+package org.kotkina.benchmarks;
+
+import org.kotkina.services.QueryService;
+import org.kotkina.stream.BulkParser;
+import org.kotkina.stream.BulkStats;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk parsing of a file by thread count, divide the score by the threads for throughput per core.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkParserBenchmark {
+
+    private static final int STATEMENTS = 20_000;
+
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    @Param({"true", "false"})
+    private boolean ordered;
+
+    private Path file;
+    private BulkParser parser;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < STATEMENTS; i++) {
+            text.append(i % 4 == 0 ? Queries.MEDIUM : Queries.SMALL).append(";\n");
+        }
+        file = Files.createTempFile("bulk", ".sql");
+        Files.writeString(file, text);
+        parser = new BulkParser(new QueryService(), threads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        parser.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATEMENTS)
+    public BulkStats parse() throws IOException {
+        return parser.parse(file, ordered, result -> {
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package org.kotkina.benchmarks;
+
+import org.kotkina.lexer.Lexer;
+import org.kotkina.lexer.Token;
+import org.kotkina.lexer.TokenType;
+import org.kotkina.models.Keyword;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyword recognition per word of a wide query, {@code gc.alloc.rate.norm} is expected to be 0.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeywordBenchmark {
+
+    private String source;
+    private int[] starts;
+    private int[] ends;
+
+    @Setup
+    public void setUp() {
+        source = Queries.MEDIUM + " " + Queries.manyJoins(20);
+        List<Token> words = new ArrayList<>();
+        for (Token token : new Lexer(source).tokenize()) {
+            if (token.is(TokenType.IDENTIFIER) || token.is(TokenType.KEYWORD)) {
+                words.add(token);
+            }
+        }
+        starts = new int[words.size()];
+        ends = new int[words.size()];
+        for (int i = 0; i < words.size(); i++) {
+            starts[i] = words.get(i).getStart();
+            ends[i] = words.get(i).getEnd();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public void lookup(Blackhole blackhole) {
+        for (int i = 0; i < 1000; i++) {
+            int word = i % starts.length;
+            blackhole.consume(Keyword.lookup(source, starts[word], ends[word]));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.kotkina.benchmarks;
+
+import org.kotkina.models.Query;
+import org.kotkina.services.CachedQueryService;
+import org.kotkina.services.QueryService;
+import org.kotkina.services.TemplateQueryService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse cost by query shape, from a typical small query to pathological ones.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"small", "medium", "wideSelect", "manyJoins", "deepConditions", "longInList"})
+    private String shape;
+
+    private final QueryService queryService = new QueryService();
+    private final CachedQueryService cachedQueryService = new CachedQueryService(1024);
+    private final TemplateQueryService templateQueryService = new TemplateQueryService(1024);
+    private String query;
+    private String[] literalVariants;
+    private int variant;
+
+    @Setup
+    public void setUp() {
+        query = Queries.of(shape);
+        literalVariants = new String[16];
+        for (int i = 0; i < literalVariants.length; i++) {
+            literalVariants[i] = query + " LIMIT " + (i + 1);
+        }
+    }
+
+    @Benchmark
+    public Query parse() {
+        return queryService.parse(query);
+    }
+
+    @Benchmark
+    public Query parseCached() {
+        return cachedQueryService.parse(query);
+    }
+
+    @Benchmark
+    public Query parseTemplate() {
+        variant = (variant + 1) & (literalVariants.length - 1);
+        return templateQueryService.parse(literalVariants[variant]);
+    }
+}
@@ -0,0 +1,97 @@
+package org.kotkina.benchmarks;
+
+import org.kotkina.analysis.QueryAnalyzer;
+import org.kotkina.analysis.QueryFootprint;
+import org.kotkina.models.Query;
+import org.kotkina.policy.PolicyEngine;
+import org.kotkina.policy.PolicyResult;
+import org.kotkina.policy.PolicyRule;
+import org.kotkina.services.QueryService;
+import org.kotkina.visitor.ResolvedColumn;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Policy evaluation of a parsed query by rule count: the indexed engine against a loop over the rules
+ * checking the query footprint, both with the footprint already kept on the query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PolicyBenchmark {
+
+    private static final String[] COLUMNS = {"id", "name", "age", "person_id", "type_id", "created", "email", "tenant_id"};
+
+    @Param({"100", "10000", "50000"})
+    private int rules;
+
+    @Param({"medium", "manyJoins"})
+    private String shape;
+
+    private List<PolicyRule> ruleList;
+    private PolicyEngine engine;
+    private Query query;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<String> tables = new ArrayList<>(List.of("person", "document"));
+        for (int i = 0; i <= 20; i++) {
+            tables.add("table_" + i);
+        }
+        ruleList = new ArrayList<>(rules);
+        for (int i = 0; i < rules; i++) {
+            String tenant = i % 10 == 0 ? null : "tenant_" + random.nextInt(100);
+            String table = random.nextInt(50) == 0 ? tables.get(random.nextInt(tables.size())) : "other_" + random.nextInt(rules);
+            String column = COLUMNS[random.nextInt(COLUMNS.length)];
+            ruleList.add(switch (i % 3) {
+                case 0 -> PolicyRule.denyTable(tenant, table);
+                case 1 -> PolicyRule.maskColumn(tenant, table, column);
+                default -> PolicyRule.requirePredicate(tenant, table, column);
+            });
+        }
+        engine = PolicyEngine.compile(ruleList);
+        query = new QueryService().parse(shape.equals("manyJoins") ? Queries.manyJoins(20) : Queries.of(shape));
+        QueryAnalyzer.footprint(query);
+    }
+
+    @Benchmark
+    public PolicyResult indexed() {
+        return engine.evaluate(query, "tenant_7");
+    }
+
+    @Benchmark
+    public PolicyResult naive() {
+        QueryFootprint footprint = QueryAnalyzer.footprint(query);
+        List<PolicyRule> violations = new ArrayList<>();
+        List<PolicyRule> masking = new ArrayList<>();
+        for (PolicyRule rule : ruleList) {
+            if (rule.getTenant() != null && !rule.getTenant().equals("tenant_7")) {
+                continue;
+            }
+            for (String table : footprint.getTables()) {
+                if (!table.toLowerCase(Locale.ROOT).equals(rule.getTable())) {
+                    continue;
+                }
+                switch (rule.getKind()) {
+                    case DENY_TABLE -> violations.add(rule);
+                    case MASK_COLUMN -> {
+                        if (footprint.readsColumn(table, rule.getColumn())) masking.add(rule);
+                    }
+                    case REQUIRE_PREDICATE -> {
+                        if (footprint.getClauses(new ResolvedColumn(table, rule.getColumn())).isEmpty()) violations.add(rule);
+                    }
+                }
+            }
+        }
+        return new PolicyResult(violations, null, masking);
+    }
+}
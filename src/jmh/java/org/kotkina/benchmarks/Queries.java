@@ -0,0 +1,70 @@
+package org.kotkina.benchmarks;
+
+/**
+ * Benchmark inputs, the pathological shapes are sized to stress one dimension of the grammar.
+ */
+final class Queries {
+
+    static final String SMALL = "SELECT * FROM book WHERE id = 17";
+
+    static final String MEDIUM = """
+            SELECT p.name as name, p.id, age, COUNT(*) docs_count
+            FROM person p
+            LEFT JOIN document d ON d.person_id = p.id
+            WHERE p.age < 18 OR d.type_id = 3 AND d.created BETWEEN '2020-01-01' AND '2021-01-01'
+            GROUP BY p.name, p.id, age
+            HAVING COUNT(*) > 1
+            ORDER BY p.age DESC, name
+            OFFSET 10""";
+
+    private Queries() {
+    }
+
+    static String of(String shape) {
+        return switch (shape) {
+            case "small" -> SMALL;
+            case "medium" -> MEDIUM;
+            case "wideSelect" -> wideSelect(500);
+            case "manyJoins" -> manyJoins(100);
+            case "deepConditions" -> deepConditions(1000);
+            case "longInList" -> longInList(5000);
+            default -> throw new IllegalArgumentException("Unknown query shape: " + shape);
+        };
+    }
+
+    static String wideSelect(int columns) {
+        StringBuilder query = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns; i++) {
+            if (i > 0) query.append(", ");
+            query.append("t.column_").append(i).append(" AS c").append(i);
+        }
+        return query.append(" FROM wide_table t").toString();
+    }
+
+    static String manyJoins(int joins) {
+        StringBuilder query = new StringBuilder("SELECT t0.id FROM table_0 t0");
+        for (int i = 1; i <= joins; i++) {
+            query.append(" LEFT JOIN table_").append(i).append(" t").append(i)
+                    .append(" ON t").append(i).append(".parent_id = t").append(i - 1).append(".id");
+        }
+        return query.toString();
+    }
+
+    static String deepConditions(int terms) {
+        StringBuilder query = new StringBuilder("SELECT id FROM t WHERE ");
+        for (int i = 0; i < terms; i++) {
+            if (i > 0) query.append(i % 3 == 0 ? " OR " : " AND ");
+            query.append("(c").append(i).append(" = ").append(i).append(')');
+        }
+        return query.toString();
+    }
+
+    static String longInList(int values) {
+        StringBuilder query = new StringBuilder("SELECT id FROM t WHERE id IN (");
+        for (int i = 0; i < values; i++) {
+            if (i > 0) query.append(", ");
+            query.append(i);
+        }
+        return query.append(')').toString();
+    }
+}
@@ -0,0 +1,61 @@
+package org.kotkina.benchmarks;
+
+import org.kotkina.models.Query;
+import org.kotkina.serialization.JsonWriter;
+import org.kotkina.serialization.QueryReader;
+import org.kotkina.serialization.QueryWriter;
+import org.kotkina.services.QueryService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a stored query compared to parsing it again, and the cost of writing it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"small", "medium", "manyJoins", "deepConditions"})
+    private String shape;
+
+    private final QueryService queryService = new QueryService();
+    private final StringBuilder json = new StringBuilder();
+    private String text;
+    private Query query;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        text = Queries.of(shape);
+        query = queryService.parse(text);
+        bytes = QueryWriter.toBytes(query);
+    }
+
+    @Benchmark
+    public Query parse() {
+        return queryService.parse(text);
+    }
+
+    @Benchmark
+    public Query readBinary() {
+        return QueryReader.fromBytes(bytes);
+    }
+
+    @Benchmark
+    public byte[] writeBinary() {
+        return QueryWriter.toBytes(query);
+    }
+
+    @Benchmark
+    public int writeJson() throws IOException {
+        json.setLength(0);
+        new JsonWriter(json).write(query);
+        return json.length();
+    }
+}
@@ -2,16 +2,149 @@ package org.kotkina;
 
 import org.kotkina.errors.InvalidQueryException;
 import org.kotkina.models.Query;
+import org.kotkina.serialization.JsonWriter;
+import org.kotkina.server.QueryServer;
+import org.kotkina.server.ServerOptions;
 import org.kotkina.services.QueryService;
+import org.kotkina.stream.DirectoryParser;
+import org.kotkina.stream.DirectoryStats;
+import org.kotkina.stream.Statement;
+import org.kotkina.stream.StatementSplitter;
 
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
 
 public class Main {
 
     private static final String SCANNER_INPUT_TEXT = "\nEnter a SELECT query. Use a semicolon to end the query.\nTo exit, enter `0` or `exit`.";
-    private static final QueryService queryService = new QueryService();
+    private static final String USAGE = """
+            Usage: java -jar sql-parser.jar
+                   java -jar sql-parser.jar --parse [statement ...]
+                   java -jar sql-parser.jar --input <directory> [--output <file.ndjson>] [--threads <n>]
+                   java -jar sql-parser.jar --serve <port|unix-socket-path> [--framing newline|length]
+                                            [--format json|binary] [--max-in-flight <n>]
+                                            [--max-server-in-flight <n>]""";
 
-    public static void main(String[] args) {
+    /**
+     * Without arguments, prompts for queries when run from a terminal and parses the standard input
+     * otherwise. Only the classes of the chosen mode are loaded.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0 && System.console() != null) {
+            prompt();
+        } else if (args.length == 0 || args[0].equals("--parse")) {
+            System.exit(parse(args));
+        } else if (args[0].equals("--input") && args.length % 2 == 0) {
+            System.exit(parseDirectory(args));
+        } else if (args[0].equals("--serve") && args.length % 2 == 0) {
+            serve(args);
+        } else {
+            System.exit(usage());
+        }
+    }
+
+    private static int usage() {
+        System.err.println(USAGE);
+        return 2;
+    }
+
+    private static int positive(String value) {
+        int number = Integer.parseInt(value);
+        if (number < 1) {
+            throw new IllegalArgumentException("Not a positive number: " + value);
+        }
+        return number;
+    }
+
+    /**
+     * Parses the statements given after {@code --parse}, or the semicolon-separated statements of the
+     * standard input, and writes a JSON line per statement. Returns the exit status, 1 if a
+     * statement is invalid.
+     */
+    private static int parse(String[] args) throws IOException {
+        QueryService queryService = new QueryService();
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 1 << 16);
+        JsonWriter json = new JsonWriter(out);
+        boolean valid = true;
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                valid &= write(json, out, queryService, args[i], false);
+            }
+        } else {
+            StatementSplitter statements = new StatementSplitter(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            while (statements.hasNext()) {
+                Statement statement = statements.next();
+                valid &= write(json, out, queryService, statement.getText(), statement.isTruncated());
+            }
+        }
+        out.flush();
+        return valid ? 0 : 1;
+    }
+
+    private static boolean write(JsonWriter json, Writer out, QueryService queryService, String statement, boolean truncated) throws IOException {
+        try {
+            if (truncated) {
+                throw new InvalidQueryException("The statement is longer than " + StatementSplitter.DEFAULT_MAX_STATEMENT_LENGTH + " characters.");
+            }
+            json.write(queryService.parse(statement));
+            return true;
+        } catch (InvalidQueryException ex) {
+            json.writeError(ex);
+            return false;
+        } finally {
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Parses the {@code .sql} files of a directory tree into NDJSON, to the standard output when no
+     * output file is given, and prints the summary to the standard error. Returns the exit status, 1
+     * if a statement is invalid.
+     */
+    private static int parseDirectory(String[] args) throws IOException {
+        Path input;
+        Path output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            input = Path.of(args[1]);
+            for (int i = 2; i < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--output" -> output = Path.of(args[i + 1]);
+                    case "--threads" -> threads = positive(args[i + 1]);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            return usage();
+        }
+
+        DirectoryStats stats;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(output == null
+                ? new FileOutputStream(FileDescriptor.out) : Files.newOutputStream(output), StandardCharsets.UTF_8), 1 << 16);
+             DirectoryParser parser = new DirectoryParser(new QueryService(), threads)) {
+            stats = parser.parse(input, out);
+        }
+        System.err.println(stats);
+        return stats.getErrors() == 0 ? 0 : 1;
+    }
+
+    private static void prompt() {
+        QueryService queryService = new QueryService();
         StringBuilder query = new StringBuilder();
 
         try (Scanner in = new Scanner(System.in)) {
@@ -26,7 +159,7 @@ public class Main {
 
                 query.append(line);
                 if (line.contains(";")) {
-                    parseAndPrint(query.toString());
+                    parseAndPrint(queryService, query.toString());
                     query.setLength(0);
                     System.out.println(SCANNER_INPUT_TEXT);
                 } else {
@@ -36,7 +169,47 @@ public class Main {
         }
     }
 
-    private static void parseAndPrint(String query) {
+    /**
+     * Serves parse requests on a loopback port or a Unix domain socket until the process is stopped.
+     */
+    private static void serve(String[] args) throws IOException, InterruptedException {
+        ServerOptions.ServerOptionsBuilder options = ServerOptions.builder();
+        SocketAddress address;
+        try {
+            for (int i = 2; i < args.length; i += 2) {
+                String value = args[i + 1].toUpperCase(Locale.ROOT);
+                switch (args[i]) {
+                    case "--framing" -> options.framing(ServerOptions.Framing.valueOf(value));
+                    case "--format" -> options.format(ServerOptions.Format.valueOf(value));
+                    case "--max-in-flight" -> options.maxInFlight(positive(value));
+                    case "--max-server-in-flight" -> options.maxServerInFlight(positive(value));
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            String target = args[1];
+            address = !target.isEmpty() && target.chars().allMatch(Character::isDigit)
+                    ? new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(target))
+                    : UnixDomainSocketAddress.of(target);
+        } catch (IllegalArgumentException ex) {
+            System.exit(usage());
+            return;
+        }
+
+        QueryServer server = QueryServer.start(address, new QueryService(), options.build());
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException ex) {
+                // the process is exiting
+            }
+            stopped.countDown();
+        }));
+        System.err.println("Listening on " + server.getAddress());
+        stopped.await();
+    }
+
+    private static void parseAndPrint(QueryService queryService, String query) {
         System.out.println("\nYour query:");
         System.out.println(query);
         try {
@@ -46,4 +219,4 @@ public class Main {
             System.out.println(ex.getMessage());
         }
     }
-}
\ No newline at end of file
+}
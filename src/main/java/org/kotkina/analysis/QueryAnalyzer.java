@@ -0,0 +1,71 @@
+package org.kotkina.analysis;
+
+import org.kotkina.models.AbstractQuery;
+import org.kotkina.models.Keyword;
+import org.kotkina.models.Query;
+import org.kotkina.models.SelectQuery;
+import org.kotkina.visitor.QueryWalker;
+import org.kotkina.visitor.ReferencedColumns;
+import org.kotkina.visitor.ResolvedColumn;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the {@link QueryFootprint} of a query in one walk, resolving columns as
+ * {@link ReferencedColumns} does. Footprints of parsed queries are computed once and kept on the query.
+ */
+public final class QueryAnalyzer extends ReferencedColumns {
+
+    private final Set<String> tables = new LinkedHashSet<>();
+    private final Map<ResolvedColumn, Set<Keyword>> usage = new LinkedHashMap<>();
+
+    private QueryAnalyzer() {
+    }
+
+    /**
+     * The footprint of a query, the one kept on the query when it has been analyzed before.
+     */
+    public static QueryFootprint footprint(Query query) {
+        return query instanceof AbstractQuery analyzable ? analyzable.getFootprint() : analyze(query);
+    }
+
+    /**
+     * Analyzes a query, without looking for a kept footprint.
+     */
+    public static QueryFootprint analyze(Query query) {
+        QueryAnalyzer analyzer = new QueryAnalyzer();
+        QueryWalker.walk(query, analyzer);
+        for (Map.Entry<ResolvedColumn, Set<Keyword>> column : analyzer.usage.entrySet()) {
+            column.setValue(Collections.unmodifiableSet(column.getValue()));
+        }
+        return new QueryFootprint(analyzer.tables, analyzer.usage);
+    }
+
+    @Override
+    public boolean visitSelect(SelectQuery query) {
+        super.visitSelect(query);
+        List<String> sources = tables();
+        for (int i = 0; i < sources.size(); i++) {
+            if (sources.get(i) != null) {
+                tables.add(sources.get(i));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void add(ResolvedColumn column, Keyword clause) {
+        Set<Keyword> clauses = usage.get(column);
+        if (clauses == null) {
+            usage.put(column, EnumSet.of(clause));
+        } else {
+            clauses.add(clause);
+        }
+    }
+}
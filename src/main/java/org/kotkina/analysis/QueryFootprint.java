@@ -0,0 +1,80 @@
+package org.kotkina.analysis;
+
+import lombok.EqualsAndHashCode;
+import org.kotkina.models.Keyword;
+import org.kotkina.visitor.ResolvedColumn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What a query reads: its tables and its columns with the tables resolved through the aliases, and
+ * the clauses each column is used in. Subqueries and WITH queries are included, derived tables and
+ * WITH queries are not tables. Immutable; see {@link QueryAnalyzer} for how columns are resolved.
+ */
+@EqualsAndHashCode
+public final class QueryFootprint {
+
+    private final Set<String> tables;
+    private final Map<ResolvedColumn, Set<Keyword>> columns;
+
+    QueryFootprint(Set<String> tables, Map<ResolvedColumn, Set<Keyword>> columns) {
+        this.tables = Collections.unmodifiableSet(tables);
+        this.columns = Collections.unmodifiableMap(columns);
+    }
+
+    /**
+     * The tables in the order of their first source.
+     */
+    public Set<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * The columns in the order of their first reference.
+     */
+    public Set<ResolvedColumn> getColumns() {
+        return columns.keySet();
+    }
+
+    /**
+     * The columns used in a clause: {@code SELECT}, {@code ON}, {@code WHERE}, {@code GROUP},
+     * {@code HAVING} or {@code ORDER}.
+     */
+    public List<ResolvedColumn> getColumns(Keyword clause) {
+        List<ResolvedColumn> used = new ArrayList<>();
+        for (Map.Entry<ResolvedColumn, Set<Keyword>> column : columns.entrySet()) {
+            if (column.getValue().contains(clause)) {
+                used.add(column.getKey());
+            }
+        }
+        return used;
+    }
+
+    /**
+     * The clauses a column is used in, empty if it is not.
+     */
+    public Set<Keyword> getClauses(ResolvedColumn column) {
+        Set<Keyword> clauses = columns.get(column);
+        return clauses == null ? Collections.emptySet() : clauses;
+    }
+
+    public boolean readsTable(String table) {
+        return tables.contains(table);
+    }
+
+    /**
+     * Whether the query reads a column of a table by name or through a wildcard.
+     */
+    public boolean readsColumn(String table, String column) {
+        return columns.containsKey(new ResolvedColumn(table, column)) || columns.containsKey(new ResolvedColumn(table, "*"));
+    }
+
+    @Override
+    public String toString() {
+        return "{ \"tables\": " + tables + ", \"columns\": " + columns + " }";
+    }
+}
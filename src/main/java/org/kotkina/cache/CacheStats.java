@@ -0,0 +1,28 @@
+package org.kotkina.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A point-in-time snapshot of the cache counters.
+ */
+@Getter
+@AllArgsConstructor
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+    private final int maximumSize;
+
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "{ \"hits\": " + hits + ", \"misses\": " + misses + ", \"evictions\": " + evictions
+                + ", \"size\": " + size + ", \"maximumSize\": " + maximumSize + " }";
+    }
+}
@@ -0,0 +1,27 @@
+package org.kotkina.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.kotkina.models.expression.Literal;
+
+import java.util.List;
+
+/**
+ * A query with its number and string literals replaced by {@code ?} placeholders.
+ * {@code hash} identifies the query shape regardless of literals, whitespace, comments and the case
+ * of unquoted words, {@code template} is the query text with placeholders, and {@code literals}
+ * holds the removed literals in the order of the placeholders.
+ */
+@Getter
+@AllArgsConstructor
+public class Fingerprint {
+    private final long hash;
+    private final String template;
+    private final List<Literal> literals;
+    private final boolean parameterized;
+
+    @Override
+    public String toString() {
+        return String.format("%016x", hash);
+    }
+}
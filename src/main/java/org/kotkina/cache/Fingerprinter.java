@@ -0,0 +1,62 @@
+package org.kotkina.cache;
+
+import org.kotkina.lexer.Lexer;
+import org.kotkina.lexer.Token;
+import org.kotkina.lexer.TokenType;
+import org.kotkina.models.expression.Literal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes query fingerprints in one pass of the lexer. The hash is 64-bit FNV-1a over the token
+ * stream, so it is stable across runs and JVMs.
+ */
+public final class Fingerprinter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Fingerprinter() {
+    }
+
+    public static Fingerprint fingerprint(CharSequence query) {
+        long hash = FNV_OFFSET_BASIS;
+        List<Literal> literals = new ArrayList<>();
+        StringBuilder template = null;
+        boolean parameterized = false;
+        int copied = 0;
+
+        Lexer lexer = new Lexer(query);
+        while (lexer.hasNext()) {
+            Token token = lexer.next();
+            TokenType type = token.getType();
+
+            if (type == TokenType.NUMBER || type == TokenType.STRING) {
+                literals.add(new Literal(type == TokenType.NUMBER ? Literal.Kind.NUMBER : Literal.Kind.STRING, token.text()));
+                if (template == null) {
+                    template = new StringBuilder(query.length());
+                }
+                template.append(query, copied, token.getStart()).append('?');
+                copied = token.getEnd();
+                hash = mix(hash, '?');
+            } else {
+                boolean fold = type == TokenType.IDENTIFIER || type == TokenType.KEYWORD;
+                for (int i = token.getStart(); i < token.getEnd(); i++) {
+                    char c = query.charAt(i);
+                    hash = mix(hash, fold ? Character.toUpperCase(c) : c);
+                }
+                parameterized |= token.is('?');
+            }
+            hash = mix(hash, ' ');
+        }
+
+        String text = template == null ? query.toString() : template.append(query, copied, query.length()).toString();
+        return new Fingerprint(hash, text, List.copyOf(literals), parameterized);
+    }
+
+    private static long mix(long hash, char c) {
+        hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+        return (hash ^ (c >>> 8)) * FNV_PRIME;
+    }
+}
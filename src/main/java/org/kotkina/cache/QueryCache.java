@@ -0,0 +1,92 @@
+package org.kotkina.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache with approximate least-recently-used eviction and hit/miss/eviction counters. A hit
+ * only marks its entry, without a lock. Adding an entry to a full cache takes a lock and evicts by
+ * the CLOCK algorithm: a hand passes over the entries in a ring, clearing the marks, and evicts the
+ * first entry not used since the hand last passed it.
+ */
+public class QueryCache<K, V> {
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final List<Entry<K, V>> ring = new ArrayList<>();
+    private int hand;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public QueryCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("The maximum cache size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    public V get(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (!entry.used) {
+            entry.used = true;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry != null) {
+            entry.value = value;
+            return;
+        }
+        entry = new Entry<>(key, value);
+        if (ring.size() < maximumSize) {
+            ring.add(entry);
+        } else {
+            Entry<K, V> victim = ring.get(hand);
+            while (victim.used) {
+                victim.used = false;
+                hand = (hand + 1) % maximumSize;
+                victim = ring.get(hand);
+            }
+            entries.remove(victim.key);
+            evictions.increment();
+            ring.set(hand, entry);
+            hand = (hand + 1) % maximumSize;
+        }
+        entries.put(key, entry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        ring.clear();
+        hand = 0;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size(), maximumSize);
+    }
+
+    private static final class Entry<K, V> {
+        private final K key;
+        private volatile V value;
+        private volatile boolean used;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
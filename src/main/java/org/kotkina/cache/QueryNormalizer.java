@@ -0,0 +1,80 @@
+package org.kotkina.cache;
+
+/**
+ * Builds cache keys: whitespace runs and comments become a single space, text outside quotes is
+ * upper-cased and a trailing semicolon is dropped. Quoted strings and identifiers are kept as written.
+ */
+public final class QueryNormalizer {
+
+    private QueryNormalizer() {
+    }
+
+    public static String normalize(CharSequence query) {
+        int length = query.length();
+        StringBuilder key = new StringBuilder(length);
+        boolean pendingSpace = false;
+        int i = 0;
+
+        while (i < length) {
+            char c = query.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+            } else if (c == '-' && i + 1 < length && query.charAt(i + 1) == '-') {
+                while (i < length && query.charAt(i) != '\n') i++;
+                pendingSpace = true;
+            } else if (c == '/' && i + 1 < length && query.charAt(i + 1) == '*') {
+                int end = indexOf(query, "*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                pendingSpace = true;
+            } else {
+                if (pendingSpace && key.length() > 0) {
+                    key.append(' ');
+                }
+                pendingSpace = false;
+
+                if (c == '\'' || c == '"' || c == '`') {
+                    int end = closingQuote(query, i, c);
+                    key.append(query, i, end);
+                    i = end;
+                } else {
+                    key.append(Character.toUpperCase(c));
+                    i++;
+                }
+            }
+        }
+
+        int last = key.length() - 1;
+        if (last >= 0 && key.charAt(last) == ';') {
+            key.setLength(last > 0 && key.charAt(last - 1) == ' ' ? last - 1 : last);
+        }
+        return key.toString();
+    }
+
+    /**
+     * The index after the closing quote, a doubled quote is an escaped quote.
+     */
+    private static int closingQuote(CharSequence query, int start, char quote) {
+        int i = start + 1;
+        while (i < query.length()) {
+            if (query.charAt(i++) == quote) {
+                if (i < query.length() && query.charAt(i) == quote) {
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return query.length();
+    }
+
+    private static int indexOf(CharSequence text, String target, int from) {
+        for (int i = from; i <= text.length() - target.length(); i++) {
+            if (text.charAt(i) == target.charAt(0) && text.charAt(i + 1) == target.charAt(1)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
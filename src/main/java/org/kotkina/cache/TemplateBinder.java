@@ -0,0 +1,289 @@
+package org.kotkina.cache;
+
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.lexer.Lexer;
+import org.kotkina.lexer.Token;
+import org.kotkina.models.*;
+import org.kotkina.models.expression.*;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Binds literals into a query parsed from a fingerprint template. Parameters are replaced by the
+ * literals with the same index, and the placeholders in the text fields by the literal text.
+ * Nodes without parameters are shared with the template.
+ */
+public final class TemplateBinder {
+
+    private static final String ERROR_PATTERN = "Error in {0} clause: {1}";
+
+    private final List<Literal> literals;
+    private final Map<Expression, Expression> bound = new IdentityHashMap<>();
+
+    private TemplateBinder(List<Literal> literals) {
+        this.literals = literals;
+    }
+
+    public static Query bind(Query template, List<Literal> literals) {
+        return literals.isEmpty() ? template : new TemplateBinder(literals).query(template);
+    }
+
+    private Query query(Query template) {
+        if (template instanceof SelectQuery selectQuery) {
+            return select(selectQuery);
+        } else if (template instanceof SetOperation operation) {
+            return SetOperation.builder()
+                    .operator(operation.getOperator())
+                    .left(query(operation.getLeft()))
+                    .right(query(operation.getRight()))
+                    .sortColumns(map(operation.getSortColumns(), this::sort))
+                    .limit(operation.getLimitParameter() == null ? operation.getLimit() : integer(operation.getLimitParameter(), Keyword.LIMIT))
+                    .offset(operation.getOffsetParameter() == null ? operation.getOffset() : integer(operation.getOffsetParameter(), Keyword.OFFSET))
+                    .build();
+        } else if (template instanceof WithQuery with) {
+            return new WithQuery(with.isRecursive(), map(with.getTables(), table ->
+                    new CommonTableExpression(table.getName(), table.getColumns(), query(table.getQuery()))), query(with.getQuery()));
+        }
+        return template;
+    }
+
+    private SelectQuery select(SelectQuery template) {
+        SelectQuery.SelectQueryBuilder query = SelectQuery.builder()
+                .distinct(template.isDistinct())
+                .columns(map(template.getColumns(), column ->
+                        new Column(text(column.getName(), column.getExpression()), column.getAlias(), expression(column.getExpression()))))
+                .fromSources(map(template.getFromSources(), this::source))
+                .joins(map(template.getJoins(), join ->
+                        new Join(join.getType(), source(join.getSource()), clauses(join.getConditions()), expression(join.getCondition()), join.getUsing())))
+                .whereClauses(clauses(template.getWhereClauses()))
+                .where(expression(template.getWhere()))
+                .groupBy(map(template.getGroupBy(), this::expression))
+                .havingClauses(clauses(template.getHavingClauses()))
+                .having(expression(template.getHaving()))
+                .sortColumns(map(template.getSortColumns(), this::sort))
+                .limit(template.getLimitParameter() == null ? template.getLimit() : integer(template.getLimitParameter(), Keyword.LIMIT))
+                .offset(template.getOffsetParameter() == null ? template.getOffset() : integer(template.getOffsetParameter(), Keyword.OFFSET));
+
+        if (template.getGroupByColumns() != null) {
+            List<String> columns = new ArrayList<>(template.getGroupByColumns().size());
+            for (int i = 0; i < template.getGroupByColumns().size(); i++) {
+                columns.add(text(template.getGroupByColumns().get(i), template.getGroupBy().get(i)));
+            }
+            query.groupByColumns(List.copyOf(columns));
+        }
+        return query.build();
+    }
+
+    private Source source(Source source) {
+        if (source.getSubquery() == null) {
+            return source;
+        }
+        return new Source(text(source.getTable(), firstParameter(source.getSubquery())), source.getAlias(), query(source.getSubquery()));
+    }
+
+    private Sort sort(Sort sort) {
+        return new Sort(text(sort.getExpression(), sort.getKey()), sort.isDesc(), expression(sort.getKey()), sort.getNulls());
+    }
+
+    private List<Clause> clauses(List<Clause> clauses) {
+        return map(clauses, clause ->
+                new Clause(text(clause.getCondition(), clause.getExpression()), clause.getOperator(), expression(clause.getExpression())));
+    }
+
+    private Integer integer(Parameter parameter, Keyword clause) {
+        Literal literal = literals.get(parameter.getIndex());
+        if (literal.getKind() == Literal.Kind.NUMBER) {
+            try {
+                return Integer.parseInt(literal.getText());
+            } catch (NumberFormatException ignored) {
+                // reported as a clause error below
+            }
+        }
+        throw new InvalidQueryException(clause.name(), MessageFormat.format(ERROR_PATTERN, clause, literal.getText()));
+    }
+
+    private Expression expression(Expression template) {
+        if (template == null) {
+            return null;
+        }
+        Expression expression = bound.get(template);
+        if (expression == null) {
+            expression = rebuild(template);
+            bound.put(template, expression);
+        }
+        return expression;
+    }
+
+    private Expression rebuild(Expression template) {
+        if (template instanceof Parameter parameter) {
+            return literals.get(parameter.getIndex());
+        } else if (template instanceof UnaryExpression unary) {
+            return new UnaryExpression(unary.getOperator(), expression(unary.getOperand()));
+        } else if (template instanceof BinaryExpression binary) {
+            return new BinaryExpression(binary.getOperator(), expression(binary.getLeft()), expression(binary.getRight()));
+        } else if (template instanceof FunctionCall function) {
+            return new FunctionCall(function.getName(), map(function.getArguments(), this::expression), function.isDistinct());
+        } else if (template instanceof InExpression in) {
+            return new InExpression(expression(in.getExpression()), map(in.getValues(), this::expression), in.isNot());
+        } else if (template instanceof BetweenExpression between) {
+            return new BetweenExpression(expression(between.getExpression()), expression(between.getLower()),
+                    expression(between.getUpper()), between.isNot());
+        } else if (template instanceof IsNullExpression isNull) {
+            return new IsNullExpression(expression(isNull.getExpression()), isNull.isNot());
+        } else if (template instanceof NestedExpression nested) {
+            return new NestedExpression(expression(nested.getExpression()));
+        } else if (template instanceof SubqueryExpression subquery) {
+            return new SubqueryExpression(query(subquery.getQuery()));
+        } else if (template instanceof ExistsExpression exists) {
+            return new ExistsExpression(query(exists.getQuery()));
+        } else if (template instanceof CaseExpression caseExpression) {
+            return new CaseExpression(expression(caseExpression.getOperand()), map(caseExpression.getWhenClauses(), when ->
+                    new WhenClause(expression(when.getCondition()), expression(when.getResult()))), expression(caseExpression.getElseResult()));
+        } else if (template instanceof WindowFunction window) {
+            WindowFrame frame = window.getFrame();
+            return new WindowFunction((FunctionCall) expression(window.getFunction()), map(window.getPartitionBy(), this::expression),
+                    map(window.getOrderBy(), this::sort), frame == null ? null : new WindowFrame(frame.getUnits(),
+                    frame.getStart(), expression(frame.getStartOffset()), frame.getEnd(), expression(frame.getEndOffset())));
+        }
+        return template;
+    }
+
+    /**
+     * Replaces the placeholders of a template text, the placeholders of the text are exactly the
+     * parameters of its tree, so the first one has the lowest index in the tree.
+     */
+    private String text(String template, Expression tree) {
+        if (template == null || template.indexOf('?') < 0) {
+            return template;
+        }
+        return text(template, firstParameter(tree));
+    }
+
+    /**
+     * Replaces the placeholder tokens, so a {@code ?} in a comment or a quoted text stays as it is.
+     */
+    private String text(String template, int index) {
+        if (template.indexOf('?') < 0 || index < 0) {
+            return template;
+        }
+
+        StringBuilder text = new StringBuilder(template.length() + 16);
+        int copied = 0;
+        Lexer lexer = new Lexer(template);
+        while (lexer.hasNext()) {
+            Token token = lexer.next();
+            if (token.is('?')) {
+                text.append(template, copied, token.getStart()).append(literals.get(index++).getText());
+                copied = token.getEnd();
+            }
+        }
+        return text.append(template, copied, template.length()).toString();
+    }
+
+    private static int firstParameter(Query query) {
+        if (query instanceof SetOperation operation) {
+            int index = firstParameter(operation.getLeft());
+            if (index < 0) index = firstParameter(operation.getRight());
+            if (index < 0) index = firstParameter(operation.getSortColumns(), sort -> firstParameter(sort.getKey()));
+            if (index < 0 && operation.getLimitParameter() != null) index = operation.getLimitParameter().getIndex();
+            if (index < 0 && operation.getOffsetParameter() != null) index = operation.getOffsetParameter().getIndex();
+            return index;
+        }
+        if (query instanceof WithQuery with) {
+            int index = firstParameter(with.getTables(), table -> firstParameter(table.getQuery()));
+            return index < 0 ? firstParameter(with.getQuery()) : index;
+        }
+        if (!(query instanceof SelectQuery selectQuery)) {
+            return -1;
+        }
+
+        int index = firstParameter(selectQuery.getColumns(), column -> firstParameter(column.getExpression()));
+        if (index < 0) index = firstParameter(selectQuery.getFromSources(), source -> firstParameter(source.getSubquery()));
+        if (index < 0) index = firstParameter(selectQuery.getJoins(), join -> {
+            int first = firstParameter(join.getSource().getSubquery());
+            return first < 0 ? firstParameter(join.getCondition()) : first;
+        });
+        if (index < 0) index = firstParameter(selectQuery.getWhere());
+        if (index < 0) index = firstParameter(selectQuery.getGroupBy(), TemplateBinder::firstParameter);
+        if (index < 0) index = firstParameter(selectQuery.getHaving());
+        if (index < 0) index = firstParameter(selectQuery.getSortColumns(), sort -> firstParameter(sort.getKey()));
+        if (index < 0 && selectQuery.getLimitParameter() != null) index = selectQuery.getLimitParameter().getIndex();
+        if (index < 0 && selectQuery.getOffsetParameter() != null) index = selectQuery.getOffsetParameter().getIndex();
+        return index;
+    }
+
+    private static int firstParameter(Expression expression) {
+        if (expression == null) {
+            return -1;
+        } else if (expression instanceof Parameter parameter) {
+            return parameter.getIndex();
+        } else if (expression instanceof UnaryExpression unary) {
+            return firstParameter(unary.getOperand());
+        } else if (expression instanceof BinaryExpression binary) {
+            int first = firstParameter(binary.getLeft());
+            return first < 0 ? firstParameter(binary.getRight()) : first;
+        } else if (expression instanceof FunctionCall function) {
+            return firstParameter(function.getArguments(), TemplateBinder::firstParameter);
+        } else if (expression instanceof InExpression in) {
+            int first = firstParameter(in.getExpression());
+            return first < 0 ? firstParameter(in.getValues(), TemplateBinder::firstParameter) : first;
+        } else if (expression instanceof BetweenExpression between) {
+            int first = firstParameter(between.getExpression());
+            if (first < 0) first = firstParameter(between.getLower());
+            return first < 0 ? firstParameter(between.getUpper()) : first;
+        } else if (expression instanceof IsNullExpression isNull) {
+            return firstParameter(isNull.getExpression());
+        } else if (expression instanceof NestedExpression nested) {
+            return firstParameter(nested.getExpression());
+        } else if (expression instanceof SubqueryExpression subquery) {
+            return firstParameter(subquery.getQuery());
+        } else if (expression instanceof ExistsExpression exists) {
+            return firstParameter(exists.getQuery());
+        } else if (expression instanceof CaseExpression caseExpression) {
+            int first = firstParameter(caseExpression.getOperand());
+            if (first < 0) first = firstParameter(caseExpression.getWhenClauses(), when -> {
+                int condition = firstParameter(when.getCondition());
+                return condition < 0 ? firstParameter(when.getResult()) : condition;
+            });
+            return first < 0 ? firstParameter(caseExpression.getElseResult()) : first;
+        } else if (expression instanceof WindowFunction window) {
+            int first = firstParameter(window.getFunction());
+            if (first < 0) first = firstParameter(window.getPartitionBy(), TemplateBinder::firstParameter);
+            if (first < 0) first = firstParameter(window.getOrderBy(), sort -> firstParameter(sort.getKey()));
+            if (first < 0 && window.getFrame() != null) {
+                first = firstParameter(window.getFrame().getStartOffset());
+                if (first < 0) first = firstParameter(window.getFrame().getEndOffset());
+            }
+            return first;
+        }
+        return -1;
+    }
+
+    private static <T> int firstParameter(List<T> items, Function<T, Integer> first) {
+        if (items != null) {
+            for (T item : items) {
+                int index = first.apply(item);
+                if (index >= 0) {
+                    return index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static <T, R> List<R> map(List<T> items, Function<T, R> mapper) {
+        if (items == null) {
+            return null;
+        }
+        List<R> result = new ArrayList<>(items.size());
+        for (T item : items) {
+            result.add(mapper.apply(item));
+        }
+        return List.copyOf(result);
+    }
+}
@@ -0,0 +1,60 @@
+package org.kotkina.errors;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An error of a statement with its position: {@code line} and {@code column} start at 1,
+ * {@code offset} counts characters from 0. {@code clause} and {@code expected} are {@code null}
+ * when unknown, as in {@link InvalidQueryException}.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class Diagnostic {
+    private final int offset;
+    private final int line;
+    private final int column;
+    private final String clause;
+    private final String expected;
+    private final String message;
+
+    /**
+     * Positions the errors of a statement in its source, in one pass over the source.
+     * The diagnostics are in the order of their offsets, errors without an offset come first.
+     */
+    public static List<Diagnostic> locate(CharSequence source, List<InvalidQueryException> errors) {
+        List<InvalidQueryException> sorted = new ArrayList<>(errors);
+        sorted.sort(Comparator.comparingInt(InvalidQueryException::getOffset));
+
+        List<Diagnostic> diagnostics = new ArrayList<>(sorted.size());
+        int position = 0;
+        int line = 1;
+        int lineStart = 0;
+        for (InvalidQueryException error : sorted) {
+            int offset = Math.max(0, Math.min(error.getOffset(), source.length()));
+            for (; position < offset; position++) {
+                if (source.charAt(position) == '\n') {
+                    line++;
+                    lineStart = position + 1;
+                }
+            }
+            diagnostics.add(new Diagnostic(offset, line, offset - lineStart + 1, error.getClause(), error.getExpected(), error.getMessage()));
+        }
+        return diagnostics;
+    }
+
+    /**
+     * The diagnostic as an exception to throw, with a stack trace.
+     */
+    public InvalidQueryException toException() {
+        return new InvalidQueryException(clause, message, offset, expected, true);
+    }
+}
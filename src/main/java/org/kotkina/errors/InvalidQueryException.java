@@ -2,11 +2,58 @@ package org.kotkina.errors;
 
 public class InvalidQueryException extends RuntimeException {
 
+    private static final String DEFAULT_MESSAGE = "The query syntax is incorrect.";
+
+    private final String clause;
+    private final int offset;
+    private final String expected;
+
     public InvalidQueryException() {
-        super("The query syntax is incorrect.");
+        this(null, DEFAULT_MESSAGE);
     }
 
     public InvalidQueryException(String message) {
-        super(message);
+        this(null, message);
+    }
+
+    /**
+     * @param clause the name of the clause in error, as in the message
+     */
+    public InvalidQueryException(String clause, String message) {
+        this(clause, message, -1, null, true);
+    }
+
+    /**
+     * @param offset     the offset of the error in the statement, {@code -1} when unknown
+     * @param expected   what was expected at the offset, {@code null} when unknown
+     * @param stackTrace {@code false} for errors that are collected rather than thrown to the caller,
+     *                   which are much cheaper to create without a stack trace
+     */
+    public InvalidQueryException(String clause, String message, int offset, String expected, boolean stackTrace) {
+        super(message == null ? DEFAULT_MESSAGE : message, null, false, stackTrace);
+        this.clause = clause;
+        this.offset = offset;
+        this.expected = expected;
+    }
+
+    /**
+     * The clause in error, {@code null} when the error is not tied to a clause.
+     */
+    public String getClause() {
+        return clause;
+    }
+
+    /**
+     * The offset of the error in the statement, {@code -1} when the error is not tied to a position.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * What was expected at the offset of the error, e.g. {@code "name"} or {@code "')'"}, {@code null} when unknown.
+     */
+    public String getExpected() {
+        return expected;
     }
 }
@@ -0,0 +1,57 @@
+package org.kotkina.lexer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ASCII bytes seen as characters, so that UTF-8 input without multi-byte sequences is lexed
+ * without decoding. Works over heap and direct buffers, the buffer position is not used.
+ */
+public final class AsciiSequence implements CharSequence {
+
+    private final ByteBuffer bytes;
+    private final int start;
+    private final int end;
+
+    private AsciiSequence(ByteBuffer bytes, int start, int end) {
+        this.bytes = bytes;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * A view of the remaining bytes of a buffer, or {@code null} if they are not all ASCII.
+     */
+    public static AsciiSequence of(ByteBuffer bytes) {
+        int start = bytes.position();
+        int end = bytes.limit();
+        int bits = 0;
+        for (int i = start; i < end; i++) {
+            bits |= bytes.get(i);
+        }
+        return bits < 0 ? null : new AsciiSequence(bytes, start, end);
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) bytes.get(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new AsciiSequence(bytes, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) bytes.get(start + i);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,237 @@
+package org.kotkina.lexer;
+
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.Keyword;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Single-pass character-level lexer. Whitespace and comments are skipped, every other character
+ * belongs to exactly one token, so the cost is linear in the length of the source.
+ */
+public class Lexer implements Iterator<Token> {
+
+    private static final String ERROR_PATTERN = "Unexpected {0} at position {1}";
+
+    private final CharSequence source;
+    private final int end;
+    private int position;
+    private boolean collecting;
+
+    public Lexer(CharSequence source) {
+        this(source, 0, source.length());
+    }
+
+    public Lexer(CharSequence source, int start, int end) {
+        this.source = source;
+        this.position = start;
+        this.end = end;
+    }
+
+    public List<Token> tokenize() {
+        return tokenize(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws InvalidQueryException as soon as the source turns out to have more tokens
+     */
+    public List<Token> tokenize(int maxTokens) {
+        List<Token> tokens = new ArrayList<>();
+        while (hasNext()) {
+            if (tokens.size() == maxTokens) {
+                throw new InvalidQueryException("The statement exceeds " + maxTokens + " tokens");
+            }
+            tokens.add(next());
+        }
+        return tokens;
+    }
+
+    /**
+     * Tokenizes the source without stopping at errors: an unexpected character is skipped, and
+     * unterminated quoted text or comment ends the tokens. The errors are added to {@code errors},
+     * without stack traces.
+     *
+     * @throws InvalidQueryException as soon as the source turns out to have more tokens
+     */
+    public List<Token> tokenize(int maxTokens, List<InvalidQueryException> errors) {
+        collecting = true;
+        List<Token> tokens = new ArrayList<>();
+        while (true) {
+            try {
+                if (!hasNext()) {
+                    return tokens;
+                }
+                if (tokens.size() == maxTokens) {
+                    throw new InvalidQueryException("The statement exceeds " + maxTokens + " tokens");
+                }
+                tokens.add(next());
+            } catch (InvalidQueryException ex) {
+                if (ex.getOffset() < 0) {
+                    throw ex;
+                }
+                errors.add(ex);
+                if (position < end) {
+                    position += Character.charCount(Character.codePointAt(source, position));
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        skipWhitespaceAndComments();
+        return position < end;
+    }
+
+    @Override
+    public Token next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        int start = position;
+        char c = source.charAt(position);
+
+        if (isIdentifierStart(c)) {
+            return readWord(start);
+        }
+        if (isDigit(c) || (c == '.' && position + 1 < end && isDigit(source.charAt(position + 1)))) {
+            return readNumber(start);
+        }
+
+        switch (c) {
+            case '\'':
+                return readQuoted(start, '\'', TokenType.STRING);
+            case '"':
+                return readQuoted(start, '"', TokenType.QUOTED_IDENTIFIER);
+            case '`':
+                return readQuoted(start, '`', TokenType.QUOTED_IDENTIFIER);
+            case '(', ')', ',', ';', '.':
+                position++;
+                return new Token(TokenType.PUNCTUATION, source, start, position, null);
+            case '<':
+                position++;
+                if (position < end && (source.charAt(position) == '=' || source.charAt(position) == '>')) position++;
+                return new Token(TokenType.OPERATOR, source, start, position, null);
+            case '>':
+                position++;
+                if (position < end && source.charAt(position) == '=') position++;
+                return new Token(TokenType.OPERATOR, source, start, position, null);
+            case '!':
+                if (position + 1 < end && source.charAt(position + 1) == '=') {
+                    position += 2;
+                    return new Token(TokenType.OPERATOR, source, start, position, null);
+                }
+                break;
+            case '|':
+                if (position + 1 < end && source.charAt(position + 1) == '|') {
+                    position += 2;
+                    return new Token(TokenType.OPERATOR, source, start, position, null);
+                }
+                break;
+            case '=', '+', '-', '*', '/', '%', '?':
+                position++;
+                return new Token(TokenType.OPERATOR, source, start, position, null);
+            default:
+                break;
+        }
+
+        throw error("character '" + c + "'", start);
+    }
+
+    private Token readWord(int start) {
+        position++;
+        while (position < end && isIdentifierPart(source.charAt(position))) {
+            position++;
+        }
+        Keyword keyword = Keyword.lookup(source, start, position);
+        return new Token(keyword == null ? TokenType.IDENTIFIER : TokenType.KEYWORD, source, start, position, keyword);
+    }
+
+    private Token readNumber(int start) {
+        while (position < end && isDigit(source.charAt(position))) {
+            position++;
+        }
+        if (position < end && source.charAt(position) == '.') {
+            position++;
+            while (position < end && isDigit(source.charAt(position))) {
+                position++;
+            }
+        }
+        if (position < end && (source.charAt(position) == 'e' || source.charAt(position) == 'E')) {
+            int exponent = position + 1;
+            if (exponent < end && (source.charAt(exponent) == '+' || source.charAt(exponent) == '-')) {
+                exponent++;
+            }
+            if (exponent < end && isDigit(source.charAt(exponent))) {
+                position = exponent;
+                while (position < end && isDigit(source.charAt(position))) {
+                    position++;
+                }
+            }
+        }
+        return new Token(TokenType.NUMBER, source, start, position, null);
+    }
+
+    /**
+     * Reads a quoted string or identifier, a doubled quote character is an escaped quote.
+     */
+    private Token readQuoted(int start, char quote, TokenType type) {
+        position++;
+        while (position < end) {
+            if (source.charAt(position++) == quote) {
+                if (position < end && source.charAt(position) == quote) {
+                    position++;
+                } else {
+                    return new Token(type, source, start, position, null);
+                }
+            }
+        }
+        throw error("end of input in quoted text", start);
+    }
+
+    private void skipWhitespaceAndComments() {
+        while (position < end) {
+            char c = source.charAt(position);
+            if (Character.isWhitespace(c)) {
+                position++;
+            } else if (c == '-' && position + 1 < end && source.charAt(position + 1) == '-') {
+                while (position < end && source.charAt(position) != '\n') {
+                    position++;
+                }
+            } else if (c == '/' && position + 1 < end && source.charAt(position + 1) == '*') {
+                int start = position;
+                position += 2;
+                while (position < end && !(source.charAt(position - 1) == '*' && source.charAt(position) == '/' && position - 1 > start + 1)) {
+                    position++;
+                }
+                if (position >= end) {
+                    throw error("end of input in comment", start);
+                }
+                position++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private InvalidQueryException error(String unexpected, int start) {
+        return new InvalidQueryException(null, MessageFormat.format(ERROR_PATTERN, unexpected, start), start, null, !collecting);
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c == '_' || Character.isLetter(c);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return c == '_' || c == '$' || Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
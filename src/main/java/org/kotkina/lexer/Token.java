@@ -0,0 +1,71 @@
+package org.kotkina.lexer;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.kotkina.models.Keyword;
+import org.kotkina.models.Text;
+
+/**
+ * A token is a typed view over a range of the source text, the text itself is only copied on {@link #text()}.
+ */
+@Getter
+@AllArgsConstructor
+public class Token {
+    private final TokenType type;
+    private final CharSequence source;
+    private final int start;
+    private final int end;
+    private final Keyword keyword;
+
+    public int length() {
+        return end - start;
+    }
+
+    public String text() {
+        return source.subSequence(start, end).toString();
+    }
+
+    /**
+     * The text as a view of the source, copied on first use.
+     */
+    public Text slice() {
+        return new Text(source, start, end);
+    }
+
+    public boolean is(TokenType type) {
+        return this.type == type;
+    }
+
+    public boolean is(Keyword keyword) {
+        return this.keyword == keyword;
+    }
+
+    /**
+     * Checks a single-character operator or punctuation token.
+     */
+    public boolean is(char symbol) {
+        return (type == TokenType.PUNCTUATION || type == TokenType.OPERATOR)
+                && end - start == 1 && source.charAt(start) == symbol;
+    }
+
+    /**
+     * Case-insensitive comparison of an unquoted word with an upper-case ASCII word.
+     */
+    public boolean isWord(String word) {
+        if ((type != TokenType.IDENTIFIER && type != TokenType.KEYWORD) || end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = source.charAt(start + i);
+            if (c != word.charAt(i) && (c & 0xDF) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + text() + ")@" + start;
+    }
+}
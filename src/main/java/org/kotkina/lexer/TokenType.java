@@ -0,0 +1,5 @@
+package org.kotkina.lexer;
+
+public enum TokenType {
+    IDENTIFIER, QUOTED_IDENTIFIER, NUMBER, STRING, OPERATOR, PUNCTUATION, KEYWORD
+}
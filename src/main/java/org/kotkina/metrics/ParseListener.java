@@ -0,0 +1,35 @@
+package org.kotkina.metrics;
+
+/**
+ * Receives measurements of the parse pipeline. Calls come from the parsing threads, so
+ * implementations must be thread-safe and should not block. All methods default to no-ops.
+ */
+public interface ParseListener {
+
+    ParseListener NONE = new ParseListener() {
+    };
+
+    /**
+     * A phase of a parse has completed. Phases of subqueries are reported too, and their time is
+     * included in the enclosing clause.
+     */
+    default void onPhase(ParsePhase phase, long nanos) {
+    }
+
+    /**
+     * A statement has been parsed, successfully or not.
+     *
+     * @param length the length of the statement in characters
+     * @param tokens the number of tokens, 0 when the statement could not be tokenized
+     */
+    default void onStatement(int length, int tokens, long nanos) {
+    }
+
+    /**
+     * A statement has failed.
+     *
+     * @param clause the clause name of the error message, {@code null} when the error is not tied to a clause
+     */
+    default void onError(String clause) {
+    }
+}
@@ -0,0 +1,109 @@
+package org.kotkina.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects parse measurements into histograms and counters, safe to share between threads.
+ * Errors without a clause are counted under {@link #STATEMENT}.
+ */
+public class ParseMetrics implements ParseListener {
+
+    public static final String STATEMENT = "STATEMENT";
+
+    private final Map<ParsePhase, Histogram> phases = new EnumMap<>(ParsePhase.class);
+    private final Histogram parseTimes = new Histogram();
+    private final Histogram statementLengths = new Histogram();
+    private final Histogram tokenCounts = new Histogram();
+    private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    public ParseMetrics() {
+        for (ParsePhase phase : ParsePhase.values()) {
+            phases.put(phase, new Histogram());
+        }
+    }
+
+    @Override
+    public void onPhase(ParsePhase phase, long nanos) {
+        phases.get(phase).record(nanos);
+    }
+
+    @Override
+    public void onStatement(int length, int tokens, long nanos) {
+        parseTimes.record(nanos);
+        statementLengths.record(length);
+        tokenCounts.record(tokens);
+    }
+
+    @Override
+    public void onError(String clause) {
+        String key = clause == null ? STATEMENT : clause;
+        LongAdder counter = errors.get(key);
+        if (counter == null) {
+            counter = errors.computeIfAbsent(key, name -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Nanoseconds spent in a phase.
+     */
+    public Histogram phase(ParsePhase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * Nanoseconds per statement, from validation to the parsed query.
+     */
+    public Histogram parseTimes() {
+        return parseTimes;
+    }
+
+    public Histogram statementLengths() {
+        return statementLengths;
+    }
+
+    public Histogram tokenCounts() {
+        return tokenCounts;
+    }
+
+    /**
+     * A snapshot of the error counts by clause name.
+     */
+    public Map<String, Long> errors() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        errors.forEach((clause, count) -> snapshot.put(clause, count.sum()));
+        return snapshot;
+    }
+
+    public void reset() {
+        phases.values().forEach(Histogram::reset);
+        parseTimes.reset();
+        statementLengths.reset();
+        tokenCounts.reset();
+        errors.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder json = new StringBuilder("{ \"parseTimes\": ").append(parseTimes)
+                .append(", \"statementLengths\": ").append(statementLengths)
+                .append(", \"tokenCounts\": ").append(tokenCounts)
+                .append(", \"phases\": { ");
+        for (ParsePhase phase : ParsePhase.values()) {
+            if (phase.ordinal() > 0) json.append(", ");
+            json.append('"').append(phase).append("\": ").append(phases.get(phase));
+        }
+        json.append(" }, \"errors\": { ");
+        boolean first = true;
+        for (Map.Entry<String, Long> error : errors().entrySet()) {
+            if (!first) json.append(", ");
+            json.append('"').append(error.getKey()).append("\": ").append(error.getValue());
+            first = false;
+        }
+        return json.append(" } }").toString();
+    }
+}
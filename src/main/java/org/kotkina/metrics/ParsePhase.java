@@ -0,0 +1,25 @@
+package org.kotkina.metrics;
+
+import org.kotkina.models.Keyword;
+
+/**
+ * The timed steps of a parse. Clause phases are named after the clause keywords, joins share one.
+ */
+public enum ParsePhase {
+    VALIDATION, TOKENIZATION, SELECT, FROM, JOIN, WHERE, GROUP, HAVING, ORDER, LIMIT, OFFSET;
+
+    public static ParsePhase of(Keyword clause) {
+        return switch (clause) {
+            case SELECT -> SELECT;
+            case FROM -> FROM;
+            case INNER, LEFT, RIGHT, FULL, CROSS, JOIN -> JOIN;
+            case WHERE -> WHERE;
+            case GROUP -> GROUP;
+            case HAVING -> HAVING;
+            case ORDER -> ORDER;
+            case LIMIT -> LIMIT;
+            case OFFSET -> OFFSET;
+            default -> throw new IllegalArgumentException("Not a clause keyword: " + clause);
+        };
+    }
+}
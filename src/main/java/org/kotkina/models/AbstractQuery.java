@@ -0,0 +1,25 @@
+package org.kotkina.models;
+
+import org.kotkina.analysis.QueryAnalyzer;
+import org.kotkina.analysis.QueryFootprint;
+
+/**
+ * The base of the query models, keeping what is computed once per parsed query. Kept results are
+ * not part of the query: they are not compared by {@code equals}, serialized or copied by builders.
+ */
+public abstract class AbstractQuery implements Query {
+
+    private volatile QueryFootprint footprint;
+
+    /**
+     * The tables and columns the query reads, analyzed on the first call.
+     */
+    public QueryFootprint getFootprint() {
+        QueryFootprint footprint = this.footprint;
+        if (footprint == null) {
+            footprint = QueryAnalyzer.analyze(this);
+            this.footprint = footprint;
+        }
+        return footprint;
+    }
+}
@@ -1,19 +1,25 @@
 package org.kotkina.models;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
+import org.kotkina.models.expression.Expression;
 
-import java.text.MessageFormat;
-
-@Setter
 @Getter
-@NoArgsConstructor
 @AllArgsConstructor
+@EqualsAndHashCode
 public class Clause {
-    private String condition;
-    private String operator;
+    @Getter(AccessLevel.NONE)
+    private final CharSequence condition;
+    private final String operator;
+    /** A subtree of the condition tree of the query, which is compared with the query instead. */
+    @EqualsAndHashCode.Exclude
+    private final Expression expression;
+
+    public String getCondition() {
+        return Text.string(condition);
+    }
 
     @Override
     public String toString() {
@@ -1,17 +1,28 @@
 package org.kotkina.models;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
+import org.kotkina.models.expression.Expression;
 
-@Setter
 @Getter
-@NoArgsConstructor
 @AllArgsConstructor
+@EqualsAndHashCode
 public class Column {
-    String name;
-    String alias;
+    @Getter(AccessLevel.NONE)
+    private final CharSequence name;
+    @Getter(AccessLevel.NONE)
+    private final CharSequence alias;
+    private final Expression expression;
+
+    public String getName() {
+        return Text.string(name);
+    }
+
+    public String getAlias() {
+        return Text.string(alias);
+    }
 
     @Override
     public String toString() {
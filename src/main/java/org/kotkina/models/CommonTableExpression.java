@@ -0,0 +1,30 @@
+package org.kotkina.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * {@code name [(columns)] AS (query)} in a {@link WithQuery}, {@code columns} is {@code null} when not listed.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class CommonTableExpression {
+    @Getter(AccessLevel.NONE)
+    private final CharSequence name;
+    private final List<String> columns;
+    private final Query query;
+
+    public String getName() {
+        return Text.string(name);
+    }
+
+    @Override
+    public String toString() {
+        return "\n\t{ \"name\": \"" + name + "\"" + (columns == null ? "" : ", \"columns\": " + columns) + ", \"query\": " + query + " }";
+    }
+}
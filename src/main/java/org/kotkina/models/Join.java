@@ -1,21 +1,31 @@
 package org.kotkina.models;
 
-import lombok.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.kotkina.models.expression.Expression;
 
 import java.text.MessageFormat;
 import java.util.List;
 
-@Setter
 @Getter
-@NoArgsConstructor
 @AllArgsConstructor
+@EqualsAndHashCode
 public class Join {
-    private String type;
-    private Source source;
-    private List<Clause> conditions;
+    private final String type;
+    private final Source source;
+    private final List<Clause> conditions;
+    private final Expression condition;
+    /** The columns of a {@code USING} join, {@code null} for other joins. */
+    private final List<String> using;
+
+    public Join(String type, Source source, List<Clause> conditions, Expression condition) {
+        this(type, source, conditions, condition, null);
+    }
 
     @Override
     public String toString() {
-        return MessageFormat.format("\n\t'{'\n\t\"type\": \"{0}\",\n\t\"source\": {1},\n\t\"conditions\": {2}\n\t'}'", type, source, conditions);
+        return MessageFormat.format("\n\t'{'\n\t\"type\": \"{0}\",\n\t\"source\": {1},\n\t\"conditions\": {2}{3}\n\t'}'", type, source, conditions,
+                using == null ? "" : ",\n\t\"using\": " + using);
     }
 }
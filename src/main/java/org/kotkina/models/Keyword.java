@@ -3,13 +3,115 @@ package org.kotkina.models;
 import java.util.Arrays;
 import java.util.List;
 
+/**
+ * The words recognized by the lexer. Clause keywords start a clause of a query, reserved keywords
+ * cannot be used as unquoted names or aliases, other keywords are only special in context.
+ */
 public enum Keyword {
 
-    SELECT, FROM, INNER, LEFT, RIGHT, FULL, WHERE, GROUP, HAVING, ORDER, LIMIT, OFFSET;
+    SELECT(true), FROM(true), INNER(true), LEFT(true), RIGHT(true), FULL(true), CROSS(true), JOIN(true),
+    WHERE(true), GROUP(true), HAVING(true), ORDER(true), LIMIT(true), OFFSET(true),
+
+    DISTINCT, ALL, AS, ON, USING, OUTER, AND, OR, NOT, IN, IS, LIKE, BETWEEN, NULL, EXISTS, BY,
+    ASC, DESC, CASE, WHEN, THEN, ELSE, END, WITH, UNION, INTERSECT, EXCEPT, OVER,
+
+    TRUE(false, false), FALSE(false, false), RECURSIVE(false, false), PARTITION(false, false),
+    ROWS(false, false), RANGE(false, false), NULLS(false, false), FIRST(false, false), LAST(false, false);
+
+    private static final int MAX_LENGTH = 9;
+    /** Keywords by length and initial letter, so a lookup compares at most a couple of candidates. */
+    private static final Keyword[][][] TABLE = new Keyword[MAX_LENGTH + 1][26][];
+
+    static {
+        for (Keyword keyword : values()) {
+            String name = keyword.name();
+            Keyword[][] byInitial = TABLE[name.length()];
+            int initial = name.charAt(0) - 'A';
+            Keyword[] candidates = byInitial[initial];
+            candidates = candidates == null ? new Keyword[1] : Arrays.copyOf(candidates, candidates.length + 1);
+            candidates[candidates.length - 1] = keyword;
+            byInitial[initial] = candidates;
+        }
+    }
+
+    private final boolean clause;
+    private final boolean reserved;
+
+    Keyword() {
+        this(false, true);
+    }
+
+    Keyword(boolean clause) {
+        this(clause, true);
+    }
+
+    Keyword(boolean clause, boolean reserved) {
+        this.clause = clause;
+        this.reserved = reserved;
+    }
+
+    public boolean isClause() {
+        return clause;
+    }
+
+    public boolean isReserved() {
+        return reserved;
+    }
 
     public static List<String> getList() {
-        return Arrays.stream(Keyword.values())
-                .map(Enum::name)
-                .toList();
+        return Names.NAMES;
+    }
+
+    /**
+     * Case-insensitive lookup of the keyword spelled by {@code text[start, end)}, or {@code null}.
+     * Does not allocate.
+     */
+    public static Keyword lookup(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length < 2 || length > MAX_LENGTH) {
+            return null;
+        }
+        int initial = upperCase(text.charAt(start)) - 'A';
+        if (initial < 0 || initial >= 26) {
+            return null;
+        }
+        Keyword[] candidates = TABLE[length][initial];
+        if (candidates == null) {
+            return null;
+        }
+        for (Keyword keyword : candidates) {
+            if (regionMatches(text, start, keyword.name())) {
+                return keyword;
+            }
+        }
+        return null;
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, String name) {
+        for (int i = 1; i < name.length(); i++) {
+            if (upperCase(text.charAt(start + i)) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char upperCase(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+
+    /**
+     * Built on first use, the lexer does not need it.
+     */
+    private static final class Names {
+        private static final List<String> NAMES;
+
+        static {
+            String[] names = new String[values().length];
+            for (Keyword keyword : values()) {
+                names[keyword.ordinal()] = keyword.name();
+            }
+            NAMES = List.of(names);
+        }
     }
 }
@@ -1,32 +1,72 @@
 package org.kotkina.models;
 
-import lombok.Data;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.kotkina.models.expression.Expression;
+import org.kotkina.models.expression.Parameter;
 
-import java.util.ArrayList;
 import java.util.List;
 
-@Data
-public class SelectQuery implements Query {
-    private List<Column> columns;
-    private List<Source> fromSources;
-    private List<Join> joins;
-    private List<Clause> whereClauses;
-    private List<String> groupByColumns;
-    private List<Clause> havingClauses;
-    private List<Sort> sortColumns;
-    private Integer limit;
-    private Integer offset;
-
-    public void addJoin(Join join) {
-        if (joins == null) {
-            joins = new ArrayList<>();
-        }
-        joins.add(join);
+/**
+ * An immutable SELECT query. Absent clauses are {@code null}, {@code limit} and {@code offset} are
+ * stored unboxed with presence flags.
+ */
+@Getter
+@Builder(toBuilder = true)
+@EqualsAndHashCode(callSuper = false)
+public class SelectQuery extends AbstractQuery {
+    private final boolean distinct;
+    private final List<Column> columns;
+    private final List<Source> fromSources;
+    private final List<Join> joins;
+    private final List<Clause> whereClauses;
+    private final Expression where;
+    private final List<String> groupByColumns;
+    private final List<Expression> groupBy;
+    private final List<Clause> havingClauses;
+    private final Expression having;
+    private final List<Sort> sortColumns;
+    @Getter(AccessLevel.NONE)
+    private final int limit;
+    @Getter(AccessLevel.NONE)
+    private final boolean hasLimit;
+    @Getter(AccessLevel.NONE)
+    private final int offset;
+    @Getter(AccessLevel.NONE)
+    private final boolean hasOffset;
+    private final Parameter limitParameter;
+    private final Parameter offsetParameter;
+
+    public boolean hasLimit() {
+        return hasLimit;
+    }
+
+    public int getLimitValue() {
+        return limit;
+    }
+
+    public Integer getLimit() {
+        return hasLimit ? limit : null;
+    }
+
+    public boolean hasOffset() {
+        return hasOffset;
+    }
+
+    public int getOffsetValue() {
+        return offset;
+    }
+
+    public Integer getOffset() {
+        return hasOffset ? offset : null;
     }
 
     @Override
     public String toString() {
         return "\n{" +
+                (distinct ? "\n\"distinct\": true," : "") +
                 "\n\"columns\": " + columns +
                 (fromSources == null ? "" : ",\n\"fromSources\": " + fromSources) +
                 (joins == null ? "" : ",\n\"joins\": " + joins) +
@@ -34,8 +74,25 @@ public class SelectQuery implements Query {
                 (groupByColumns == null ? "" : ",\n\"groupByColumns\": " + groupByColumns) +
                 (havingClauses == null ? "" : ",\n\"havingClauses\": " + havingClauses) +
                 (sortColumns == null ? "" : ",\n\"sortColumns\": " + sortColumns) +
-                (limit == null ? "" : ",\n\"limit\": " + limit) +
-                (offset == null ? "" : ",\n\"offset\": " + offset) +
+                (hasLimit ? ",\n\"limit\": " + limit : "") +
+                (hasOffset ? ",\n\"offset\": " + offset : "") +
+                (limitParameter == null ? "" : ",\n\"limit\": \"?\"") +
+                (offsetParameter == null ? "" : ",\n\"offset\": \"?\"") +
                 "\n}";
     }
+
+    public static class SelectQueryBuilder {
+
+        public SelectQueryBuilder limit(Integer limit) {
+            this.hasLimit = limit != null;
+            this.limit = limit == null ? 0 : limit;
+            return this;
+        }
+
+        public SelectQueryBuilder offset(Integer offset) {
+            this.hasOffset = offset != null;
+            this.offset = offset == null ? 0 : offset;
+            return this;
+        }
+    }
 }
@@ -0,0 +1,41 @@
+package org.kotkina.models;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.kotkina.models.expression.Parameter;
+
+import java.util.List;
+
+/**
+ * Two queries combined by {@code UNION}, {@code INTERSECT} or {@code EXCEPT}, optionally followed by
+ * {@code ALL}, with the ORDER BY, LIMIT and OFFSET written after the last query, which apply to the
+ * whole operation. {@code INTERSECT} binds tighter than the others, all are left-associative.
+ */
+@Getter
+@Builder(toBuilder = true)
+@EqualsAndHashCode(callSuper = false)
+public class SetOperation extends AbstractQuery {
+    private final String operator;
+    private final Query left;
+    private final Query right;
+    private final List<Sort> sortColumns;
+    private final Integer limit;
+    private final Integer offset;
+    private final Parameter limitParameter;
+    private final Parameter offsetParameter;
+
+    @Override
+    public String toString() {
+        return "\n{" +
+                "\n\"operator\": \"" + operator + "\"" +
+                ",\n\"left\": " + left +
+                ",\n\"right\": " + right +
+                (sortColumns == null ? "" : ",\n\"sortColumns\": " + sortColumns) +
+                (limit == null ? "" : ",\n\"limit\": " + limit) +
+                (offset == null ? "" : ",\n\"offset\": " + offset) +
+                (limitParameter == null ? "" : ",\n\"limit\": \"?\"") +
+                (offsetParameter == null ? "" : ",\n\"offset\": \"?\"") +
+                "\n}";
+    }
+}
@@ -1,28 +1,39 @@
 package org.kotkina.models;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
+import org.kotkina.models.expression.Expression;
 
 import java.text.MessageFormat;
 
-@Setter
 @Getter
-@NoArgsConstructor
 @AllArgsConstructor
+@EqualsAndHashCode
 public class Sort {
-    private String expression;
-    private boolean desc;
+    @Getter(AccessLevel.NONE)
+    private final CharSequence expression;
+    private final boolean desc;
+    private final Expression key;
+    /** {@code FIRST} or {@code LAST} for an explicit {@code NULLS} ordering, {@code null} for the default. */
+    private final String nulls;
 
     public Sort(String expression) {
-        this.expression = expression;
-        this.desc = false;
+        this(expression, false, null);
+    }
+
+    public Sort(CharSequence expression, boolean desc, Expression key) {
+        this(expression, desc, key, null);
+    }
+
+    public String getExpression() {
+        return Text.string(expression);
     }
 
     @Override
     public String toString() {
-        return MessageFormat.format("\n'\t{' \"expression\": \"{0}\", \"sort\": \"{1}\"' }'",
-                expression, ((desc) ? "DESC" : "ASC"));
+        return MessageFormat.format("\n'\t{' \"expression\": \"{0}\", \"sort\": \"{1}\"{2}' }'",
+                expression, ((desc) ? "DESC" : "ASC"), nulls == null ? "" : ", \"nulls\": \"" + nulls + "\"");
     }
 }
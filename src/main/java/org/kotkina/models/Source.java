@@ -1,19 +1,27 @@
 package org.kotkina.models;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
 
-import java.text.MessageFormat;
-
-@Setter
 @Getter
-@NoArgsConstructor
 @AllArgsConstructor
+@EqualsAndHashCode
 public class Source {
-    String table;
-    String alias;
+    @Getter(AccessLevel.NONE)
+    private final CharSequence table;
+    @Getter(AccessLevel.NONE)
+    private final CharSequence alias;
+    private final Query subquery;
+
+    public String getTable() {
+        return Text.string(table);
+    }
+
+    public String getAlias() {
+        return Text.string(alias);
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,81 @@
+package org.kotkina.models;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A range of a query source, copied into a {@link String} on the first {@link #toString()}. Models
+ * keep their texts as views like this one, so the source must not change while a parsed query
+ * whose texts have not been read yet is in use.
+ */
+public final class Text implements CharSequence {
+
+    private final CharSequence source;
+    private final int start;
+    private final int end;
+    private String string;
+
+    public Text(CharSequence source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new Text(source, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        String string = this.string;
+        if (string == null) {
+            string = source instanceof String text ? text.substring(start, end) : new StringBuilder(end - start).append(source, start, end).toString();
+            this.string = string;
+        }
+        return string;
+    }
+
+    /**
+     * The text as a {@link String}, {@code null} for {@code null}.
+     */
+    public static String string(CharSequence text) {
+        return text == null ? null : text.toString();
+    }
+
+    /**
+     * A list view whose elements are materialized on access.
+     */
+    public static List<String> strings(List<? extends CharSequence> texts) {
+        return new Strings(texts);
+    }
+
+    private static final class Strings extends AbstractList<String> implements RandomAccess {
+        private final List<? extends CharSequence> texts;
+
+        Strings(List<? extends CharSequence> texts) {
+            this.texts = texts;
+        }
+
+        @Override
+        public String get(int index) {
+            return texts.get(index).toString();
+        }
+
+        @Override
+        public int size() {
+            return texts.size();
+        }
+    }
+}
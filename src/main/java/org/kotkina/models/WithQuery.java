@@ -0,0 +1,29 @@
+package org.kotkina.models;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * {@code WITH [RECURSIVE] tables query}, the common table expressions are visible in the query and
+ * in the tables after them, and in their own query when recursive.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+public class WithQuery extends AbstractQuery {
+    private final boolean recursive;
+    private final List<CommonTableExpression> tables;
+    private final Query query;
+
+    @Override
+    public String toString() {
+        return "\n{" +
+                (recursive ? "\n\"recursive\": true," : "") +
+                "\n\"with\": " + tables +
+                ",\n\"query\": " + query +
+                "\n}";
+    }
+}
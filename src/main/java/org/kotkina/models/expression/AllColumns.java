@@ -0,0 +1,27 @@
+package org.kotkina.models.expression;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.kotkina.models.Text;
+
+/**
+ * The {@code *} or {@code qualifier.*} wildcard.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class AllColumns implements Expression {
+    @Getter(AccessLevel.NONE)
+    private final CharSequence qualifier;
+
+    public String getQualifier() {
+        return Text.string(qualifier);
+    }
+
+    @Override
+    public String toString() {
+        return qualifier == null ? "*" : qualifier + ".*";
+    }
+}
@@ -0,0 +1,20 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class BetweenExpression implements Expression {
+    private final Expression expression;
+    private final Expression lower;
+    private final Expression upper;
+    private final boolean not;
+
+    @Override
+    public String toString() {
+        return "(" + expression + (not ? " NOT BETWEEN " : " BETWEEN ") + lower + " AND " + upper + ")";
+    }
+}
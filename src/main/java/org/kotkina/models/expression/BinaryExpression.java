@@ -0,0 +1,22 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * An infix operator: logical ({@code AND}, {@code OR}), comparison, {@code LIKE} or arithmetic.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class BinaryExpression implements Expression {
+    private final String operator;
+    private final Expression left;
+    private final Expression right;
+
+    @Override
+    public String toString() {
+        return "(" + left + " " + operator + " " + right + ")";
+    }
+}
@@ -0,0 +1,25 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * {@code CASE [operand] WHEN ... THEN ... [ELSE elseResult] END}, with an operand the conditions
+ * are the values compared to it. Absent parts are {@code null}.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class CaseExpression implements Expression {
+    private final Expression operand;
+    private final List<WhenClause> whenClauses;
+    private final Expression elseResult;
+
+    @Override
+    public String toString() {
+        return "CASE" + (operand == null ? "" : " " + operand) + " " + whenClauses + (elseResult == null ? "" : " ELSE " + elseResult) + " END";
+    }
+}
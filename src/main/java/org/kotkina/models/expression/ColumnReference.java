@@ -0,0 +1,33 @@
+package org.kotkina.models.expression;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.kotkina.models.Text;
+
+/**
+ * A column name, optionally qualified by a table, alias or schema path: {@code qualifier.name}.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class ColumnReference implements Expression {
+    @Getter(AccessLevel.NONE)
+    private final CharSequence qualifier;
+    @Getter(AccessLevel.NONE)
+    private final CharSequence name;
+
+    public String getQualifier() {
+        return Text.string(qualifier);
+    }
+
+    public String getName() {
+        return Text.string(name);
+    }
+
+    @Override
+    public String toString() {
+        return qualifier == null ? getName() : qualifier + "." + name;
+    }
+}
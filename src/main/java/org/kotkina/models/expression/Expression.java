@@ -0,0 +1,7 @@
+package org.kotkina.models.expression;
+
+/**
+ * A node of the expression tree built for conditions, select values and sort keys.
+ */
+public interface Expression {
+}
@@ -0,0 +1,28 @@
+package org.kotkina.models.expression;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.kotkina.models.Text;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class FunctionCall implements Expression {
+    @Getter(AccessLevel.NONE)
+    private final CharSequence name;
+    private final List<Expression> arguments;
+    private final boolean distinct;
+
+    public String getName() {
+        return Text.string(name);
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + (distinct ? "DISTINCT " : "") + arguments + ")";
+    }
+}
@@ -0,0 +1,24 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * {@code expression [NOT] IN (values)}, a subquery is a single {@link SubqueryExpression} value.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class InExpression implements Expression {
+    private final Expression expression;
+    private final List<Expression> values;
+    private final boolean not;
+
+    @Override
+    public String toString() {
+        return "(" + expression + (not ? " NOT IN " : " IN ") + values + ")";
+    }
+}
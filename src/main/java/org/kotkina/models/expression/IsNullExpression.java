@@ -0,0 +1,18 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class IsNullExpression implements Expression {
+    private final Expression expression;
+    private final boolean not;
+
+    @Override
+    public String toString() {
+        return "(" + expression + (not ? " IS NOT NULL)" : " IS NULL)");
+    }
+}
@@ -0,0 +1,32 @@
+package org.kotkina.models.expression;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.kotkina.models.Text;
+
+/**
+ * A constant, {@code text} is the literal as written in the query, including quotes for strings.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class Literal implements Expression {
+    private final Kind kind;
+    @Getter(AccessLevel.NONE)
+    private final CharSequence text;
+
+    public enum Kind {
+        NUMBER, STRING, BOOLEAN, NULL
+    }
+
+    public String getText() {
+        return Text.string(text);
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+}
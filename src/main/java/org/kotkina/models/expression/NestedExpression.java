@@ -0,0 +1,20 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * A parenthesized expression, kept in the tree so the written grouping is not lost.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class NestedExpression implements Expression {
+    private final Expression expression;
+
+    @Override
+    public String toString() {
+        return "(" + expression + ")";
+    }
+}
@@ -0,0 +1,20 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * A {@code ?} placeholder, {@code index} counts placeholders from the start of the statement.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class Parameter implements Expression {
+    private final int index;
+
+    @Override
+    public String toString() {
+        return "?" + index;
+    }
+}
@@ -0,0 +1,18 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.kotkina.models.Query;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class SubqueryExpression implements Expression {
+    private final Query query;
+
+    @Override
+    public String toString() {
+        return "(" + query + ")";
+    }
+}
@@ -0,0 +1,21 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * A prefix operator: {@code NOT}, {@code -} or {@code +}.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class UnaryExpression implements Expression {
+    private final String operator;
+    private final Expression operand;
+
+    @Override
+    public String toString() {
+        return "(" + operator + " " + operand + ")";
+    }
+}
@@ -0,0 +1,18 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class WhenClause {
+    private final Expression condition;
+    private final Expression result;
+
+    @Override
+    public String toString() {
+        return "WHEN " + condition + " THEN " + result;
+    }
+}
@@ -0,0 +1,34 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * {@code ROWS|RANGE start} or {@code ROWS|RANGE BETWEEN start AND end} of a window. A bound is
+ * {@code UNBOUNDED PRECEDING}, {@code PRECEDING}, {@code CURRENT ROW}, {@code FOLLOWING} or
+ * {@code UNBOUNDED FOLLOWING}, {@code PRECEDING} and {@code FOLLOWING} after an offset expression.
+ * {@code end} is {@code null} without {@code BETWEEN}.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class WindowFrame {
+    public static final String UNBOUNDED_PRECEDING = "UNBOUNDED PRECEDING";
+    public static final String PRECEDING = "PRECEDING";
+    public static final String CURRENT_ROW = "CURRENT ROW";
+    public static final String FOLLOWING = "FOLLOWING";
+    public static final String UNBOUNDED_FOLLOWING = "UNBOUNDED FOLLOWING";
+
+    private final String units;
+    private final String start;
+    private final Expression startOffset;
+    private final String end;
+    private final Expression endOffset;
+
+    @Override
+    public String toString() {
+        String start = (startOffset == null ? "" : startOffset + " ") + this.start;
+        return units + (end == null ? " " + start : " BETWEEN " + start + " AND " + (endOffset == null ? "" : endOffset + " ") + end);
+    }
+}
@@ -0,0 +1,27 @@
+package org.kotkina.models.expression;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.kotkina.models.Sort;
+
+import java.util.List;
+
+/**
+ * {@code function OVER ([PARTITION BY ...] [ORDER BY ...] [frame])}, absent parts are {@code null}.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class WindowFunction implements Expression {
+    private final FunctionCall function;
+    private final List<Expression> partitionBy;
+    private final List<Sort> orderBy;
+    private final WindowFrame frame;
+
+    @Override
+    public String toString() {
+        return function + " OVER (" + (partitionBy == null ? "" : "PARTITION BY " + partitionBy)
+                + (orderBy == null ? "" : " ORDER BY " + orderBy) + (frame == null ? "" : " " + frame) + ")";
+    }
+}
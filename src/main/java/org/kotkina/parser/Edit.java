@@ -0,0 +1,43 @@
+package org.kotkina.parser;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Objects;
+
+/**
+ * A change of a statement text: {@code removed} characters at {@code offset} replaced by {@code inserted}.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class Edit {
+    private final int offset;
+    private final int removed;
+    private final String inserted;
+
+    public static Edit insert(int offset, String text) {
+        return new Edit(offset, 0, text);
+    }
+
+    public static Edit delete(int offset, int length) {
+        return new Edit(offset, length, "");
+    }
+
+    /**
+     * The text after the edit.
+     *
+     * @throws IndexOutOfBoundsException if the removed range is not within the text
+     */
+    public String apply(String text) {
+        Objects.checkFromIndexSize(offset, removed, text.length());
+        return new StringBuilder(text.length() - removed + inserted.length())
+                .append(text, 0, offset)
+                .append(inserted)
+                .append(text, offset + removed, text.length())
+                .toString();
+    }
+}
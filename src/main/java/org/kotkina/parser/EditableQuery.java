@@ -0,0 +1,52 @@
+package org.kotkina.parser;
+
+import lombok.AllArgsConstructor;
+import org.kotkina.models.Keyword;
+import org.kotkina.models.Query;
+import org.kotkina.models.SelectQuery;
+
+/**
+ * A query parsed by {@link IncrementalParser} with the text it was parsed from, and for each of its
+ * clauses the range of the text it was parsed from, so that an edit re-parses only the clauses it touches.
+ */
+public final class EditableQuery {
+
+    private final String text;
+    private final Query query;
+    /** The clauses of a plain SELECT query, {@code null} for other queries. */
+    final Span[] spans;
+    final int tokens;
+
+    EditableQuery(String text, Query query, Span[] spans, int tokens) {
+        this.text = text;
+        this.query = query;
+        this.spans = spans;
+        this.tokens = tokens;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * A clause: its keyword, the text range from its keyword to the next clause, the first one from
+     * the start of the text and the last one to its end, and a query holding only the clause.
+     */
+    @AllArgsConstructor
+    static final class Span {
+        final Keyword keyword;
+        final int start;
+        final int end;
+        final int tokens;
+        final int parameters;
+        final SelectQuery fragment;
+
+        Span shift(int delta) {
+            return delta == 0 ? this : new Span(keyword, start + delta, end + delta, tokens, parameters, fragment);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.kotkina.parser;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of names seen by the parser, so that repeated table names, aliases and column
+ * references of retained queries share one {@link String}. Once the pool is full, new names are
+ * returned as they are. The pool is safe to share between parsers in different threads.
+ */
+public class IdentifierPool {
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+
+    public IdentifierPool(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String canonical = names.get(name);
+        if (canonical != null) {
+            return canonical;
+        }
+        if (names.size() >= maximumSize) {
+            return name;
+        }
+        canonical = names.putIfAbsent(name, name);
+        return canonical == null ? name : canonical;
+    }
+
+    public int size() {
+        return names.size();
+    }
+}
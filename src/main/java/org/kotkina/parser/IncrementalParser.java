@@ -0,0 +1,213 @@
+package org.kotkina.parser;
+
+import lombok.AllArgsConstructor;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.lexer.Lexer;
+import org.kotkina.lexer.Token;
+import org.kotkina.metrics.ParseListener;
+import org.kotkina.models.Join;
+import org.kotkina.models.Keyword;
+import org.kotkina.models.SelectQuery;
+import org.kotkina.parser.EditableQuery.Span;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Re-parses edited statements clause by clause. An edit re-lexes and re-parses the clauses whose
+ * text it touches, including the clauses just before and after it, and keeps the {@code Column},
+ * {@code Join}, {@code Clause} and other objects of the other clauses. The result always equals a
+ * full parse of the edited text: when the edit may change more than the clauses it touches, e.g.
+ * it opens a comment or renumbers the parameters of later clauses, and when the edited text is
+ * invalid, the whole text is parsed again, so errors are the same as those of a full parse.
+ * Set operations and WITH queries are always parsed as a whole. The parser is thread-safe.
+ */
+public class IncrementalParser {
+
+    private final IdentifierPool pool;
+    private final ParserLimits limits;
+
+    public IncrementalParser() {
+        this(null, ParserLimits.DEFAULT);
+    }
+
+    public IncrementalParser(IdentifierPool pool, ParserLimits limits) {
+        this.pool = pool;
+        this.limits = limits;
+    }
+
+    public EditableQuery parse(String text) {
+        if (text == null || text.isBlank()) {
+            throw new InvalidQueryException();
+        }
+        if (text.length() <= limits.getMaxStatementLength()) {
+            try {
+                Region region = parseRegion(text, 0, text.length(), 0, limits.getMaxTokens());
+                if (region != null) {
+                    return new EditableQuery(text, assemble(region.spans), region.spans, region.tokens);
+                }
+            } catch (InvalidQueryException ex) {
+                // reported as by a full parse below
+            }
+        }
+        return new EditableQuery(text, new Parser(text, pool, limits).parseStatement(), null, 0);
+    }
+
+    /**
+     * Parses the text of a previous result changed by an edit.
+     *
+     * @throws IndexOutOfBoundsException if the edit is not within the previous text
+     */
+    public EditableQuery reparse(EditableQuery previous, Edit edit) {
+        String text = edit.apply(previous.getText());
+        if (previous.spans == null || text.length() > limits.getMaxStatementLength() || text.isBlank()) {
+            return parse(text);
+        }
+
+        Span[] spans = previous.spans;
+        int from = edit.getOffset();
+        int to = from + edit.getRemoved();
+        int first = 0;
+        while (spans[first].end < from) {
+            first++;
+        }
+        int last = first;
+        while (last + 1 < spans.length && spans[last + 1].start <= to) {
+            last++;
+        }
+        int delta = edit.getInserted().length() - edit.getRemoved();
+
+        int parameters = 0;
+        for (int i = 0; i < first; i++) {
+            parameters += spans[i].parameters;
+        }
+        int replacedParameters = 0;
+        int replacedTokens = 0;
+        for (int i = first; i <= last; i++) {
+            replacedParameters += spans[i].parameters;
+            replacedTokens += spans[i].tokens;
+        }
+        int laterParameters = 0;
+        for (int i = last + 1; i < spans.length; i++) {
+            laterParameters += spans[i].parameters;
+        }
+
+        Region region;
+        try {
+            region = parseRegion(text, spans[first].start, spans[last].end + delta, parameters,
+                    limits.getMaxTokens() - (previous.tokens - replacedTokens));
+        } catch (InvalidQueryException ex) {
+            return parse(text);
+        }
+        if (region == null || region.parameters != replacedParameters && laterParameters > 0) {
+            return parse(text);
+        }
+
+        Span[] updated = new Span[first + region.spans.length + spans.length - last - 1];
+        System.arraycopy(spans, 0, updated, 0, first);
+        System.arraycopy(region.spans, 0, updated, first, region.spans.length);
+        for (int i = last + 1, j = first + region.spans.length; i < spans.length; i++, j++) {
+            updated[j] = spans[i].shift(delta);
+        }
+        return new EditableQuery(text, assemble(updated), updated, previous.tokens - replacedTokens + region.tokens);
+    }
+
+    /**
+     * Parses the clauses of {@code text[start, end)}, the first one being {@code SELECT} when
+     * {@code start} is 0. Returns {@code null} when the region does not parse on its own as it would
+     * within the text, because a token or comment of the region runs past its end.
+     */
+    private Region parseRegion(String text, int start, int end, int firstParameter, int maxTokens) {
+        String source = text.substring(start, end);
+        List<Token> tokens = new Lexer(source).tokenize(maxTokens);
+        if (!endsAt(text, start, end, tokens)) {
+            return null;
+        }
+
+        Parser parser = new Parser(tokens, pool, ParseListener.NONE, limits);
+        parser.setParameterIndex(firstParameter);
+        List<Span> spans = new ArrayList<>();
+        int spanStart = start;
+        int tokenStart = 0;
+        boolean tail = end == text.length();
+        while (start == 0 && spans.isEmpty() || parser.atClause()) {
+            int parameters = parser.getParameterIndex();
+            boolean select = start == 0 && spans.isEmpty();
+            Keyword keyword = select ? Keyword.SELECT : tokens.get(parser.getPosition()).getKeyword();
+            SelectQuery fragment = select ? parser.parseSelectClause() : parser.parseClause();
+
+            boolean lastSpan = !parser.atClause();
+            if (lastSpan) {
+                if (tail) {
+                    parser.expectStatementEnd();
+                } else {
+                    parser.expectEnd();
+                }
+            }
+            int tokenEnd = parser.getPosition();
+            int spanEnd = lastSpan ? end : start + tokens.get(tokenEnd).getStart();
+            spans.add(new Span(keyword, spanStart, spanEnd, tokenEnd - tokenStart, parser.getParameterIndex() - parameters, fragment));
+            spanStart = spanEnd;
+            tokenStart = tokenEnd;
+        }
+        if (spans.isEmpty()) {
+            return null;
+        }
+        return new Region(spans.toArray(new Span[0]), tokens.size(), parser.getParameterIndex() - firstParameter);
+    }
+
+    /**
+     * Whether the last token of the region ends where it would in the whole text, and the next token
+     * of the text starts at the end of the region, so no token or comment of the region runs past it.
+     */
+    private static boolean endsAt(String text, int start, int end, List<Token> tokens) {
+        int from = tokens.isEmpty() ? start : start + tokens.get(tokens.size() - 1).getStart();
+        Lexer lexer = new Lexer(text, from, text.length());
+        if (!tokens.isEmpty()) {
+            if (!lexer.hasNext() || lexer.next().getEnd() != start + tokens.get(tokens.size() - 1).getEnd()) {
+                return false;
+            }
+        }
+        return lexer.hasNext() ? lexer.next().getStart() == end : end == text.length();
+    }
+
+    /**
+     * Builds the query from its clauses as {@link Parser#parseSelect()} does.
+     */
+    private static SelectQuery assemble(Span[] spans) {
+        SelectQuery.SelectQueryBuilder query = SelectQuery.builder();
+        List<Join> joins = null;
+        for (Span span : spans) {
+            SelectQuery fragment = span.fragment;
+            switch (span.keyword) {
+                case SELECT -> query.distinct(fragment.isDistinct()).columns(fragment.getColumns());
+                case FROM -> query.fromSources(fragment.getFromSources());
+                case INNER, LEFT, RIGHT, FULL, CROSS, JOIN -> {
+                    if (joins == null) joins = new ArrayList<>();
+                    joins.addAll(fragment.getJoins());
+                }
+                case WHERE -> query.where(fragment.getWhere()).whereClauses(fragment.getWhereClauses());
+                case GROUP -> query.groupBy(fragment.getGroupBy()).groupByColumns(fragment.getGroupByColumns());
+                case HAVING -> query.having(fragment.getHaving()).havingClauses(fragment.getHavingClauses());
+                case ORDER -> query.sortColumns(fragment.getSortColumns());
+                case LIMIT -> {
+                    if (fragment.getLimitParameter() != null) query.limitParameter(fragment.getLimitParameter());
+                    else query.limit(fragment.getLimit());
+                }
+                case OFFSET -> {
+                    if (fragment.getOffsetParameter() != null) query.offsetParameter(fragment.getOffsetParameter());
+                    else query.offset(fragment.getOffset());
+                }
+                default -> throw new IllegalStateException("Unexpected clause " + span.keyword);
+            }
+        }
+        return query.joins(joins == null ? null : List.copyOf(joins)).build();
+    }
+
+    @AllArgsConstructor
+    private static final class Region {
+        private final Span[] spans;
+        private final int tokens;
+        private final int parameters;
+    }
+}
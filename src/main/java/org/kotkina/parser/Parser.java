@@ -0,0 +1,1308 @@
+package org.kotkina.parser;
+
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.lexer.Lexer;
+import org.kotkina.lexer.Token;
+import org.kotkina.lexer.TokenType;
+import org.kotkina.metrics.ParseListener;
+import org.kotkina.metrics.ParsePhase;
+import org.kotkina.models.*;
+import org.kotkina.models.expression.*;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.kotkina.models.Keyword.*;
+
+/**
+ * Recursive-descent parser over the lexer tokens. Clauses are parsed by dedicated methods and
+ * expressions by precedence climbing, every token is consumed once.
+ */
+public class Parser {
+
+    private static final String ERROR_PATTERN = "Error in {0} clause: {1}";
+    private static final String LIMIT_PATTERN = "Error in {0} clause: the {1} exceeds {2}";
+
+    private static final int OR_PRECEDENCE = 1;
+    private static final int AND_PRECEDENCE = 2;
+    private static final int NOT_PRECEDENCE = 3;
+    private static final int COMPARISON_PRECEDENCE = 4;
+    private static final int CONCAT_PRECEDENCE = 5;
+    private static final int ADDITIVE_PRECEDENCE = 6;
+    private static final int MULTIPLICATIVE_PRECEDENCE = 7;
+    private static final int UNARY_PRECEDENCE = 8;
+
+    private final List<Token> tokens;
+    private final IdentifierPool pool;
+    private final ParseListener listener;
+    private final boolean timed;
+    private final ParserLimits limits;
+    private int position;
+    private int depth;
+    private int operators;
+    private int parameterCount;
+    private String clause = SELECT.name();
+    private int clauseStart;
+    private boolean recovering;
+
+    public Parser(CharSequence source) {
+        this(source, null);
+    }
+
+    public Parser(CharSequence source, IdentifierPool pool) {
+        this(source, pool, ParserLimits.DEFAULT);
+    }
+
+    public Parser(CharSequence source, IdentifierPool pool, ParserLimits limits) {
+        this(tokenize(source, limits), pool, ParseListener.NONE, limits);
+    }
+
+    public Parser(List<Token> tokens) {
+        this(tokens, null);
+    }
+
+    public Parser(List<Token> tokens, IdentifierPool pool) {
+        this(tokens, pool, ParseListener.NONE);
+    }
+
+    /**
+     * @param listener receives the time of each clause
+     */
+    public Parser(List<Token> tokens, IdentifierPool pool, ParseListener listener) {
+        this(tokens, pool, listener, ParserLimits.DEFAULT);
+    }
+
+    /**
+     * @param limits the nesting and IN list limits apply here, the others in {@link #tokenize}
+     */
+    public Parser(List<Token> tokens, IdentifierPool pool, ParseListener listener, ParserLimits limits) {
+        this.tokens = tokens;
+        this.pool = pool;
+        this.listener = listener;
+        this.timed = listener != ParseListener.NONE;
+        this.limits = limits;
+    }
+
+    /**
+     * Tokenizes a statement within the length and token limits.
+     */
+    public static List<Token> tokenize(CharSequence source, ParserLimits limits) {
+        if (source.length() > limits.getMaxStatementLength()) {
+            throw new InvalidQueryException("The statement exceeds " + limits.getMaxStatementLength() + " characters");
+        }
+        return new Lexer(source).tokenize(limits.getMaxTokens());
+    }
+
+    /**
+     * Parses a whole statement with an optional trailing semicolon.
+     */
+    public Query parseStatement() {
+        if (tokens.isEmpty()) {
+            throw syntaxError("SELECT");
+        }
+
+        Query query = parseQuery();
+        expectStatementEnd();
+        return query;
+    }
+
+    /**
+     * Parses a SELECT query, a set operation or a WITH query.
+     */
+    public Query parseQuery() {
+        if (at(WITH)) {
+            return with();
+        }
+        if (!at(SELECT) && !at('(')) {
+            throw syntaxError("SELECT");
+        }
+        return setOperation();
+    }
+
+    public SelectQuery parseSelect() {
+        long time = timed ? System.nanoTime() : 0;
+        expect(SELECT);
+        begin(SELECT.name());
+
+        SelectQuery.SelectQueryBuilder selectQuery = SelectQuery.builder().distinct(distinct()).columns(columns());
+        List<Join> joins = null;
+        time = measure(ParsePhase.SELECT, time);
+
+        while (atClause()) {
+            Keyword keyword = next().getKeyword();
+            begin(keyword.name());
+            if (joins == null && isJoin(keyword)) joins = new ArrayList<>();
+            clause(keyword, selectQuery, joins);
+            time = measure(ParsePhase.of(keyword), time);
+        }
+
+        return selectQuery.joins(joins == null ? null : List.copyOf(joins)).build();
+    }
+
+    /**
+     * Parses {@code WITH [RECURSIVE] name [(columns)] AS (query), ... query}.
+     */
+    private WithQuery with() {
+        expect(WITH);
+        begin(WITH.name());
+        boolean recursive = skip(RECURSIVE);
+        List<CommonTableExpression> tables = new ArrayList<>();
+        do {
+            CharSequence name = intern(nameToken().slice());
+            List<String> columns = null;
+            if (skip('(')) {
+                List<CharSequence> names = new ArrayList<>();
+                do {
+                    names.add(intern(nameToken().slice()));
+                } while (skip(','));
+                expect(')');
+                columns = Text.strings(List.copyOf(names));
+            }
+            expect(AS);
+            expect('(');
+            Query query = subquery();
+            expect(')');
+            tables.add(new CommonTableExpression(name, columns, query));
+        } while (skip(','));
+        return new WithQuery(recursive, List.copyOf(tables), setOperation());
+    }
+
+    /**
+     * Parses queries combined by set operators. A query that is not in parentheses is parsed with
+     * all its clauses, so the ORDER BY, LIMIT and OFFSET of the last one are moved to the operation,
+     * and the other ones must not have them.
+     */
+    private Query setOperation() {
+        int start = position;
+        Query first = operand();
+        if (!atSetOperator()) {
+            return first;
+        }
+
+        List<Query> operands = new ArrayList<>();
+        List<String> operators = new ArrayList<>();
+        operands.add(first);
+        boolean parenthesized = tokens.get(start).is('(');
+        while (atSetOperator()) {
+            if (!parenthesized && hasTail((SelectQuery) operands.get(operands.size() - 1))) {
+                throw error("query without ORDER BY, LIMIT and OFFSET");
+            }
+            operator();
+            operators.add(setOperator());
+            start = position;
+            operands.add(operand());
+            parenthesized = tokens.get(start).is('(');
+        }
+
+        SelectQuery tail = null;
+        int last = operands.size() - 1;
+        if (!parenthesized) {
+            SelectQuery query = (SelectQuery) operands.get(last);
+            if (hasTail(query)) {
+                tail = query;
+                operands.set(last, query.toBuilder().sortColumns(null).limit(null).offset(null)
+                        .limitParameter(null).offsetParameter(null).build());
+            }
+        } else if (at(ORDER) || at(LIMIT) || at(OFFSET)) {
+            SelectQuery.SelectQueryBuilder clauses = SelectQuery.builder();
+            while (at(ORDER) || at(LIMIT) || at(OFFSET)) {
+                Keyword keyword = next().getKeyword();
+                begin(keyword.name());
+                clause(keyword, clauses, null);
+            }
+            tail = clauses.build();
+        }
+
+        List<Query> terms = new ArrayList<>();
+        List<String> termOperators = new ArrayList<>();
+        Query term = operands.get(0);
+        for (int i = 0; i < operators.size(); i++) {
+            if (operators.get(i).startsWith("INTERSECT")) {
+                term = SetOperation.builder().operator(operators.get(i)).left(term).right(operands.get(i + 1)).build();
+            } else {
+                terms.add(term);
+                termOperators.add(operators.get(i));
+                term = operands.get(i + 1);
+            }
+        }
+        terms.add(term);
+        Query query = terms.get(0);
+        for (int i = 0; i < termOperators.size(); i++) {
+            query = SetOperation.builder().operator(termOperators.get(i)).left(query).right(terms.get(i + 1)).build();
+        }
+
+        if (tail == null) {
+            return query;
+        }
+        return ((SetOperation) query).toBuilder()
+                .sortColumns(tail.getSortColumns())
+                .limit(tail.getLimit())
+                .offset(tail.getOffset())
+                .limitParameter(tail.getLimitParameter())
+                .offsetParameter(tail.getOffsetParameter())
+                .build();
+    }
+
+    /**
+     * A SELECT query, or any query in parentheses.
+     */
+    private Query operand() {
+        if (skip('(')) {
+            Query query = subquery();
+            expect(')');
+            return query;
+        }
+        return parseSelect();
+    }
+
+    private String setOperator() {
+        Keyword keyword = next().getKeyword();
+        boolean all = skip(ALL);
+        if (!all) skip(DISTINCT);
+        return switch (keyword) {
+            case UNION -> all ? "UNION ALL" : "UNION";
+            case INTERSECT -> all ? "INTERSECT ALL" : "INTERSECT";
+            default -> all ? "EXCEPT ALL" : "EXCEPT";
+        };
+    }
+
+    private boolean atSetOperator() {
+        return at(UNION) || at(INTERSECT) || at(EXCEPT);
+    }
+
+    private static boolean hasTail(SelectQuery query) {
+        return query.getSortColumns() != null || query.hasLimit() || query.hasOffset()
+                || query.getLimitParameter() != null || query.getOffsetParameter() != null;
+    }
+
+    /**
+     * Parses {@code SELECT} and its columns into a query holding only the columns, see {@link #parseClause()}.
+     */
+    public SelectQuery parseSelectClause() {
+        expect(SELECT);
+        begin(SELECT.name());
+        return SelectQuery.builder().distinct(distinct()).columns(columns()).build();
+    }
+
+    /**
+     * Parses the clause at the current position, other than {@code SELECT}, into a query holding
+     * only that clause. Statements are parsed clause by clause this way to re-parse parts of them.
+     */
+    public SelectQuery parseClause() {
+        Token token = peek();
+        if (token == null || !isClause(token)) {
+            throw error("clause keyword");
+        }
+        Keyword keyword = next().getKeyword();
+        begin(keyword.name());
+        SelectQuery.SelectQueryBuilder fragment = SelectQuery.builder();
+        List<Join> joins = isJoin(keyword) ? new ArrayList<>(1) : null;
+        clause(keyword, fragment, joins);
+        return fragment.joins(joins == null ? null : List.copyOf(joins)).build();
+    }
+
+    /**
+     * Parses a whole statement as {@link #parseStatement()}, but goes on after errors: the clause in
+     * error is skipped up to the next clause keyword outside parentheses and left out of the query.
+     * The errors are added to {@code errors} in the order of the source, without stack traces.
+     * Set operations and WITH queries are only recovered as a whole: for them the first error is
+     * reported and the query is {@code null}.
+     */
+    public Query parseRecovering(List<InvalidQueryException> errors) {
+        recovering = true;
+        int firstParameter = parameterCount;
+        InvalidQueryException error;
+        try {
+            return parseStatement();
+        } catch (InvalidQueryException ex) {
+            error = ex;
+        }
+        position = 0;
+        depth = 0;
+        operators = 0;
+        parameterCount = firstParameter;
+
+        int mark = errors.size();
+        SelectQuery query = at(WITH) || at('(') ? null : selectRecovering(errors);
+        if (query == null) {
+            errors.subList(mark, errors.size()).clear();
+            errors.add(error);
+        }
+        return query;
+    }
+
+    /**
+     * Recovers a SELECT query clause by clause, {@code null} if it turns out to be a set operation.
+     */
+    private SelectQuery selectRecovering(List<InvalidQueryException> errors) {
+        SelectQuery.SelectQueryBuilder selectQuery = SelectQuery.builder();
+        List<Join> joins = new ArrayList<>();
+        if (!at(SELECT)) {
+            errors.add(syntaxError("SELECT"));
+            synchronize(-1);
+        }
+
+        while (!atEnd()) {
+            int start = position;
+            if (atSetOperator()) {
+                return null;
+            }
+            if (skip(';')) {
+                if (!atEnd()) errors.add(syntaxError("end of input"));
+                break;
+            }
+            try {
+                if (start == 0 && skip(SELECT)) {
+                    begin(SELECT.name());
+                    selectQuery.distinct(distinct()).columns(columns());
+                } else if (atClause()) {
+                    Keyword keyword = next().getKeyword();
+                    begin(keyword.name());
+                    clause(keyword, selectQuery, joins);
+                } else {
+                    throw error("clause keyword");
+                }
+            } catch (InvalidQueryException ex) {
+                errors.add(ex);
+                depth = 0;
+                synchronize(start);
+            }
+        }
+
+        return selectQuery.joins(joins.isEmpty() ? null : List.copyOf(joins)).build();
+    }
+
+    /**
+     * Moves past an error in the clause starting at {@code start}, to the next clause keyword, set
+     * operator or semicolon outside the parentheses opened in the clause.
+     */
+    private void synchronize(int start) {
+        int error = position;
+        int depth = 0;
+        for (position = start + 1; position < tokens.size(); position++) {
+            Token token = tokens.get(position);
+            if (token.is('(')) {
+                depth++;
+            } else if (token.is(')')) {
+                if (depth > 0) depth--;
+            } else if (depth == 0 && position >= error && (isClause(token) || token.is(';') || atSetOperator())) {
+                return;
+            }
+        }
+    }
+
+    private void clause(Keyword keyword, SelectQuery.SelectQueryBuilder selectQuery, List<Join> joins) {
+        switch (keyword) {
+            case FROM -> selectQuery.fromSources(sources());
+            case INNER, LEFT, RIGHT, FULL, CROSS, JOIN -> joins.add(join(keyword.name()));
+            case WHERE -> {
+                List<Clause> clauses = new ArrayList<>();
+                selectQuery.where(condition(clauses));
+                selectQuery.whereClauses(List.copyOf(clauses));
+            }
+            case GROUP -> {
+                skip(BY);
+                List<CharSequence> columns = new ArrayList<>();
+                selectQuery.groupBy(groupBy(columns));
+                selectQuery.groupByColumns(Text.strings(List.copyOf(columns)));
+            }
+            case HAVING -> {
+                List<Clause> clauses = new ArrayList<>();
+                selectQuery.having(condition(clauses));
+                selectQuery.havingClauses(List.copyOf(clauses));
+            }
+            case ORDER -> {
+                skip(BY);
+                selectQuery.sortColumns(sorts());
+            }
+            case LIMIT -> {
+                if (at('?')) selectQuery.limitParameter(parameter());
+                else selectQuery.limit(limit());
+            }
+            case OFFSET -> {
+                if (at('?')) selectQuery.offsetParameter(parameter());
+                else selectQuery.offset(integer());
+            }
+            default -> throw error("clause keyword");
+        }
+    }
+
+    public List<Column> parseColumns() {
+        begin(SELECT.name());
+        return columns();
+    }
+
+    public Column parseColumn() {
+        begin(SELECT.name());
+        return column();
+    }
+
+    public List<Source> parseSources() {
+        begin(FROM.name());
+        return sources();
+    }
+
+    public Source parseSource() {
+        begin(FROM.name());
+        return source();
+    }
+
+    /**
+     * Parses {@code JOIN source ON condition} or {@code JOIN source USING (columns)}, the join type
+     * keyword is already consumed by the caller, {@code CROSS} for a cross join and {@code JOIN} for a plain one.
+     */
+    public Join parseJoin(String type) {
+        begin("JOIN");
+        return join(type);
+    }
+
+    public List<Clause> parseClauses() {
+        begin(WHERE.name());
+        List<Clause> clauses = new ArrayList<>();
+        condition(clauses);
+        return List.copyOf(clauses);
+    }
+
+    public List<String> parseGroupByColumns() {
+        begin(GROUP.name());
+        skip(BY);
+        List<CharSequence> columns = new ArrayList<>();
+        groupBy(columns);
+        return Text.strings(List.copyOf(columns));
+    }
+
+    public List<Sort> parseSorts() {
+        begin(ORDER.name());
+        skip(BY);
+        return sorts();
+    }
+
+    public Integer parseLimit() {
+        begin(LIMIT.name());
+        return limit();
+    }
+
+    public Integer parseOffset() {
+        begin(OFFSET.name());
+        return integer();
+    }
+
+    public Expression parseExpression() {
+        return expression(OR_PRECEDENCE);
+    }
+
+    public void expectEnd() {
+        if (!atEnd()) {
+            throw error("end of input");
+        }
+    }
+
+    /**
+     * Expects the end of a statement, after an optional semicolon.
+     */
+    public void expectStatementEnd() {
+        if (at(';')) {
+            position++;
+            if (!atEnd()) {
+                throw syntaxError("end of input");
+            }
+        }
+        expectEnd();
+    }
+
+    /**
+     * Whether the next token starts a clause of a SELECT query.
+     */
+    public boolean atClause() {
+        return peek() != null && isClause(peek());
+    }
+
+    /**
+     * The index of the next token.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Numbers the following {@code ?} parameters from {@code index}, for statements parsed in parts.
+     */
+    public void setParameterIndex(int index) {
+        parameterCount = index;
+    }
+
+    public int getParameterIndex() {
+        return parameterCount;
+    }
+
+    /**
+     * Parses {@code DISTINCT} or {@code ALL} after {@code SELECT}.
+     */
+    private boolean distinct() {
+        if (skip(DISTINCT)) {
+            return true;
+        }
+        skip(ALL);
+        return false;
+    }
+
+    private List<Column> columns() {
+        List<Column> columns = new ArrayList<>();
+        do {
+            columns.add(column());
+        } while (skip(','));
+        return List.copyOf(columns);
+    }
+
+    private Column column() {
+        int start = position;
+        Expression expression = expression(OR_PRECEDENCE);
+        CharSequence name = name(start, position);
+        return new Column(name, alias(), expression);
+    }
+
+    private List<Source> sources() {
+        List<Source> sources = new ArrayList<>();
+        do {
+            sources.add(source());
+        } while (skip(','));
+        return List.copyOf(sources);
+    }
+
+    private Source source() {
+        int start = position;
+        Query subquery = null;
+        if (skip('(')) {
+            subquery = subquery();
+            expect(')');
+        } else {
+            qualifiedName();
+        }
+        CharSequence table = subquery == null ? name(start, position) : text(start, position);
+        return new Source(table, alias(), subquery);
+    }
+
+    /**
+     * Parses a join after its first keyword, {@code JOIN} itself for a plain join, which is an inner
+     * join. A cross join has no condition, other joins have {@code ON} or {@code USING}.
+     */
+    private Join join(String type) {
+        if (type.equals(CROSS.name())) {
+            expect(JOIN);
+            return new Join(joinType(type), source(), null, null);
+        }
+        if (!type.equals(JOIN.name())) {
+            skip(OUTER);
+            expect(JOIN);
+        }
+        Source source = source();
+        if (skip(USING)) {
+            expect('(');
+            List<CharSequence> columns = new ArrayList<>();
+            do {
+                columns.add(intern(nameToken().slice()));
+            } while (skip(','));
+            expect(')');
+            return new Join(joinType(type), source, null, null, Text.strings(List.copyOf(columns)));
+        }
+        expect(ON);
+        List<Clause> clauses = new ArrayList<>();
+        Expression condition = condition(clauses);
+        return new Join(joinType(type), source, List.copyOf(clauses), condition);
+    }
+
+    /**
+     * Parses a condition into its tree and, as a side result, into the flat list of operands joined
+     * by {@code AND}/{@code OR} at the top level. {@code AND} binds tighter than {@code OR}.
+     */
+    private Expression condition(List<Clause> clauses) {
+        Expression disjunction = null;
+        Expression conjunction = null;
+        String operator = null;
+
+        do {
+            int start = position;
+            Expression operand = expression(NOT_PRECEDENCE);
+            clauses.add(new Clause(text(start, position), operator, operand));
+
+            if (operator == null) {
+                conjunction = operand;
+            } else if (operator.equals("AND")) {
+                conjunction = new BinaryExpression(operator, conjunction, operand);
+            } else {
+                disjunction = disjunction == null ? conjunction : new BinaryExpression(operator, disjunction, conjunction);
+                conjunction = operand;
+            }
+
+            operator = at(AND) ? "AND" : at(OR) ? "OR" : null;
+            if (operator != null) {
+                operator();
+                position++;
+            }
+        } while (operator != null);
+
+        return disjunction == null ? conjunction : new BinaryExpression("OR", disjunction, conjunction);
+    }
+
+    private List<Expression> groupBy(List<CharSequence> columns) {
+        List<Expression> expressions = new ArrayList<>();
+        do {
+            int start = position;
+            expressions.add(expression(OR_PRECEDENCE));
+            columns.add(name(start, position));
+        } while (skip(','));
+        return List.copyOf(expressions);
+    }
+
+    private List<Sort> sorts() {
+        List<Sort> sorts = new ArrayList<>();
+        do {
+            int start = position;
+            Expression key = expression(OR_PRECEDENCE);
+            CharSequence text = name(start, position);
+            boolean desc = skip(DESC);
+            if (!desc) skip(ASC);
+            String nulls = null;
+            if (skip(NULLS)) {
+                if (skip(FIRST)) {
+                    nulls = "FIRST";
+                } else {
+                    expect(LAST);
+                    nulls = "LAST";
+                }
+            }
+            sorts.add(new Sort(text, desc, key, nulls));
+        } while (skip(','));
+        return List.copyOf(sorts);
+    }
+
+    private Integer limit() {
+        return skip(ALL) ? null : integer();
+    }
+
+    private Integer integer() {
+        Token token = peek();
+        if (token != null && token.is(TokenType.NUMBER)) {
+            try {
+                Integer value = Integer.parseInt(token.getSource(), token.getStart(), token.getEnd(), 10);
+                position++;
+                return value;
+            } catch (NumberFormatException ignored) {
+                // reported as a clause error below
+            }
+        }
+        throw error("integer");
+    }
+
+    private Expression expression(int minPrecedence) {
+        Expression left = prefix();
+
+        while (peek() != null) {
+            Token token = peek();
+            int precedence = infixPrecedence(token);
+            if (precedence < minPrecedence || precedence == 0) {
+                break;
+            }
+            operator();
+
+            if (precedence == COMPARISON_PRECEDENCE && token.is(TokenType.KEYWORD)) {
+                left = predicate(left);
+            } else if (precedence == AND_PRECEDENCE || precedence == OR_PRECEDENCE) {
+                position++;
+                left = new BinaryExpression(precedence == AND_PRECEDENCE ? "AND" : "OR", left, expression(precedence + 1));
+            } else {
+                position++;
+                left = new BinaryExpression(operator(token), left, expression(precedence + 1));
+            }
+        }
+
+        return left;
+    }
+
+    /**
+     * Word predicates: {@code [NOT] LIKE}, {@code [NOT] IN}, {@code [NOT] BETWEEN}, {@code IS [NOT] NULL}.
+     */
+    private Expression predicate(Expression left) {
+        if (skip(IS)) {
+            boolean not = skip(NOT);
+            expect(NULL);
+            return new IsNullExpression(left, not);
+        }
+
+        boolean not = skip(NOT);
+        if (skip(LIKE)) {
+            return new BinaryExpression(not ? "NOT LIKE" : "LIKE", left, expression(CONCAT_PRECEDENCE));
+        }
+        if (skip(BETWEEN)) {
+            Expression lower = expression(CONCAT_PRECEDENCE);
+            expect(AND);
+            Expression upper = expression(CONCAT_PRECEDENCE);
+            return new BetweenExpression(left, lower, upper, not);
+        }
+        expect(IN);
+        expect('(');
+        List<Expression> values = new ArrayList<>();
+        if (atQuery()) {
+            values.add(new SubqueryExpression(subquery()));
+        } else {
+            enter();
+            do {
+                if (values.size() == limits.getMaxInListSize()) {
+                    throw limitError("IN list", limits.getMaxInListSize());
+                }
+                values.add(expression(OR_PRECEDENCE));
+            } while (skip(','));
+            depth--;
+        }
+        expect(')');
+        return new InExpression(left, List.copyOf(values), not);
+    }
+
+    private int infixPrecedence(Token token) {
+        if (token.is(TokenType.OPERATOR)) {
+            return switch (operator(token)) {
+                case "=", "<>", "!=", "<", "<=", ">", ">=" -> COMPARISON_PRECEDENCE;
+                case "||" -> CONCAT_PRECEDENCE;
+                case "+", "-" -> ADDITIVE_PRECEDENCE;
+                case "*", "/", "%" -> MULTIPLICATIVE_PRECEDENCE;
+                default -> 0;
+            };
+        }
+        if (token.getKeyword() == null) {
+            return 0;
+        }
+        return switch (token.getKeyword()) {
+            case OR -> OR_PRECEDENCE;
+            case AND -> AND_PRECEDENCE;
+            case LIKE, IN, BETWEEN, IS -> COMPARISON_PRECEDENCE;
+            case NOT -> {
+                Token following = peek(1);
+                yield following != null && (following.is(LIKE) || following.is(IN) || following.is(BETWEEN)) ? COMPARISON_PRECEDENCE : 0;
+            }
+            default -> 0;
+        };
+    }
+
+    private Expression prefix() {
+        Token token = peek();
+        if (token == null) {
+            throw error("expression");
+        }
+
+        switch (token.getType()) {
+            case NUMBER -> {
+                position++;
+                return new Literal(Literal.Kind.NUMBER, token.slice());
+            }
+            case STRING -> {
+                position++;
+                return new Literal(Literal.Kind.STRING, token.slice());
+            }
+            case QUOTED_IDENTIFIER -> {
+                return columnReference();
+            }
+            case PUNCTUATION -> {
+                if (skip('(')) {
+                    Expression expression;
+                    if (atQuery()) {
+                        expression = new SubqueryExpression(subquery());
+                    } else {
+                        enter();
+                        expression = new NestedExpression(expression(OR_PRECEDENCE));
+                        depth--;
+                    }
+                    expect(')');
+                    return expression;
+                }
+            }
+            case OPERATOR -> {
+                if (token.is('*')) {
+                    position++;
+                    return new AllColumns(null);
+                }
+                if (token.is('?')) {
+                    return parameter();
+                }
+                if (token.is('-') || token.is('+')) {
+                    position++;
+                    enter();
+                    Expression operand = expression(UNARY_PRECEDENCE);
+                    depth--;
+                    return new UnaryExpression(token.is('-') ? "-" : "+", operand);
+                }
+            }
+            case KEYWORD -> {
+                if ((token.is(LEFT) || token.is(RIGHT)) && isFollowedBy('(')) {
+                    return functionCall();
+                }
+                if (token.is(CASE)) {
+                    return caseExpression();
+                }
+                if (token.is(NOT)) {
+                    position++;
+                    enter();
+                    Expression operand = expression(NOT_PRECEDENCE);
+                    depth--;
+                    return new UnaryExpression("NOT", operand);
+                }
+                if (token.is(NULL)) {
+                    position++;
+                    return new Literal(Literal.Kind.NULL, token.slice());
+                }
+                if (token.is(TRUE) || token.is(FALSE)) {
+                    position++;
+                    return new Literal(Literal.Kind.BOOLEAN, token.slice());
+                }
+                if (token.is(EXISTS) && isFollowedBy('(')) {
+                    position += 2;
+                    Query query = subquery();
+                    expect(')');
+                    return new ExistsExpression(query);
+                }
+                if (isName(token)) {
+                    return isFollowedBy('(') ? functionCall() : columnReference();
+                }
+            }
+            case IDENTIFIER -> {
+                return isFollowedBy('(') ? functionCall() : columnReference();
+            }
+        }
+
+        throw error("expression");
+    }
+
+    private Parameter parameter() {
+        expect('?');
+        return new Parameter(parameterCount++);
+    }
+
+    private Expression functionCall() {
+        CharSequence name = intern(next().slice());
+        expect('(');
+
+        FunctionCall function;
+        if (skip(')')) {
+            function = new FunctionCall(name, List.of(), false);
+        } else {
+            boolean distinct = skip(DISTINCT);
+            List<Expression> arguments = new ArrayList<>();
+            enter();
+            do {
+                arguments.add(expression(OR_PRECEDENCE));
+            } while (skip(','));
+            depth--;
+            expect(')');
+            function = new FunctionCall(name, List.copyOf(arguments), distinct);
+        }
+        return at(OVER) ? window(function) : function;
+    }
+
+    /**
+     * Parses {@code OVER ([PARTITION BY expressions] [ORDER BY sorts] [frame])} after a function call.
+     */
+    private WindowFunction window(FunctionCall function) {
+        expect(OVER);
+        expect('(');
+        enter();
+        List<Expression> partitionBy = null;
+        if (skip(PARTITION)) {
+            expect(BY);
+            partitionBy = new ArrayList<>();
+            do {
+                partitionBy.add(expression(OR_PRECEDENCE));
+            } while (skip(','));
+            partitionBy = List.copyOf(partitionBy);
+        }
+        List<Sort> orderBy = null;
+        if (skip(ORDER)) {
+            expect(BY);
+            orderBy = sorts();
+        }
+        WindowFrame frame = at(ROWS) || at(RANGE) ? frame() : null;
+        depth--;
+        expect(')');
+        return new WindowFunction(function, partitionBy, orderBy, frame);
+    }
+
+    private WindowFrame frame() {
+        String units = next().is(ROWS) ? "ROWS" : "RANGE";
+        if (!skip(BETWEEN)) {
+            Expression offset = frameOffset();
+            return new WindowFrame(units, frameBound(offset), offset, null, null);
+        }
+        Expression startOffset = frameOffset();
+        String start = frameBound(startOffset);
+        expect(AND);
+        Expression endOffset = frameOffset();
+        return new WindowFrame(units, start, startOffset, frameBound(endOffset), endOffset);
+    }
+
+    /**
+     * The offset of a {@code PRECEDING} or {@code FOLLOWING} frame bound, {@code null} for the other bounds.
+     */
+    private Expression frameOffset() {
+        return atWord("UNBOUNDED") || atWord("CURRENT") ? null : expression(CONCAT_PRECEDENCE);
+    }
+
+    private String frameBound(Expression offset) {
+        if (offset == null) {
+            if (atWord("CURRENT")) {
+                position++;
+                expectWord("ROW");
+                return WindowFrame.CURRENT_ROW;
+            }
+            expectWord("UNBOUNDED");
+            if (atWord("PRECEDING")) {
+                position++;
+                return WindowFrame.UNBOUNDED_PRECEDING;
+            }
+            expectWord("FOLLOWING");
+            return WindowFrame.UNBOUNDED_FOLLOWING;
+        }
+        if (atWord("PRECEDING")) {
+            position++;
+            return WindowFrame.PRECEDING;
+        }
+        expectWord("FOLLOWING");
+        return WindowFrame.FOLLOWING;
+    }
+
+    /**
+     * Parses {@code CASE [operand] WHEN condition THEN result ... [ELSE result] END}.
+     */
+    private Expression caseExpression() {
+        expect(CASE);
+        enter();
+        Expression operand = at(WHEN) ? null : expression(OR_PRECEDENCE);
+        List<WhenClause> whenClauses = new ArrayList<>();
+        do {
+            expect(WHEN);
+            Expression condition = expression(OR_PRECEDENCE);
+            expect(THEN);
+            whenClauses.add(new WhenClause(condition, expression(OR_PRECEDENCE)));
+        } while (at(WHEN));
+        Expression elseResult = skip(ELSE) ? expression(OR_PRECEDENCE) : null;
+        depth--;
+        expect(END);
+        return new CaseExpression(operand, List.copyOf(whenClauses), elseResult);
+    }
+
+    /**
+     * Parses {@code name}, {@code qualifier.name} or {@code qualifier.*}.
+     */
+    private Expression columnReference() {
+        int start = position;
+        Token name = nameToken();
+        while (at('.')) {
+            position++;
+            if (at('*')) {
+                CharSequence qualifier = name(start, position - 1);
+                position++;
+                return new AllColumns(qualifier);
+            }
+            name = nameToken();
+        }
+        CharSequence qualifier = name.getStart() == tokens.get(start).getStart() ? null : name(start, position - 2);
+        return new ColumnReference(qualifier, intern(name.slice()));
+    }
+
+    private void qualifiedName() {
+        nameToken();
+        while (skip('.')) {
+            nameToken();
+        }
+    }
+
+    private Token nameToken() {
+        Token token = peek();
+        if (token == null || !(isName(token) || token.is(TokenType.QUOTED_IDENTIFIER))) {
+            throw error("name");
+        }
+        position++;
+        return token;
+    }
+
+    /**
+     * Parses {@code [AS] alias}, an unquoted alias must not be a reserved word.
+     */
+    private CharSequence alias() {
+        if (skip(AS)) {
+            return intern(nameToken().slice());
+        }
+        Token token = peek();
+        if (token != null && (token.is(TokenType.QUOTED_IDENTIFIER) || isName(token))) {
+            position++;
+            return intern(token.slice());
+        }
+        return null;
+    }
+
+    /**
+     * Parses a nested query, the clause used for error messages is restored afterwards.
+     */
+    private Query subquery() {
+        String outerClause = clause;
+        int outerClauseStart = clauseStart;
+        enter();
+        Query query = parseQuery();
+        depth--;
+        clause = outerClause;
+        clauseStart = outerClauseStart;
+        return query;
+    }
+
+    private static String joinType(String type) {
+        return switch (type) {
+            case "INNER" -> "INNER JOIN";
+            case "LEFT" -> "LEFT JOIN";
+            case "RIGHT" -> "RIGHT JOIN";
+            case "FULL" -> "FULL JOIN";
+            case "CROSS" -> "CROSS JOIN";
+            case "JOIN" -> "INNER JOIN";
+            default -> type + " JOIN";
+        };
+    }
+
+    /**
+     * Operators are mapped to constants, so that trees do not retain a copy per occurrence.
+     */
+    private static String operator(Token token) {
+        CharSequence source = token.getSource();
+        char first = source.charAt(token.getStart());
+        if (token.length() == 1) {
+            return switch (first) {
+                case '=' -> "=";
+                case '<' -> "<";
+                case '>' -> ">";
+                case '+' -> "+";
+                case '-' -> "-";
+                case '*' -> "*";
+                case '/' -> "/";
+                case '%' -> "%";
+                case '?' -> "?";
+                default -> token.text();
+            };
+        }
+        char second = source.charAt(token.getStart() + 1);
+        if (first == '<' && second == '>') return "<>";
+        if (first == '<' && second == '=') return "<=";
+        if (first == '>' && second == '=') return ">=";
+        if (first == '!' && second == '=') return "!=";
+        if (first == '|' && second == '|') return "||";
+        return token.text();
+    }
+
+    private long measure(ParsePhase phase, long started) {
+        if (!timed) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        listener.onPhase(phase, now - started);
+        return now;
+    }
+
+    /**
+     * An unquoted name: an identifier or a keyword that is not reserved.
+     */
+    private static boolean isName(Token token) {
+        return token.is(TokenType.IDENTIFIER) || (token.is(TokenType.KEYWORD) && !token.getKeyword().isReserved());
+    }
+
+    private static boolean isJoin(Keyword keyword) {
+        return keyword == INNER || keyword == LEFT || keyword == RIGHT || keyword == FULL || keyword == CROSS || keyword == JOIN;
+    }
+
+    private static boolean isClause(Token token) {
+        return token.getKeyword() != null && token.getKeyword().isClause();
+    }
+
+    private void begin(String clause) {
+        this.clause = clause;
+        this.clauseStart = position;
+    }
+
+    private Token peek() {
+        return position < tokens.size() ? tokens.get(position) : null;
+    }
+
+    private Token peek(int offset) {
+        return position + offset < tokens.size() ? tokens.get(position + offset) : null;
+    }
+
+    private Token next() {
+        Token token = peek();
+        if (token == null) {
+            throw error("token");
+        }
+        position++;
+        return token;
+    }
+
+    private boolean atEnd() {
+        return position >= tokens.size();
+    }
+
+    private boolean at(char symbol) {
+        return peek() != null && peek().is(symbol);
+    }
+
+    private boolean at(Keyword keyword) {
+        return peek() != null && peek().is(keyword);
+    }
+
+    /**
+     * Whether the next token starts a query in parentheses.
+     */
+    private boolean atQuery() {
+        return at(SELECT) || at(WITH);
+    }
+
+    /**
+     * Whether the next token is an identifier equal to a word given in upper case, ignoring case.
+     * Words like this are not keywords, so that they remain usable as names.
+     */
+    private boolean atWord(String word) {
+        Token token = peek();
+        if (token == null || !token.is(TokenType.IDENTIFIER) || token.length() != word.length()) {
+            return false;
+        }
+        CharSequence source = token.getSource();
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.toUpperCase(source.charAt(token.getStart() + i)) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void expectWord(String word) {
+        if (!atWord(word)) {
+            throw error(word);
+        }
+        position++;
+    }
+
+    private boolean isFollowedBy(char symbol) {
+        Token token = peek(1);
+        return token != null && token.is(symbol);
+    }
+
+    private boolean skip(char symbol) {
+        if (at(symbol)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean skip(Keyword keyword) {
+        if (at(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char symbol) {
+        if (!skip(symbol)) {
+            throw error("'" + symbol + "'");
+        }
+    }
+
+    private void expect(Keyword keyword) {
+        if (!skip(keyword)) {
+            throw error(keyword.name());
+        }
+    }
+
+    /**
+     * Enters a nested construct, the caller decrements the depth when it is done.
+     */
+    private void enter() {
+        if (++depth > limits.getMaxNestingDepth()) {
+            throw limitError("nesting depth", limits.getMaxNestingDepth());
+        }
+    }
+
+    /**
+     * Counts an operator. Operators of the same precedence nest to the left without entering a
+     * construct, so their number bounds the depth of the trees along with the nesting depth.
+     */
+    private void operator() {
+        if (++operators > limits.getMaxOperators()) {
+            throw limitError("number of operators", limits.getMaxOperators());
+        }
+    }
+
+    private InvalidQueryException limitError(String limit, int value) {
+        return new InvalidQueryException(clause, MessageFormat.format(LIMIT_PATTERN, clause, limit, String.valueOf(value)),
+                offset(), null, !recovering);
+    }
+
+    private InvalidQueryException error(String expected) {
+        return new InvalidQueryException(clause, MessageFormat.format(ERROR_PATTERN, clause, text(clauseStart, clauseEnd())),
+                offset(), expected, !recovering);
+    }
+
+    /**
+     * An error of the statement as a whole, not tied to a clause.
+     */
+    private InvalidQueryException syntaxError(String expected) {
+        return new InvalidQueryException(null, null, offset(), expected, !recovering);
+    }
+
+    /**
+     * The source offset of the next token, or the end of the last one at the end of the tokens.
+     */
+    private int offset() {
+        Token token = peek();
+        if (token != null) {
+            return token.getStart();
+        }
+        return tokens.isEmpty() ? 0 : tokens.get(tokens.size() - 1).getEnd();
+    }
+
+    /**
+     * The end of the current clause: the next clause keyword or closing parenthesis at the clause level.
+     */
+    private int clauseEnd() {
+        int depth = 0;
+        for (int i = clauseStart; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.is('(')) {
+                depth++;
+            } else if (token.is(')')) {
+                if (depth-- == 0) return i;
+            } else if (depth == 0 && (isClause(token) || token.is(';'))) {
+                return i;
+            }
+        }
+        return tokens.size();
+    }
+
+    /**
+     * The text of a name or other short, frequently repeated expression, shared through the pool if any.
+     */
+    private CharSequence name(int from, int to) {
+        return intern(text(from, to));
+    }
+
+    /**
+     * Names are only copied when they are pooled, otherwise they stay views of the source.
+     */
+    private CharSequence intern(CharSequence name) {
+        return pool == null ? name : pool.intern(name.toString());
+    }
+
+    /**
+     * The source text from the start of token {@code from} to the end of token {@code to - 1}.
+     */
+    private CharSequence text(int from, int to) {
+        if (from >= to || from >= tokens.size()) {
+            return "";
+        }
+        Token first = tokens.get(from);
+        return new Text(first.getSource(), first.getStart(), tokens.get(to - 1).getEnd());
+    }
+}
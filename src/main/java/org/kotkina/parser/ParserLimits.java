@@ -0,0 +1,51 @@
+package org.kotkina.parser;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Bounds on the input the parser accepts, checked as the input is read so oversized statements
+ * fail fast. Every token is consumed once, and a nested construct copies at most its own text for
+ * each level it is nested in, so within these limits parse time is linear in the statement length.
+ * The expression trees are at most {@code maxNestingDepth + maxOperators} deep, which the recursive
+ * consumers of the trees, such as the renderer, the writers and {@code hashCode}, handle on a 1 MB
+ * thread stack with the default limits.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class ParserLimits {
+
+    public static final ParserLimits DEFAULT = ParserLimits.builder().build();
+
+    /**
+     * No limits but the nesting depth, which keeps the recursion of the parser itself bounded, for
+     * measuring parse time on large input. The trees may be too deep for the consumers of the trees.
+     */
+    public static final ParserLimits UNLIMITED = ParserLimits.builder()
+            .maxStatementLength(Integer.MAX_VALUE)
+            .maxTokens(Integer.MAX_VALUE)
+            .maxNestingDepth(1000)
+            .maxOperators(Integer.MAX_VALUE)
+            .maxInListSize(Integer.MAX_VALUE)
+            .build();
+
+    /** Characters per statement. */
+    @Builder.Default
+    private final int maxStatementLength = 1 << 20;
+
+    /** Tokens per statement. */
+    @Builder.Default
+    private final int maxTokens = 100_000;
+
+    /** Nested parentheses, subqueries, function calls, unary operators and IN lists. */
+    @Builder.Default
+    private final int maxNestingDepth = 200;
+
+    /** Binary operators, word predicates such as {@code LIKE}, {@code AND}/{@code OR} and set operators per statement. */
+    @Builder.Default
+    private final int maxOperators = 1000;
+
+    /** Values of an IN list. */
+    @Builder.Default
+    private final int maxInListSize = 10_000;
+}
@@ -0,0 +1,34 @@
+package org.kotkina.parser;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.kotkina.errors.Diagnostic;
+import org.kotkina.models.Query;
+
+import java.util.List;
+
+/**
+ * The outcome of parsing a statement with error recovery: the query without the clauses in error,
+ * and the errors in the order of the source. The query is complete when there are no errors, and
+ * {@code null} for a set operation or WITH query in error, see {@link Parser#parseRecovering}.
+ */
+@Getter
+@AllArgsConstructor
+public class RecoveredQuery {
+    private final Query query;
+    private final List<Diagnostic> diagnostics;
+
+    public boolean isSuccess() {
+        return diagnostics.isEmpty();
+    }
+
+    /**
+     * The query, or the first error thrown as an exception.
+     */
+    public Query orElseThrow() {
+        if (!diagnostics.isEmpty()) {
+            throw diagnostics.get(0).toException();
+        }
+        return query;
+    }
+}
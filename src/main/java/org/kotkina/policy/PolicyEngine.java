@@ -0,0 +1,238 @@
+package org.kotkina.policy;
+
+import org.kotkina.analysis.QueryAnalyzer;
+import org.kotkina.analysis.QueryFootprint;
+import org.kotkina.models.Keyword;
+import org.kotkina.models.Query;
+import org.kotkina.visitor.ResolvedColumn;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates queries against access rules compiled into a trie of table names per tenant. The trie is
+ * keyed by the parts of the names from the last one, so that {@code person} rules are found for
+ * {@code public.person} and the rules of a table are found by their column in a hash map. Evaluation
+ * looks up the tables and columns of the query footprint, so its cost depends on the query and the
+ * rules it matches, not on the number of rules. Names are compared without quotes and case.
+ * <p>
+ * A table written without a schema matches the rules of that table in every schema. A column whose
+ * table cannot be told matches the masking rules of that column in every table of the query. A
+ * predicate rule needs the column resolved to the table. The engine is immutable and thread-safe.
+ */
+public final class PolicyEngine {
+
+    private final Node rules;
+    private final Map<String, Node> tenantRules;
+    private final int size;
+
+    private PolicyEngine(Node rules, Map<String, Node> tenantRules, int size) {
+        this.rules = rules;
+        this.tenantRules = tenantRules;
+        this.size = size;
+    }
+
+    public static PolicyEngine compile(Collection<PolicyRule> rules) {
+        Node all = new Node();
+        Map<String, Node> tenants = new HashMap<>();
+        for (PolicyRule rule : rules) {
+            Node root = rule.getTenant() == null ? all : tenants.computeIfAbsent(rule.getTenant(), tenant -> new Node());
+            Node node = root.insert(segments(rule.getTable()));
+            switch (rule.getKind()) {
+                case DENY_TABLE -> node.denied = add(node.denied, rule);
+                case MASK_COLUMN -> {
+                    if (node.masked == null) node.masked = new HashMap<>();
+                    node.masked.computeIfAbsent(normalize(rule.getColumn()), column -> new ArrayList<>(1)).add(rule);
+                }
+                case REQUIRE_PREDICATE -> node.required = add(node.required, rule);
+            }
+        }
+        return new PolicyEngine(all, Map.copyOf(tenants), rules.size());
+    }
+
+    private static List<PolicyRule> add(List<PolicyRule> rules, PolicyRule rule) {
+        if (rules == null) rules = new ArrayList<>(1);
+        rules.add(rule);
+        return rules;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public PolicyResult evaluate(Query query, String tenant) {
+        return evaluate(QueryAnalyzer.footprint(query), tenant);
+    }
+
+    public PolicyResult evaluate(QueryFootprint footprint, String tenant) {
+        Node tenantRoot = tenant == null ? null : tenantRules.get(tenant);
+        Map<String, List<Node>> tables = new HashMap<>();
+        List<PolicyRule> violations = new ArrayList<>();
+        List<PolicyRule> required = null;
+        List<String> requiredTables = null;
+
+        for (String table : footprint.getTables()) {
+            String[] path = segments(table);
+            List<Node> nodes = new ArrayList<>();
+            rules.match(path, nodes);
+            if (tenantRoot != null) {
+                tenantRoot.match(path, nodes);
+            }
+            tables.put(table, nodes);
+            for (Node node : nodes) {
+                if (node.denied != null) {
+                    violations.addAll(node.denied);
+                }
+                if (node.required != null) {
+                    if (required == null) {
+                        required = new ArrayList<>();
+                        requiredTables = new ArrayList<>();
+                    }
+                    for (PolicyRule rule : node.required) {
+                        required.add(rule);
+                        requiredTables.add(table);
+                    }
+                }
+            }
+        }
+
+        Set<ResolvedColumn> masked = new LinkedHashSet<>();
+        Set<PolicyRule> maskingRules = new LinkedHashSet<>();
+        Set<String> predicates = required == null ? null : new HashSet<>();
+        for (ResolvedColumn column : footprint.getColumns()) {
+            String name = column.getName().equals("*") ? null : normalize(column.getName());
+            if (column.getTable() != null) {
+                for (Node node : tables.getOrDefault(column.getTable(), List.of())) {
+                    mask(node, name, column, masked, maskingRules);
+                }
+                if (predicates != null && name != null && footprint.getClauses(column).contains(Keyword.WHERE)) {
+                    predicates.add(key(column.getTable(), name));
+                }
+            } else if (name != null) {
+                for (List<Node> nodes : tables.values()) {
+                    for (Node node : nodes) {
+                        mask(node, name, column, masked, maskingRules);
+                    }
+                }
+            }
+        }
+
+        if (required != null) {
+            for (int i = 0; i < required.size(); i++) {
+                if (!predicates.contains(key(requiredTables.get(i), normalize(required.get(i).getColumn())))) {
+                    violations.add(required.get(i));
+                }
+            }
+        }
+        return new PolicyResult(List.copyOf(violations), masked, List.copyOf(maskingRules));
+    }
+
+    /**
+     * Adds the masking rules of a node for a column, all of them for a wildcard.
+     */
+    private static void mask(Node node, String name, ResolvedColumn column, Set<ResolvedColumn> masked, Set<PolicyRule> maskingRules) {
+        if (node.masked == null) {
+            return;
+        }
+        if (name == null) {
+            for (List<PolicyRule> rules : node.masked.values()) {
+                maskingRules.addAll(rules);
+            }
+            masked.add(column);
+        } else {
+            List<PolicyRule> rules = node.masked.get(name);
+            if (rules != null) {
+                maskingRules.addAll(rules);
+                masked.add(column);
+            }
+        }
+    }
+
+    private static String key(String table, String column) {
+        return table + '\0' + column;
+    }
+
+    /**
+     * The parts of a dotted name, unquoted and in lower case.
+     */
+    static String[] segments(String name) {
+        List<String> segments = new ArrayList<>(2);
+        int start = 0;
+        char quote = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '[') {
+                quote = ']';
+            } else if (c == '.') {
+                segments.add(normalize(name.substring(start, i)));
+                start = i + 1;
+            }
+        }
+        segments.add(normalize(name.substring(start)));
+        return segments.toArray(new String[0]);
+    }
+
+    private static String normalize(String identifier) {
+        String name = identifier.strip();
+        if (name.length() >= 2) {
+            char first = name.charAt(0);
+            char last = name.charAt(name.length() - 1);
+            if (first == '"' && last == '"' || first == '`' && last == '`' || first == '[' && last == ']') {
+                name = name.substring(1, name.length() - 1);
+            }
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A table name part with the rules of the name ending here and the longer names under it.
+     */
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>(2);
+        private List<PolicyRule> denied;
+        private Map<String, List<PolicyRule>> masked;
+        private List<PolicyRule> required;
+
+        Node insert(String[] path) {
+            Node node = this;
+            for (int i = path.length - 1; i >= 0; i--) {
+                node = node.children.computeIfAbsent(path[i], part -> new Node());
+            }
+            return node;
+        }
+
+        /**
+         * Adds the nodes of the rules for a name: the nodes along its path and, when the name ends
+         * before the rule names do, the nodes of the longer names.
+         */
+        void match(String[] path, List<Node> nodes) {
+            Node node = this;
+            for (int i = path.length - 1; i >= 0; i--) {
+                node = node.children.get(path[i]);
+                if (node == null) {
+                    return;
+                }
+                nodes.add(node);
+            }
+            node.descendants(nodes);
+        }
+
+        private void descendants(List<Node> nodes) {
+            for (Node child : children.values()) {
+                nodes.add(child);
+                child.descendants(nodes);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.kotkina.policy;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.kotkina.visitor.ResolvedColumn;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The outcome of evaluating a query: the violated deny and predicate rules, and the columns of the
+ * query to mask with the rules requiring it.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class PolicyResult {
+    private final List<PolicyRule> violations;
+    private final Set<ResolvedColumn> maskedColumns;
+    private final List<PolicyRule> maskingRules;
+
+    public boolean isAllowed() {
+        return violations.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "{ \"violations\": " + violations + ", \"maskedColumns\": " + maskedColumns + " }";
+    }
+}
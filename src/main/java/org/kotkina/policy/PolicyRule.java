@@ -0,0 +1,47 @@
+package org.kotkina.policy;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * An access rule of a tenant, or of every tenant when the tenant is {@code null}. Table names may be
+ * schema-qualified; an unqualified name applies to the table in any schema.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@EqualsAndHashCode
+public class PolicyRule {
+
+    public enum Kind {
+        /** The table must not be read. */
+        DENY_TABLE,
+        /** The column must be masked when read. */
+        MASK_COLUMN,
+        /** A query reading the table must use the column in its WHERE clause. */
+        REQUIRE_PREDICATE
+    }
+
+    private final Kind kind;
+    private final String tenant;
+    private final String table;
+    private final String column;
+
+    public static PolicyRule denyTable(String tenant, String table) {
+        return new PolicyRule(Kind.DENY_TABLE, tenant, table, null);
+    }
+
+    public static PolicyRule maskColumn(String tenant, String table, String column) {
+        return new PolicyRule(Kind.MASK_COLUMN, tenant, table, column);
+    }
+
+    public static PolicyRule requirePredicate(String tenant, String table, String column) {
+        return new PolicyRule(Kind.REQUIRE_PREDICATE, tenant, table, column);
+    }
+
+    @Override
+    public String toString() {
+        return kind + (tenant == null ? "" : " for " + tenant) + " " + table + (column == null ? "" : "." + column);
+    }
+}
@@ -0,0 +1,39 @@
+package org.kotkina.render;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * How {@link SqlRenderer} spells a query. The defaults give the canonical form: upper case keywords,
+ * names quoted as written and literals kept.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class RenderOptions {
+
+    public static final RenderOptions CANONICAL = RenderOptions.builder().build();
+
+    /** Literals replaced by {@code ?}, as in {@link org.kotkina.cache.Fingerprint} templates. */
+    public static final RenderOptions PARAMETERIZED = RenderOptions.builder().parameterizeLiterals(true).build();
+
+    public enum KeywordCase {
+        UPPER, LOWER
+    }
+
+    public enum Quoting {
+        /** Names are written as in the query, names that would not parse unquoted are double-quoted. */
+        AS_NEEDED,
+        /** Every unquoted name is double-quoted. */
+        ALWAYS
+    }
+
+    @Builder.Default
+    private final KeywordCase keywordCase = KeywordCase.UPPER;
+
+    @Builder.Default
+    private final Quoting quoting = Quoting.AS_NEEDED;
+
+    /** Number and string literals, {@code LIMIT} and {@code OFFSET} values are written as {@code ?}. */
+    @Builder.Default
+    private final boolean parameterizeLiterals = false;
+}
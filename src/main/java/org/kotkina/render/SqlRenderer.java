@@ -0,0 +1,662 @@
+package org.kotkina.render;
+
+import org.kotkina.models.*;
+import org.kotkina.models.expression.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Writes a parsed query back as SQL on one line, from its expression trees: keywords in the case of
+ * the options, one space around operators and after commas, comments and redundant whitespace gone,
+ * {@code ASC} left out and column aliases introduced by {@code AS}. Parentheses are written where
+ * the query has them, and added where a tree built by hand needs them.
+ * <p>
+ * Parsing the rendered query gives back an equal query when the original was written in this form,
+ * and in any case rendering it again gives the same text, so the output can serve as a cache key.
+ * The renderer is immutable and thread-safe.
+ */
+public final class SqlRenderer {
+
+    public static final SqlRenderer CANONICAL = new SqlRenderer(RenderOptions.CANONICAL);
+
+    private static final int OR_PRECEDENCE = 1;
+    private static final int AND_PRECEDENCE = 2;
+    private static final int NOT_PRECEDENCE = 3;
+    private static final int COMPARISON_PRECEDENCE = 4;
+    private static final int CONCAT_PRECEDENCE = 5;
+    private static final int ADDITIVE_PRECEDENCE = 6;
+    private static final int MULTIPLICATIVE_PRECEDENCE = 7;
+    private static final int UNARY_PRECEDENCE = 8;
+    private static final int PRIMARY_PRECEDENCE = 9;
+
+    private final RenderOptions options;
+    private final boolean lowerCase;
+
+    public SqlRenderer(RenderOptions options) {
+        this.options = options;
+        this.lowerCase = options.getKeywordCase() == RenderOptions.KeywordCase.LOWER;
+    }
+
+    public String render(Query query) {
+        return render(query, new StringBuilder(128)).toString();
+    }
+
+    /**
+     * Appends the query to a builder, which can be reused between calls to avoid reallocation.
+     */
+    public StringBuilder render(Query query, StringBuilder out) {
+        try {
+            render(query, (Appendable) out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out;
+    }
+
+    public <A extends Appendable> A render(Query query, A out) throws IOException {
+        query(out, query);
+        return out;
+    }
+
+    private void query(Appendable out, Query query) throws IOException {
+        if (query instanceof SelectQuery select) {
+            select(out, select);
+        } else if (query instanceof SetOperation operation) {
+            setOperation(out, operation);
+        } else if (query instanceof WithQuery with) {
+            with(out, with);
+        } else {
+            throw new IllegalArgumentException("Unsupported query type " + (query == null ? null : query.getClass().getName()));
+        }
+    }
+
+    private void select(Appendable out, SelectQuery query) throws IOException {
+        keyword(out, query.isDistinct() ? "SELECT DISTINCT" : "SELECT");
+        if (query.getColumns() != null) {
+            out.append(' ');
+            for (int i = 0; i < query.getColumns().size(); i++) {
+                separate(out, i);
+                column(out, query.getColumns().get(i));
+            }
+        }
+        if (query.getFromSources() != null) {
+            out.append(' ');
+            keyword(out, "FROM");
+            out.append(' ');
+            for (int i = 0; i < query.getFromSources().size(); i++) {
+                separate(out, i);
+                source(out, query.getFromSources().get(i));
+            }
+        }
+        if (query.getJoins() != null) {
+            for (Join join : query.getJoins()) {
+                out.append(' ');
+                join(out, join);
+            }
+        }
+        if (query.getWhere() != null || query.getWhereClauses() != null) {
+            out.append(' ');
+            keyword(out, "WHERE");
+            out.append(' ');
+            condition(out, query.getWhere(), query.getWhereClauses());
+        }
+        if (query.getGroupBy() != null || query.getGroupByColumns() != null) {
+            out.append(' ');
+            keyword(out, "GROUP BY");
+            out.append(' ');
+            if (query.getGroupBy() != null) {
+                expressions(out, query.getGroupBy());
+            } else {
+                for (int i = 0; i < query.getGroupByColumns().size(); i++) {
+                    separate(out, i);
+                    out.append(query.getGroupByColumns().get(i));
+                }
+            }
+        }
+        if (query.getHaving() != null || query.getHavingClauses() != null) {
+            out.append(' ');
+            keyword(out, "HAVING");
+            out.append(' ');
+            condition(out, query.getHaving(), query.getHavingClauses());
+        }
+        sorts(out, query.getSortColumns());
+        integer(out, "LIMIT", query.hasLimit(), query.getLimitValue(), query.getLimitParameter());
+        integer(out, "OFFSET", query.hasOffset(), query.getOffsetValue(), query.getOffsetParameter());
+    }
+
+    private void setOperation(Appendable out, SetOperation operation) throws IOException {
+        operand(out, operation.getLeft(), operation, false);
+        out.append(' ');
+        keyword(out, operation.getOperator());
+        out.append(' ');
+        operand(out, operation.getRight(), operation, true);
+        sorts(out, operation.getSortColumns());
+        Integer limit = operation.getLimit();
+        Integer offset = operation.getOffset();
+        integer(out, "LIMIT", limit != null, limit == null ? 0 : limit, operation.getLimitParameter());
+        integer(out, "OFFSET", offset != null, offset == null ? 0 : offset, operation.getOffsetParameter());
+    }
+
+    /**
+     * Writes a query combined by a set operation, in parentheses where it would not parse back as
+     * the same operand: when it has clauses that would apply to the operation, is a WITH query, or
+     * is an operation that binds looser than the parent or is on its right.
+     */
+    private void operand(Appendable out, Query query, SetOperation parent, boolean right) throws IOException {
+        boolean parenthesize;
+        if (query instanceof SelectQuery select) {
+            parenthesize = select.getSortColumns() != null || select.hasLimit() || select.hasOffset()
+                    || select.getLimitParameter() != null || select.getOffsetParameter() != null;
+        } else if (query instanceof SetOperation operation) {
+            boolean intersect = operation.getOperator().startsWith("INTERSECT");
+            boolean parentIntersect = parent.getOperator().startsWith("INTERSECT");
+            parenthesize = operation.getSortColumns() != null || operation.getLimit() != null || operation.getOffset() != null
+                    || operation.getLimitParameter() != null || operation.getOffsetParameter() != null
+                    || (right ? parentIntersect || !intersect : parentIntersect && !intersect);
+        } else {
+            parenthesize = true;
+        }
+        if (parenthesize) {
+            out.append('(');
+        }
+        query(out, query);
+        if (parenthesize) {
+            out.append(')');
+        }
+    }
+
+    private void with(Appendable out, WithQuery with) throws IOException {
+        keyword(out, with.isRecursive() ? "WITH RECURSIVE" : "WITH");
+        for (int i = 0; i < with.getTables().size(); i++) {
+            out.append(i == 0 ? " " : ", ");
+            CommonTableExpression table = with.getTables().get(i);
+            name(out, table.getName());
+            if (table.getColumns() != null) {
+                out.append('(');
+                for (int j = 0; j < table.getColumns().size(); j++) {
+                    separate(out, j);
+                    name(out, table.getColumns().get(j));
+                }
+                out.append(')');
+            }
+            out.append(' ');
+            keyword(out, "AS");
+            out.append(" (");
+            query(out, table.getQuery());
+            out.append(')');
+        }
+        out.append(' ');
+        if (with.getQuery() instanceof WithQuery) {
+            out.append('(');
+            query(out, with.getQuery());
+            out.append(')');
+        } else {
+            query(out, with.getQuery());
+        }
+    }
+
+    private void column(Appendable out, Column column) throws IOException {
+        if (column.getExpression() != null) {
+            expression(out, column.getExpression(), OR_PRECEDENCE);
+        } else {
+            out.append(column.getName());
+        }
+        if (column.getAlias() != null) {
+            out.append(' ');
+            keyword(out, "AS");
+            out.append(' ');
+            name(out, column.getAlias());
+        }
+    }
+
+    private void source(Appendable out, Source source) throws IOException {
+        if (source.getSubquery() != null) {
+            out.append('(');
+            query(out, source.getSubquery());
+            out.append(')');
+        } else {
+            name(out, source.getTable());
+        }
+        if (source.getAlias() != null) {
+            out.append(' ');
+            name(out, source.getAlias());
+        }
+    }
+
+    private void join(Appendable out, Join join) throws IOException {
+        keyword(out, join.getType());
+        out.append(' ');
+        source(out, join.getSource());
+        if (join.getCondition() != null || join.getConditions() != null) {
+            out.append(' ');
+            keyword(out, "ON");
+            out.append(' ');
+            condition(out, join.getCondition(), join.getConditions());
+        } else if (join.getUsing() != null) {
+            out.append(' ');
+            keyword(out, "USING");
+            out.append(" (");
+            for (int i = 0; i < join.getUsing().size(); i++) {
+                separate(out, i);
+                name(out, join.getUsing().get(i));
+            }
+            out.append(')');
+        }
+    }
+
+    /**
+     * Writes a condition from its tree, or from the texts of its clauses for queries built without one.
+     */
+    private void condition(Appendable out, Expression condition, List<Clause> clauses) throws IOException {
+        if (condition != null) {
+            expression(out, condition, OR_PRECEDENCE);
+            return;
+        }
+        for (Clause clause : clauses) {
+            if (clause.getOperator() != null) {
+                out.append(' ');
+                keyword(out, clause.getOperator());
+                out.append(' ');
+            }
+            out.append(clause.getCondition());
+        }
+    }
+
+    private void sort(Appendable out, Sort sort) throws IOException {
+        if (sort.getKey() != null) {
+            expression(out, sort.getKey(), OR_PRECEDENCE);
+        } else {
+            out.append(sort.getExpression());
+        }
+        if (sort.isDesc()) {
+            out.append(' ');
+            keyword(out, "DESC");
+        }
+        if (sort.getNulls() != null) {
+            out.append(' ');
+            keyword(out, "NULLS " + sort.getNulls());
+        }
+    }
+
+    private void sorts(Appendable out, List<Sort> sorts) throws IOException {
+        if (sorts != null) {
+            out.append(' ');
+            keyword(out, "ORDER BY");
+            out.append(' ');
+            for (int i = 0; i < sorts.size(); i++) {
+                separate(out, i);
+                sort(out, sorts.get(i));
+            }
+        }
+    }
+
+    /**
+     * Writes {@code LIMIT} or {@code OFFSET} with its value or parameter, if any.
+     */
+    private void integer(Appendable out, String keyword, boolean present, int value, Parameter parameter) throws IOException {
+        if (!present && parameter == null) {
+            return;
+        }
+        out.append(' ');
+        keyword(out, keyword);
+        out.append(' ');
+        if (present && !options.isParameterizeLiterals()) {
+            out.append(Integer.toString(value));
+        } else {
+            out.append('?');
+        }
+    }
+
+    private void expressions(Appendable out, List<Expression> expressions) throws IOException {
+        for (int i = 0; i < expressions.size(); i++) {
+            separate(out, i);
+            expression(out, expressions.get(i), OR_PRECEDENCE);
+        }
+    }
+
+    /**
+     * Writes an expression in a position that needs at least {@code precedence}, in parentheses if it binds looser.
+     */
+    private void expression(Appendable out, Expression expression, int precedence) throws IOException {
+        boolean parenthesize = precedence(expression) < precedence;
+        if (parenthesize) {
+            out.append('(');
+        }
+
+        if (expression instanceof ColumnReference column) {
+            if (column.getQualifier() != null) {
+                name(out, column.getQualifier());
+                out.append('.');
+            }
+            name(out, column.getName());
+        } else if (expression instanceof AllColumns all) {
+            if (all.getQualifier() != null) {
+                name(out, all.getQualifier());
+                out.append('.');
+            }
+            out.append('*');
+        } else if (expression instanceof Literal literal) {
+            literal(out, literal);
+        } else if (expression instanceof Parameter) {
+            out.append('?');
+        } else if (expression instanceof UnaryExpression unary) {
+            if (unary.getOperator().equals("NOT")) {
+                keyword(out, "NOT");
+                out.append(' ');
+                expression(out, unary.getOperand(), NOT_PRECEDENCE);
+            } else {
+                out.append(unary.getOperator());
+                Expression operand = unary.getOperand();
+                if (operand instanceof UnaryExpression inner && !inner.getOperator().equals("NOT")) {
+                    // "--" would start a comment
+                    out.append(' ');
+                }
+                expression(out, operand, UNARY_PRECEDENCE);
+            }
+        } else if (expression instanceof BinaryExpression binary) {
+            int operator = precedence(binary);
+            expression(out, binary.getLeft(), operator);
+            out.append(' ');
+            if (operator == AND_PRECEDENCE || operator == OR_PRECEDENCE || operator == COMPARISON_PRECEDENCE && isWord(binary.getOperator())) {
+                keyword(out, binary.getOperator());
+            } else {
+                out.append(binary.getOperator());
+            }
+            out.append(' ');
+            expression(out, binary.getRight(), operator + 1);
+        } else if (expression instanceof FunctionCall function) {
+            out.append(function.getName()).append('(');
+            if (function.isDistinct()) {
+                keyword(out, "DISTINCT");
+                out.append(' ');
+            }
+            expressions(out, function.getArguments());
+            out.append(')');
+        } else if (expression instanceof InExpression in) {
+            expression(out, in.getExpression(), COMPARISON_PRECEDENCE);
+            out.append(' ');
+            keyword(out, in.isNot() ? "NOT IN" : "IN");
+            out.append(" (");
+            List<Expression> values = in.getValues();
+            if (values.size() == 1 && values.get(0) instanceof SubqueryExpression subquery) {
+                query(out, subquery.getQuery());
+            } else {
+                expressions(out, values);
+            }
+            out.append(')');
+        } else if (expression instanceof BetweenExpression between) {
+            expression(out, between.getExpression(), COMPARISON_PRECEDENCE);
+            out.append(' ');
+            keyword(out, between.isNot() ? "NOT BETWEEN" : "BETWEEN");
+            out.append(' ');
+            expression(out, between.getLower(), CONCAT_PRECEDENCE);
+            out.append(' ');
+            keyword(out, "AND");
+            out.append(' ');
+            expression(out, between.getUpper(), CONCAT_PRECEDENCE);
+        } else if (expression instanceof IsNullExpression isNull) {
+            expression(out, isNull.getExpression(), COMPARISON_PRECEDENCE);
+            out.append(' ');
+            keyword(out, isNull.isNot() ? "IS NOT NULL" : "IS NULL");
+        } else if (expression instanceof NestedExpression nested) {
+            out.append('(');
+            expression(out, nested.getExpression(), OR_PRECEDENCE);
+            out.append(')');
+        } else if (expression instanceof SubqueryExpression subquery) {
+            out.append('(');
+            query(out, subquery.getQuery());
+            out.append(')');
+        } else if (expression instanceof ExistsExpression exists) {
+            keyword(out, "EXISTS");
+            out.append(" (");
+            query(out, exists.getQuery());
+            out.append(')');
+        } else if (expression instanceof CaseExpression caseExpression) {
+            keyword(out, "CASE");
+            if (caseExpression.getOperand() != null) {
+                out.append(' ');
+                expression(out, caseExpression.getOperand(), OR_PRECEDENCE);
+            }
+            for (WhenClause when : caseExpression.getWhenClauses()) {
+                out.append(' ');
+                keyword(out, "WHEN");
+                out.append(' ');
+                expression(out, when.getCondition(), OR_PRECEDENCE);
+                out.append(' ');
+                keyword(out, "THEN");
+                out.append(' ');
+                expression(out, when.getResult(), OR_PRECEDENCE);
+            }
+            if (caseExpression.getElseResult() != null) {
+                out.append(' ');
+                keyword(out, "ELSE");
+                out.append(' ');
+                expression(out, caseExpression.getElseResult(), OR_PRECEDENCE);
+            }
+            out.append(' ');
+            keyword(out, "END");
+        } else if (expression instanceof WindowFunction window) {
+            window(out, window);
+        } else {
+            throw new IllegalArgumentException("Unsupported expression type " + expression.getClass().getName());
+        }
+
+        if (parenthesize) {
+            out.append(')');
+        }
+    }
+
+    private void window(Appendable out, WindowFunction window) throws IOException {
+        expression(out, window.getFunction(), PRIMARY_PRECEDENCE);
+        out.append(' ');
+        keyword(out, "OVER");
+        out.append(" (");
+        boolean empty = true;
+        if (window.getPartitionBy() != null) {
+            keyword(out, "PARTITION BY");
+            out.append(' ');
+            expressions(out, window.getPartitionBy());
+            empty = false;
+        }
+        if (window.getOrderBy() != null) {
+            if (!empty) out.append(' ');
+            keyword(out, "ORDER BY");
+            out.append(' ');
+            for (int i = 0; i < window.getOrderBy().size(); i++) {
+                separate(out, i);
+                sort(out, window.getOrderBy().get(i));
+            }
+            empty = false;
+        }
+        WindowFrame frame = window.getFrame();
+        if (frame != null) {
+            if (!empty) out.append(' ');
+            keyword(out, frame.getUnits());
+            out.append(' ');
+            if (frame.getEnd() != null) {
+                keyword(out, "BETWEEN");
+                out.append(' ');
+                frameBound(out, frame.getStart(), frame.getStartOffset());
+                out.append(' ');
+                keyword(out, "AND");
+                out.append(' ');
+                frameBound(out, frame.getEnd(), frame.getEndOffset());
+            } else {
+                frameBound(out, frame.getStart(), frame.getStartOffset());
+            }
+        }
+        out.append(')');
+    }
+
+    private void frameBound(Appendable out, String bound, Expression offset) throws IOException {
+        if (offset != null) {
+            expression(out, offset, CONCAT_PRECEDENCE);
+            out.append(' ');
+        }
+        keyword(out, bound);
+    }
+
+    private void literal(Appendable out, Literal literal) throws IOException {
+        switch (literal.getKind()) {
+            case NUMBER, STRING -> out.append(options.isParameterizeLiterals() ? "?" : literal.getText());
+            case NULL -> keyword(out, "NULL");
+            case BOOLEAN -> keyword(out, literal.getText().equalsIgnoreCase("TRUE") ? "TRUE" : "FALSE");
+        }
+    }
+
+    /**
+     * The precedence of the operator at the root of an expression, as in the parser.
+     */
+    private static int precedence(Expression expression) {
+        if (expression instanceof BinaryExpression binary) {
+            return switch (binary.getOperator()) {
+                case "OR" -> OR_PRECEDENCE;
+                case "AND" -> AND_PRECEDENCE;
+                case "||" -> CONCAT_PRECEDENCE;
+                case "+", "-" -> ADDITIVE_PRECEDENCE;
+                case "*", "/", "%" -> MULTIPLICATIVE_PRECEDENCE;
+                default -> COMPARISON_PRECEDENCE;
+            };
+        }
+        if (expression instanceof UnaryExpression unary) {
+            return unary.getOperator().equals("NOT") ? NOT_PRECEDENCE : UNARY_PRECEDENCE;
+        }
+        if (expression instanceof InExpression || expression instanceof BetweenExpression || expression instanceof IsNullExpression) {
+            return COMPARISON_PRECEDENCE;
+        }
+        return PRIMARY_PRECEDENCE;
+    }
+
+    /**
+     * Writes a possibly qualified name part by part, each part quoted as written or as the options
+     * require. A name that is not a qualified name, e.g. one set by hand, is quoted as a single part.
+     */
+    private void name(Appendable out, String name) throws IOException {
+        if (!isQualifiedName(name)) {
+            quote(out, name, 0, name.length());
+            return;
+        }
+        int position = skipWhitespace(name, 0);
+        while (true) {
+            int end = partEnd(name, position);
+            char first = name.charAt(position);
+            if (first == '"' || first == '`' || options.getQuoting() == RenderOptions.Quoting.AS_NEEDED && isPlainName(name, position, end)) {
+                out.append(name, position, end);
+            } else {
+                quote(out, name, position, end);
+            }
+            position = skipWhitespace(name, end);
+            if (position == name.length()) {
+                return;
+            }
+            out.append('.');
+            position = skipWhitespace(name, position + 1);
+        }
+    }
+
+    private static void quote(Appendable out, String name, int start, int end) throws IOException {
+        out.append('"');
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static boolean isQualifiedName(String name) {
+        int position = skipWhitespace(name, 0);
+        while (true) {
+            int end = partEnd(name, position);
+            if (end < 0) {
+                return false;
+            }
+            position = skipWhitespace(name, end);
+            if (position == name.length()) {
+                return true;
+            }
+            if (name.charAt(position) != '.') {
+                return false;
+            }
+            position = skipWhitespace(name, position + 1);
+        }
+    }
+
+    /**
+     * The end of the quoted or unquoted name part at {@code start}, -1 if there is none.
+     */
+    private static int partEnd(String name, int start) {
+        if (start >= name.length()) {
+            return -1;
+        }
+        char quote = name.charAt(start);
+        if (quote == '"' || quote == '`') {
+            for (int i = start + 1; i < name.length(); i++) {
+                if (name.charAt(i) == quote) {
+                    if (i + 1 < name.length() && name.charAt(i + 1) == quote) {
+                        i++;
+                    } else {
+                        return i + 1;
+                    }
+                }
+            }
+            return -1;
+        }
+        int end = start;
+        while (end < name.length() && isIdentifierPart(name.charAt(end))) {
+            end++;
+        }
+        return end == start ? -1 : end;
+    }
+
+    /**
+     * Whether a name part parses unquoted: an identifier that is not a reserved keyword.
+     */
+    private static boolean isPlainName(String name, int start, int end) {
+        char first = name.charAt(start);
+        if (!(first == '_' || Character.isLetter(first))) {
+            return false;
+        }
+        Keyword keyword = Keyword.lookup(name, start, end);
+        return keyword == null || !keyword.isReserved();
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return c == '_' || c == '$' || Character.isLetterOrDigit(c);
+    }
+
+    private static int skipWhitespace(String name, int position) {
+        while (position < name.length() && Character.isWhitespace(name.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isWord(String operator) {
+        return Character.isLetter(operator.charAt(0));
+    }
+
+    /**
+     * Writes a keyword or keyword phrase given in upper case, in the case of the options.
+     */
+    private void keyword(Appendable out, String keyword) throws IOException {
+        if (!lowerCase) {
+            out.append(keyword);
+            return;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = keyword.charAt(i);
+            out.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+    }
+
+    private static void separate(Appendable out, int index) throws IOException {
+        if (index > 0) {
+            out.append(", ");
+        }
+    }
+}
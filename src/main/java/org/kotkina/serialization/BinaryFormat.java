@@ -0,0 +1,70 @@
+package org.kotkina.serialization;
+
+import org.kotkina.parser.ParserLimits;
+
+/**
+ * Constants of the binary query format shared by {@link QueryWriter} and {@link QueryReader}.
+ * <p>
+ * A stream starts with {@link #MAGIC} and a varint {@link #VERSION}, followed by one record per
+ * query. Integers are unsigned LEB128 varints. A string starts with a varint: 0 for {@code null}, odd for
+ * an index into the string table ({@code value >>> 1}), {@code length << 2 | 2} for a new string of
+ * {@code length} UTF-8 bytes, {@code (length + 1) << 2} for a new string of {@code length} chars,
+ * each a varint, used for strings holding unpaired surrogates. New strings are appended to the table
+ * while it has room. Nodes start with a
+ * tag, an expression already written in the same query is written as {@link #REFERENCE} and its
+ * index, so shared subtrees stay shared. Lists are written as their size plus one, 0 for {@code null}.
+ * <p>
+ * Version 2 added set operations, WITH queries, {@code SELECT DISTINCT}, CASE expressions and window
+ * functions. Version 3 added {@code NULLS FIRST}/{@code NULLS LAST} to the flags of sorts and the
+ * {@code USING} columns of joins. Streams of earlier versions are read as well.
+ */
+final class BinaryFormat {
+
+    static final byte[] MAGIC = {'S', 'Q', 'L', 'B'};
+    static final int VERSION = 3;
+
+    /**
+     * Queries and expressions nested in a record. A nesting level of the parser takes up to a query
+     * and an expression node, and operator chains nest one node per operator.
+     */
+    static final int MAX_DEPTH = 2 * ParserLimits.DEFAULT.getMaxNestingDepth() + ParserLimits.DEFAULT.getMaxOperators();
+
+    /** Strings kept per stream, later new strings are written inline every time. */
+    static final int MAX_STRINGS = 1 << 16;
+
+    static final int NULL = 0;
+
+    static final int UTF8 = 2;
+
+    static final int SELECT = 1;
+    static final int SET_OPERATION = 2;
+    static final int WITH = 3;
+
+    static final int REFERENCE = 1;
+    static final int COLUMN_REFERENCE = 2;
+    static final int ALL_COLUMNS = 3;
+    static final int LITERAL = 4;
+    static final int PARAMETER = 5;
+    static final int UNARY = 6;
+    static final int BINARY = 7;
+    static final int FUNCTION_CALL = 8;
+    static final int IN = 9;
+    static final int BETWEEN = 10;
+    static final int IS_NULL = 11;
+    static final int NESTED = 12;
+    static final int SUBQUERY = 13;
+    static final int EXISTS = 14;
+    static final int CASE = 15;
+    static final int WINDOW = 16;
+
+    static final int HAS_LIMIT = 1;
+    static final int HAS_OFFSET = 2;
+    static final int DISTINCT = 4;
+
+    static final int DESC = 1;
+    static final int NULLS_FIRST = 2;
+    static final int NULLS_LAST = 4;
+
+    private BinaryFormat() {
+    }
+}
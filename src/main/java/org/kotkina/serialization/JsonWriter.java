@@ -0,0 +1,574 @@
+package org.kotkina.serialization;
+
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.*;
+import org.kotkina.models.expression.*;
+import org.kotkina.stream.ParseResult;
+import org.kotkina.stream.Statement;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes parsed queries as JSON straight into an {@link Appendable}, one object per query, keys
+ * named after the model properties and {@code null} properties left out. Expressions are objects
+ * with a {@code "type"} property. Strings are escaped per RFC 8259, with U+2028, U+2029 and unpaired
+ * surrogates escaped as well. Clause expressions are left out when the query has the condition tree
+ * they are part of. Not thread-safe.
+ */
+public final class JsonWriter implements Flushable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Appendable out;
+    private final char[] digits = new char[11];
+
+    public JsonWriter(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes UTF-8 into a stream through a buffer, {@link #flush()} when done.
+     */
+    public JsonWriter(OutputStream out) {
+        this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    public static String toJson(Query query) {
+        StringBuilder json = new StringBuilder(256);
+        try {
+            new JsonWriter(json).write(query);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return json.toString();
+    }
+
+    public JsonWriter write(Query query) throws IOException {
+        query(query);
+        return this;
+    }
+
+    /**
+     * Writes {@code {"error":{...}}} with the message, clause, offset and expected token of the error.
+     */
+    public JsonWriter writeError(InvalidQueryException error) throws IOException {
+        out.append("{\"error\":");
+        error(error);
+        out.append('}');
+        return this;
+    }
+
+    /**
+     * Writes the outcome of a statement of a file as {@code {"file":...,"line":...,"column":...,"offset":...}}
+     * with a {@code "query"} or an {@code "error"} property, the error as in {@link #writeError}.
+     */
+    public JsonWriter write(String file, ParseResult result) throws IOException {
+        Statement statement = result.getStatement();
+        out.append("{\"file\":");
+        string(file);
+        key("line");
+        number(statement.getLine());
+        key("column");
+        number(statement.getColumn());
+        key("offset");
+        out.append(Long.toString(statement.getOffset()));
+        if (result.isSuccess()) {
+            key("query");
+            query(result.getQuery());
+        } else {
+            key("error");
+            error(result.getException());
+        }
+        out.append('}');
+        return this;
+    }
+
+    private void error(InvalidQueryException error) throws IOException {
+        out.append("{\"message\":");
+        string(error.getMessage());
+        property("clause", error.getClause(), false);
+        if (error.getOffset() >= 0) {
+            key("offset");
+            number(error.getOffset());
+        }
+        property("expected", error.getExpected(), false);
+        out.append('}');
+    }
+
+    private void query(Query query) throws IOException {
+        if (query == null) {
+            out.append("null");
+        } else if (query instanceof SelectQuery select) {
+            select(select);
+        } else if (query instanceof SetOperation operation) {
+            setOperation(operation);
+        } else if (query instanceof WithQuery with) {
+            with(with);
+        } else {
+            throw new IllegalArgumentException("Unsupported query type " + query.getClass().getName());
+        }
+    }
+
+    private void select(SelectQuery query) throws IOException {
+        out.append("{\"type\":\"select\"");
+        if (query.isDistinct()) {
+            out.append(",\"distinct\":true");
+        }
+        if (query.getColumns() != null) {
+            key("columns");
+            out.append('[');
+            for (int i = 0; i < query.getColumns().size(); i++) {
+                separate(i);
+                column(query.getColumns().get(i));
+            }
+            out.append(']');
+        }
+        if (query.getFromSources() != null) {
+            key("fromSources");
+            out.append('[');
+            for (int i = 0; i < query.getFromSources().size(); i++) {
+                separate(i);
+                source(query.getFromSources().get(i));
+            }
+            out.append(']');
+        }
+        if (query.getJoins() != null) {
+            key("joins");
+            out.append('[');
+            for (int i = 0; i < query.getJoins().size(); i++) {
+                separate(i);
+                join(query.getJoins().get(i));
+            }
+            out.append(']');
+        }
+        clauses("whereClauses", query.getWhereClauses(), query.getWhere());
+        expression("where", query.getWhere());
+        strings("groupByColumns", query.getGroupByColumns());
+        expressions("groupBy", query.getGroupBy());
+        clauses("havingClauses", query.getHavingClauses(), query.getHaving());
+        expression("having", query.getHaving());
+        sorts("sortColumns", query.getSortColumns());
+        if (query.hasLimit()) {
+            key("limit");
+            number(query.getLimitValue());
+        }
+        if (query.hasOffset()) {
+            key("offset");
+            number(query.getOffsetValue());
+        }
+        expression("limitParameter", query.getLimitParameter());
+        expression("offsetParameter", query.getOffsetParameter());
+        out.append('}');
+    }
+
+    private void setOperation(SetOperation operation) throws IOException {
+        out.append("{\"type\":\"setOperation\",\"operator\":");
+        string(operation.getOperator());
+        key("left");
+        query(operation.getLeft());
+        key("right");
+        query(operation.getRight());
+        sorts("sortColumns", operation.getSortColumns());
+        if (operation.getLimit() != null) {
+            key("limit");
+            number(operation.getLimit());
+        }
+        if (operation.getOffset() != null) {
+            key("offset");
+            number(operation.getOffset());
+        }
+        expression("limitParameter", operation.getLimitParameter());
+        expression("offsetParameter", operation.getOffsetParameter());
+        out.append('}');
+    }
+
+    private void with(WithQuery with) throws IOException {
+        out.append("{\"type\":\"with\"");
+        if (with.isRecursive()) {
+            out.append(",\"recursive\":true");
+        }
+        if (with.getTables() != null) {
+            key("tables");
+            out.append('[');
+            for (int i = 0; i < with.getTables().size(); i++) {
+                separate(i);
+                CommonTableExpression table = with.getTables().get(i);
+                if (table == null) {
+                    out.append("null");
+                    continue;
+                }
+                out.append("{\"name\":");
+                string(table.getName());
+                strings("columns", table.getColumns());
+                key("query");
+                query(table.getQuery());
+                out.append('}');
+            }
+            out.append(']');
+        }
+        key("query");
+        query(with.getQuery());
+        out.append('}');
+    }
+
+    private void column(Column column) throws IOException {
+        if (column == null) {
+            out.append("null");
+            return;
+        }
+        out.append('{');
+        boolean first = property("name", column.getName(), true);
+        first = property("alias", column.getAlias(), first);
+        if (column.getExpression() != null) {
+            comma(first);
+            out.append("\"expression\":");
+            expression(column.getExpression());
+        }
+        out.append('}');
+    }
+
+    private void source(Source source) throws IOException {
+        if (source == null) {
+            out.append("null");
+            return;
+        }
+        out.append('{');
+        boolean first = property("table", source.getTable(), true);
+        first = property("alias", source.getAlias(), first);
+        if (source.getSubquery() != null) {
+            comma(first);
+            out.append("\"subquery\":");
+            query(source.getSubquery());
+        }
+        out.append('}');
+    }
+
+    private void join(Join join) throws IOException {
+        if (join == null) {
+            out.append("null");
+            return;
+        }
+        out.append("{\"type\":");
+        string(join.getType());
+        key("source");
+        source(join.getSource());
+        clauses("conditions", join.getConditions(), join.getCondition());
+        expression("condition", join.getCondition());
+        strings("using", join.getUsing());
+        out.append('}');
+    }
+
+    /**
+     * Writes the clauses of a condition, with their expressions only for a query built without the
+     * tree: the expressions are subtrees of the tree, and nested conditions would repeat them.
+     */
+    private void clauses(String name, List<Clause> clauses, Expression condition) throws IOException {
+        if (clauses == null) {
+            return;
+        }
+        key(name);
+        out.append('[');
+        for (int i = 0; i < clauses.size(); i++) {
+            separate(i);
+            Clause clause = clauses.get(i);
+            if (clause == null) {
+                out.append("null");
+                continue;
+            }
+            out.append('{');
+            boolean first = property("condition", clause.getCondition(), true);
+            first = property("operator", clause.getOperator(), first);
+            if (condition == null && clause.getExpression() != null) {
+                comma(first);
+                out.append("\"expression\":");
+                expression(clause.getExpression());
+            }
+            out.append('}');
+        }
+        out.append(']');
+    }
+
+    private void sorts(String name, List<Sort> sorts) throws IOException {
+        if (sorts == null) {
+            return;
+        }
+        key(name);
+        out.append('[');
+        for (int i = 0; i < sorts.size(); i++) {
+            separate(i);
+            sort(sorts.get(i));
+        }
+        out.append(']');
+    }
+
+    private void strings(String name, List<String> strings) throws IOException {
+        if (strings == null) {
+            return;
+        }
+        key(name);
+        out.append('[');
+        for (int i = 0; i < strings.size(); i++) {
+            separate(i);
+            string(strings.get(i));
+        }
+        out.append(']');
+    }
+
+    private void sort(Sort sort) throws IOException {
+        if (sort == null) {
+            out.append("null");
+            return;
+        }
+        out.append('{');
+        boolean first = property("expression", sort.getExpression(), true);
+        comma(first);
+        out.append("\"desc\":").append(sort.isDesc() ? "true" : "false");
+        property("nulls", sort.getNulls(), false);
+        expression("key", sort.getKey());
+        out.append('}');
+    }
+
+    private void expressions(String name, List<Expression> expressions) throws IOException {
+        if (expressions != null) {
+            key(name);
+            expressions(expressions);
+        }
+    }
+
+    private void expressions(List<Expression> expressions) throws IOException {
+        out.append('[');
+        for (int i = 0; i < expressions.size(); i++) {
+            separate(i);
+            expression(expressions.get(i));
+        }
+        out.append(']');
+    }
+
+    /**
+     * A property of an object already holding the {@code "type"} or another property.
+     */
+    private void expression(String name, Expression expression) throws IOException {
+        if (expression != null) {
+            key(name);
+            expression(expression);
+        }
+    }
+
+    private void expression(Expression expression) throws IOException {
+        if (expression == null) {
+            out.append("null");
+            return;
+        }
+        out.append("{\"type\":");
+        if (expression instanceof ColumnReference column) {
+            out.append("\"column\"");
+            property("qualifier", column.getQualifier(), false);
+            property("name", column.getName(), false);
+        } else if (expression instanceof AllColumns all) {
+            out.append("\"allColumns\"");
+            property("qualifier", all.getQualifier(), false);
+        } else if (expression instanceof Literal literal) {
+            out.append("\"literal\"");
+            property("kind", literal.getKind().name(), false);
+            property("text", literal.getText(), false);
+        } else if (expression instanceof Parameter parameter) {
+            out.append("\"parameter\"");
+            key("index");
+            number(parameter.getIndex());
+        } else if (expression instanceof UnaryExpression unary) {
+            out.append("\"unary\"");
+            property("operator", unary.getOperator(), false);
+            expression("operand", unary.getOperand());
+        } else if (expression instanceof BinaryExpression binary) {
+            out.append("\"binary\"");
+            property("operator", binary.getOperator(), false);
+            expression("left", binary.getLeft());
+            expression("right", binary.getRight());
+        } else if (expression instanceof FunctionCall function) {
+            out.append("\"function\"");
+            property("name", function.getName(), false);
+            if (function.isDistinct()) {
+                out.append(",\"distinct\":true");
+            }
+            expressions("arguments", function.getArguments());
+        } else if (expression instanceof InExpression in) {
+            out.append("\"in\"");
+            not(in.isNot());
+            expression("expression", in.getExpression());
+            expressions("values", in.getValues());
+        } else if (expression instanceof BetweenExpression between) {
+            out.append("\"between\"");
+            not(between.isNot());
+            expression("expression", between.getExpression());
+            expression("lower", between.getLower());
+            expression("upper", between.getUpper());
+        } else if (expression instanceof IsNullExpression isNull) {
+            out.append("\"isNull\"");
+            not(isNull.isNot());
+            expression("expression", isNull.getExpression());
+        } else if (expression instanceof NestedExpression nested) {
+            out.append("\"nested\"");
+            expression("expression", nested.getExpression());
+        } else if (expression instanceof SubqueryExpression subquery) {
+            out.append("\"subquery\"");
+            key("query");
+            query(subquery.getQuery());
+        } else if (expression instanceof ExistsExpression exists) {
+            out.append("\"exists\"");
+            key("query");
+            query(exists.getQuery());
+        } else if (expression instanceof CaseExpression caseExpression) {
+            out.append("\"case\"");
+            expression("operand", caseExpression.getOperand());
+            if (caseExpression.getWhenClauses() != null) {
+                key("whenClauses");
+                out.append('[');
+                for (int i = 0; i < caseExpression.getWhenClauses().size(); i++) {
+                    separate(i);
+                    WhenClause when = caseExpression.getWhenClauses().get(i);
+                    if (when == null) {
+                        out.append("null");
+                        continue;
+                    }
+                    out.append("{\"condition\":");
+                    expression(when.getCondition());
+                    key("result");
+                    expression(when.getResult());
+                    out.append('}');
+                }
+                out.append(']');
+            }
+            expression("elseResult", caseExpression.getElseResult());
+        } else if (expression instanceof WindowFunction window) {
+            out.append("\"window\"");
+            expression("function", window.getFunction());
+            expressions("partitionBy", window.getPartitionBy());
+            sorts("orderBy", window.getOrderBy());
+            WindowFrame frame = window.getFrame();
+            if (frame != null) {
+                key("frame");
+                out.append("{\"units\":");
+                string(frame.getUnits());
+                property("start", frame.getStart(), false);
+                expression("startOffset", frame.getStartOffset());
+                property("end", frame.getEnd(), false);
+                expression("endOffset", frame.getEndOffset());
+                out.append('}');
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported expression type " + expression.getClass().getName());
+        }
+        out.append('}');
+    }
+
+    private void not(boolean not) throws IOException {
+        if (not) {
+            out.append(",\"not\":true");
+        }
+    }
+
+    /**
+     * Writes a string property unless the value is {@code null}, returns whether the object is still empty.
+     */
+    private boolean property(String name, String value, boolean first) throws IOException {
+        if (value == null) {
+            return first;
+        }
+        comma(first);
+        out.append('"').append(name).append("\":");
+        string(value);
+        return false;
+    }
+
+    private void key(String name) throws IOException {
+        out.append(",\"").append(name).append("\":");
+    }
+
+    private void comma(boolean first) throws IOException {
+        if (!first) {
+            out.append(',');
+        }
+    }
+
+    private void separate(int index) throws IOException {
+        if (index > 0) {
+            out.append(',');
+        }
+    }
+
+    private void number(int value) throws IOException {
+        if (value < 0) {
+            out.append('-');
+        }
+        int position = digits.length;
+        long rest = Math.abs((long) value);
+        do {
+            digits[--position] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        for (int i = position; i < digits.length; i++) {
+            out.append(digits[i]);
+        }
+    }
+
+    /**
+     * Appends a quoted string, copying the runs that need no escaping in one call.
+     */
+    private void string(CharSequence value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        int run = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                if (c < 0x2028) {
+                    continue;
+                }
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    i++;
+                    continue;
+                }
+                if (c != 0x2028 && c != 0x2029 && !Character.isSurrogate(c)) {
+                    continue;
+                }
+            }
+            out.append(value, run, i);
+            escape(c);
+            run = i + 1;
+        }
+        out.append(value, run, length).append('"');
+    }
+
+    private void escape(char c) throws IOException {
+        switch (c) {
+            case '"' -> out.append("\\\"");
+            case '\\' -> out.append("\\\\");
+            case '\n' -> out.append("\\n");
+            case '\r' -> out.append("\\r");
+            case '\t' -> out.append("\\t");
+            case '\b' -> out.append("\\b");
+            case '\f' -> out.append("\\f");
+            default -> out.append("\\u")
+                    .append(HEX[c >> 12 & 0xF]).append(HEX[c >> 8 & 0xF])
+                    .append(HEX[c >> 4 & 0xF]).append(HEX[c & 0xF]);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out instanceof Flushable flushable) {
+            flushable.flush();
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package org.kotkina.serialization;
+
+import org.kotkina.models.*;
+import org.kotkina.models.expression.*;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.kotkina.serialization.BinaryFormat.*;
+
+/**
+ * Reads the queries written by {@link QueryWriter}, in order from the start of the stream. The texts
+ * of the queries read are strings, repeated ones are shared. Records nested deeper than the parser
+ * builds with its default limits are rejected. Not thread-safe.
+ */
+public final class QueryReader implements Closeable {
+
+    private static final Literal.Kind[] KINDS = Literal.Kind.values();
+    private static final int MAX_BUFFER = Integer.MAX_VALUE - 8;
+
+    private final InputStream in;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean started;
+    private int version;
+    private int depth;
+    private final List<String> strings = new ArrayList<>();
+    private final List<Expression> expressions = new ArrayList<>();
+
+    public QueryReader(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[8192];
+    }
+
+    /**
+     * Reads the queries of a byte range in place, the bytes must not change while reading.
+     */
+    public QueryReader(byte[] bytes, int offset, int length) {
+        this.in = null;
+        this.buffer = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    public static Query fromBytes(byte[] bytes) {
+        try (QueryReader reader = new QueryReader(bytes, 0, bytes.length)) {
+            Query query = reader.read();
+            if (query == null) {
+                throw new EOFException("No query in the input");
+            }
+            return query;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * The next query of the stream, {@code null} at its end.
+     *
+     * @throws IOException if the stream is not in the binary format or this version of it
+     */
+    public Query read() throws IOException {
+        if (!started) {
+            readHeader();
+            started = true;
+        }
+        if (position == limit && !fill()) {
+            return null;
+        }
+        expressions.clear();
+        depth = 0;
+        Query query = readQuery();
+        if (query == null) {
+            throw new IOException("Unexpected null query record");
+        }
+        return query;
+    }
+
+    private void readHeader() throws IOException {
+        for (byte b : MAGIC) {
+            if (readByte() != b) {
+                throw new IOException("Not a binary query stream");
+            }
+        }
+        version = readVarint();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+    }
+
+    private Query readQuery() throws IOException {
+        enter();
+        int tag = readVarint();
+        Query query = switch (tag) {
+            case NULL -> null;
+            case SELECT -> readSelect();
+            case SET_OPERATION -> readSetOperation();
+            case WITH -> {
+                boolean recursive = readVarint() != 0;
+                int size = readSize();
+                List<CommonTableExpression> tables = null;
+                if (size >= 0) {
+                    CommonTableExpression[] items = new CommonTableExpression[size];
+                    for (int i = 0; i < items.length; i++) {
+                        items[i] = readVarint() == NULL ? null : new CommonTableExpression(readString(), readStrings(), readQuery());
+                    }
+                    tables = list(items);
+                }
+                yield new WithQuery(recursive, tables, readQuery());
+            }
+            default -> throw new IOException("Unknown query tag " + tag);
+        };
+        depth--;
+        return query;
+    }
+
+    private SelectQuery readSelect() throws IOException {
+        SelectQuery.SelectQueryBuilder builder = SelectQuery.builder();
+        int flags = readVarint();
+        builder.distinct((flags & DISTINCT) != 0);
+        if ((flags & HAS_LIMIT) != 0) {
+            builder.limit(readVarint());
+        }
+        if ((flags & HAS_OFFSET) != 0) {
+            builder.offset(readVarint());
+        }
+        builder.limitParameter(readParameter());
+        builder.offsetParameter(readParameter());
+
+        int size = readSize();
+        if (size >= 0) {
+            Column[] columns = new Column[size];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = readColumn();
+            }
+            builder.columns(list(columns));
+        }
+        size = readSize();
+        if (size >= 0) {
+            Source[] sources = new Source[size];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = readSource();
+            }
+            builder.fromSources(list(sources));
+        }
+        size = readSize();
+        if (size >= 0) {
+            Join[] joins = new Join[size];
+            for (int i = 0; i < joins.length; i++) {
+                joins[i] = readJoin();
+            }
+            builder.joins(list(joins));
+        }
+        builder.whereClauses(readClauses());
+        builder.where(readExpression());
+        builder.groupByColumns(readStrings());
+        builder.groupBy(readExpressions());
+        builder.havingClauses(readClauses());
+        builder.having(readExpression());
+        builder.sortColumns(readSorts());
+        return builder.build();
+    }
+
+    private SetOperation readSetOperation() throws IOException {
+        SetOperation.SetOperationBuilder builder = SetOperation.builder();
+        int flags = readVarint();
+        if ((flags & HAS_LIMIT) != 0) {
+            builder.limit(readVarint());
+        }
+        if ((flags & HAS_OFFSET) != 0) {
+            builder.offset(readVarint());
+        }
+        builder.limitParameter(readParameter());
+        builder.offsetParameter(readParameter());
+        builder.operator(readString());
+        builder.left(readQuery());
+        builder.right(readQuery());
+        builder.sortColumns(readSorts());
+        return builder.build();
+    }
+
+    private List<String> readStrings() throws IOException {
+        int size = readSize();
+        if (size < 0) {
+            return null;
+        }
+        String[] strings = new String[size];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString();
+        }
+        return list(strings);
+    }
+
+    private List<Sort> readSorts() throws IOException {
+        int size = readSize();
+        if (size < 0) {
+            return null;
+        }
+        Sort[] sorts = new Sort[size];
+        for (int i = 0; i < sorts.length; i++) {
+            sorts[i] = readSort();
+        }
+        return list(sorts);
+    }
+
+    private Column readColumn() throws IOException {
+        return readVarint() == NULL ? null : new Column(readString(), readString(), readExpression());
+    }
+
+    private Source readSource() throws IOException {
+        return readVarint() == NULL ? null : new Source(readString(), readString(), readQuery());
+    }
+
+    private Join readJoin() throws IOException {
+        if (readVarint() == NULL) {
+            return null;
+        }
+        String type = readString();
+        Source source = readSource();
+        List<Clause> conditions = readClauses();
+        Expression condition = readExpression();
+        return new Join(type, source, conditions, condition, version < 3 ? null : readStrings());
+    }
+
+    private List<Clause> readClauses() throws IOException {
+        int size = readSize();
+        if (size < 0) {
+            return null;
+        }
+        Clause[] clauses = new Clause[size];
+        for (int i = 0; i < clauses.length; i++) {
+            clauses[i] = readVarint() == NULL ? null : new Clause(readString(), readString(), readExpression());
+        }
+        return list(clauses);
+    }
+
+    private Sort readSort() throws IOException {
+        if (readVarint() == NULL) {
+            return null;
+        }
+        String expression = readString();
+        int flags = readVarint();
+        String nulls = (flags & NULLS_FIRST) != 0 ? "FIRST" : (flags & NULLS_LAST) != 0 ? "LAST" : null;
+        return new Sort(expression, (flags & DESC) != 0, readExpression(), nulls);
+    }
+
+    private List<Expression> readExpressions() throws IOException {
+        int size = readSize();
+        if (size < 0) {
+            return null;
+        }
+        Expression[] items = new Expression[size];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = readExpression();
+        }
+        return list(items);
+    }
+
+    private Parameter readParameter() throws IOException {
+        Expression expression = readExpression();
+        if (expression == null || expression instanceof Parameter) {
+            return (Parameter) expression;
+        }
+        throw new IOException("Expected a parameter, found " + expression.getClass().getSimpleName());
+    }
+
+    private Expression readExpression() throws IOException {
+        enter();
+        int tag = readVarint();
+        Expression expression = switch (tag) {
+            case NULL -> null;
+            case REFERENCE -> {
+                int index = readVarint();
+                if (index >= expressions.size()) {
+                    throw new IOException("Unknown expression reference " + index);
+                }
+                yield expressions.get(index);
+            }
+            case COLUMN_REFERENCE -> new ColumnReference(readString(), readString());
+            case ALL_COLUMNS -> new AllColumns(readString());
+            case LITERAL -> new Literal(readKind(), readString());
+            case PARAMETER -> new Parameter(readVarint());
+            case UNARY -> new UnaryExpression(readString(), readExpression());
+            case BINARY -> new BinaryExpression(readString(), readExpression(), readExpression());
+            case FUNCTION_CALL -> {
+                String name = readString();
+                boolean distinct = readVarint() != 0;
+                yield new FunctionCall(name, readExpressions(), distinct);
+            }
+            case IN -> {
+                boolean not = readVarint() != 0;
+                yield new InExpression(readExpression(), readExpressions(), not);
+            }
+            case BETWEEN -> {
+                boolean not = readVarint() != 0;
+                yield new BetweenExpression(readExpression(), readExpression(), readExpression(), not);
+            }
+            case IS_NULL -> {
+                boolean not = readVarint() != 0;
+                yield new IsNullExpression(readExpression(), not);
+            }
+            case NESTED -> new NestedExpression(readExpression());
+            case SUBQUERY -> new SubqueryExpression(readQuery());
+            case EXISTS -> new ExistsExpression(readQuery());
+            case CASE -> {
+                Expression operand = readExpression();
+                int size = readSize();
+                List<WhenClause> whenClauses = null;
+                if (size >= 0) {
+                    WhenClause[] items = new WhenClause[size];
+                    for (int i = 0; i < items.length; i++) {
+                        items[i] = readVarint() == NULL ? null : new WhenClause(readExpression(), readExpression());
+                    }
+                    whenClauses = list(items);
+                }
+                yield new CaseExpression(operand, whenClauses, readExpression());
+            }
+            case WINDOW -> {
+                Expression function = readExpression();
+                if (function != null && !(function instanceof FunctionCall)) {
+                    throw new IOException("Expected a function call, found " + function.getClass().getSimpleName());
+                }
+                List<Expression> partitionBy = readExpressions();
+                List<Sort> orderBy = readSorts();
+                WindowFrame frame = readVarint() == NULL ? null
+                        : new WindowFrame(readString(), readString(), readExpression(), readString(), readExpression());
+                yield new WindowFunction((FunctionCall) function, partitionBy, orderBy, frame);
+            }
+            default -> throw new IOException("Unknown expression tag " + tag);
+        };
+        if (tag != NULL && tag != REFERENCE) {
+            expressions.add(expression);
+        }
+        depth--;
+        return expression;
+    }
+
+    /**
+     * Enters a query or an expression node, so input nested deeper than the parser builds fails
+     * instead of overflowing the stack.
+     */
+    private void enter() throws IOException {
+        if (++depth > MAX_DEPTH) {
+            throw new IOException("Nodes nested deeper than " + MAX_DEPTH);
+        }
+    }
+
+    private Literal.Kind readKind() throws IOException {
+        int ordinal = readVarint();
+        if (ordinal >= KINDS.length) {
+            throw new IOException("Unknown literal kind " + ordinal);
+        }
+        return KINDS[ordinal];
+    }
+
+    private String readString() throws IOException {
+        int value = readVarint();
+        if (value == NULL) {
+            return null;
+        }
+        if ((value & 1) != 0) {
+            int index = value >>> 1;
+            if (index >= strings.size()) {
+                throw new IOException("Unknown string reference " + index);
+            }
+            return strings.get(index);
+        }
+
+        String string;
+        if ((value & UTF8) != 0) {
+            string = readUtf8(value >>> 2);
+        } else {
+            int length = (value >>> 2) - 1;
+            require(length);
+            char[] chars = new char[length];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) readVarint();
+            }
+            string = new String(chars);
+        }
+        if (strings.size() < MAX_STRINGS) {
+            strings.add(string);
+        }
+        return string;
+    }
+
+    private String readUtf8(int length) throws IOException {
+        require(length);
+        String string = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return string;
+    }
+
+    /**
+     * Reads the size of a list, {@code -1} for {@code null}. Every item takes at least a byte, so the
+     * size is checked against the bytes left before an array of that size is allocated.
+     */
+    private int readSize() throws IOException {
+        int size = readVarint();
+        if (size == NULL) {
+            return -1;
+        }
+        require(size - 1);
+        return size - 1;
+    }
+
+    /**
+     * Makes sure that {@code count} bytes are left, reading them into the buffer from a stream. The
+     * buffer grows with the bytes actually read, not with the count.
+     */
+    private void require(int count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Malformed size " + count);
+        }
+        if (limit - position >= count) {
+            return;
+        }
+        if (in == null || count > MAX_BUFFER) {
+            throw new EOFException("Size " + count + " exceeds the remaining input");
+        }
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+        while (limit < count) {
+            if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(2L * buffer.length, MAX_BUFFER));
+            }
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                throw new EOFException("Size " + count + " exceeds the remaining input");
+            }
+            limit += read;
+        }
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private int readByte() throws IOException {
+        if (position == limit && !fill()) {
+            throw new EOFException();
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private static <T> List<T> list(T[] items) {
+        return Collections.unmodifiableList(Arrays.asList(items));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package org.kotkina.serialization;
+
+import org.kotkina.models.*;
+import org.kotkina.models.expression.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.kotkina.serialization.BinaryFormat.*;
+
+/**
+ * Writes parsed queries in the binary format of {@link BinaryFormat}, read back by {@link QueryReader}.
+ * The header is written before the first query, the string table is shared by all the queries of
+ * the stream. Not thread-safe.
+ */
+public final class QueryWriter implements Closeable, Flushable {
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private boolean started;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<Expression, Integer> expressions = new IdentityHashMap<>();
+
+    public QueryWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public static byte[] toBytes(Query query) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (QueryWriter writer = new QueryWriter(bytes)) {
+            writer.write(query);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    public QueryWriter write(Query query) throws IOException {
+        if (!started) {
+            for (byte b : MAGIC) {
+                writeByte(b);
+            }
+            writeVarint(VERSION);
+            started = true;
+        }
+        expressions.clear();
+        writeQuery(query);
+        return this;
+    }
+
+    private void writeQuery(Query query) throws IOException {
+        if (query == null) {
+            writeVarint(NULL);
+        } else if (query instanceof SelectQuery select) {
+            writeVarint(SELECT);
+            writeSelect(select);
+        } else if (query instanceof SetOperation operation) {
+            writeVarint(SET_OPERATION);
+            writeSetOperation(operation);
+        } else if (query instanceof WithQuery with) {
+            writeVarint(WITH);
+            writeVarint(with.isRecursive() ? 1 : 0);
+            List<CommonTableExpression> tables = with.getTables();
+            if (writeSize(tables)) {
+                for (CommonTableExpression table : tables) {
+                    if (writePresence(table)) {
+                        writeString(table.getName());
+                        writeStrings(table.getColumns());
+                        writeQuery(table.getQuery());
+                    }
+                }
+            }
+            writeQuery(with.getQuery());
+        } else {
+            throw new IllegalArgumentException("Unsupported query type " + query.getClass().getName());
+        }
+    }
+
+    private void writeSelect(SelectQuery query) throws IOException {
+        writeVarint((query.hasLimit() ? HAS_LIMIT : 0) | (query.hasOffset() ? HAS_OFFSET : 0) | (query.isDistinct() ? DISTINCT : 0));
+        if (query.hasLimit()) {
+            writeVarint(query.getLimitValue());
+        }
+        if (query.hasOffset()) {
+            writeVarint(query.getOffsetValue());
+        }
+        writeExpression(query.getLimitParameter());
+        writeExpression(query.getOffsetParameter());
+
+        List<Column> columns = query.getColumns();
+        if (writeSize(columns)) {
+            for (Column column : columns) {
+                writeColumn(column);
+            }
+        }
+        List<Source> sources = query.getFromSources();
+        if (writeSize(sources)) {
+            for (Source source : sources) {
+                writeSource(source);
+            }
+        }
+        List<Join> joins = query.getJoins();
+        if (writeSize(joins)) {
+            for (Join join : joins) {
+                writeJoin(join);
+            }
+        }
+        writeClauses(query.getWhereClauses());
+        writeExpression(query.getWhere());
+        writeStrings(query.getGroupByColumns());
+        writeExpressions(query.getGroupBy());
+        writeClauses(query.getHavingClauses());
+        writeExpression(query.getHaving());
+        writeSorts(query.getSortColumns());
+    }
+
+    private void writeSetOperation(SetOperation operation) throws IOException {
+        writeVarint((operation.getLimit() != null ? HAS_LIMIT : 0) | (operation.getOffset() != null ? HAS_OFFSET : 0));
+        if (operation.getLimit() != null) {
+            writeVarint(operation.getLimit());
+        }
+        if (operation.getOffset() != null) {
+            writeVarint(operation.getOffset());
+        }
+        writeExpression(operation.getLimitParameter());
+        writeExpression(operation.getOffsetParameter());
+        writeString(operation.getOperator());
+        writeQuery(operation.getLeft());
+        writeQuery(operation.getRight());
+        writeSorts(operation.getSortColumns());
+    }
+
+    private void writeColumn(Column column) throws IOException {
+        if (writePresence(column)) {
+            writeString(column.getName());
+            writeString(column.getAlias());
+            writeExpression(column.getExpression());
+        }
+    }
+
+    private void writeSource(Source source) throws IOException {
+        if (writePresence(source)) {
+            writeString(source.getTable());
+            writeString(source.getAlias());
+            writeQuery(source.getSubquery());
+        }
+    }
+
+    private void writeJoin(Join join) throws IOException {
+        if (writePresence(join)) {
+            writeString(join.getType());
+            writeSource(join.getSource());
+            writeClauses(join.getConditions());
+            writeExpression(join.getCondition());
+            writeStrings(join.getUsing());
+        }
+    }
+
+    private void writeClauses(List<Clause> clauses) throws IOException {
+        if (writeSize(clauses)) {
+            for (Clause clause : clauses) {
+                if (writePresence(clause)) {
+                    writeString(clause.getCondition());
+                    writeString(clause.getOperator());
+                    writeExpression(clause.getExpression());
+                }
+            }
+        }
+    }
+
+    private void writeSorts(List<Sort> sorts) throws IOException {
+        if (writeSize(sorts)) {
+            for (Sort sort : sorts) {
+                writeSort(sort);
+            }
+        }
+    }
+
+    private void writeStrings(List<String> strings) throws IOException {
+        if (writeSize(strings)) {
+            for (String string : strings) {
+                writeString(string);
+            }
+        }
+    }
+
+    private void writeSort(Sort sort) throws IOException {
+        if (writePresence(sort)) {
+            writeString(sort.getExpression());
+            writeVarint((sort.isDesc() ? DESC : 0)
+                    | ("FIRST".equals(sort.getNulls()) ? NULLS_FIRST : "LAST".equals(sort.getNulls()) ? NULLS_LAST : 0));
+            writeExpression(sort.getKey());
+        }
+    }
+
+    private void writeExpressions(List<Expression> expressions) throws IOException {
+        if (writeSize(expressions)) {
+            for (Expression expression : expressions) {
+                writeExpression(expression);
+            }
+        }
+    }
+
+    private void writeExpression(Expression expression) throws IOException {
+        if (expression == null) {
+            writeVarint(NULL);
+            return;
+        }
+        Integer reference = expressions.get(expression);
+        if (reference != null) {
+            writeVarint(REFERENCE);
+            writeVarint(reference);
+            return;
+        }
+
+        if (expression instanceof ColumnReference column) {
+            writeVarint(COLUMN_REFERENCE);
+            writeString(column.getQualifier());
+            writeString(column.getName());
+        } else if (expression instanceof AllColumns all) {
+            writeVarint(ALL_COLUMNS);
+            writeString(all.getQualifier());
+        } else if (expression instanceof Literal literal) {
+            writeVarint(LITERAL);
+            writeVarint(literal.getKind().ordinal());
+            writeString(literal.getText());
+        } else if (expression instanceof Parameter parameter) {
+            writeVarint(PARAMETER);
+            writeVarint(parameter.getIndex());
+        } else if (expression instanceof UnaryExpression unary) {
+            writeVarint(UNARY);
+            writeString(unary.getOperator());
+            writeExpression(unary.getOperand());
+        } else if (expression instanceof BinaryExpression binary) {
+            writeVarint(BINARY);
+            writeString(binary.getOperator());
+            writeExpression(binary.getLeft());
+            writeExpression(binary.getRight());
+        } else if (expression instanceof FunctionCall function) {
+            writeVarint(FUNCTION_CALL);
+            writeString(function.getName());
+            writeVarint(function.isDistinct() ? 1 : 0);
+            writeExpressions(function.getArguments());
+        } else if (expression instanceof InExpression in) {
+            writeVarint(IN);
+            writeVarint(in.isNot() ? 1 : 0);
+            writeExpression(in.getExpression());
+            writeExpressions(in.getValues());
+        } else if (expression instanceof BetweenExpression between) {
+            writeVarint(BETWEEN);
+            writeVarint(between.isNot() ? 1 : 0);
+            writeExpression(between.getExpression());
+            writeExpression(between.getLower());
+            writeExpression(between.getUpper());
+        } else if (expression instanceof IsNullExpression isNull) {
+            writeVarint(IS_NULL);
+            writeVarint(isNull.isNot() ? 1 : 0);
+            writeExpression(isNull.getExpression());
+        } else if (expression instanceof NestedExpression nested) {
+            writeVarint(NESTED);
+            writeExpression(nested.getExpression());
+        } else if (expression instanceof SubqueryExpression subquery) {
+            writeVarint(SUBQUERY);
+            writeQuery(subquery.getQuery());
+        } else if (expression instanceof ExistsExpression exists) {
+            writeVarint(EXISTS);
+            writeQuery(exists.getQuery());
+        } else if (expression instanceof CaseExpression caseExpression) {
+            writeVarint(CASE);
+            writeExpression(caseExpression.getOperand());
+            List<WhenClause> whenClauses = caseExpression.getWhenClauses();
+            if (writeSize(whenClauses)) {
+                for (WhenClause when : whenClauses) {
+                    if (writePresence(when)) {
+                        writeExpression(when.getCondition());
+                        writeExpression(when.getResult());
+                    }
+                }
+            }
+            writeExpression(caseExpression.getElseResult());
+        } else if (expression instanceof WindowFunction window) {
+            writeVarint(WINDOW);
+            writeExpression(window.getFunction());
+            writeExpressions(window.getPartitionBy());
+            writeSorts(window.getOrderBy());
+            WindowFrame frame = window.getFrame();
+            if (writePresence(frame)) {
+                writeString(frame.getUnits());
+                writeString(frame.getStart());
+                writeExpression(frame.getStartOffset());
+                writeString(frame.getEnd());
+                writeExpression(frame.getEndOffset());
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported expression type " + expression.getClass().getName());
+        }
+        expressions.put(expression, expressions.size());
+    }
+
+    private boolean writePresence(Object item) throws IOException {
+        writeVarint(item == null ? NULL : 1);
+        return item != null;
+    }
+
+    private boolean writeSize(List<?> items) throws IOException {
+        writeVarint(items == null ? NULL : items.size() + 1);
+        return items != null;
+    }
+
+    private void writeString(String string) throws IOException {
+        if (string == null) {
+            writeVarint(NULL);
+            return;
+        }
+        Integer index = strings.get(string);
+        if (index != null) {
+            writeVarint(index << 1 | 1);
+            return;
+        }
+        if (strings.size() < MAX_STRINGS) {
+            strings.put(string, strings.size());
+        }
+
+        int length = utf8Length(string);
+        if (length < 0) {
+            writeVarint((string.length() + 1) << 2);
+            for (int i = 0; i < string.length(); i++) {
+                writeVarint(string.charAt(i));
+            }
+            return;
+        }
+        writeVarint(length << 2 | UTF8);
+        for (int i = 0; i < string.length(); i++) {
+            if (position + 4 > buffer.length) {
+                drain();
+            }
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c)) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    /**
+     * The UTF-8 length of a string, -1 if it holds an unpaired surrogate.
+     */
+    private static int utf8Length(String string) {
+        int length = string.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                bytes++;
+            } else if (!Character.isSurrogate(c)) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                bytes += 2;
+                i++;
+            } else {
+                return -1;
+            }
+        }
+        return bytes;
+    }
+
+    private void writeVarint(int value) throws IOException {
+        if (position + 5 > buffer.length) {
+            drain();
+        }
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeByte(int value) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+}
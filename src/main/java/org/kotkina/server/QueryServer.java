@@ -0,0 +1,355 @@
+package org.kotkina.server;
+
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.Query;
+import org.kotkina.serialization.JsonWriter;
+import org.kotkina.serialization.QueryWriter;
+import org.kotkina.services.ParseExecutors;
+import org.kotkina.services.QueryService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Serves parse requests over TCP or a Unix domain socket, see {@link ServerOptions} for the protocol.
+ * Each connection has a reader and a writer thread, virtual where the runtime supports them. The
+ * reader reads statements ahead into a queue of {@link ServerOptions#getMaxInFlight()} entries and
+ * the writer parses them and writes the responses in order, flushing when the queue is empty so
+ * pipelined responses share writes. A full queue stops the reading, so a client that sends faster
+ * than it reads is held back by the transport flow control. The statements queued over all
+ * connections are bounded by {@link ServerOptions#getMaxServerInFlight()} as well, so apart from
+ * the one statement a reader may hold while it waits for a permit, the memory they take does not
+ * depend on the number of connections.
+ */
+public final class QueryServer implements Closeable {
+
+    private static final byte[] END = new byte[0];
+    private static final byte[] TOO_LONG = new byte[0];
+    private static final byte OK = 0;
+    private static final byte ERROR = 1;
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1000;
+
+    private final ServerSocketChannel server;
+    private final QueryService queryService;
+    private final ServerOptions options;
+    private final ExecutorService threads = ParseExecutors.threadPerTask();
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final Semaphore inFlight;
+    private volatile boolean closed;
+
+    private QueryServer(ServerSocketChannel server, QueryService queryService, ServerOptions options) {
+        this.server = server;
+        this.queryService = queryService;
+        this.options = options;
+        this.inFlight = new Semaphore(options.getMaxServerInFlight());
+    }
+
+    /**
+     * Binds the address, an {@link java.net.InetSocketAddress} or a {@link UnixDomainSocketAddress}
+     * whose file must not exist, and accepts connections until closed.
+     */
+    public static QueryServer start(SocketAddress address, QueryService queryService, ServerOptions options) throws IOException {
+        if (options.getMaxInFlight() < 1 || options.getMaxServerInFlight() < 1) {
+            throw new IllegalArgumentException("The in-flight limits must be positive");
+        }
+        ServerSocketChannel server = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        try {
+            server.bind(address);
+        } catch (IOException ex) {
+            server.close();
+            throw ex;
+        }
+        QueryServer queryServer = new QueryServer(server, queryService, options);
+        queryServer.threads.execute(queryServer::accept);
+        return queryServer;
+    }
+
+    /**
+     * The bound address, with the port chosen for port 0.
+     */
+    public SocketAddress getAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    /**
+     * Accepts connections until closed. Failures such as running out of file descriptors tend to
+     * persist, so accepting is retried with a growing delay rather than at once.
+     */
+    private void accept() {
+        long backoff = 0;
+        while (!closed) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+                backoff = 0;
+            } catch (ClosedChannelException ex) {
+                return;
+            } catch (IOException ex) {
+                backoff = Math.min(Math.max(2 * backoff, 10), MAX_ACCEPT_BACKOFF_MILLIS);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            connections.add(channel);
+            if (closed) {
+                close(channel);
+                return;
+            }
+            Connection connection = new Connection(channel);
+            threads.execute(connection::read);
+            threads.execute(connection::write);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        SocketAddress address = server.getLocalAddress();
+        server.close();
+        for (SocketChannel channel : connections) {
+            close(channel);
+        }
+        threads.shutdown();
+        if (address instanceof UnixDomainSocketAddress unix) {
+            Files.deleteIfExists(unix.getPath());
+        }
+    }
+
+    private void close(SocketChannel channel) {
+        connections.remove(channel);
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // the connection is dropped either way
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final BlockingQueue<byte[]> requests = new ArrayBlockingQueue<>(options.getMaxInFlight());
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Takes a server-wide permit for each statement once it is read, so idle connections hold
+         * none, and the writer gives it back once the statement is answered.
+         */
+        void read() {
+            boolean permit = false;
+            try {
+                InputStream in = new BufferedInputStream(new ChannelInput(channel), 8192);
+                while (true) {
+                    byte[] request = options.getFraming() == ServerOptions.Framing.NEWLINE ? line(in) : frame(in);
+                    if (request == null) {
+                        break;
+                    }
+                    inFlight.acquire();
+                    permit = true;
+                    requests.put(request);
+                    permit = false;
+                }
+                requests.put(END);
+            } catch (IOException ex) {
+                close(channel);
+                discard();
+                requests.offer(END);
+            } catch (InterruptedException ex) {
+                close(channel);
+                discard();
+                Thread.currentThread().interrupt();
+            } finally {
+                if (permit) {
+                    inFlight.release();
+                }
+            }
+        }
+
+        /**
+         * Drops the queued statements and gives back their permits.
+         */
+        private void discard() {
+            List<byte[]> dropped = new ArrayList<>();
+            requests.drainTo(dropped);
+            int permits = 0;
+            for (byte[] request : dropped) {
+                if (request != END) permits++;
+            }
+            inFlight.release(permits);
+        }
+
+        /**
+         * Reads a line without its terminator, {@link #TOO_LONG} when it is over the limit, {@code null} at the end of the stream.
+         */
+        private byte[] line(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            boolean tooLong = false;
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    if (line.size() == 0 && !tooLong) {
+                        return null;
+                    }
+                    break;
+                }
+                if (line.size() < options.getMaxStatementBytes()) {
+                    line.write(b);
+                } else {
+                    tooLong = true;
+                }
+            }
+            if (tooLong) {
+                return TOO_LONG;
+            }
+            byte[] bytes = line.toByteArray();
+            return bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? Arrays.copyOf(bytes, bytes.length - 1) : bytes;
+        }
+
+        private byte[] frame(InputStream in) throws IOException {
+            int first = in.read();
+            if (first < 0) {
+                return null;
+            }
+            DataInputStream data = new DataInputStream(in);
+            int length = first << 24 | data.readUnsignedByte() << 16 | data.readUnsignedShort();
+            if (length < 0 || length > options.getMaxStatementBytes()) {
+                throw new IOException("Frame of " + length + " bytes is over the limit");
+            }
+            byte[] frame = new byte[length];
+            data.readFully(frame);
+            return frame;
+        }
+
+        void write() {
+            OutputStream out = new BufferedOutputStream(new ChannelOutput(channel), 8192);
+            Writer text = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            JsonWriter json = new JsonWriter(text);
+            DataOutputStream data = new DataOutputStream(out);
+            try {
+                while (true) {
+                    byte[] request = requests.poll();
+                    if (request == null) {
+                        text.flush();
+                        out.flush();
+                        request = requests.take();
+                    }
+                    if (request == END) {
+                        break;
+                    }
+                    Query query = null;
+                    InvalidQueryException error = null;
+                    try {
+                        if (request == TOO_LONG) {
+                            throw new InvalidQueryException("The statement is longer than " + options.getMaxStatementBytes() + " bytes.");
+                        }
+                        query = queryService.parseUtf8(request, 0, request.length);
+                    } catch (InvalidQueryException ex) {
+                        error = ex;
+                    } catch (Throwable ex) {
+                        // a failure of the service is the answer to this statement, not the end of the connection
+                        error = new InvalidQueryException("The statement could not be parsed.");
+                    } finally {
+                        inFlight.release();
+                    }
+                    if (options.getFormat() == ServerOptions.Format.JSON) {
+                        if (error == null) {
+                            json.write(query);
+                        } else {
+                            json.writeError(error);
+                        }
+                        text.write('\n');
+                    } else {
+                        byte[] payload = error == null ? QueryWriter.toBytes(query) : error.getMessage().getBytes(StandardCharsets.UTF_8);
+                        data.writeInt(payload.length + 1);
+                        data.writeByte(error == null ? OK : ERROR);
+                        data.write(payload);
+                    }
+                }
+                text.flush();
+                out.flush();
+            } catch (IOException ex) {
+                // the client is gone, the reader stops on the closed channel
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close(channel);
+                discard();
+            }
+        }
+    }
+
+    private static final class ChannelInput extends InputStream {
+        private final SocketChannel channel;
+
+        ChannelInput(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return len == 0 ? 0 : channel.read(ByteBuffer.wrap(b, off, len));
+        }
+    }
+
+    private static final class ChannelOutput extends OutputStream {
+        private final SocketChannel channel;
+
+        ChannelOutput(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
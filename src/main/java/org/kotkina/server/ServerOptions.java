@@ -0,0 +1,57 @@
+package org.kotkina.server;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * How {@link QueryServer} reads requests and writes responses.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class ServerOptions {
+
+    public static final ServerOptions DEFAULT = ServerOptions.builder().build();
+
+    public enum Framing {
+        /** A statement per line, {@code \n} or {@code \r\n} terminated. */
+        NEWLINE,
+        /** A statement per frame of a 4-byte big-endian length followed by the bytes. */
+        LENGTH
+    }
+
+    public enum Format {
+        /**
+         * A line per statement: the query as written by {@link org.kotkina.serialization.JsonWriter}
+         * or {@code {"error":{...}}}.
+         */
+        JSON,
+        /**
+         * A frame per statement: a 4-byte big-endian length, a status byte and the payload, the query
+         * as written by {@link org.kotkina.serialization.QueryWriter} for status 0 and the UTF-8 error
+         * message for status 1.
+         */
+        BINARY
+    }
+
+    @Builder.Default
+    private final Framing framing = Framing.NEWLINE;
+
+    @Builder.Default
+    private final Format format = Format.JSON;
+
+    /** Statements of a connection read ahead of the one being answered, reading waits when they are reached. */
+    @Builder.Default
+    private final int maxInFlight = 64;
+
+    /**
+     * Statements queued over all connections, so queued statements take at most this many times
+     * {@link #maxStatementBytes}. A connection that has read a statement waits when they are reached,
+     * and a connection waiting for a statement takes none.
+     */
+    @Builder.Default
+    private final int maxServerInFlight = 256;
+
+    /** Bytes per statement. A longer line is answered with an error, a longer frame closes the connection. */
+    @Builder.Default
+    private final int maxStatementBytes = 4 << 20;
+}
@@ -0,0 +1,51 @@
+package org.kotkina.services;
+
+import org.kotkina.cache.CacheStats;
+import org.kotkina.cache.QueryCache;
+import org.kotkina.cache.QueryNormalizer;
+import org.kotkina.models.Query;
+import org.kotkina.parser.IdentifierPool;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Caches parse results by normalized query text, so queries differing only in whitespace, comments
+ * or the case of keywords and unquoted names share one result. A hit returns the result parsed from
+ * the first spelling seen. Results are shared between callers and must not be modified.
+ */
+public class CachedQueryService extends QueryService {
+
+    private final QueryCache<String, Query> cache;
+
+    public CachedQueryService(int maximumSize) {
+        this.cache = new QueryCache<>(maximumSize);
+    }
+
+    public CachedQueryService(int maximumSize, IdentifierPool identifierPool, Executor executor) {
+        super(identifierPool, executor);
+        this.cache = new QueryCache<>(maximumSize);
+    }
+
+    @Override
+    public Query parse(String query) {
+        if (query == null || query.length() > getLimits().getMaxStatementLength()) {
+            return super.parse(query);
+        }
+
+        String key = QueryNormalizer.normalize(query);
+        Query result = cache.get(key);
+        if (result == null) {
+            result = super.parse(query);
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+}
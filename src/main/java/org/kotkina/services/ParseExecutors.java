@@ -0,0 +1,41 @@
+package org.kotkina.services;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Executors for the asynchronous parse methods of {@link QueryService}.
+ */
+public final class ParseExecutors {
+
+    private ParseExecutors() {
+    }
+
+    /**
+     * A new virtual thread per task where the runtime supports it, a work-stealing pool otherwise.
+     */
+    public static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * A new virtual thread per task where the runtime supports it, a new platform thread otherwise,
+     * for tasks that block on I/O.
+     */
+    public static ExecutorService threadPerTask() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public static ExecutorService fixed(int threads) {
+        return new ForkJoinPool(threads);
+    }
+}
@@ -1,241 +1,320 @@
 package org.kotkina.services;
 
+import org.kotkina.errors.Diagnostic;
 import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.lexer.AsciiSequence;
+import org.kotkina.lexer.Lexer;
+import org.kotkina.lexer.Token;
+import org.kotkina.metrics.ParseListener;
+import org.kotkina.metrics.ParseMetrics;
+import org.kotkina.metrics.ParsePhase;
 import org.kotkina.models.*;
+import org.kotkina.parser.IdentifierPool;
+import org.kotkina.parser.Parser;
+import org.kotkina.parser.ParserLimits;
+import org.kotkina.parser.RecoveredQuery;
+import org.kotkina.stream.ParseResult;
+import org.kotkina.stream.Statement;
+import org.kotkina.stream.StatementSplitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses SELECT queries. The service is thread-safe and meant to be shared: all parsing state lives
+ * in a {@link Parser} created per call, and the only shared objects are the optional identifier pool
+ * and the executor of the asynchronous methods, both safe for concurrent use.
+ */
+public class QueryService {
 
-import java.text.MessageFormat;
-import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+    private final IdentifierPool identifierPool;
+    private final Executor executor;
+    private final ParseListener listener;
+    private final ParserLimits limits;
 
-import static org.kotkina.models.Keyword.*;
+    public QueryService() {
+        this(null);
+    }
 
-public class QueryService {
+    /**
+     * @param identifierPool shares repeated names between parsed queries, {@code null} to disable
+     */
+    public QueryService(IdentifierPool identifierPool) {
+        this(identifierPool, null);
+    }
+
+    /**
+     * @param executor runs {@link #parseAsync} and {@link #parseAll}, see {@link ParseExecutors};
+     *                 {@code null} for the common pool, which is then only started by those methods
+     */
+    public QueryService(IdentifierPool identifierPool, Executor executor) {
+        this(identifierPool, executor, ParseListener.NONE);
+    }
 
-    private static final String SELECT_REGEX = "\\s*(?<object>[\\p{Alnum}_]*\\([^()]+\\)|[\\p{Alnum}_.*]+)(?:\\s+\\bAS\\b)?(?<alias>\\s+(?:\"[^\"]+\"|[\\p{Alnum}_]+))?\\s*$";
-    private static final String SOURCE_REGEX = "^\\s*(?<object>\\([^()]+\\)|[\\p{Alnum}_.]+)(?:\\s+\\bAS\\b)?(?<alias>\\s+(?:\"[^\"]+\"|[\\p{Alnum}_]+))?\\s*$";
-    private static final String JOIN_REGEX = "\\s*\\bJOIN\\b\\s+(?<table>\\([^()]+\\)|[\\p{Alnum}_.]+)(?:\\s+\\bAS\\b)?(?<alias>\\s+(?:\"[^\"]+\"|[\\p{Alnum}_]+))?\\s+ON\\s+(?<clause>.+?)$";
-    private static final String CLAUSE_REGEX = "\\s*(?<operator>\\b(AND|OR)\\b)?\\s*(?<clause>.*?(\\([^()]+?\\)|[^()]+?))(?=\\s*(\\b(AND|OR)\\b|$))";
-    private static final Pattern SELECT_PATTERN = Pattern.compile(SELECT_REGEX, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    private static final Pattern SOURCE_PATTERN = Pattern.compile(SOURCE_REGEX, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    private static final Pattern JOIN_PATTERN = Pattern.compile(JOIN_REGEX, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    private static final Pattern CLAUSE_PATTERN = Pattern.compile(CLAUSE_REGEX, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    private static final String ERROR_PATTERN = "Error in {0} clause: {1}";
+    /**
+     * @param listener receives phase timings, sizes and errors of every parse, see {@link ParseMetrics}
+     */
+    public QueryService(IdentifierPool identifierPool, Executor executor, ParseListener listener) {
+        this(identifierPool, executor, listener, ParserLimits.DEFAULT);
+    }
+
+    /**
+     * @param limits bounds on the statements accepted, larger ones fail with {@link InvalidQueryException}
+     */
+    public QueryService(IdentifierPool identifierPool, Executor executor, ParseListener listener, ParserLimits limits) {
+        this.identifierPool = identifierPool;
+        this.executor = executor;
+        this.listener = listener;
+        this.limits = limits;
+    }
+
+    public ParserLimits getLimits() {
+        return limits;
+    }
 
     public Query parse(String query) {
-        validateString(query);
-        List<String> tokens = getTokens(query);
+        return parseText(query);
+    }
 
-        return generateQuery(tokens);
+    /**
+     * Parses a query without copying it: strings go through {@link #parse(String)}, other sequences
+     * are parsed in place and the texts of the result are views of the sequence, copied when read.
+     * The sequence must not change while the result is in use.
+     */
+    public Query parse(CharSequence query) {
+        return query instanceof String string ? parse(string) : parseText(query);
     }
 
-    private void validateString(String query) {
-        if (query == null || query.isEmpty()) throw new InvalidQueryException();
+    /**
+     * Parses {@code length} characters of an array in place, see {@link #parse(CharSequence)}.
+     */
+    public Query parse(char[] query, int offset, int length) {
+        return parseText(CharBuffer.wrap(query, offset, length));
+    }
 
-        Pattern pattern = Pattern.compile("^[^;]+;?\\s*$");
-        Matcher matcher = pattern.matcher(query);
-        if (!matcher.find()) {
-            throw new InvalidQueryException();
-        }
+    public Query parseUtf8(byte[] utf8, int offset, int length) {
+        return parseUtf8(ByteBuffer.wrap(utf8, offset, length));
     }
 
-    private List<String> getTokens(String query) {
-        Pattern pattern = Pattern.compile("[\\s\\v]*[^\\s(),;]*(?:\\([^()]+\\))*,?[\\s\\v]*");
-        Matcher matcher = pattern.matcher(query);
+    /**
+     * Parses the remaining UTF-8 bytes of a heap or direct buffer, without moving its position.
+     * ASCII input is lexed in place, see {@link #parse(CharSequence)}, other input is decoded first.
+     */
+    public Query parseUtf8(ByteBuffer utf8) {
+        AsciiSequence ascii = AsciiSequence.of(utf8);
+        return parseText(ascii != null ? ascii : StandardCharsets.UTF_8.decode(utf8.duplicate()).toString());
+    }
 
-        return matcher.results()
-                .map(result -> result.group().trim())
-                .filter(s -> !s.isEmpty())
-                .toList();
+    /**
+     * Parses a query without stopping at the first error, see {@link Parser#parseRecovering}. Errors
+     * are returned with their positions rather than thrown, and are created without stack traces.
+     */
+    public RecoveredQuery parseRecovering(CharSequence query) {
+        List<InvalidQueryException> errors = new ArrayList<>();
+        Query result;
+        try {
+            validateString(query);
+            if (query.length() > limits.getMaxStatementLength()) {
+                throw new InvalidQueryException("The statement exceeds " + limits.getMaxStatementLength() + " characters");
+            }
+            List<Token> tokens = new Lexer(query).tokenize(limits.getMaxTokens(), errors);
+            result = new Parser(tokens, identifierPool, ParseListener.NONE, limits).parseRecovering(errors);
+        } catch (InvalidQueryException ex) {
+            errors.add(ex);
+            result = SelectQuery.builder().build();
+        }
+        return new RecoveredQuery(result, Diagnostic.locate(query == null ? "" : query, errors));
     }
 
-    private Query generateQuery(List<String> tokens) {
-        if (tokens == null || tokens.size() == 0) {
-            throw new InvalidQueryException();
+    private Query parseText(CharSequence query) {
+        if (listener != ParseListener.NONE) {
+            return parseMeasured(query);
         }
+        validateString(query);
 
-        if ("SELECT".equalsIgnoreCase(tokens.get(0))) {
-            return generateSelectQuery(tokens);
+        return new Parser(query, identifierPool, limits).parseStatement();
+    }
+
+    private Query parseMeasured(CharSequence query) {
+        long started = System.nanoTime();
+        int tokenCount = 0;
+        try {
+            validateString(query);
+            long validated = System.nanoTime();
+            listener.onPhase(ParsePhase.VALIDATION, validated - started);
+
+            List<Token> tokens = Parser.tokenize(query, limits);
+            tokenCount = tokens.size();
+            listener.onPhase(ParsePhase.TOKENIZATION, System.nanoTime() - validated);
+
+            return new Parser(tokens, identifierPool, listener, limits).parseStatement();
+        } catch (InvalidQueryException ex) {
+            listener.onError(ex.getClause());
+            throw ex;
+        } finally {
+            listener.onStatement(query == null ? 0 : query.length(), tokenCount, System.nanoTime() - started);
         }
+    }
 
-        throw new InvalidQueryException();
+    public CompletableFuture<Query> parseAsync(String query) {
+        return CompletableFuture.supplyAsync(() -> parse(query), executor());
     }
 
-    private SelectQuery generateSelectQuery(List<String> tokens) {
-        SelectQuery selectQuery = new SelectQuery();
-        List<String> keywords = Keyword.getList();
+    private Executor executor() {
+        return executor != null ? executor : ForkJoinPool.commonPool();
+    }
 
-        StringBuilder expression = new StringBuilder();
-        Keyword currentKeyword = SELECT;
-        Iterator<String> iterator = tokens.iterator();
-        if (iterator.hasNext()) iterator.next();
+    /**
+     * Parses the queries concurrently and waits for all of them. The results are in the order of
+     * the collection, errors are returned per query.
+     */
+    public List<ParseResult> parseAll(Collection<String> queries) {
+        List<CompletableFuture<ParseResult>> futures = new ArrayList<>(queries.size());
+        Executor executor = executor();
+        for (String query : queries) {
+            futures.add(CompletableFuture.supplyAsync(() -> parseStatement(new Statement(query, 0, 1, 1, false)), executor));
+        }
 
-        while (iterator.hasNext()) {
-            String token = iterator.next();
-            Optional<String> maybeKeyword = keywords.stream()
-                    .filter(k -> k.equalsIgnoreCase(token))
-                    .findFirst();
+        List<ParseResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<ParseResult> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
 
-            if (maybeKeyword.isEmpty()) {
-                if (expression.length() > 0) {
-                    expression.append(" ");
-                }
-                expression.append(token);
-                if (iterator.hasNext()) continue;
-            }
+    /**
+     * Lazily parses the semicolon-separated statements of a reader, memory use does not depend on
+     * the input size. Errors are returned per statement, closing the stream closes the reader.
+     */
+    public Stream<ParseResult> parseStatements(Reader reader) {
+        StatementSplitter splitter = new StatementSplitter(reader);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(splitter, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .map(this::parseStatement)
+                .onClose(() -> {
+                    try {
+                        splitter.close();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+    }
 
-            if (expression.length() == 0) {
-                throw new InvalidQueryException(MessageFormat.format(ERROR_PATTERN, currentKeyword, ""));
-            }
+    public Stream<ParseResult> parseStatements(InputStream input) {
+        return parseStatements(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
 
-            switch (currentKeyword) {
-                case SELECT -> selectQuery.setColumns(generateColumns(expression.toString()));
-                case FROM -> selectQuery.setFromSources(generateFromSources(expression.toString()));
-                case INNER, LEFT, RIGHT, FULL ->
-                        selectQuery.addJoin(generateJoin(expression.toString(), currentKeyword.name()));
-                case WHERE -> selectQuery.setWhereClauses(generateClauses(expression.toString()));
-                case GROUP -> selectQuery.setGroupByColumns(generateGroupByColumns(expression.toString()));
-                case HAVING -> selectQuery.setHavingClauses(generateClauses(expression.toString()));
-                case ORDER -> selectQuery.setSortColumns(generateSortColumns(expression.toString()));
-                case LIMIT -> selectQuery.setLimit(generateLimit(expression.toString()));
-                case OFFSET -> selectQuery.setOffset(generateOffset(expression.toString()));
-            }
+    public Stream<ParseResult> parseStatements(Path path) throws IOException {
+        return parseStatements(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+    }
 
-            if (iterator.hasNext() && maybeKeyword.isPresent()) {
-                currentKeyword = Keyword.valueOf(maybeKeyword.get());
-            }
-            expression.setLength(0);
+    /**
+     * Parses a statement cut from an input, errors are returned in the result.
+     */
+    public ParseResult parseStatement(Statement statement) {
+        if (statement.isTruncated()) {
+            return new ParseResult(statement, null, new InvalidQueryException(null,
+                    "The statement exceeds " + statement.getText().length() + " characters", -1, null, false));
         }
+        try {
+            return new ParseResult(statement, parse(statement.getText()), null);
+        } catch (InvalidQueryException ex) {
+            return new ParseResult(statement, null, ex);
+        }
+    }
+
+    private void validateString(CharSequence query) {
+        if (query == null || isBlank(query)) throw new InvalidQueryException();
+    }
 
-        if (selectQuery.getColumns() == null || selectQuery.getColumns().size() == 0) {
-            throw new InvalidQueryException(MessageFormat.format(ERROR_PATTERN, "SELECT", expression));
+    private static boolean isBlank(CharSequence query) {
+        for (int i = 0; i < query.length(); i++) {
+            if (!Character.isWhitespace(query.charAt(i))) {
+                return false;
+            }
         }
-        return selectQuery;
+        return true;
     }
 
     protected List<Column> generateColumns(String expression) {
-        if (expression == null || expression.isEmpty()) return null;
-
-        return Arrays.stream(expression.trim().split(",(?![^(]*\\))"))
-                .map(this::getSelectValuesWithAlias)
-                .map(s -> {
-                    if (s == null) {
-                        throw new InvalidQueryException(MessageFormat.format(ERROR_PATTERN, "SELECT", expression));
-                    }
-                    return new Column(s[0], s[1]);
-                })
-                .toList();
+        return parseFragment(expression, Parser::parseColumns);
     }
 
     protected List<Source> generateFromSources(String expression) {
-        if (expression == null || expression.isEmpty()) return null;
-
-        return Arrays.stream(expression.trim().split(",(?![^(]*\\))"))
-                .map(this::getExpressionWithAlias)
-                .map(s -> {
-                    if (s == null) {
-                        throw new InvalidQueryException(MessageFormat.format(ERROR_PATTERN, "FROM", expression));
-                    }
-                    return new Source(s[0], s[1]);
-                })
-                .toList();
+        return parseFragment(expression, Parser::parseSources);
     }
 
     protected Join generateJoin(String expression, String joinType) {
-        if (expression == null || expression.isEmpty()) return null;
-
-        Matcher matcher = JOIN_PATTERN.matcher(expression.trim());
-        if (matcher.find()) {
-            String conditions = matcher.group("clause");
-            List<Clause> clauses = generateClauses(conditions);
-            return new Join(joinType + " JOIN", new Source(matcher.group("table"), matcher.group("alias")), clauses);
-        }
-
-        throw new InvalidQueryException(MessageFormat.format(ERROR_PATTERN, "JOIN", joinType + " " + expression));
+        return parseFragment(expression, parser -> parser.parseJoin(joinType));
     }
 
     protected List<Clause> generateClauses(String expression) {
-        if (expression == null || expression.isEmpty()) return null;
-
-        Matcher matcher = CLAUSE_PATTERN.matcher(expression.trim());
-        ArrayList<Clause> list = new ArrayList<>();
-        while (matcher.find()) {
-            list.add(new Clause(matcher.group("clause"), matcher.group("operator")));
-        }
-
-        return list;
+        return parseFragment(expression, Parser::parseClauses);
     }
 
     protected List<String> generateGroupByColumns(String expression) {
-        if (expression == null || expression.isEmpty()) return null;
-
-        if (expression.startsWith("BY")) {
-            expression = expression.substring(2);
-        }
-
-        return Arrays.stream(expression.trim().split(",(?![^(]*\\))"))
-                .map(String::trim)
-                .toList();
+        return parseFragment(expression, Parser::parseGroupByColumns);
     }
 
     protected List<Sort> generateSortColumns(String expression) {
-        if (expression == null || expression.isEmpty()) return null;
-
-        if (expression.startsWith("BY")) {
-            expression = expression.substring(2);
-        }
-
-        return Arrays.stream(expression.trim().split(",(?![^(]*\\))"))
-                .map(String::trim)
-                .map(s -> {
-                    int length = s.length();
-                    return switch (s.substring(length - 4).toUpperCase()) {
-                        case "DESC" -> new Sort(s.substring(0, length - 5), true);
-                        case " ASC" -> new Sort(s.substring(0, length - 4), false);
-                        default -> new Sort(s);
-                    };
-                })
-                .toList();
+        return parseFragment(expression, Parser::parseSorts);
     }
 
     protected Integer generateLimit(String expression) {
-        if (expression == null || expression.isEmpty() || expression.equalsIgnoreCase("ALL")) return null;
-
-        return Integer.parseInt(expression.trim());
+        return parseFragment(expression, Parser::parseLimit);
     }
 
     protected Integer generateOffset(String expression) {
-        if (expression == null || expression.isEmpty()) return null;
-
-        return Integer.parseInt(expression.trim());
+        return parseFragment(expression, Parser::parseOffset);
     }
 
     protected String[] getExpressionWithAlias(String string) {
-        return getExpressionWithAlias(string, SOURCE_PATTERN);
+        try {
+            Source source = parseFragment(string, Parser::parseSource);
+            if (source == null) return null;
+            return new String[]{source.getTable(), source.getAlias()};
+        } catch (InvalidQueryException ex) {
+            return null;
+        }
     }
 
     protected String[] getSelectValuesWithAlias(String string) {
-        return getExpressionWithAlias(string, SELECT_PATTERN);
+        try {
+            Column column = parseFragment(string, Parser::parseColumn);
+            if (column == null) return null;
+            return new String[]{column.getName(), column.getAlias()};
+        } catch (InvalidQueryException ex) {
+            return null;
+        }
     }
 
-    protected String[] getExpressionWithAlias(String string, Pattern pattern) {
-        Matcher matcher = pattern.matcher(string.trim());
-
-        if (matcher.find()) {
-            String object = matcher.group("object");
-            String alias = matcher.group("alias");
-
-            if (object == null || object.trim().isEmpty()) {
-                return null;
-            }
-
-            if (alias == null) {
-                return new String[]{object.trim(), null};
-            }
+    /**
+     * Parses a single clause body, the whole expression must be consumed by the rule.
+     */
+    private <T> T parseFragment(String expression, Function<Parser, T> rule) {
+        if (expression == null || expression.isEmpty()) return null;
 
-            return new String[]{object.trim(), alias.trim()};
-        } else {
-            return null;
-        }
+        Parser parser = new Parser(expression, identifierPool, limits);
+        T result = rule.apply(parser);
+        parser.expectEnd();
+        return result;
     }
 }
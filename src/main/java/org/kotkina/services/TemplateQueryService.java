@@ -0,0 +1,71 @@
+package org.kotkina.services;
+
+import org.kotkina.cache.CacheStats;
+import org.kotkina.cache.Fingerprint;
+import org.kotkina.cache.Fingerprinter;
+import org.kotkina.cache.QueryCache;
+import org.kotkina.cache.TemplateBinder;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.Query;
+import org.kotkina.parser.IdentifierPool;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Caches parsed templates by the query text with its number and string literals replaced by
+ * {@code ?}, so queries differing only in literals are parsed once and a hit only binds the literals
+ * of the current query. The cache is keyed by the template text rather than the fingerprint hash:
+ * a hit needs the same text apart from literals, so the result, including the column, clause and
+ * sort texts, is the one {@link QueryService#parse} returns, and a hash collision between different
+ * templates cannot return the wrong tree. Syntax errors are reported on the query as given.
+ * Queries that already contain {@code ?} placeholders are parsed directly.
+ */
+public class TemplateQueryService extends QueryService {
+
+    private final QueryCache<String, Query> cache;
+
+    public TemplateQueryService(int maximumSize) {
+        this.cache = new QueryCache<>(maximumSize);
+    }
+
+    public TemplateQueryService(int maximumSize, IdentifierPool identifierPool, Executor executor) {
+        super(identifierPool, executor);
+        this.cache = new QueryCache<>(maximumSize);
+    }
+
+    @Override
+    public Query parse(String query) {
+        if (query == null || query.isBlank() || query.length() > getLimits().getMaxStatementLength()) {
+            return super.parse(query);
+        }
+
+        Fingerprint fingerprint = fingerprint(query);
+        if (fingerprint.isParameterized()) {
+            return super.parse(query);
+        }
+
+        Query template = cache.get(fingerprint.getTemplate());
+        if (template == null) {
+            try {
+                template = super.parse(fingerprint.getTemplate());
+            } catch (InvalidQueryException ex) {
+                // reported on the caller's text, not on the template
+                return super.parse(query);
+            }
+            cache.put(fingerprint.getTemplate(), template);
+        }
+        return TemplateBinder.bind(template, fingerprint.getLiterals());
+    }
+
+    public Fingerprint fingerprint(String query) {
+        return Fingerprinter.fingerprint(query);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,293 @@
+package org.kotkina.stream;
+
+import lombok.AllArgsConstructor;
+import org.kotkina.services.QueryService;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Parses large SQL files in parallel. The file is memory-mapped region by region and scanned for
+ * statement boundaries on the calling thread, the statements are decoded and parsed in batches on
+ * the executor. Results are emitted in input order, or as soon as they are ready; in the latter
+ * case the consumer is called from the worker threads and must be thread-safe. The number of
+ * batches in flight is bounded, so memory use does not depend on the file size.
+ */
+public final class BulkParser implements AutoCloseable {
+
+    private static final long REGION_SIZE = 1L << 30;
+    private static final int BATCH_STATEMENTS = 256;
+    private static final int BATCH_BYTES = 1 << 18;
+    private static final int BATCHES_PER_THREAD = 4;
+
+    private final QueryService queryService;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final boolean ownsExecutor;
+    private final int maxStatementLength;
+    private final long regionSize;
+
+    public BulkParser(QueryService queryService) {
+        this(queryService, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BulkParser(QueryService queryService, int parallelism) {
+        this(queryService, new ForkJoinPool(parallelism), parallelism, true,
+                StatementSplitter.DEFAULT_MAX_STATEMENT_LENGTH, REGION_SIZE);
+    }
+
+    /**
+     * @param executor    runs the parsing, it is not shut down by {@link #close()}
+     * @param parallelism the number of threads of the executor, bounds the batches in flight
+     */
+    public BulkParser(QueryService queryService, ExecutorService executor, int parallelism) {
+        this(queryService, executor, parallelism, false, StatementSplitter.DEFAULT_MAX_STATEMENT_LENGTH, REGION_SIZE);
+    }
+
+    BulkParser(QueryService queryService, ExecutorService executor, int parallelism, boolean ownsExecutor,
+               int maxStatementLength, long regionSize) {
+        if (parallelism < 1) throw new IllegalArgumentException("The parallelism must be positive");
+        if (maxStatementLength >= regionSize) throw new IllegalArgumentException("The region must exceed the statement length");
+        this.queryService = queryService;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.ownsExecutor = ownsExecutor;
+        this.maxStatementLength = maxStatementLength;
+        this.regionSize = regionSize;
+    }
+
+    /**
+     * Parses the statements of a UTF-8 file. Statement offsets count characters, like
+     * {@link StatementSplitter}, but the length limit counts bytes.
+     *
+     * @param ordered {@code true} to emit the results in input order on the calling thread
+     */
+    public BulkStats parse(Path path, boolean ordered, Consumer<ParseResult> consumer) throws IOException {
+        long startTime = System.nanoTime();
+        Emitter emitter = new Emitter(ordered, consumer);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            StatementScanner scanner = new StatementScanner();
+            List<Slice> batch = new ArrayList<>(BATCH_STATEMENTS);
+            int batchBytes = 0;
+
+            long position = 0;
+            long mapStart = 0;
+            long chars = 0;
+            int line = 1;
+            int column = 1;
+            long start = -1;
+            long startChars = 0;
+            int startLine = 0;
+            int startColumn = 0;
+            ByteBuffer prefix = null;
+
+            while (position < size) {
+                ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, Math.min(size - mapStart, regionSize));
+                long regionEnd = mapStart + region.capacity();
+
+                for (; position < regionEnd; position++) {
+                    byte b = region.get((int) (position - mapStart));
+                    long charsAt = chars;
+                    int lineAt = line;
+                    int columnAt = column;
+                    if (b == '\n') {
+                        line++;
+                        column = 1;
+                        chars++;
+                    } else if ((b & 0xC0) != 0x80) {
+                        // a 4-byte sequence is a surrogate pair
+                        int width = (b & 0xF8) == 0xF0 ? 2 : 1;
+                        column += width;
+                        chars += width;
+                    }
+
+                    long end;
+                    switch (scanner.next((char) (b & 0xFF))) {
+                        case StatementScanner.HOLD, StatementScanner.START -> {
+                            start = position;
+                            startChars = charsAt;
+                            startLine = lineAt;
+                            startColumn = columnAt;
+                            continue;
+                        }
+                        case StatementScanner.IGNORE -> {
+                            start = -1;
+                            continue;
+                        }
+                        case StatementScanner.END -> end = position;
+                        case StatementScanner.END_HELD -> end = start + 1;
+                        default -> {
+                            continue;
+                        }
+                    }
+
+                    batch.add(slice(region, mapStart, prefix, start, end, startChars, startLine, startColumn));
+                    batchBytes += (int) Math.min(end - start, maxStatementLength);
+                    start = -1;
+                    prefix = null;
+                    if (batch.size() == BATCH_STATEMENTS || batchBytes >= BATCH_BYTES) {
+                        emitter.submit(batch);
+                        batch = new ArrayList<>(BATCH_STATEMENTS);
+                        batchBytes = 0;
+                    }
+                }
+
+                if (position == size && start >= 0) {
+                    long end = scanner.isHolding() ? start + 1 : size;
+                    batch.add(slice(region, mapStart, prefix, start, end, startChars, startLine, startColumn));
+                    start = -1;
+                }
+
+                if (start < 0) {
+                    mapStart = position;
+                } else if (position - start > maxStatementLength) {
+                    // only the head of a truncated statement is kept
+                    if (prefix == null) prefix = region.slice((int) (start - mapStart), maxStatementLength);
+                    mapStart = position;
+                } else {
+                    mapStart = start;
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                emitter.submit(batch);
+            }
+            emitter.finish();
+            return new BulkStats(emitter.statements.sum(), emitter.errors.sum(), size, System.nanoTime() - startTime, parallelism);
+        }
+    }
+
+    private Slice slice(ByteBuffer region, long mapStart, ByteBuffer prefix, long start, long end,
+                        long offset, int line, int column) {
+        boolean truncated = end - start > maxStatementLength;
+        ByteBuffer bytes = prefix != null ? prefix
+                : region.slice((int) (start - mapStart), (int) Math.min(end - start, maxStatementLength));
+        return new Slice(bytes, offset, line, column, truncated);
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Slice {
+        private final ByteBuffer bytes;
+        private final long offset;
+        private final int line;
+        private final int column;
+        private final boolean truncated;
+    }
+
+    private final class Emitter {
+        private final boolean ordered;
+        private final Consumer<ParseResult> consumer;
+        private final int window = parallelism * BATCHES_PER_THREAD;
+        private final ArrayDeque<Future<List<ParseResult>>> pending = new ArrayDeque<>();
+        private final Semaphore permits = new Semaphore(window);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        Emitter(boolean ordered, Consumer<ParseResult> consumer) {
+            this.ordered = ordered;
+            this.consumer = consumer;
+        }
+
+        void submit(List<Slice> batch) throws IOException {
+            if (ordered) {
+                if (pending.size() == window) {
+                    emit(pending.poll());
+                }
+                pending.add(executor.submit(() -> parse(batch)));
+                return;
+            }
+
+            acquire(1);
+            rethrow();
+            executor.execute(() -> {
+                try {
+                    parse(batch).forEach(consumer);
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        void finish() throws IOException {
+            if (ordered) {
+                while (!pending.isEmpty()) {
+                    emit(pending.poll());
+                }
+            } else {
+                acquire(window);
+                permits.release(window);
+                rethrow();
+            }
+        }
+
+        private List<ParseResult> parse(List<Slice> batch) {
+            List<ParseResult> results = new ArrayList<>(batch.size());
+            for (Slice slice : batch) {
+                String text = StandardCharsets.UTF_8.decode(slice.bytes).toString();
+                ParseResult result = queryService.parseStatement(
+                        new Statement(text, slice.offset, slice.line, slice.column, slice.truncated));
+                if (!result.isSuccess()) errors.increment();
+                results.add(result);
+            }
+            statements.add(batch.size());
+            return results;
+        }
+
+        private void emit(Future<List<ParseResult>> future) throws IOException {
+            try {
+                future.get().forEach(consumer);
+            } catch (ExecutionException ex) {
+                failure.set(ex.getCause());
+                rethrow();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while parsing");
+            }
+        }
+
+        private void acquire(int count) throws IOException {
+            try {
+                permits.acquire(count);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while parsing");
+            }
+        }
+
+        private void rethrow() throws IOException {
+            Throwable ex = failure.get();
+            if (ex instanceof IOException io) throw io;
+            if (ex instanceof RuntimeException runtime) throw runtime;
+            if (ex instanceof Error error) throw error;
+            if (ex != null) throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.kotkina.stream;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Counters of a bulk parse, with throughput per thread to check how parsing scales.
+ */
+@Getter
+@AllArgsConstructor
+public class BulkStats {
+    private final long statements;
+    private final long errors;
+    private final long bytes;
+    private final long elapsedNanos;
+    private final int threads;
+
+    public double statementsPerSecond() {
+        return elapsedNanos == 0 ? 0 : statements * 1e9 / elapsedNanos;
+    }
+
+    public double statementsPerSecondPerThread() {
+        return statementsPerSecond() / threads;
+    }
+
+    public double megabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos / (1 << 20);
+    }
+
+    @Override
+    public String toString() {
+        return "{ \"statements\": " + statements + ", \"errors\": " + errors + ", \"bytes\": " + bytes
+                + ", \"elapsedMillis\": " + elapsedNanos / 1_000_000 + ", \"threads\": " + threads
+                + ", \"statementsPerSecond\": " + Math.round(statementsPerSecond())
+                + ", \"statementsPerSecondPerThread\": " + Math.round(statementsPerSecondPerThread()) + " }";
+    }
+}
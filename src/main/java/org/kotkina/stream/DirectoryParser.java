@@ -0,0 +1,193 @@
+package org.kotkina.stream;
+
+import org.kotkina.serialization.JsonWriter;
+import org.kotkina.services.QueryService;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parses every {@code .sql} file of a directory tree into NDJSON, one object per statement as
+ * written by {@link JsonWriter#write(String, ParseResult)}. The files are split into statements on
+ * the calling thread, the statements are parsed in batches on the executor, so a single large file
+ * is parsed in parallel as well as many small ones. Each batch is written as soon as it is parsed:
+ * the statements of a batch are in input order, but batches may be written out of order, so every
+ * object carries its file and position. The number of batches in flight is bounded, so memory use
+ * does not depend on the input size.
+ */
+public final class DirectoryParser implements AutoCloseable {
+
+    private static final int BATCH_STATEMENTS = 256;
+    private static final int BATCH_CHARS = 1 << 18;
+    private static final int BATCHES_PER_THREAD = 4;
+
+    private final QueryService queryService;
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    public DirectoryParser(QueryService queryService, int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("The parallelism must be positive");
+        this.queryService = queryService;
+        this.executor = new ForkJoinPool(parallelism);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Parses the UTF-8 {@code .sql} files under the directory in path order and writes a line per
+     * statement, with the file path relative to the directory. Malformed input is replaced rather
+     * than rejected. The output is flushed when done but not closed.
+     */
+    public DirectoryStats parse(Path directory, Writer out) throws IOException {
+        long startTime = System.nanoTime();
+        Emitter emitter = new Emitter(out);
+        long bytes = 0;
+
+        List<Path> files = files(directory);
+        for (Path file : files) {
+            bytes += Files.size(file);
+            String name = directory.relativize(file).toString().replace('\\', '/');
+            try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8);
+                 StatementSplitter statements = new StatementSplitter(reader)) {
+                List<Statement> batch = new ArrayList<>(BATCH_STATEMENTS);
+                int batchChars = 0;
+                while (statements.hasNext()) {
+                    Statement statement = statements.next();
+                    batch.add(statement);
+                    batchChars += statement.getText().length();
+                    if (batch.size() == BATCH_STATEMENTS || batchChars >= BATCH_CHARS) {
+                        emitter.submit(name, batch);
+                        batch = new ArrayList<>(BATCH_STATEMENTS);
+                        batchChars = 0;
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    emitter.submit(name, batch);
+                }
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        }
+        emitter.finish();
+        out.flush();
+
+        Map<String, Long> errorsByClause = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : emitter.errorsByClause.entrySet()) {
+            errorsByClause.put(entry.getKey(), entry.getValue().sum());
+        }
+        return new DirectoryStats(files.size(), emitter.statements.sum(), emitter.errors.sum(), bytes,
+                System.nanoTime() - startTime, parallelism, Collections.unmodifiableMap(errorsByClause));
+    }
+
+    private static List<Path> files(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".sql")) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);
+        return files;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private final class Emitter {
+        private final Writer out;
+        private final int window = parallelism * BATCHES_PER_THREAD;
+        private final Semaphore permits = new Semaphore(window);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final Map<String, LongAdder> errorsByClause = new ConcurrentHashMap<>();
+
+        Emitter(Writer out) {
+            this.out = out;
+        }
+
+        void submit(String file, List<Statement> batch) throws IOException {
+            acquire(1);
+            rethrow();
+            executor.execute(() -> {
+                try {
+                    String lines = parse(file, batch);
+                    synchronized (out) {
+                        out.write(lines);
+                    }
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        void finish() throws IOException {
+            acquire(window);
+            permits.release(window);
+            rethrow();
+        }
+
+        private String parse(String file, List<Statement> batch) throws IOException {
+            StringBuilder lines = new StringBuilder(batch.size() * 512);
+            JsonWriter json = new JsonWriter(lines);
+            for (Statement statement : batch) {
+                ParseResult result = queryService.parseStatement(statement);
+                if (!result.isSuccess()) {
+                    String clause = result.getException().getClause();
+                    errors.increment();
+                    errorsByClause.computeIfAbsent(clause == null ? DirectoryStats.NO_CLAUSE : clause, key -> new LongAdder()).increment();
+                }
+                json.write(file, result);
+                lines.append('\n');
+            }
+            statements.add(batch.size());
+            return lines.toString();
+        }
+
+        private void acquire(int count) throws IOException {
+            try {
+                permits.acquire(count);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while parsing");
+            }
+        }
+
+        private void rethrow() throws IOException {
+            Throwable ex = failure.get();
+            if (ex instanceof IOException io) throw io;
+            if (ex instanceof RuntimeException runtime) throw runtime;
+            if (ex instanceof Error error) throw error;
+            if (ex != null) throw new IllegalStateException(ex);
+        }
+    }
+}
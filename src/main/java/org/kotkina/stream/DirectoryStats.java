@@ -0,0 +1,41 @@
+package org.kotkina.stream;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * Counters of a directory parse, with the errors counted by the clause in error.
+ */
+@Getter
+@AllArgsConstructor
+public class DirectoryStats {
+    /** The key of the errors not tied to a clause. */
+    public static final String NO_CLAUSE = "none";
+
+    private final long files;
+    private final long statements;
+    private final long errors;
+    private final long bytes;
+    private final long elapsedNanos;
+    private final int threads;
+    /** Error counts by clause name, sorted by name. */
+    private final Map<String, Long> errorsByClause;
+
+    public double statementsPerSecond() {
+        return elapsedNanos == 0 ? 0 : statements * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder clauses = new StringBuilder();
+        for (Map.Entry<String, Long> entry : errorsByClause.entrySet()) {
+            clauses.append(clauses.length() == 0 ? " \"" : ", \"").append(entry.getKey()).append("\": ").append(entry.getValue());
+        }
+        return "{ \"files\": " + files + ", \"statements\": " + statements + ", \"errors\": " + errors + ", \"bytes\": " + bytes
+                + ", \"elapsedMillis\": " + elapsedNanos / 1_000_000 + ", \"threads\": " + threads
+                + ", \"statementsPerSecond\": " + Math.round(statementsPerSecond())
+                + ", \"errorsByClause\": {" + clauses + (clauses.length() == 0 ? "}" : " }") + " }";
+    }
+}
@@ -0,0 +1,35 @@
+package org.kotkina.stream;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.Query;
+
+/**
+ * The outcome of parsing one statement of a stream: the query, or the error.
+ */
+@Getter
+@AllArgsConstructor
+public class ParseResult {
+    private final Statement statement;
+    private final Query query;
+    private final InvalidQueryException exception;
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    /**
+     * The error message, {@code null} on success.
+     */
+    public String getError() {
+        return exception == null ? null : exception.getMessage();
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess()
+                ? String.valueOf(query)
+                : "Error at line " + statement.getLine() + ", column " + statement.getColumn() + ": " + getError();
+    }
+}
@@ -0,0 +1,18 @@
+package org.kotkina.stream;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A statement cut from an input, positioned by its first significant character.
+ * {@code line} and {@code column} start at 1, {@code offset} counts characters from 0.
+ */
+@Getter
+@AllArgsConstructor
+public class Statement {
+    private final String text;
+    private final long offset;
+    private final int line;
+    private final int column;
+    private final boolean truncated;
+}
@@ -0,0 +1,124 @@
+package org.kotkina.stream;
+
+/**
+ * Character-level state machine that finds statement boundaries: semicolons outside of quoted
+ * strings, quoted identifiers and comments. Leading whitespace and comments do not belong to a
+ * statement. A leading {@code -} or {@code /} may open a comment, so it is held until the next
+ * character decides. All syntax characters are ASCII, so UTF-8 bytes can be fed as well.
+ */
+final class StatementScanner {
+
+    /** The character is outside of any statement. */
+    static final int IGNORE = 0;
+    /** The character may start a statement, it is decided on the next character. */
+    static final int HOLD = 1;
+    /** A statement starts with this character. */
+    static final int START = 2;
+    /** A statement starts with the held character, this character is part of it. */
+    static final int START_HELD = 3;
+    /** The character is part of the current statement. */
+    static final int PART = 4;
+    /** The character is the semicolon ending the current statement. */
+    static final int END = 5;
+    /** The character is the semicolon ending a statement made of the held character only. */
+    static final int END_HELD = 6;
+
+    private enum State {
+        CODE, SINGLE_QUOTE, DOUBLE_QUOTE, BACKTICK, LINE_COMMENT, BLOCK_COMMENT
+    }
+
+    private State state = State.CODE;
+    private boolean started;
+    private char held;
+    private char previous;
+
+    int next(char c) {
+        if (!started) {
+            if (held != 0) {
+                char first = held;
+                held = 0;
+                if ((first == '-' && c == '-') || (first == '/' && c == '*')) {
+                    state = c == '-' ? State.LINE_COMMENT : State.BLOCK_COMMENT;
+                    previous = 0;
+                    return IGNORE;
+                }
+                if (c == ';') {
+                    return END_HELD;
+                }
+                started = true;
+                previous = first;
+                code(c);
+                return START_HELD;
+            }
+            if (state != State.CODE) {
+                comment(c);
+                return IGNORE;
+            }
+            if (c == ';' || isWhitespace(c)) {
+                return IGNORE;
+            }
+            if (c == '-' || c == '/') {
+                held = c;
+                return HOLD;
+            }
+            started = true;
+            code(c);
+            return START;
+        }
+
+        switch (state) {
+            case CODE -> {
+                if (c == ';') {
+                    started = false;
+                    previous = 0;
+                    return END;
+                }
+                code(c);
+            }
+            case SINGLE_QUOTE -> {
+                if (c == '\'') state = State.CODE;
+            }
+            case DOUBLE_QUOTE -> {
+                if (c == '"') state = State.CODE;
+            }
+            case BACKTICK -> {
+                if (c == '`') state = State.CODE;
+            }
+            default -> comment(c);
+        }
+        return PART;
+    }
+
+    boolean isHolding() {
+        return held != 0;
+    }
+
+    private void code(char c) {
+        if (c == '-' && previous == '-') {
+            state = State.LINE_COMMENT;
+            c = 0;
+        } else if (c == '*' && previous == '/') {
+            state = State.BLOCK_COMMENT;
+            c = 0;
+        } else if (c == '\'') {
+            state = State.SINGLE_QUOTE;
+        } else if (c == '"') {
+            state = State.DOUBLE_QUOTE;
+        } else if (c == '`') {
+            state = State.BACKTICK;
+        }
+        previous = c;
+    }
+
+    private void comment(char c) {
+        if ((state == State.LINE_COMMENT && c == '\n') || (state == State.BLOCK_COMMENT && c == '/' && previous == '*')) {
+            state = State.CODE;
+            c = 0;
+        }
+        previous = c;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B;
+    }
+}
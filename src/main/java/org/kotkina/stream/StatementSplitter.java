@@ -0,0 +1,138 @@
+package org.kotkina.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a character stream into statements by semicolons outside of quotes and comments.
+ * The input is read through a fixed-size buffer and a statement is kept in memory up to
+ * {@code maxStatementLength} characters, longer statements are returned truncated, so memory use
+ * does not depend on the input size. Leading whitespace and comments of a statement are dropped,
+ * empty statements are skipped.
+ */
+public class StatementSplitter implements Iterator<Statement>, Closeable {
+
+    public static final int DEFAULT_MAX_STATEMENT_LENGTH = 1 << 20;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final int maxStatementLength;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int bufferPosition;
+    private int bufferLength;
+
+    private final StringBuilder text = new StringBuilder();
+    private final StatementScanner scanner = new StatementScanner();
+    private long offset;
+    private int line = 1;
+    private int column = 1;
+    private Statement next;
+    private boolean endOfInput;
+
+    public StatementSplitter(Reader reader) {
+        this(reader, DEFAULT_MAX_STATEMENT_LENGTH);
+    }
+
+    public StatementSplitter(Reader reader, int maxStatementLength) {
+        this.reader = reader;
+        this.maxStatementLength = maxStatementLength;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !endOfInput) {
+            try {
+                next = readStatement();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Statement next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Statement statement = next;
+        next = null;
+        return statement;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Statement readStatement() throws IOException {
+        text.setLength(0);
+        boolean truncated = false;
+        long startOffset = 0;
+        int startLine = 0;
+        int startColumn = 0;
+        char held = 0;
+
+        while (true) {
+            if (bufferPosition == bufferLength && !fill()) {
+                endOfInput = true;
+                if (scanner.isHolding()) {
+                    return new Statement(String.valueOf(held), startOffset, startLine, startColumn, false);
+                }
+                return text.length() > 0 ? new Statement(text.toString(), startOffset, startLine, startColumn, truncated) : null;
+            }
+
+            char c = buffer[bufferPosition++];
+            long charOffset = offset++;
+            int charLine = line;
+            int charColumn = column;
+            if (c == '\n') {
+                line++;
+                column = 1;
+            } else {
+                column++;
+            }
+
+            switch (scanner.next(c)) {
+                case StatementScanner.HOLD -> {
+                    held = c;
+                    startOffset = charOffset;
+                    startLine = charLine;
+                    startColumn = charColumn;
+                }
+                case StatementScanner.START -> {
+                    startOffset = charOffset;
+                    startLine = charLine;
+                    startColumn = charColumn;
+                    text.append(c);
+                }
+                case StatementScanner.START_HELD -> text.append(held).append(c);
+                case StatementScanner.PART -> {
+                    if (text.length() < maxStatementLength) {
+                        text.append(c);
+                    } else {
+                        truncated = true;
+                    }
+                }
+                case StatementScanner.END -> {
+                    return new Statement(text.toString(), startOffset, startLine, startColumn, truncated);
+                }
+                case StatementScanner.END_HELD -> {
+                    return new Statement(String.valueOf(held), startOffset, startLine, startColumn, false);
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        bufferLength = Math.max(reader.read(buffer, 0, BUFFER_SIZE), 0);
+        bufferPosition = 0;
+        return bufferLength > 0;
+    }
+}
@@ -0,0 +1,82 @@
+package org.kotkina.visitor;
+
+import org.kotkina.models.*;
+import org.kotkina.models.expression.AllColumns;
+import org.kotkina.models.expression.ColumnReference;
+import org.kotkina.models.expression.Expression;
+
+/**
+ * Callbacks of {@link QueryWalker}. A {@code visit} method returning {@code false} skips the parts
+ * of the node, and its {@code end} method is called only when they were visited. Expression
+ * callbacks get the clause the expression is in: {@code SELECT}, {@code FROM}, {@code ON},
+ * {@code WHERE}, {@code GROUP}, {@code HAVING}, {@code ORDER}, {@code LIMIT} or {@code OFFSET}.
+ */
+public interface QueryVisitor {
+
+    default boolean visitSelect(SelectQuery query) {
+        return true;
+    }
+
+    default void endSelect(SelectQuery query) {
+    }
+
+    default boolean visitSetOperation(SetOperation operation) {
+        return true;
+    }
+
+    default void endSetOperation(SetOperation operation) {
+    }
+
+    default boolean visitWith(WithQuery with) {
+        return true;
+    }
+
+    default void endWith(WithQuery with) {
+    }
+
+    default boolean visitCommonTableExpression(CommonTableExpression table) {
+        return true;
+    }
+
+    default void endCommonTableExpression(CommonTableExpression table) {
+    }
+
+    /**
+     * Called before the subquery of a derived table is visited.
+     */
+    default boolean visitSource(Source source) {
+        return true;
+    }
+
+    default boolean visitJoin(Join join) {
+        return true;
+    }
+
+    default boolean visitColumn(Column column) {
+        return true;
+    }
+
+    /**
+     * Called for the {@code WHERE}, {@code HAVING} and join conditions split by {@code AND}/{@code OR}.
+     * Their expressions are visited as part of the whole condition.
+     */
+    default void visitClause(Clause clause, Keyword keyword) {
+    }
+
+    default boolean visitSort(Sort sort) {
+        return true;
+    }
+
+    /**
+     * Called for every expression node, including column references and wildcards before their own callbacks.
+     */
+    default boolean visitExpression(Expression expression, Keyword clause) {
+        return true;
+    }
+
+    default void visitColumnReference(ColumnReference column, Keyword clause) {
+    }
+
+    default void visitAllColumns(AllColumns columns, Keyword clause) {
+    }
+}
@@ -0,0 +1,194 @@
+package org.kotkina.visitor;
+
+import org.kotkina.models.*;
+import org.kotkina.models.expression.*;
+
+import java.util.List;
+
+/**
+ * Walks a query depth-first, calling a {@link QueryVisitor} for each node. The parts of a SELECT
+ * query are visited in the order FROM sources, joins, columns, WHERE, GROUP BY, HAVING, ORDER BY,
+ * LIMIT and OFFSET, so the sources of a query are known before its expressions. The walk
+ * dispatches on the node types and iterates lists by index, allocating nothing.
+ */
+public final class QueryWalker {
+
+    private QueryWalker() {
+    }
+
+    public static void walk(Query query, QueryVisitor visitor) {
+        if (query == null) {
+            return;
+        }
+        if (query instanceof SelectQuery select) {
+            select(select, visitor);
+        } else if (query instanceof SetOperation operation) {
+            if (visitor.visitSetOperation(operation)) {
+                walk(operation.getLeft(), visitor);
+                walk(operation.getRight(), visitor);
+                sorts(operation.getSortColumns(), visitor);
+                walk(operation.getLimitParameter(), Keyword.LIMIT, visitor);
+                walk(operation.getOffsetParameter(), Keyword.OFFSET, visitor);
+                visitor.endSetOperation(operation);
+            }
+        } else if (query instanceof WithQuery with) {
+            if (visitor.visitWith(with)) {
+                List<CommonTableExpression> tables = with.getTables();
+                for (int i = 0; i < tables.size(); i++) {
+                    CommonTableExpression table = tables.get(i);
+                    if (visitor.visitCommonTableExpression(table)) {
+                        walk(table.getQuery(), visitor);
+                        visitor.endCommonTableExpression(table);
+                    }
+                }
+                walk(with.getQuery(), visitor);
+                visitor.endWith(with);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported query type " + query.getClass().getName());
+        }
+    }
+
+    private static void select(SelectQuery query, QueryVisitor visitor) {
+        if (!visitor.visitSelect(query)) {
+            return;
+        }
+        List<Source> sources = query.getFromSources();
+        if (sources != null) {
+            for (int i = 0; i < sources.size(); i++) {
+                source(sources.get(i), visitor);
+            }
+        }
+        List<Join> joins = query.getJoins();
+        if (joins != null) {
+            for (int i = 0; i < joins.size(); i++) {
+                Join join = joins.get(i);
+                if (visitor.visitJoin(join)) {
+                    source(join.getSource(), visitor);
+                    condition(join.getConditions(), join.getCondition(), Keyword.ON, visitor);
+                }
+            }
+        }
+        List<Column> columns = query.getColumns();
+        if (columns != null) {
+            for (int i = 0; i < columns.size(); i++) {
+                Column column = columns.get(i);
+                if (visitor.visitColumn(column)) {
+                    walk(column.getExpression(), Keyword.SELECT, visitor);
+                }
+            }
+        }
+        condition(query.getWhereClauses(), query.getWhere(), Keyword.WHERE, visitor);
+        expressions(query.getGroupBy(), Keyword.GROUP, visitor);
+        condition(query.getHavingClauses(), query.getHaving(), Keyword.HAVING, visitor);
+        sorts(query.getSortColumns(), visitor);
+        walk(query.getLimitParameter(), Keyword.LIMIT, visitor);
+        walk(query.getOffsetParameter(), Keyword.OFFSET, visitor);
+        visitor.endSelect(query);
+    }
+
+    private static void source(Source source, QueryVisitor visitor) {
+        if (visitor.visitSource(source)) {
+            walk(source.getSubquery(), visitor);
+        }
+    }
+
+    /**
+     * Visits the clauses of a condition, then its tree, or the clause expressions of a query built
+     * without the tree.
+     */
+    private static void condition(List<Clause> clauses, Expression condition, Keyword keyword, QueryVisitor visitor) {
+        if (clauses != null) {
+            for (int i = 0; i < clauses.size(); i++) {
+                visitor.visitClause(clauses.get(i), keyword);
+            }
+        }
+        if (condition != null) {
+            walk(condition, keyword, visitor);
+        } else if (clauses != null) {
+            for (int i = 0; i < clauses.size(); i++) {
+                walk(clauses.get(i).getExpression(), keyword, visitor);
+            }
+        }
+    }
+
+    private static void sorts(List<Sort> sorts, QueryVisitor visitor) {
+        if (sorts != null) {
+            for (int i = 0; i < sorts.size(); i++) {
+                Sort sort = sorts.get(i);
+                if (visitor.visitSort(sort)) {
+                    walk(sort.getKey(), Keyword.ORDER, visitor);
+                }
+            }
+        }
+    }
+
+    private static void expressions(List<Expression> expressions, Keyword clause, QueryVisitor visitor) {
+        if (expressions != null) {
+            for (int i = 0; i < expressions.size(); i++) {
+                walk(expressions.get(i), clause, visitor);
+            }
+        }
+    }
+
+    public static void walk(Expression expression, Keyword clause, QueryVisitor visitor) {
+        if (expression == null || !visitor.visitExpression(expression, clause)) {
+            return;
+        }
+        if (expression instanceof ColumnReference column) {
+            visitor.visitColumnReference(column, clause);
+        } else if (expression instanceof AllColumns columns) {
+            visitor.visitAllColumns(columns, clause);
+        } else if (expression instanceof Literal || expression instanceof Parameter) {
+            return;
+        } else if (expression instanceof BinaryExpression binary) {
+            walk(binary.getLeft(), clause, visitor);
+            walk(binary.getRight(), clause, visitor);
+        } else if (expression instanceof UnaryExpression unary) {
+            walk(unary.getOperand(), clause, visitor);
+        } else if (expression instanceof NestedExpression nested) {
+            walk(nested.getExpression(), clause, visitor);
+        } else if (expression instanceof FunctionCall function) {
+            expressions(function.getArguments(), clause, visitor);
+        } else if (expression instanceof BetweenExpression between) {
+            walk(between.getExpression(), clause, visitor);
+            walk(between.getLower(), clause, visitor);
+            walk(between.getUpper(), clause, visitor);
+        } else if (expression instanceof InExpression in) {
+            walk(in.getExpression(), clause, visitor);
+            expressions(in.getValues(), clause, visitor);
+        } else if (expression instanceof IsNullExpression isNull) {
+            walk(isNull.getExpression(), clause, visitor);
+        } else if (expression instanceof SubqueryExpression subquery) {
+            walk(subquery.getQuery(), visitor);
+        } else if (expression instanceof ExistsExpression exists) {
+            walk(exists.getQuery(), visitor);
+        } else if (expression instanceof CaseExpression caseExpression) {
+            walk(caseExpression.getOperand(), clause, visitor);
+            List<WhenClause> whenClauses = caseExpression.getWhenClauses();
+            for (int i = 0; i < whenClauses.size(); i++) {
+                walk(whenClauses.get(i).getCondition(), clause, visitor);
+                walk(whenClauses.get(i).getResult(), clause, visitor);
+            }
+            walk(caseExpression.getElseResult(), clause, visitor);
+        } else if (expression instanceof WindowFunction window) {
+            walk(window.getFunction(), clause, visitor);
+            expressions(window.getPartitionBy(), clause, visitor);
+            List<Sort> orderBy = window.getOrderBy();
+            if (orderBy != null) {
+                for (int i = 0; i < orderBy.size(); i++) {
+                    if (visitor.visitSort(orderBy.get(i))) {
+                        walk(orderBy.get(i).getKey(), clause, visitor);
+                    }
+                }
+            }
+            WindowFrame frame = window.getFrame();
+            if (frame != null) {
+                walk(frame.getStartOffset(), clause, visitor);
+                walk(frame.getEndOffset(), clause, visitor);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported expression type " + expression.getClass().getName());
+        }
+    }
+}
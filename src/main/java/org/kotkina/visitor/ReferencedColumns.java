@@ -0,0 +1,90 @@
+package org.kotkina.visitor;
+
+import org.kotkina.models.Column;
+import org.kotkina.models.Keyword;
+import org.kotkina.models.Query;
+import org.kotkina.models.SelectQuery;
+import org.kotkina.models.expression.AllColumns;
+import org.kotkina.models.expression.ColumnReference;
+import org.kotkina.models.expression.Expression;
+import org.kotkina.models.expression.FunctionCall;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the columns referenced by a query and its subqueries with their tables resolved through
+ * the aliases of the sources, in the order of their first reference. An unqualified ORDER BY name
+ * of a column alias is not a column; {@code *} stands for each table of its query, except as a
+ * function argument like in {@code count(*)}.
+ */
+public class ReferencedColumns extends ScopedVisitor {
+
+    private final Set<ResolvedColumn> columns = new LinkedHashSet<>();
+
+    public static Set<ResolvedColumn> of(Query query) {
+        ReferencedColumns visitor = new ReferencedColumns();
+        QueryWalker.walk(query, visitor);
+        return visitor.getColumns();
+    }
+
+    @Override
+    public boolean visitExpression(Expression expression, Keyword clause) {
+        if (expression instanceof FunctionCall function) {
+            List<Expression> arguments = function.getArguments();
+            for (int i = 0; arguments != null && i < arguments.size(); i++) {
+                if (!(arguments.get(i) instanceof AllColumns)) {
+                    QueryWalker.walk(arguments.get(i), clause, this);
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void visitColumnReference(ColumnReference column, Keyword clause) {
+        if (clause == Keyword.ORDER && column.getQualifier() == null && isAlias(column.getName())) {
+            return;
+        }
+        add(new ResolvedColumn(table(column), column.getName()), clause);
+    }
+
+    @Override
+    public void visitAllColumns(AllColumns wildcard, Keyword clause) {
+        if (wildcard.getQualifier() != null) {
+            add(new ResolvedColumn(table(wildcard.getQualifier()), "*"), clause);
+            return;
+        }
+        List<String> tables = tables();
+        for (int i = 0; i < tables.size(); i++) {
+            add(new ResolvedColumn(tables.get(i), "*"), clause);
+        }
+    }
+
+    /**
+     * Called for each column reference with the clause it is in.
+     */
+    protected void add(ResolvedColumn column, Keyword clause) {
+        columns.add(column);
+    }
+
+    private boolean isAlias(String name) {
+        SelectQuery query = query();
+        if (query == null || query.getColumns() == null) {
+            return false;
+        }
+        for (Column column : query.getColumns()) {
+            if (name.equals(column.getAlias())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Set<ResolvedColumn> getColumns() {
+        return Collections.unmodifiableSet(columns);
+    }
+}
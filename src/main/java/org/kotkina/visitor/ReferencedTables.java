@@ -0,0 +1,39 @@
+package org.kotkina.visitor;
+
+import org.kotkina.models.Query;
+import org.kotkina.models.SelectQuery;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the tables read by a query and its subqueries, in the order of their first source.
+ */
+public class ReferencedTables extends ScopedVisitor {
+
+    private final Set<String> tables = new LinkedHashSet<>();
+
+    public static Set<String> of(Query query) {
+        ReferencedTables visitor = new ReferencedTables();
+        QueryWalker.walk(query, visitor);
+        return visitor.getTables();
+    }
+
+    @Override
+    public boolean visitSelect(SelectQuery query) {
+        super.visitSelect(query);
+        List<String> sources = tables();
+        for (int i = 0; i < sources.size(); i++) {
+            if (sources.get(i) != null) {
+                tables.add(sources.get(i));
+            }
+        }
+        return true;
+    }
+
+    public Set<String> getTables() {
+        return Collections.unmodifiableSet(tables);
+    }
+}
@@ -0,0 +1,22 @@
+package org.kotkina.visitor;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * A column referenced by a query with the table it belongs to, {@code null} when that is not a
+ * table of the query or cannot be told without a schema. The name is {@code *} for wildcards.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class ResolvedColumn {
+    private final String table;
+    private final String name;
+
+    @Override
+    public String toString() {
+        return table == null ? name : table + "." + name;
+    }
+}
@@ -0,0 +1,228 @@
+package org.kotkina.visitor;
+
+import org.kotkina.models.*;
+import org.kotkina.models.expression.ColumnReference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A visitor that keeps the sources of the queries being visited, so that column qualifiers can be
+ * resolved to the tables they name. A qualifier is an alias, a table name or the last part of a
+ * schema-qualified table name, looked up in the query it is in and then in the enclosing ones.
+ * Unquoted name parts are compared without case, as SQL folds them, quoted parts only match
+ * quoted parts with the same text. Derived tables and WITH queries are not tables. Subclasses overriding the scope callbacks must
+ * call the overridden methods.
+ */
+public abstract class ScopedVisitor implements QueryVisitor {
+
+    private final ArrayDeque<Scope> scopes = new ArrayDeque<>();
+    private final ArrayDeque<String> commonTables = new ArrayDeque<>();
+    private final ArrayDeque<WithQuery> withs = new ArrayDeque<>();
+
+    @Override
+    public boolean visitSelect(SelectQuery query) {
+        List<String> names = new ArrayList<>();
+        List<String> tables = new ArrayList<>();
+        List<Source> sources = query.getFromSources();
+        if (sources != null) {
+            for (int i = 0; i < sources.size(); i++) {
+                add(sources.get(i), names, tables);
+            }
+        }
+        List<Join> joins = query.getJoins();
+        if (joins != null) {
+            for (int i = 0; i < joins.size(); i++) {
+                add(joins.get(i).getSource(), names, tables);
+            }
+        }
+        scopes.push(new Scope(query, names, tables));
+        return true;
+    }
+
+    private void add(Source source, List<String> names, List<String> tables) {
+        String table = source.getSubquery() == null && !isCommonTable(source.getTable()) ? source.getTable() : null;
+        names.add(source.getAlias() != null ? source.getAlias() : source.getTable());
+        tables.add(table);
+    }
+
+    @Override
+    public void endSelect(SelectQuery query) {
+        scopes.pop();
+    }
+
+    /**
+     * Keeps the ORDER BY of the operation from resolving in an enclosing query.
+     */
+    @Override
+    public boolean visitSetOperation(SetOperation operation) {
+        scopes.push(new Scope(null, List.of(), List.of()));
+        return true;
+    }
+
+    @Override
+    public void endSetOperation(SetOperation operation) {
+        scopes.pop();
+    }
+
+    @Override
+    public boolean visitWith(WithQuery with) {
+        withs.push(with);
+        if (with.isRecursive()) {
+            for (CommonTableExpression table : with.getTables()) {
+                commonTables.push(table.getName());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void endCommonTableExpression(CommonTableExpression table) {
+        if (!withs.element().isRecursive()) {
+            commonTables.push(table.getName());
+        }
+    }
+
+    @Override
+    public void endWith(WithQuery with) {
+        for (int i = 0; i < with.getTables().size(); i++) {
+            commonTables.pop();
+        }
+        withs.pop();
+    }
+
+    /**
+     * The SELECT query being visited, {@code null} outside of one.
+     */
+    protected SelectQuery query() {
+        return scopes.isEmpty() ? null : scopes.element().query;
+    }
+
+    /**
+     * The table of a column: the table its qualifier names, or without a qualifier the only source
+     * of its query. {@code null} when it is not a table column or cannot be told without a schema.
+     */
+    protected String table(ColumnReference column) {
+        return column.getQualifier() == null ? onlyTable() : table(column.getQualifier());
+    }
+
+    /**
+     * The table a qualifier names, {@code null} for derived tables, WITH queries and unknown qualifiers.
+     */
+    protected String table(String qualifier) {
+        for (Scope scope : scopes) {
+            for (int i = 0; i < scope.names.size(); i++) {
+                if (matches(scope.names.get(i), qualifier)) {
+                    return scope.tables.get(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The tables of the sources of the query being visited, {@code null} entries for other sources.
+     */
+    protected List<String> tables() {
+        return scopes.isEmpty() ? List.of() : scopes.element().tables;
+    }
+
+    private String onlyTable() {
+        Iterator<Scope> iterator = scopes.iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        List<String> tables = iterator.next().tables;
+        return tables.size() == 1 ? tables.get(0) : null;
+    }
+
+    private boolean isCommonTable(String table) {
+        if (table == null || parts(table).size() > 1) {
+            return false;
+        }
+        for (String name : commonTables) {
+            if (sameName(name, table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the parts of the qualifier are the last parts of the name.
+     */
+    private static boolean matches(String name, String qualifier) {
+        if (name == null) {
+            return false;
+        }
+        List<String> names = parts(name);
+        List<String> qualifiers = parts(qualifier);
+        if (qualifiers.size() > names.size()) {
+            return false;
+        }
+        for (int i = 1; i <= qualifiers.size(); i++) {
+            if (!sameName(names.get(names.size() - i), qualifiers.get(qualifiers.size() - i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The parts of a dotted name, with their quotes.
+     */
+    private static List<String> parts(String name) {
+        List<String> parts = new ArrayList<>(2);
+        int start = 0;
+        char quote = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '[') {
+                quote = ']';
+            } else if (c == '.') {
+                parts.add(name.substring(start, i).strip());
+                start = i + 1;
+            }
+        }
+        parts.add(name.substring(start).strip());
+        return parts;
+    }
+
+    private static boolean sameName(String first, String second) {
+        boolean quoted = isQuoted(first);
+        if (quoted != isQuoted(second)) {
+            return false;
+        }
+        return quoted
+                ? first.length() == second.length() && first.regionMatches(1, second, 1, first.length() - 2)
+                : first.equalsIgnoreCase(second);
+    }
+
+    private static boolean isQuoted(String name) {
+        if (name.length() < 2) {
+            return false;
+        }
+        char first = name.charAt(0);
+        char last = name.charAt(name.length() - 1);
+        return first == '"' && last == '"' || first == '`' && last == '`' || first == '[' && last == ']';
+    }
+
+    private static final class Scope {
+        private final SelectQuery query;
+        private final List<String> names;
+        private final List<String> tables;
+
+        Scope(SelectQuery query, List<String> names, List<String> tables) {
+            this.query = query;
+            this.names = names;
+            this.tables = Collections.unmodifiableList(tables);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.kotkina.analysis;
+
+import org.junit.jupiter.api.Test;
+import org.kotkina.models.Keyword;
+import org.kotkina.models.Query;
+import org.kotkina.services.CachedQueryService;
+import org.kotkina.services.QueryService;
+import org.kotkina.visitor.ResolvedColumn;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryAnalyzerTest {
+
+    private final QueryService queryService = new QueryService();
+
+    @Test
+    void analyzeClauseUsage() {
+        QueryFootprint footprint = QueryAnalyzer.footprint(queryService.parse(
+                "SELECT p.name, d.title FROM person p INNER JOIN document d ON d.person_id = p.id"
+                        + " WHERE p.age > 18 AND d.type_id IN (SELECT id FROM document_type WHERE name = 'passport')"
+                        + " GROUP BY p.name, d.title HAVING count(p.id) > 1 ORDER BY p.name"));
+        ResolvedColumn name = new ResolvedColumn("person", "name");
+
+        assertAll(
+                () -> assertEquals(footprint.getTables(), Set.of("person", "document", "document_type")),
+                () -> assertEquals(footprint.getClauses(name), Set.of(Keyword.SELECT, Keyword.GROUP, Keyword.ORDER)),
+                () -> assertEquals(footprint.getClauses(new ResolvedColumn("person", "id")), Set.of(Keyword.ON, Keyword.HAVING)),
+                () -> assertEquals(footprint.getColumns(Keyword.WHERE), List.of(new ResolvedColumn("person", "age"),
+                        new ResolvedColumn("document", "type_id"), new ResolvedColumn("document_type", "name"))),
+                () -> assertEquals(footprint.getColumns(Keyword.SELECT), List.of(name, new ResolvedColumn("document", "title"),
+                        new ResolvedColumn("document_type", "id"))),
+                () -> assertTrue(footprint.getClauses(new ResolvedColumn("person", "email")).isEmpty()),
+                () -> assertTrue(footprint.readsTable("document_type")),
+                () -> assertFalse(footprint.readsColumn("person", "email"))
+        );
+    }
+
+    @Test
+    void readColumnsThroughWildcards() {
+        QueryFootprint footprint = QueryAnalyzer.footprint(queryService.parse(
+                "WITH adults AS (SELECT * FROM person WHERE age >= 18) SELECT a.*, count(*) FROM adults a"));
+
+        assertAll(
+                () -> assertEquals(footprint.getTables(), Set.of("person")),
+                () -> assertTrue(footprint.readsColumn("person", "email")),
+                () -> assertEquals(footprint.getColumns(), Set.of(new ResolvedColumn("person", "*"),
+                        new ResolvedColumn("person", "age"), new ResolvedColumn(null, "*")))
+        );
+    }
+
+    @Test
+    void keepFootprintOnQuery() {
+        CachedQueryService cachedService = new CachedQueryService(10);
+        Query query = cachedService.parse("SELECT id FROM t UNION SELECT id FROM u");
+        QueryFootprint footprint = QueryAnalyzer.footprint(query);
+
+        assertAll(
+                () -> assertSame(QueryAnalyzer.footprint(cachedService.parse("SELECT id FROM t UNION SELECT id FROM u")), footprint),
+                () -> assertNotSame(QueryAnalyzer.analyze(query), footprint),
+                () -> assertEquals(QueryAnalyzer.analyze(query), footprint),
+                () -> assertEquals(query, queryService.parse("SELECT id FROM t UNION SELECT id FROM u")),
+                () -> assertThrows(UnsupportedOperationException.class, () -> footprint.getTables().add("v"))
+        );
+    }
+}
@@ -0,0 +1,82 @@
+package org.kotkina.lexer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.Keyword;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LexerTest {
+
+    @Test
+    void tokenizeSelectQuery() {
+        String input = "SELECT p.name AS \"Name\", count(*) FROM person p WHERE p.age >= 18 AND p.city <> 'O''Hare';";
+        List<Token> tokens = new Lexer(input).tokenize();
+
+        assertAll(
+                () -> assertEquals(tokens.size(), 27),
+                () -> assertEquals(tokens.get(0).getType(), TokenType.KEYWORD),
+                () -> assertEquals(tokens.get(0).getKeyword(), Keyword.SELECT),
+                () -> assertEquals(tokens.get(1).getType(), TokenType.IDENTIFIER),
+                () -> assertEquals(tokens.get(1).text(), "p"),
+                () -> assertEquals(tokens.get(2).getType(), TokenType.PUNCTUATION),
+                () -> assertEquals(tokens.get(5).getType(), TokenType.QUOTED_IDENTIFIER),
+                () -> assertEquals(tokens.get(5).text(), "\"Name\""),
+                () -> assertEquals(tokens.get(8).getType(), TokenType.PUNCTUATION),
+                () -> assertEquals(tokens.get(9).getType(), TokenType.OPERATOR),
+                () -> assertEquals(tokens.get(11).getKeyword(), Keyword.FROM),
+                () -> assertEquals(tokens.get(18).text(), ">="),
+                () -> assertEquals(tokens.get(19).getType(), TokenType.NUMBER),
+                () -> assertEquals(tokens.get(24).text(), "<>"),
+                () -> assertEquals(tokens.get(25).getType(), TokenType.STRING),
+                () -> assertEquals(tokens.get(25).text(), "'O''Hare'"),
+                () -> assertEquals(tokens.get(26).getType(), TokenType.PUNCTUATION)
+        );
+    }
+
+    @Test
+    void tokenOffsets() {
+        String input = "  select\n\tid";
+        List<Token> tokens = new Lexer(input).tokenize();
+
+        assertAll(
+                () -> assertEquals(tokens.get(0).getStart(), 2),
+                () -> assertEquals(tokens.get(0).getEnd(), 8),
+                () -> assertEquals(tokens.get(0).getKeyword(), Keyword.SELECT),
+                () -> assertEquals(tokens.get(1).getStart(), 10),
+                () -> assertEquals(tokens.get(1).getEnd(), 12)
+        );
+    }
+
+    @Test
+    void tokenizeNumbers() {
+        List<Token> tokens = new Lexer("1 2.5 .5 1e10 3E-2").tokenize();
+
+        assertAll(
+                () -> assertEquals(tokens.size(), 5),
+                () -> assertTrue(tokens.stream().allMatch(t -> t.is(TokenType.NUMBER))),
+                () -> assertEquals(tokens.get(4).text(), "3E-2")
+        );
+    }
+
+    @Test
+    void skipComments() {
+        List<Token> tokens = new Lexer("SELECT -- the id\n id /* multi\nline */ FROM t").tokenize();
+
+        assertAll(
+                () -> assertEquals(tokens.size(), 4),
+                () -> assertEquals(tokens.get(1).text(), "id"),
+                () -> assertEquals(tokens.get(2).getKeyword(), Keyword.FROM)
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"'unterminated", "\"unterminated", "/* unterminated", "a # b"})
+    void tokenizeWithException(String input) {
+        assertThrows(InvalidQueryException.class, () -> new Lexer(input).tokenize());
+    }
+}
@@ -0,0 +1,71 @@
+package org.kotkina.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.services.QueryService;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParseMetricsTest {
+
+    private final ParseMetrics metrics = new ParseMetrics();
+    private final QueryService queryService = new QueryService(null, ForkJoinPool.commonPool(), metrics);
+
+    @Test
+    void recordPhases() {
+        queryService.parse("SELECT a FROM t LEFT JOIN u ON u.id = t.id WHERE a > 1 ORDER BY a");
+        queryService.parse("SELECT a FROM t");
+
+        assertAll(
+                () -> assertEquals(metrics.parseTimes().getCount(), 2),
+                () -> assertEquals(metrics.phase(ParsePhase.VALIDATION).getCount(), 2),
+                () -> assertEquals(metrics.phase(ParsePhase.TOKENIZATION).getCount(), 2),
+                () -> assertEquals(metrics.phase(ParsePhase.SELECT).getCount(), 2),
+                () -> assertEquals(metrics.phase(ParsePhase.FROM).getCount(), 2),
+                () -> assertEquals(metrics.phase(ParsePhase.JOIN).getCount(), 1),
+                () -> assertEquals(metrics.phase(ParsePhase.WHERE).getCount(), 1),
+                () -> assertEquals(metrics.phase(ParsePhase.GROUP).getCount(), 0),
+                () -> assertEquals(metrics.tokenCounts().getSum(), 22 + 4),
+                () -> assertEquals(metrics.tokenCounts().getMax(), 22),
+                () -> assertEquals(metrics.statementLengths().getSum(), 65 + 15)
+        );
+    }
+
+    @Test
+    void countErrorsByClause() {
+        assertThrows(InvalidQueryException.class, () -> queryService.parse("SELECT a FROM t WHERE"));
+        assertThrows(InvalidQueryException.class, () -> queryService.parse("SELECT a FROM t WHERE b ="));
+        assertThrows(InvalidQueryException.class, () -> queryService.parse("SELECT a FROM t LIMIT x"));
+        assertThrows(InvalidQueryException.class, () -> queryService.parse("SELECT # FROM t"));
+        assertThrows(InvalidQueryException.class, () -> queryService.parse(" "));
+
+        assertAll(
+                () -> assertEquals(metrics.errors(), Map.of("WHERE", 2L, "LIMIT", 1L, ParseMetrics.STATEMENT, 2L)),
+                () -> assertEquals(metrics.parseTimes().getCount(), 5),
+                () -> assertEquals(metrics.tokenCounts().getSum(), 5 + 7 + 6)
+        );
+    }
+
+    @Test
+    void histogramPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertAll(
+                () -> assertEquals(histogram.getCount(), 1000),
+                () -> assertEquals(histogram.getMax(), 1000),
+                () -> assertEquals(histogram.getMean(), 500.5),
+                () -> assertEquals(histogram.percentile(0.5), 511),
+                () -> assertEquals(histogram.percentile(0.99), 1000),
+                () -> assertEquals(histogram.percentile(0), 1)
+        );
+
+        histogram.reset();
+        assertEquals(histogram.percentile(0.5), 0);
+    }
+}
@@ -0,0 +1,78 @@
+package org.kotkina.models;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class KeywordTest {
+
+    @Test
+    void lookupEveryKeyword() {
+        for (Keyword keyword : Keyword.values()) {
+            String name = keyword.name();
+            String text = "(" + name.toLowerCase() + ")";
+
+            assertAll(
+                    () -> assertEquals(Keyword.lookup(name, 0, name.length()), keyword),
+                    () -> assertEquals(Keyword.lookup(text, 1, text.length() - 1), keyword),
+                    () -> assertNotEquals(Keyword.lookup(text, 1, text.length() - 2), keyword)
+            );
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"SELECTS", "selec", "s", "", "a_s", "1N", "\u00c4S", "WHERE1", "INTERSECTS"})
+    void lookupOtherWords(String word) {
+        assertNull(Keyword.lookup(word, 0, word.length()));
+    }
+
+    @Test
+    void classifyKeywords() {
+        assertAll(
+                () -> assertTrue(Keyword.WHERE.isClause()),
+                () -> assertTrue(Keyword.WHERE.isReserved()),
+                () -> assertFalse(Keyword.ON.isClause()),
+                () -> assertTrue(Keyword.ON.isReserved()),
+                () -> assertFalse(Keyword.FIRST.isReserved()),
+                () -> assertSame(Keyword.getList(), Keyword.getList())
+        );
+    }
+
+    @Test
+    void lookupWithoutAllocation() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String text = "select a, b as c from t left outer join u on u.id = t.id where x between 1 and 2 order by a desc";
+        int[] bounds = wordBounds(text);
+
+        long found = 0;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int round = 0; round < 10_000; round++) {
+            for (int i = 0; i < bounds.length; i += 2) {
+                if (Keyword.lookup(text, bounds[i], bounds[i + 1]) != null) found++;
+            }
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(found, 10_000L * 13);
+        assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+    }
+
+    private static int[] wordBounds(String text) {
+        String[] words = text.split("[^A-Za-z]+");
+        int[] bounds = new int[words.length * 2];
+        int from = 0;
+        for (int i = 0; i < words.length; i++) {
+            int start = text.indexOf(words[i], from);
+            bounds[2 * i] = start;
+            bounds[2 * i + 1] = start + words[i].length();
+            from = bounds[2 * i + 1];
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,133 @@
+package org.kotkina.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.Query;
+import org.kotkina.models.SelectQuery;
+import org.kotkina.models.SetOperation;
+import org.kotkina.models.WithQuery;
+import org.kotkina.models.expression.CaseExpression;
+import org.kotkina.models.expression.WindowFrame;
+import org.kotkina.models.expression.WindowFunction;
+import org.kotkina.render.SqlRenderer;
+import org.kotkina.serialization.JsonWriter;
+import org.kotkina.serialization.QueryReader;
+import org.kotkina.serialization.QueryWriter;
+import org.kotkina.services.QueryService;
+import org.kotkina.services.TemplateQueryService;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Production-like queries using the whole grammar, checked through parsing, rendering,
+ * serialization and template binding.
+ */
+class GrammarCorpusTest {
+
+    private final QueryService queryService = new QueryService();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT DISTINCT a.country FROM author a ORDER BY a.country",
+            "WITH recent AS (SELECT id, author_id FROM book WHERE published > '2020-01-01')"
+                    + " SELECT a.name, count(*) AS n FROM author a INNER JOIN recent r ON r.author_id = a.id GROUP BY a.name",
+            "WITH RECURSIVE tree(id, parent_id, depth) AS (SELECT id, parent_id, 0 FROM category WHERE parent_id IS NULL"
+                    + " UNION ALL SELECT c.id, c.parent_id, t.depth + 1 FROM category c INNER JOIN tree t ON c.parent_id = t.id)"
+                    + " SELECT * FROM tree ORDER BY depth LIMIT 100",
+            "WITH a AS (SELECT 1 AS x FROM t), b AS (SELECT x FROM a WHERE x > ?) SELECT x FROM b",
+            "SELECT id FROM book UNION SELECT id FROM archive ORDER BY id DESC LIMIT 10 OFFSET 5",
+            "SELECT a.id, b.id FROM a CROSS JOIN b INNER JOIN c USING (id) LEFT JOIN d USING (id, name) WHERE a.x = b.x",
+            "SELECT name FROM book ORDER BY published DESC NULLS LAST, name NULLS FIRST",
+            "SELECT rank() OVER (ORDER BY cost NULLS FIRST) FROM book",
+            "SELECT id FROM a UNION ALL SELECT id FROM b INTERSECT SELECT id FROM c EXCEPT SELECT id FROM d",
+            "(SELECT id FROM a UNION SELECT id FROM b) INTERSECT SELECT id FROM c",
+            "SELECT id FROM a EXCEPT ALL (SELECT id FROM b EXCEPT SELECT id FROM c)",
+            "(SELECT id FROM a ORDER BY id LIMIT 3) UNION (SELECT id FROM b LIMIT ?) LIMIT ?",
+            "SELECT name, CASE WHEN cost > 100 THEN 'high' WHEN cost > 10 THEN 'mid' ELSE 'low' END AS band FROM book",
+            "SELECT CASE status WHEN 1 THEN 'new' WHEN 2 THEN 'done' END FROM task WHERE CASE WHEN a THEN b END IS NOT NULL",
+            "SELECT id, row_number() OVER (PARTITION BY author_id ORDER BY published DESC) AS rn FROM book",
+            "SELECT sum(cost) OVER (ORDER BY day ROWS BETWEEN 6 PRECEDING AND CURRENT ROW) FROM sales",
+            "SELECT avg(x) OVER (PARTITION BY g RANGE UNBOUNDED PRECEDING), count(*) OVER () FROM t",
+            "SELECT max(x) OVER (ROWS BETWEEN CURRENT ROW AND UNBOUNDED FOLLOWING) FROM t",
+            "SELECT a FROM t WHERE a IN (SELECT b FROM u UNION SELECT c FROM v) AND EXISTS (WITH w AS (SELECT 1 FROM x) SELECT * FROM w)",
+            "SELECT s.total FROM (SELECT author_id, sum(cost) AS total FROM book GROUP BY author_id"
+                    + " HAVING sum(cost) > (SELECT avg(cost) FROM book)) s WHERE s.total BETWEEN ? AND 1000"
+    })
+    void roundTripCorpus(String input) {
+        Query query = queryService.parse(input);
+        String rendered = SqlRenderer.CANONICAL.render(query);
+        TemplateQueryService templateService = new TemplateQueryService(10);
+        templateService.parse(input);
+
+        assertAll(
+                () -> assertEquals(rendered, input),
+                () -> assertEquals(queryService.parse(rendered), query),
+                () -> assertEquals(QueryReader.fromBytes(QueryWriter.toBytes(query)), query),
+                () -> assertFalse(JsonWriter.toJson(query).isEmpty()),
+                () -> assertEquals(templateService.parse(input), query),
+                () -> assertEquals(new IncrementalParser().parse(input).getQuery(), query)
+        );
+    }
+
+    @Test
+    void parseSetOperationPrecedence() {
+        SetOperation union = (SetOperation) queryService.parse(
+                "SELECT a FROM t UNION SELECT b FROM u INTERSECT SELECT c FROM v EXCEPT SELECT d FROM w ORDER BY 1 LIMIT 2");
+        SetOperation left = (SetOperation) union.getLeft();
+        SetOperation intersect = (SetOperation) left.getRight();
+
+        assertAll(
+                () -> assertEquals(union.getOperator(), "EXCEPT"),
+                () -> assertEquals(union.getLimit(), 2),
+                () -> assertEquals(union.getSortColumns().size(), 1),
+                () -> assertEquals(left.getOperator(), "UNION"),
+                () -> assertNull(left.getLimit()),
+                () -> assertEquals(intersect.getOperator(), "INTERSECT"),
+                () -> assertFalse(((SelectQuery) union.getRight()).hasLimit())
+        );
+    }
+
+    @Test
+    void parseWithQueriesAndExpressions() {
+        WithQuery with = (WithQuery) queryService.parse(
+                "WITH RECURSIVE r(n) AS (SELECT 1 FROM t UNION ALL SELECT n + 1 FROM r WHERE n < 5) SELECT n FROM r");
+        SelectQuery select = (SelectQuery) queryService.parse(
+                "SELECT CASE x WHEN 1 THEN 'a' END, sum(y) OVER (ROWS 2 PRECEDING) FROM t");
+        CaseExpression caseExpression = (CaseExpression) select.getColumns().get(0).getExpression();
+        WindowFunction window = (WindowFunction) select.getColumns().get(1).getExpression();
+
+        assertAll(
+                () -> assertTrue(with.isRecursive()),
+                () -> assertEquals(with.getTables().get(0).getName(), "r"),
+                () -> assertEquals(with.getTables().get(0).getColumns(), List.of("n")),
+                () -> assertInstanceOf(SetOperation.class, with.getTables().get(0).getQuery()),
+                () -> assertNotNull(caseExpression.getOperand()),
+                () -> assertNull(caseExpression.getElseResult()),
+                () -> assertEquals(window.getFunction().getName(), "sum"),
+                () -> assertEquals(window.getFrame().getUnits(), "ROWS"),
+                () -> assertEquals(window.getFrame().getStart(), WindowFrame.PRECEDING),
+                () -> assertNull(window.getFrame().getEnd())
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT a FROM t ORDER BY a UNION SELECT b FROM u",
+            "SELECT a FROM t LIMIT 1 EXCEPT SELECT b FROM u",
+            "SELECT a FROM t UNION",
+            "WITH x AS SELECT 1 FROM t SELECT * FROM x",
+            "WITH x AS (SELECT 1 FROM t)",
+            "SELECT CASE WHEN a THEN b FROM t",
+            "SELECT CASE END FROM t",
+            "SELECT count(*) OVER (ROWS BETWEEN 1 PRECEDING) FROM t",
+            "SELECT count(*) OVER PARTITION BY a FROM t",
+            "(SELECT a FROM t"
+    })
+    void rejectInvalidGrammar(String input) {
+        assertThrows(InvalidQueryException.class, () -> queryService.parse(input));
+    }
+}
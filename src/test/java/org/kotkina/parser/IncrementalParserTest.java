@@ -0,0 +1,142 @@
+package org.kotkina.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.Query;
+import org.kotkina.models.SelectQuery;
+import org.kotkina.services.QueryService;
+
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalParserTest {
+
+    private static final String QUERY = "SELECT b.id, b.title AS t FROM book b\n"
+            + "INNER JOIN author a ON a.id = b.author_id -- authors\n"
+            + "LEFT JOIN shop s ON s.id = b.shop_id\n"
+            + "WHERE b.cost > ? AND a.name LIKE 'A%'\n"
+            + "GROUP BY b.id, b.title HAVING count(*) > 1\n"
+            + "ORDER BY t DESC /* order */ LIMIT ? OFFSET 5;";
+
+    private final IncrementalParser parser = new IncrementalParser();
+    private final QueryService queryService = new QueryService();
+
+    static Stream<Arguments> reparseLikeFullParse() {
+        return Stream.of(
+                Arguments.of(Edit.insert(QUERY.indexOf("b.title AS"), "b.cost, ")),
+                Arguments.of(new Edit(QUERY.indexOf("book b"), 4, "books")),
+                Arguments.of(Edit.insert(QUERY.indexOf("WHERE"), "RIGHT JOIN x ON x.id = s.id ")),
+                Arguments.of(Edit.delete(QUERY.indexOf("LEFT JOIN"), QUERY.indexOf("WHERE") - QUERY.indexOf("LEFT JOIN"))),
+                Arguments.of(new Edit(QUERY.indexOf("> ?"), 3, "= ? OR b.cost < ?")),
+                Arguments.of(Edit.delete(QUERY.indexOf("AND a.name"), QUERY.indexOf("\nGROUP") - QUERY.indexOf("AND a.name"))),
+                Arguments.of(Edit.delete(QUERY.indexOf(" HAVING"), QUERY.indexOf("\nORDER") - QUERY.indexOf(" HAVING"))),
+                Arguments.of(new Edit(QUERY.indexOf("DESC"), 4, "ASC, b.id")),
+                Arguments.of(new Edit(QUERY.indexOf("5;"), 2, "")),
+                Arguments.of(Edit.insert(QUERY.indexOf("WHERE"), "-- ")),
+                Arguments.of(Edit.insert(QUERY.indexOf("b.cost >"), "/* ")),
+                Arguments.of(Edit.delete(QUERY.indexOf("*/"), 2)),
+                Arguments.of(Edit.insert(QUERY.indexOf("OFFSET"), "'")),
+                Arguments.of(Edit.delete(QUERY.indexOf("WHERE"), 6)),
+                Arguments.of(new Edit(QUERY.indexOf("ORDER"), 5, "OR")),
+                Arguments.of(Edit.insert(QUERY.indexOf("\nWHERE"), "x")),
+                Arguments.of(Edit.delete(QUERY.indexOf("b\nINNER"), 1)),
+                Arguments.of(Edit.insert(QUERY.length(), " x")),
+                Arguments.of(Edit.insert(0, "-- query\n"))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void reparseLikeFullParse(Edit edit) {
+        String text = edit.apply(QUERY);
+        Query expected;
+        try {
+            expected = queryService.parse(text);
+        } catch (InvalidQueryException ex) {
+            InvalidQueryException actual = assertThrows(InvalidQueryException.class, () -> parser.reparse(parser.parse(QUERY), edit));
+            assertEquals(actual.getMessage(), ex.getMessage());
+            return;
+        }
+
+        EditableQuery result = parser.reparse(parser.parse(QUERY), edit);
+        assertAll(
+                () -> assertEquals(result.getText(), text),
+                () -> assertEquals(result.getQuery(), expected)
+        );
+    }
+
+    @Test
+    void reuseUnchangedClauses() {
+        EditableQuery previous = parser.parse(QUERY);
+        EditableQuery edited = parser.reparse(previous, new Edit(QUERY.indexOf("DESC"), 4, "ASC"));
+
+        assertAll(
+                () -> assertSame(select(edited).getColumns(), select(previous).getColumns()),
+                () -> assertSame(select(edited).getJoins().get(0), select(previous).getJoins().get(0)),
+                () -> assertSame(select(edited).getWhere(), select(previous).getWhere()),
+                () -> assertNotSame(select(edited).getSortColumns(), select(previous).getSortColumns()),
+                () -> assertEquals(edited.getQuery(), queryService.parse(edited.getText()))
+        );
+    }
+
+    @Test
+    void renumberLaterParameters() {
+        EditableQuery previous = parser.parse(QUERY);
+        EditableQuery edited = parser.reparse(previous, new Edit(QUERY.indexOf("> ?"), 3, "BETWEEN ? AND ?"));
+
+        assertAll(
+                () -> assertEquals(edited.getQuery(), queryService.parse(edited.getText())),
+                () -> assertEquals(select(edited).getLimitParameter().getIndex(), 2)
+        );
+    }
+
+    @Test
+    void rejectEditOutsideText() {
+        EditableQuery previous = parser.parse(QUERY);
+
+        assertAll(
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> parser.reparse(previous, Edit.delete(QUERY.length(), 1))),
+                () -> assertThrows(InvalidQueryException.class, () -> parser.reparse(previous, Edit.delete(0, QUERY.length())))
+        );
+    }
+
+    @Test
+    void typeAndEraseRandomly() {
+        Random random = new Random(17);
+        String alphabet = "abc ,.*()=?'-/\n;";
+        String[] words = {"SELECT", "FROM", "WHERE", "JOIN", "ON", "LIMIT", "ORDER BY", "GROUP BY", "1", "x"};
+        EditableQuery current = parser.parse(QUERY);
+
+        for (int i = 0; i < 5000; i++) {
+            String text = current.getText();
+            int offset = random.nextInt(text.length() + 1);
+            int removed = random.nextInt(4) == 0 ? Math.min(random.nextInt(4), text.length() - offset) : 0;
+            String inserted = random.nextBoolean()
+                    ? String.valueOf(alphabet.charAt(random.nextInt(alphabet.length())))
+                    : " " + words[random.nextInt(words.length)] + " ";
+            Edit edit = new Edit(offset, removed, inserted);
+            String edited = edit.apply(text);
+
+            Query expected;
+            try {
+                expected = queryService.parse(edited);
+            } catch (InvalidQueryException ex) {
+                EditableQuery previous = current;
+                InvalidQueryException actual = assertThrows(InvalidQueryException.class, () -> parser.reparse(previous, edit), edited);
+                assertEquals(actual.getMessage(), ex.getMessage(), edited);
+                continue;
+            }
+            current = parser.reparse(current, edit);
+            assertEquals(current.getQuery(), expected, edited);
+        }
+    }
+
+    private static SelectQuery select(EditableQuery query) {
+        return (SelectQuery) query.getQuery();
+    }
+}
@@ -0,0 +1,177 @@
+package org.kotkina.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.kotkina.analysis.QueryAnalyzer;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.metrics.ParseListener;
+import org.kotkina.models.Query;
+import org.kotkina.render.SqlRenderer;
+import org.kotkina.serialization.JsonWriter;
+import org.kotkina.serialization.QueryReader;
+import org.kotkina.serialization.QueryWriter;
+import org.kotkina.services.QueryService;
+import org.kotkina.services.TemplateQueryService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserLimitsTest {
+
+    private static final Duration BOUND = Duration.ofSeconds(5);
+
+    private final ParserLimits limits = ParserLimits.builder()
+            .maxStatementLength(100)
+            .maxTokens(40)
+            .maxNestingDepth(3)
+            .maxOperators(4)
+            .maxInListSize(4)
+            .build();
+
+    @Test
+    void failOnLimits() {
+        assertAll(
+                () -> assertLimit("SELECT a FROM t WHERE b = '" + "x".repeat(100) + "'", "The statement exceeds 100 characters"),
+                () -> assertLimit("SELECT " + "a, ".repeat(20) + "b", "The statement exceeds 40 tokens"),
+                () -> assertLimit("SELECT a FROM t WHERE ((((a = 1))))", "Error in WHERE clause: the nesting depth exceeds 3"),
+                () -> assertLimit("SELECT f(g(h(i(1)))) FROM t", "Error in SELECT clause: the nesting depth exceeds 3"),
+                () -> assertLimit("SELECT a FROM (SELECT a FROM (SELECT a FROM (SELECT a FROM (SELECT a FROM t) w) x) y) z",
+                        "Error in FROM clause: the nesting depth exceeds 3"),
+                () -> assertLimit("SELECT a FROM t WHERE a IN (1, 2, 3, 4, 5)", "Error in WHERE clause: the IN list exceeds 4"),
+                () -> assertLimit("SELECT a FROM t WHERE a = 1 AND b = 2 OR c = 3", "Error in WHERE clause: the number of operators exceeds 4"),
+                () -> assertLimit("SELECT a + b + c + d + e + f FROM t", "Error in SELECT clause: the number of operators exceeds 4"),
+                () -> assertLimit("SELECT a FROM t" + " UNION SELECT b".repeat(5), "Error in SELECT clause: the number of operators exceeds 4")
+        );
+    }
+
+    @Test
+    void acceptWithinLimits() {
+        assertDoesNotThrow(() -> new Parser("SELECT f(g(1)) FROM t WHERE ((a IN (1, 2, 3, 4)))", null, limits).parseStatement());
+    }
+
+    @Test
+    void applyLimitsInQueryService() {
+        QueryService queryService = new QueryService(null, ForkJoinPool.commonPool(), ParseListener.NONE, limits);
+        InvalidQueryException ex = assertThrows(InvalidQueryException.class, () -> queryService.parse("SELECT -(-(-(-a))) FROM t"));
+        assertEquals(ex.getClause(), "SELECT");
+    }
+
+    /**
+     * Trees as deep as the default limits allow go through the recursive consumers on a 1 MB stack,
+     * and a longer operator chain is rejected instead of overflowing them.
+     */
+    @Test
+    void consumeTreesWithinDefaultLimits() throws InterruptedException {
+        String input = select("(".repeat(199) + "a = 1" + " OR a = 1".repeat(499) + ")".repeat(199));
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                Query query = new QueryService().parse(input);
+                assertAll(
+                        () -> assertEquals(SqlRenderer.CANONICAL.render(query), input),
+                        () -> assertEquals(QueryReader.fromBytes(QueryWriter.toBytes(query)), query),
+                        () -> assertFalse(JsonWriter.toJson(query).isEmpty()),
+                        () -> assertNotNull(QueryAnalyzer.footprint(query)),
+                        () -> assertEquals(query.hashCode(), new QueryService().parse(input).hashCode()),
+                        () -> assertEquals(new TemplateQueryService(10).parse(input), query)
+                );
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, "consumer", 1 << 20);
+        thread.start();
+        thread.join();
+
+        assertAll(
+                () -> assertNull(failure[0]),
+                () -> assertThrows(InvalidQueryException.class, () -> new Parser(select("a = 1 OR ".repeat(5000) + "a = 1")).parseStatement()),
+                () -> assertThrows(InvalidQueryException.class, () -> new TemplateQueryService(10).parse(select("a = 1 OR ".repeat(5000) + "a = 1")))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("pathologicalInputs")
+    void rejectPathologicalInputsQuickly(String input) {
+        assertTimeoutPreemptively(BOUND, () -> assertThrows(InvalidQueryException.class, () -> new Parser(input).parseStatement()));
+    }
+
+    @ParameterizedTest
+    @MethodSource("largeQueries")
+    void parseLargeQueriesInBoundedTime(String query) {
+        assertTimeoutPreemptively(BOUND, () -> new Parser(query, null, ParserLimits.UNLIMITED).parseStatement());
+    }
+
+    @Test
+    void fuzzRandomTokens() {
+        String[] vocabulary = {"SELECT", "FROM", "WHERE", "JOIN", "LEFT", "ON", "AND", "OR", "NOT", "IN", "IS", "NULL",
+                "BETWEEN", "LIKE", "GROUP", "BY", "ORDER", "LIMIT", "OFFSET", "AS", "(", ")", ",", ".", "*", "=", "<",
+                "+", "-", "||", "?", ";", "a", "t", "f", "1", "2.5", "'s'", "\"q\"", "--", "/*", "*/", "'", "`"};
+        Random random = new Random(42);
+
+        assertTimeoutPreemptively(BOUND, () -> {
+            for (int i = 0; i < 20_000; i++) {
+                StringBuilder input = new StringBuilder(random.nextBoolean() ? "SELECT " : "");
+                int length = random.nextInt(30);
+                for (int j = 0; j < length; j++) {
+                    input.append(vocabulary[random.nextInt(vocabulary.length)]).append(random.nextInt(4) == 0 ? "" : " ");
+                }
+                try {
+                    new Parser(input).parseStatement();
+                } catch (InvalidQueryException ignored) {
+                    // only syntax errors are expected
+                }
+            }
+        });
+    }
+
+    private void assertLimit(String query, String message) {
+        InvalidQueryException ex = assertThrows(InvalidQueryException.class, () -> new Parser(query, null, limits).parseStatement());
+        assertEquals(ex.getMessage(), message);
+    }
+
+    static List<String> pathologicalInputs() {
+        return List.of(
+                select("(".repeat(100_000) + "a"),
+                select("NOT ".repeat(100_000) + "a"),
+                select("- ".repeat(100_000) + "a"),
+                select("f(".repeat(50_000) + "1"),
+                select("a IN (".repeat(50_000) + "1"),
+                select("EXISTS (SELECT a FROM t WHERE ".repeat(20_000) + "1"),
+                "SELECT a FROM t WHERE a IN (" + repeat(20_000, i -> i + ", ") + "0)",
+                "SELECT a FROM t WHERE b = '" + "x".repeat(2_000_000),
+                "SELECT a FROM t /*" + " *".repeat(1_000_000),
+                "SELECT " + "a, ".repeat(200_000) + "b FROM t",
+                select("(a = 1 AND ".repeat(20_000) + "b"),
+                select("a = ".repeat(50_000)),
+                "SELECT a FROM t " + "LEFT JOIN u ON ".repeat(30_000)
+        );
+    }
+
+    static List<String> largeQueries() {
+        return List.of(
+                select(repeat(50_000, i -> "c" + i + " = " + i + (i % 3 == 0 ? " OR " : " AND ")) + "x = 0"),
+                "SELECT " + repeat(50_000, i -> "t.c" + i + " AS a" + i + ", ") + "x FROM t",
+                "SELECT a FROM t WHERE a IN (" + repeat(50_000, i -> i + ", ") + "0)",
+                "SELECT t0.id FROM t0" + repeat(10_000, i -> " LEFT JOIN t" + (i + 1) + " ON t" + (i + 1) + ".p = t" + i + ".id"),
+                select("(".repeat(900) + "a = 1" + ")".repeat(900))
+        );
+    }
+
+    private static String select(String condition) {
+        return "SELECT a FROM t WHERE " + condition;
+    }
+
+    private static String repeat(int count, IntFunction<String> part) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(part.apply(i));
+        }
+        return text.toString();
+    }
+}
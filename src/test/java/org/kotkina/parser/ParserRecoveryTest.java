@@ -0,0 +1,120 @@
+package org.kotkina.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kotkina.errors.Diagnostic;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.lexer.Lexer;
+import org.kotkina.models.SelectQuery;
+import org.kotkina.models.Source;
+import org.kotkina.services.QueryService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserRecoveryTest {
+
+    private final QueryService queryService = new QueryService();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT a, b AS c FROM t LEFT JOIN u ON u.id = t.id WHERE a IN (SELECT x FROM v) GROUP BY a HAVING count(*) > 1 ORDER BY a DESC LIMIT ? OFFSET 2;",
+            "SELECT * FROM t"
+    })
+    void recoverValidQueries(String query) {
+        RecoveredQuery result = queryService.parseRecovering(query);
+
+        assertAll(
+                () -> assertTrue(result.isSuccess()),
+                () -> assertEquals(result.getQuery(), queryService.parse(query)),
+                () -> assertEquals(result.orElseThrow(), result.getQuery())
+        );
+    }
+
+    @Test
+    void reportAllErrors() {
+        RecoveredQuery result = queryService.parseRecovering("SELECT a, FROM t WHERE x = = 1\nGROUP BY b\nORDER BY");
+        List<Diagnostic> diagnostics = result.getDiagnostics();
+        SelectQuery query = select(result);
+
+        assertAll(
+                () -> assertEquals(diagnostics, List.of(
+                        new Diagnostic(10, 1, 11, "SELECT", "expression", "Error in SELECT clause: a,"),
+                        new Diagnostic(27, 1, 28, "WHERE", "expression", "Error in WHERE clause: x = = 1"),
+                        new Diagnostic(50, 3, 9, "ORDER", "expression", "Error in ORDER clause: BY"))),
+                () -> assertNull(query.getColumns()),
+                () -> assertEquals(query.getFromSources(), List.of(new Source("t", null, null))),
+                () -> assertNull(query.getWhere()),
+                () -> assertEquals(query.getGroupByColumns(), List.of("b")),
+                () -> assertNull(query.getSortColumns())
+        );
+    }
+
+    @Test
+    void skipNestedErrors() {
+        RecoveredQuery result = queryService.parseRecovering("SELECT a FROM (SELECT FROM u WHERE) s WHERE (b = 1 LIMIT 5");
+
+        assertAll(
+                () -> assertEquals(result.getDiagnostics().size(), 2),
+                () -> assertEquals(result.getDiagnostics().get(0).getOffset(), 22),
+                () -> assertEquals(result.getDiagnostics().get(1).getExpected(), "')'"),
+                () -> assertEquals(select(result).getColumns().size(), 1),
+                () -> assertNull(select(result).getFromSources()),
+                () -> assertNull(select(result).getWhere()),
+                () -> assertNull(select(result).getLimit())
+        );
+    }
+
+    @Test
+    void recoverStatementErrors() {
+        RecoveredQuery noSelect = queryService.parseRecovering("a, b FROM t WHERE c = 1");
+        RecoveredQuery characters = queryService.parseRecovering("SELECT a # b FROM t WHERE 'x");
+        RecoveredQuery trailing = queryService.parseRecovering("SELECT a FROM t; SELECT b");
+
+        assertAll(
+                () -> assertEquals(noSelect.getDiagnostics().size(), 1),
+                () -> assertEquals(noSelect.getDiagnostics().get(0).getExpected(), "SELECT"),
+                () -> assertEquals(select(noSelect).getWhereClauses().size(), 1),
+                () -> assertEquals(characters.getDiagnostics().get(0).getMessage(), "Unexpected character '#' at position 9"),
+                () -> assertEquals(characters.getDiagnostics().get(2).getMessage(), "Unexpected end of input in quoted text at position 26"),
+                () -> assertEquals(characters.getDiagnostics().get(1).getClause(), "WHERE"),
+                () -> assertEquals(select(characters).getColumns().get(0).getAlias(), "b"),
+                () -> assertEquals(trailing.getDiagnostics().get(0).getOffset(), 17),
+                () -> assertEquals(trailing.getQuery(), queryService.parse("SELECT a FROM t")),
+                () -> assertEquals(queryService.parseRecovering(" ").getDiagnostics().size(), 1)
+        );
+    }
+
+    @Test
+    void collectErrorsWithoutStackTraces() {
+        List<InvalidQueryException> errors = new ArrayList<>();
+        new Parser(new Lexer("SELECT a FROM t WHERE ! ORDER BY").tokenize(100, errors)).parseRecovering(errors);
+        InvalidQueryException thrown = assertThrows(InvalidQueryException.class,
+                () -> queryService.parseRecovering("SELECT a FROM").orElseThrow());
+
+        assertAll(
+                () -> assertEquals(errors.size(), 3),
+                () -> assertTrue(errors.stream().allMatch(error -> error.getStackTrace().length == 0)),
+                () -> assertNotEquals(thrown.getStackTrace().length, 0),
+                () -> assertEquals(thrown.getMessage(), assertThrows(InvalidQueryException.class, () -> queryService.parse("SELECT a FROM")).getMessage())
+        );
+    }
+
+    @Test
+    void positionThrownErrors() {
+        InvalidQueryException ex = assertThrows(InvalidQueryException.class, () -> queryService.parse("SELECT a FROM t WHERE a IN (1"));
+
+        assertAll(
+                () -> assertEquals(ex.getOffset(), 29),
+                () -> assertEquals(ex.getExpected(), "')'"),
+                () -> assertEquals(ex.getClause(), "WHERE")
+        );
+    }
+
+    private static SelectQuery select(RecoveredQuery result) {
+        return (SelectQuery) result.getQuery();
+    }
+}
@@ -0,0 +1,155 @@
+package org.kotkina.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.Join;
+import org.kotkina.models.SelectQuery;
+import org.kotkina.models.Source;
+import org.kotkina.models.expression.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserTest {
+
+    @Test
+    void parseOperatorPrecedence() {
+        Expression expression = new Parser("a = 1 OR b = 2 AND NOT c + 2 * 3 > 4").parseExpression();
+
+        BinaryExpression or = (BinaryExpression) expression;
+        BinaryExpression and = (BinaryExpression) or.getRight();
+        UnaryExpression not = (UnaryExpression) and.getRight();
+        BinaryExpression greater = (BinaryExpression) not.getOperand();
+        BinaryExpression plus = (BinaryExpression) greater.getLeft();
+
+        assertAll(
+                () -> assertEquals(or.getOperator(), "OR"),
+                () -> assertEquals(or.getLeft(), new BinaryExpression("=", new ColumnReference(null, "a"), new Literal(Literal.Kind.NUMBER, "1"))),
+                () -> assertEquals(and.getOperator(), "AND"),
+                () -> assertEquals(not.getOperator(), "NOT"),
+                () -> assertEquals(greater.getOperator(), ">"),
+                () -> assertEquals(plus.getOperator(), "+"),
+                () -> assertEquals(((BinaryExpression) plus.getRight()).getOperator(), "*")
+        );
+    }
+
+    @Test
+    void parsePredicates() {
+        Expression between = new Parser("a.x NOT BETWEEN 1 AND 10").parseExpression();
+        Expression in = new Parser("a.x IN (1, 2, 3)").parseExpression();
+        Expression inSubquery = new Parser("a.x IN (SELECT id FROM b)").parseExpression();
+        Expression isNull = new Parser("a.x IS NOT NULL").parseExpression();
+        Expression like = new Parser("a.x NOT LIKE 'A%'").parseExpression();
+        Expression exists = new Parser("EXISTS (SELECT 1 FROM b WHERE b.id = a.id)").parseExpression();
+
+        assertAll(
+                () -> assertEquals(between, new BetweenExpression(new ColumnReference("a", "x"),
+                        new Literal(Literal.Kind.NUMBER, "1"), new Literal(Literal.Kind.NUMBER, "10"), true)),
+                () -> assertEquals(((InExpression) in).getValues().size(), 3),
+                () -> assertInstanceOf(SubqueryExpression.class, ((InExpression) inSubquery).getValues().get(0)),
+                () -> assertTrue(((IsNullExpression) isNull).isNot()),
+                () -> assertEquals(((BinaryExpression) like).getOperator(), "NOT LIKE"),
+                () -> assertInstanceOf(SelectQuery.class, ((ExistsExpression) exists).getQuery())
+        );
+    }
+
+    @Test
+    void parseFunctionCalls() {
+        FunctionCall count = (FunctionCall) new Parser("COUNT(DISTINCT p.id)").parseExpression();
+        FunctionCall countAll = (FunctionCall) new Parser("count(*)").parseExpression();
+        FunctionCall now = (FunctionCall) new Parser("now()").parseExpression();
+
+        assertAll(
+                () -> assertEquals(count.getName(), "COUNT"),
+                () -> assertTrue(count.isDistinct()),
+                () -> assertEquals(count.getArguments(), List.of(new ColumnReference("p", "id"))),
+                () -> assertEquals(countAll.getArguments(), List.of(new AllColumns(null))),
+                () -> assertTrue(now.getArguments().isEmpty())
+        );
+    }
+
+    @Test
+    void parseSelectQueryTrees() {
+        SelectQuery query = (SelectQuery) new Parser("""
+                SELECT p.name, (SELECT max(d.id) FROM document d WHERE d.person_id = p.id) last_document
+                FROM person p
+                INNER JOIN (SELECT * FROM city WHERE country IN ('a', 'b')) c ON c.id = p.city_id AND c.active
+                WHERE (p.age < 18 OR p.age > 65) AND p.name LIKE 'A%'
+                GROUP BY p.name
+                ORDER BY p.name DESC""").parseStatement();
+        Join join = query.getJoins().get(0);
+
+        assertAll(
+                () -> assertInstanceOf(SubqueryExpression.class, query.getColumns().get(1).getExpression()),
+                () -> assertEquals(query.getColumns().get(1).getAlias(), "last_document"),
+                () -> assertInstanceOf(SelectQuery.class, join.getSource().getSubquery()),
+                () -> assertEquals(join.getSource().getAlias(), "c"),
+                () -> assertEquals(join.getConditions().size(), 2),
+                () -> assertEquals(((BinaryExpression) join.getCondition()).getOperator(), "AND"),
+                () -> assertEquals(query.getWhereClauses().get(0).getCondition(), "(p.age < 18 OR p.age > 65)"),
+                () -> assertInstanceOf(NestedExpression.class, query.getWhereClauses().get(0).getExpression()),
+                () -> assertEquals(((BinaryExpression) query.getWhere()).getOperator(), "AND"),
+                () -> assertEquals(query.getGroupBy(), List.of(new ColumnReference("p", "name"))),
+                () -> assertEquals(query.getSortColumns().get(0).getKey(), new ColumnReference("p", "name"))
+        );
+    }
+
+    @Test
+    void parseJoinForms() {
+        SelectQuery query = (SelectQuery) new Parser("""
+                SELECT * FROM a
+                JOIN b ON b.id = a.id
+                CROSS JOIN c
+                LEFT OUTER JOIN d USING (id, "Name")
+                ORDER BY a.x DESC NULLS LAST, b.y NULLS FIRST""").parseStatement();
+        List<Join> joins = query.getJoins();
+
+        assertAll(
+                () -> assertEquals(joins.get(0).getType(), "INNER JOIN"),
+                () -> assertEquals(joins.get(0).getCondition(), ((SelectQuery) new Parser("SELECT * FROM a INNER JOIN b ON b.id = a.id")
+                        .parseStatement()).getJoins().get(0).getCondition()),
+                () -> assertEquals(joins.get(1), new Join("CROSS JOIN", new Source("c", null, null), null, null)),
+                () -> assertEquals(joins.get(2).getType(), "LEFT JOIN"),
+                () -> assertEquals(joins.get(2).getUsing(), List.of("id", "\"Name\"")),
+                () -> assertNull(joins.get(2).getCondition()),
+                () -> assertTrue(query.getSortColumns().get(0).isDesc()),
+                () -> assertEquals(query.getSortColumns().get(0).getNulls(), "LAST"),
+                () -> assertEquals(query.getSortColumns().get(1).getNulls(), "FIRST")
+        );
+    }
+
+    @Test
+    void flattenConditionClauses() {
+        SelectQuery query = (SelectQuery) new Parser("SELECT * FROM t WHERE a = 1 OR b = 2 AND c BETWEEN 1 AND 2").parseStatement();
+
+        assertAll(
+                () -> assertEquals(query.getWhereClauses().size(), 3),
+                () -> assertEquals(query.getWhereClauses().get(2).getCondition(), "c BETWEEN 1 AND 2"),
+                () -> assertEquals(query.getWhereClauses().get(2).getOperator(), "AND"),
+                () -> assertEquals(((BinaryExpression) query.getWhere()).getOperator(), "OR")
+        );
+    }
+
+    @Test
+    void parseKeywordsAsNames() {
+        SelectQuery query = (SelectQuery) new Parser("SELECT first, t.range last FROM rows t WHERE partition = 1").parseStatement();
+
+        assertAll(
+                () -> assertEquals(query.getColumns().get(0).getExpression(), new ColumnReference(null, "first")),
+                () -> assertEquals(query.getColumns().get(1).getAlias(), "last"),
+                () -> assertEquals(query.getFromSources().get(0).getTable(), "rows"),
+                () -> assertEquals(query.getWhereClauses().get(0).getCondition(), "partition = 1")
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"SELECT a FROM t WHERE a IN ()", "SELECT a FROM t UNION", "SELECT case FROM t", "SELECT a FROM t WHERE a BETWEEN 1", "SELECT (a FROM t",
+            "SELECT a FROM (SELECT b FROM u", "SELECT a FROM t WHERE a IS 1", "SELECT a, FROM t", "SELECT a FROM t LIMIT x",
+            "SELECT a FROM t CROSS JOIN u ON u.id = t.id", "SELECT a FROM t JOIN u USING ()", "SELECT a FROM t JOIN u", "SELECT a FROM t ORDER BY a NULLS"})
+    void parseWrongQueryWithException(String query) {
+        assertThrows(InvalidQueryException.class, () -> new Parser(query).parseStatement());
+    }
+}
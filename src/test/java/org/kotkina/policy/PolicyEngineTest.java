@@ -0,0 +1,153 @@
+package org.kotkina.policy;
+
+import org.junit.jupiter.api.Test;
+import org.kotkina.analysis.QueryAnalyzer;
+import org.kotkina.analysis.QueryFootprint;
+import org.kotkina.models.Keyword;
+import org.kotkina.models.Query;
+import org.kotkina.services.QueryService;
+import org.kotkina.visitor.ResolvedColumn;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyEngineTest {
+
+    private final QueryService queryService = new QueryService();
+
+    private final PolicyEngine engine = PolicyEngine.compile(List.of(
+            PolicyRule.denyTable(null, "salary"),
+            PolicyRule.denyTable("acme", "hr.review"),
+            PolicyRule.maskColumn(null, "person", "email"),
+            PolicyRule.maskColumn("acme", "person", "phone"),
+            PolicyRule.requirePredicate("acme", "document", "tenant_id")
+    ));
+
+    @Test
+    void denyTables() {
+        Query query = queryService.parse("SELECT s.amount FROM \"Salary\" s WHERE s.id IN (SELECT id FROM hr.review)");
+
+        assertAll(
+                () -> assertEquals(engine.evaluate(query, null).getViolations(), List.of(PolicyRule.denyTable(null, "salary"))),
+                () -> assertEquals(engine.evaluate(query, "acme").getViolations(),
+                        List.of(PolicyRule.denyTable(null, "salary"), PolicyRule.denyTable("acme", "hr.review"))),
+                () -> assertFalse(engine.evaluate(queryService.parse("SELECT * FROM review"), "acme").isAllowed()),
+                () -> assertTrue(engine.evaluate(queryService.parse("SELECT * FROM sales.review"), "acme").isAllowed()),
+                () -> assertTrue(engine.evaluate(queryService.parse("SELECT salary FROM person"), "acme").isAllowed())
+        );
+    }
+
+    @Test
+    void maskColumns() {
+        PolicyResult named = engine.evaluate(queryService.parse(
+                "SELECT p.EMAIL, p.name, phone FROM public.person p INNER JOIN document d ON d.person_id = p.id"), "acme");
+        PolicyResult wildcard = engine.evaluate(queryService.parse("SELECT * FROM person"), null);
+
+        assertAll(
+                () -> assertEquals(named.getMaskedColumns(), Set.of(new ResolvedColumn("public.person", "EMAIL"), new ResolvedColumn(null, "phone"))),
+                () -> assertEquals(named.getMaskingRules(), List.of(PolicyRule.maskColumn(null, "person", "email"),
+                        PolicyRule.maskColumn("acme", "person", "phone"))),
+                () -> assertEquals(wildcard.getMaskedColumns(), Set.of(new ResolvedColumn("person", "*"))),
+                () -> assertEquals(wildcard.getMaskingRules(), List.of(PolicyRule.maskColumn(null, "person", "email"))),
+                () -> assertTrue(wildcard.isAllowed())
+        );
+    }
+
+    @Test
+    void requirePredicates() {
+        PolicyResult missing = engine.evaluate(queryService.parse("SELECT d.id FROM document d WHERE d.owner = ?"), "acme");
+        PolicyResult joined = engine.evaluate(queryService.parse(
+                "SELECT d.id FROM document d INNER JOIN person p ON p.tenant_id = d.tenant_id WHERE p.id = 1"), "acme");
+        PolicyResult filtered = engine.evaluate(queryService.parse("SELECT id FROM document WHERE tenant_id = ? AND id > 10"), "acme");
+
+        assertAll(
+                () -> assertEquals(missing.getViolations(), List.of(PolicyRule.requirePredicate("acme", "document", "tenant_id"))),
+                () -> assertFalse(joined.isAllowed()),
+                () -> assertTrue(filtered.isAllowed()),
+                () -> assertTrue(engine.evaluate(queryService.parse("SELECT B.id FROM document b WHERE B.TENANT_ID = 1"), "acme").isAllowed()),
+                () -> assertTrue(engine.evaluate(queryService.parse("SELECT d.id FROM document d"), "other").isAllowed())
+        );
+    }
+
+    @Test
+    void matchLinearEvaluation() {
+        Random random = new Random(22);
+        List<PolicyRule> rules = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String tenant = random.nextInt(3) == 0 ? null : "t" + random.nextInt(20);
+            String table = (random.nextBoolean() ? "s" + random.nextInt(3) + "." : "") + "table_" + random.nextInt(200);
+            String column = "c" + random.nextInt(10);
+            rules.add(switch (random.nextInt(3)) {
+                case 0 -> PolicyRule.denyTable(tenant, table);
+                case 1 -> PolicyRule.maskColumn(tenant, table, column);
+                default -> PolicyRule.requirePredicate(tenant, table, column);
+            });
+        }
+        PolicyEngine indexed = PolicyEngine.compile(rules);
+
+        for (int i = 0; i < 300; i++) {
+            String first = (random.nextBoolean() ? "s" + random.nextInt(3) + "." : "") + "table_" + random.nextInt(200);
+            String second = "TABLE_" + random.nextInt(200);
+            Query query = queryService.parse("SELECT a.c" + random.nextInt(10) + ", c" + random.nextInt(10) + ", b.*"
+                    + " FROM " + first + " a INNER JOIN " + second + " b ON b.c1 = a.c2"
+                    + " WHERE a.c" + random.nextInt(10) + " = ? AND b.c" + random.nextInt(10) + " > 1");
+            String tenant = "t" + random.nextInt(20);
+            PolicyResult result = indexed.evaluate(query, tenant);
+            PolicyResult expected = evaluateLinearly(rules, QueryAnalyzer.footprint(query), tenant);
+
+            assertEquals(Set.copyOf(result.getViolations()), Set.copyOf(expected.getViolations()), query.toString());
+            assertEquals(result.getMaskedColumns(), expected.getMaskedColumns());
+            assertEquals(Set.copyOf(result.getMaskingRules()), Set.copyOf(expected.getMaskingRules()));
+        }
+    }
+
+    private static PolicyResult evaluateLinearly(List<PolicyRule> rules, QueryFootprint footprint, String tenant) {
+        List<PolicyRule> violations = new ArrayList<>();
+        Set<ResolvedColumn> masked = new HashSet<>();
+        List<PolicyRule> maskingRules = new ArrayList<>();
+        for (PolicyRule rule : rules) {
+            if (rule.getTenant() != null && !rule.getTenant().equals(tenant)) {
+                continue;
+            }
+            for (String table : footprint.getTables()) {
+                if (!sameTable(rule.getTable(), table)) {
+                    continue;
+                }
+                if (rule.getKind() == PolicyRule.Kind.DENY_TABLE) {
+                    violations.add(rule);
+                } else if (rule.getKind() == PolicyRule.Kind.REQUIRE_PREDICATE) {
+                    boolean filtered = false;
+                    for (ResolvedColumn column : footprint.getColumns()) {
+                        filtered |= table.equals(column.getTable()) && column.getName().equalsIgnoreCase(rule.getColumn())
+                                && footprint.getClauses(column).contains(Keyword.WHERE);
+                    }
+                    if (!filtered) violations.add(rule);
+                } else {
+                    for (ResolvedColumn column : footprint.getColumns()) {
+                        boolean resolved = table.equals(column.getTable());
+                        if (resolved && column.getName().equals("*")
+                                || (resolved || column.getTable() == null) && column.getName().equalsIgnoreCase(rule.getColumn())) {
+                            masked.add(column);
+                            maskingRules.add(rule);
+                        }
+                    }
+                }
+            }
+        }
+        return new PolicyResult(violations, masked, maskingRules);
+    }
+
+    private static boolean sameTable(String rule, String table) {
+        String[] ruleParts = PolicyEngine.segments(rule);
+        String[] tableParts = PolicyEngine.segments(table);
+        for (int i = ruleParts.length - 1, j = tableParts.length - 1; i >= 0 && j >= 0; i--, j--) {
+            if (!ruleParts[i].equals(tableParts[j])) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+package org.kotkina.render;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kotkina.models.Column;
+import org.kotkina.models.Query;
+import org.kotkina.models.SelectQuery;
+import org.kotkina.models.Source;
+import org.kotkina.models.expression.BinaryExpression;
+import org.kotkina.models.expression.ColumnReference;
+import org.kotkina.models.expression.Expression;
+import org.kotkina.models.expression.Literal;
+import org.kotkina.models.expression.UnaryExpression;
+import org.kotkina.services.QueryService;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlRendererTest {
+
+    private final QueryService queryService = new QueryService();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT * FROM book",
+            "SELECT b.*, b.id AS \"Id\", count(DISTINCT b.author_id) AS n FROM public.book b",
+            "SELECT a.name AS author, sum(b.cost) AS total FROM author a LEFT JOIN book b ON a.id = b.author_id AND b.cost > 0"
+                    + " WHERE b.title LIKE 'A%' OR b.title NOT LIKE '%z' AND NOT b.hidden"
+                    + " GROUP BY a.name HAVING count(*) > 1 ORDER BY total DESC, a.name LIMIT 10 OFFSET 20",
+            "SELECT x FROM (SELECT id AS x FROM t) s INNER JOIN u ON u.x = s.x WHERE x IN (1, 2) AND x NOT IN (SELECT y FROM v)",
+            "SELECT -a, - -a, a - (b - c), a * (b + c), 'It''s' || `q` FROM t WHERE a BETWEEN 1 AND 2 AND b IS NOT NULL",
+            "SELECT 1 FROM t WHERE EXISTS (SELECT 1 FROM u WHERE u.id = t.id) AND c = (SELECT max(c) FROM u) AND d = TRUE",
+            "SELECT a FROM t WHERE a = ? AND b IS NULL LIMIT ? OFFSET ?",
+            "SELECT first, last FROM t ORDER BY first, last DESC"
+    })
+    void roundTripCanonicalQueries(String input) {
+        Query query = queryService.parse(input);
+        String rendered = SqlRenderer.CANONICAL.render(query);
+
+        assertAll(
+                () -> assertEquals(rendered, input),
+                () -> assertEquals(queryService.parse(rendered), query)
+        );
+    }
+
+    static Stream<Arguments> renderCanonicalForm() {
+        return Stream.of(
+                Arguments.of("select  a,b   from t  -- comment\n where a=1 and (b<>2 or c = 'x') order by a asc;",
+                        "SELECT a, b FROM t WHERE a = 1 AND (b <> 2 OR c = 'x') ORDER BY a"),
+                Arguments.of("SELECT /* hint */ count( * ) cnt FROM t t1 left outer join u on u.id=t1.id group by t1.x , t1.y",
+                        "SELECT count(*) AS cnt FROM t t1 LEFT JOIN u ON u.id = t1.id GROUP BY t1.x, t1.y"),
+                Arguments.of("SELECT s . name FROM \"My Schema\" . t s WHERE x in(1,2) and y between 1+1 and 3 limit all",
+                        "SELECT s.name FROM \"My Schema\".t s WHERE x IN (1, 2) AND y BETWEEN 1 + 1 AND 3"),
+                Arguments.of("SELECT null, false FROM t", "SELECT NULL, FALSE FROM t")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void renderCanonicalForm(String input, String expected) {
+        String rendered = SqlRenderer.CANONICAL.render(queryService.parse(input));
+
+        assertAll(
+                () -> assertEquals(rendered, expected),
+                () -> assertEquals(SqlRenderer.CANONICAL.render(queryService.parse(rendered)), rendered)
+        );
+    }
+
+    @Test
+    void renderWithOptions() {
+        Query query = queryService.parse("SELECT b.id, 'x' AS tag FROM book b WHERE b.id IN (1, 2) AND b.title = 'A' LIMIT 5");
+        SqlRenderer lower = new SqlRenderer(RenderOptions.builder().keywordCase(RenderOptions.KeywordCase.LOWER).build());
+        SqlRenderer quoted = new SqlRenderer(RenderOptions.builder().quoting(RenderOptions.Quoting.ALWAYS).build());
+        SqlRenderer parameterized = new SqlRenderer(RenderOptions.PARAMETERIZED);
+
+        assertAll(
+                () -> assertEquals(lower.render(query), "select b.id, 'x' as tag from book b where b.id in (1, 2) and b.title = 'A' limit 5"),
+                () -> assertEquals(quoted.render(query),
+                        "SELECT \"b\".\"id\", 'x' AS \"tag\" FROM \"book\" \"b\" WHERE \"b\".\"id\" IN (1, 2) AND \"b\".\"title\" = 'A' LIMIT 5"),
+                () -> assertEquals(parameterized.render(query), "SELECT b.id, ? AS tag FROM book b WHERE b.id IN (?, ?) AND b.title = ? LIMIT ?"),
+                () -> assertEquals(parameterized.render(query),
+                        parameterized.render(queryService.parse("SELECT b.id, 'y' AS tag FROM book b WHERE b.id IN (3, 4) AND b.title = 'B' LIMIT 7")))
+        );
+    }
+
+    @Test
+    void parenthesizeBuiltTrees() {
+        Expression a = new BinaryExpression("=", new ColumnReference(null, "a"), new Literal(Literal.Kind.NUMBER, "1"));
+        Expression b = new BinaryExpression("=", new ColumnReference(null, "b"), new Literal(Literal.Kind.NUMBER, "2"));
+        Expression where = new BinaryExpression("AND", new BinaryExpression("OR", a, b), new UnaryExpression("NOT", b));
+        Query query = SelectQuery.builder()
+                .columns(List.of(new Column("x", "select", new UnaryExpression("-", new UnaryExpression("-", new ColumnReference(null, "x"))))))
+                .fromSources(List.of(new Source("order items", null, null)))
+                .where(where)
+                .limit(3)
+                .build();
+
+        assertEquals(SqlRenderer.CANONICAL.render(query),
+                "SELECT - -x AS \"select\" FROM \"order items\" WHERE (a = 1 OR b = 2) AND NOT b = 2 LIMIT 3");
+    }
+
+    @Test
+    void reuseBuilder() {
+        StringBuilder out = new StringBuilder();
+        SqlRenderer.CANONICAL.render(queryService.parse("select a from t"), out);
+        out.append(';');
+        SqlRenderer.CANONICAL.render(queryService.parse("select b from u"), out);
+
+        assertEquals(out.toString(), "SELECT a FROM t;SELECT b FROM u");
+    }
+}
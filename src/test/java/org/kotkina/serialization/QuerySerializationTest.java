@@ -0,0 +1,164 @@
+package org.kotkina.serialization;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kotkina.models.Column;
+import org.kotkina.models.Query;
+import org.kotkina.models.SelectQuery;
+import org.kotkina.models.expression.BinaryExpression;
+import org.kotkina.models.expression.Literal;
+import org.kotkina.services.QueryService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuerySerializationTest {
+
+    private final QueryService queryService = new QueryService();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT * FROM book",
+            "SELECT DISTINCT_NAME, b.* FROM book b WHERE b.id IN (1, 2, 3) AND b.title LIKE 'A%' OR NOT b.cost > -1.5",
+            """
+                    SELECT a.name AS author, count(DISTINCT b.id) total, sum(b.cost) FROM author a
+                    LEFT JOIN book b ON a.id = b.author_id AND b.cost BETWEEN 10 AND 20
+                    INNER JOIN (SELECT id FROM shelf WHERE x IS NOT NULL) s ON s.id = b.id
+                    WHERE EXISTS (SELECT 1 FROM sale WHERE sale.book_id = b.id) AND b.id = (SELECT max(id) FROM book)
+                    GROUP BY a.name, upper(a.name) HAVING count(*) > 1 ORDER BY total DESC, a.name LIMIT 10 OFFSET 20""",
+            "SELECT 'It''s', \"quoted name\" || 'x' FROM t WHERE c NOT IN (?, ?) LIMIT ? OFFSET ?",
+            "SELECT * FROM a CROSS JOIN b JOIN c USING (id, name) ORDER BY a.x DESC NULLS FIRST, b.y NULLS LAST"
+    })
+    void roundTrip(String input) {
+        Query query = queryService.parse(input);
+        Query read = QueryReader.fromBytes(QueryWriter.toBytes(query));
+
+        assertEquals(read, query);
+    }
+
+    @Test
+    void keepSharedSubtrees() {
+        SelectQuery query = (SelectQuery) queryService.parse("SELECT * FROM t WHERE a = 1 AND b = 2");
+        SelectQuery read = (SelectQuery) QueryReader.fromBytes(QueryWriter.toBytes(query));
+
+        assertSame(((BinaryExpression) read.getWhere()).getLeft(), read.getWhereClauses().get(0).getExpression());
+    }
+
+    @Test
+    void shareStringsAcrossQueries() throws IOException {
+        List<String> inputs = List.of(
+                "SELECT author.name, author.id FROM author WHERE author.id > 10",
+                "SELECT author.name, author.id FROM author WHERE author.id > 10",
+                "SELECT \u00e9t\u00e9, '\ud83d\ude00' FROM author");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (QueryWriter writer = new QueryWriter(bytes)) {
+            for (String input : inputs) {
+                writer.write(queryService.parse(input));
+            }
+        }
+        int first = QueryWriter.toBytes(queryService.parse(inputs.get(0))).length;
+
+        try (QueryReader reader = new QueryReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertAll(
+                    () -> assertTrue(bytes.size() < 2 * first, bytes.size() + " bytes"),
+                    () -> assertEquals(reader.read(), queryService.parse(inputs.get(0))),
+                    () -> assertEquals(reader.read(), queryService.parse(inputs.get(1))),
+                    () -> assertEquals(reader.read(), queryService.parse(inputs.get(2))),
+                    () -> assertNull(reader.read())
+            );
+        }
+    }
+
+    @Test
+    void roundTripUnpairedSurrogates() {
+        String text = "'\ud800 \ude00 \u00e9'";
+        Query query = SelectQuery.builder()
+                .columns(List.of(new Column(text, null, new Literal(Literal.Kind.STRING, text))))
+                .build();
+
+        assertEquals(QueryReader.fromBytes(QueryWriter.toBytes(query)), query);
+    }
+
+    @Test
+    void rejectUnknownInput() {
+        byte[] bytes = QueryWriter.toBytes(queryService.parse("SELECT id FROM t"));
+        byte[] newer = bytes.clone();
+        newer[4] = (byte) (BinaryFormat.VERSION + 1);
+
+        assertAll(
+                () -> assertThrows(UncheckedIOException.class, () -> QueryReader.fromBytes(newer)),
+                () -> assertThrows(UncheckedIOException.class, () -> QueryReader.fromBytes("SELECT".getBytes(StandardCharsets.US_ASCII))),
+                () -> assertThrows(UncheckedIOException.class, () -> QueryReader.fromBytes(Arrays.copyOf(bytes, bytes.length - 2)))
+        );
+    }
+
+    /**
+     * Sizes are checked against the input left, so a corrupt size fails instead of allocating for it.
+     */
+    @Test
+    void rejectSizesBeyondInput() {
+        // a SELECT with 2^31 - 2 columns, then one column with a string of about 2^29 bytes
+        byte[] columns = {'S', 'Q', 'L', 'B', BinaryFormat.VERSION, BinaryFormat.SELECT, 0, 0, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 1, 1};
+        byte[] string = {'S', 'Q', 'L', 'B', BinaryFormat.VERSION, BinaryFormat.SELECT, 0, 0, 0, 2, 1, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a'};
+
+        assertAll(
+                () -> assertThrows(UncheckedIOException.class, () -> QueryReader.fromBytes(columns)),
+                () -> assertThrows(UncheckedIOException.class, () -> QueryReader.fromBytes(string)),
+                () -> assertThrows(IOException.class, () -> new QueryReader(new ByteArrayInputStream(columns)).read()),
+                () -> assertThrows(IOException.class, () -> new QueryReader(new ByteArrayInputStream(string)).read())
+        );
+    }
+
+    /**
+     * Input nested deeper than the parser builds fails instead of overflowing the stack of the reader.
+     */
+    @Test
+    void rejectDeepNesting() {
+        // a SELECT with one column whose expression is 200,000 nested parentheses
+        byte[] header = {'S', 'Q', 'L', 'B', BinaryFormat.VERSION, BinaryFormat.SELECT, 0, 0, 0, 2, 1, 0, 0};
+        byte[] bytes = Arrays.copyOf(header, header.length + 200_000);
+        Arrays.fill(bytes, header.length, bytes.length, (byte) BinaryFormat.NESTED);
+
+        assertAll(
+                () -> assertThrows(UncheckedIOException.class, () -> QueryReader.fromBytes(bytes)),
+                () -> assertThrows(IOException.class, () -> new QueryReader(new ByteArrayInputStream(bytes)).read())
+        );
+    }
+
+    @Test
+    void writeJson() {
+        Query query = queryService.parse("SELECT b.id, count(*) AS n FROM book b WHERE b.id > 1 LIMIT 5");
+
+        assertEquals(JsonWriter.toJson(query), "{\"type\":\"select\","
+                + "\"columns\":[{\"name\":\"b.id\",\"expression\":{\"type\":\"column\",\"qualifier\":\"b\",\"name\":\"id\"}},"
+                + "{\"name\":\"count(*)\",\"alias\":\"n\",\"expression\":{\"type\":\"function\",\"name\":\"count\",\"arguments\":[{\"type\":\"allColumns\"}]}}],"
+                + "\"fromSources\":[{\"table\":\"book\",\"alias\":\"b\"}],"
+                + "\"whereClauses\":[{\"condition\":\"b.id > 1\"}],"
+                + "\"where\":{\"type\":\"binary\",\"operator\":\">\","
+                + "\"left\":{\"type\":\"column\",\"qualifier\":\"b\",\"name\":\"id\"},\"right\":{\"type\":\"literal\",\"kind\":\"NUMBER\",\"text\":\"1\"}},"
+                + "\"limit\":5}");
+    }
+
+    @Test
+    void escapeJsonStrings() throws IOException {
+        String text = "'a\"b\\c\nd\te\u0001f\u2028g\ud83d\ude00h\ud800'";
+        Query query = SelectQuery.builder()
+                .columns(List.of(new Column(text, null, new Literal(Literal.Kind.STRING, text))))
+                .build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(bytes).write(query);
+        writer.flush();
+
+        String escaped = "'a\\\"b\\\\c\\nd\\te\\u0001f\\u2028g\ud83d\ude00h\\ud800'";
+        assertEquals(bytes.toString(StandardCharsets.UTF_8), "{\"type\":\"select\",\"columns\":[{\"name\":\"" + escaped
+                + "\",\"expression\":{\"type\":\"literal\",\"kind\":\"STRING\",\"text\":\"" + escaped + "\"}}]}");
+    }
+}
@@ -0,0 +1,287 @@
+package org.kotkina.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kotkina.models.Query;
+import org.kotkina.serialization.JsonWriter;
+import org.kotkina.serialization.QueryReader;
+import org.kotkina.services.QueryService;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryServerTest {
+
+    private static final InetSocketAddress LOOPBACK = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    private final QueryService queryService = new QueryService();
+
+    @Test
+    void answerPipelinedLines() throws IOException {
+        try (QueryServer server = QueryServer.start(LOOPBACK, queryService, ServerOptions.DEFAULT);
+             Socket socket = new Socket()) {
+            socket.connect(server.getAddress());
+            socket.getOutputStream().write("SELECT a FROM t;\r\nSELECT FROM\nSELECT '\u00e9' FROM u\n".getBytes(StandardCharsets.UTF_8));
+            socket.shutdownOutput();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            assertAll(
+                    () -> assertEquals(in.readLine(), JsonWriter.toJson(queryService.parse("SELECT a FROM t;"))),
+                    () -> assertTrue(in.readLine().startsWith("{\"error\":{\"message\":")),
+                    () -> assertEquals(in.readLine(), JsonWriter.toJson(queryService.parse("SELECT '\u00e9' FROM u"))),
+                    () -> assertNull(in.readLine())
+            );
+        }
+    }
+
+    @Test
+    void answerLengthFramesInBinary() throws IOException {
+        ServerOptions options = ServerOptions.builder().framing(ServerOptions.Framing.LENGTH).format(ServerOptions.Format.BINARY).build();
+        try (QueryServer server = QueryServer.start(LOOPBACK, queryService, options);
+             Socket socket = new Socket()) {
+            socket.connect(server.getAddress());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            for (String statement : List.of("SELECT a\nFROM t", "SELECT a FROM")) {
+                byte[] bytes = statement.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            byte[] query = new byte[in.readInt() - 1];
+            byte queryStatus = in.readByte();
+            in.readFully(query);
+            byte[] error = new byte[in.readInt() - 1];
+            byte errorStatus = in.readByte();
+            in.readFully(error);
+
+            assertAll(
+                    () -> assertEquals(queryStatus, 0),
+                    () -> assertEquals(QueryReader.fromBytes(query), queryService.parse("SELECT a\nFROM t")),
+                    () -> assertEquals(errorStatus, 1),
+                    () -> assertFalse(new String(error, StandardCharsets.UTF_8).isEmpty())
+            );
+        }
+    }
+
+    @Test
+    void serveUnixSocket(@TempDir Path directory) throws IOException {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(directory.resolve("parser.sock"));
+        try (QueryServer server = QueryServer.start(address, queryService, ServerOptions.DEFAULT);
+             SocketChannel channel = SocketChannel.open(server.getAddress())) {
+            channel.write(ByteBuffer.wrap("SELECT id FROM book\n".getBytes(StandardCharsets.US_ASCII)));
+            channel.shutdownOutput();
+            ByteBuffer response = ByteBuffer.allocate(4096);
+            while (channel.read(response) >= 0) {
+                assertTrue(response.hasRemaining());
+            }
+
+            assertEquals(new String(response.array(), 0, response.position(), StandardCharsets.UTF_8),
+                    JsonWriter.toJson(queryService.parse("SELECT id FROM book")) + "\n");
+        }
+        assertFalse(Files.exists(directory.resolve("parser.sock")));
+    }
+
+    @Test
+    void rejectOversizedStatements() throws IOException {
+        ServerOptions options = ServerOptions.builder().maxStatementBytes(16).build();
+        try (QueryServer server = QueryServer.start(LOOPBACK, queryService, options);
+             Socket socket = new Socket()) {
+            socket.connect(server.getAddress());
+            socket.getOutputStream().write("SELECT a, b, c, d FROM t\nSELECT a FROM t\n".getBytes(StandardCharsets.US_ASCII));
+            socket.shutdownOutput();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            assertAll(
+                    () -> assertTrue(in.readLine().contains("longer than 16 bytes")),
+                    () -> assertEquals(in.readLine(), JsonWriter.toJson(queryService.parse("SELECT a FROM t")))
+            );
+        }
+    }
+
+    /**
+     * The statement of the first client holds the only server-wide permit while its parsing is
+     * stalled, so no other statement of either client is queued until it is answered.
+     */
+    @Test
+    void stopReadingAtServerLimit() throws Exception {
+        CountDownLatch parsing = new CountDownLatch(1);
+        CountDownLatch stalled = new CountDownLatch(1);
+        QueryService slowService = new QueryService() {
+            @Override
+            public Query parseUtf8(byte[] utf8, int offset, int length) {
+                if (new String(utf8, offset, length, StandardCharsets.UTF_8).contains("slow")) {
+                    parsing.countDown();
+                    try {
+                        stalled.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.parseUtf8(utf8, offset, length);
+            }
+        };
+        ServerOptions options = ServerOptions.builder().maxServerInFlight(1).build();
+        try (QueryServer server = QueryServer.start(LOOPBACK, slowService, options);
+             Socket first = new Socket();
+             Socket second = new Socket()) {
+            first.connect(server.getAddress());
+            first.getOutputStream().write("SELECT slow FROM t\nSELECT slow FROM t\nSELECT slow FROM t\n".getBytes(StandardCharsets.US_ASCII));
+            first.shutdownOutput();
+            parsing.await();
+            second.connect(server.getAddress());
+            second.getOutputStream().write("SELECT a FROM t\n".getBytes(StandardCharsets.US_ASCII));
+            second.shutdownOutput();
+            second.setSoTimeout(300);
+            BufferedReader secondIn = new BufferedReader(new InputStreamReader(second.getInputStream(), StandardCharsets.UTF_8));
+
+            assertThrows(SocketTimeoutException.class, secondIn::readLine);
+            stalled.countDown();
+            second.setSoTimeout(10_000);
+            BufferedReader firstIn = new BufferedReader(new InputStreamReader(first.getInputStream(), StandardCharsets.UTF_8));
+
+            assertAll(
+                    () -> assertEquals(secondIn.readLine(), JsonWriter.toJson(queryService.parse("SELECT a FROM t"))),
+                    () -> assertEquals(firstIn.lines().count(), 3)
+            );
+        }
+    }
+
+    /**
+     * Connections that send nothing, or only part of a statement, hold no permit, so a single
+     * permit still serves an active client.
+     */
+    @Test
+    void serveActiveClientBesideIdleOnes() throws Exception {
+        ServerOptions options = ServerOptions.builder().maxServerInFlight(1).build();
+        List<Socket> idle = new ArrayList<>();
+        try (QueryServer server = QueryServer.start(LOOPBACK, queryService, options);
+             Socket active = new Socket()) {
+            for (int i = 0; i < 4; i++) {
+                Socket socket = new Socket();
+                idle.add(socket);
+                socket.connect(server.getAddress());
+                if (i % 2 == 1) {
+                    socket.getOutputStream().write("SELECT a FR".getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+            active.connect(server.getAddress());
+            active.setSoTimeout(10_000);
+            active.getOutputStream().write("SELECT a FROM t\nSELECT b FROM t\n".getBytes(StandardCharsets.US_ASCII));
+            active.shutdownOutput();
+            BufferedReader in = new BufferedReader(new InputStreamReader(active.getInputStream(), StandardCharsets.UTF_8));
+
+            assertAll(
+                    () -> assertEquals(in.readLine(), JsonWriter.toJson(queryService.parse("SELECT a FROM t"))),
+                    () -> assertEquals(in.readLine(), JsonWriter.toJson(queryService.parse("SELECT b FROM t"))),
+                    () -> assertNull(in.readLine())
+            );
+        } finally {
+            for (Socket socket : idle) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * A failure of the service other than an invalid statement is answered as an error, and the
+     * connection goes on.
+     */
+    @Test
+    void answerServiceFailures() throws IOException {
+        QueryService failingService = new QueryService() {
+            @Override
+            public Query parseUtf8(byte[] utf8, int offset, int length) {
+                if (new String(utf8, offset, length, StandardCharsets.UTF_8).contains("deep")) {
+                    throw new StackOverflowError();
+                }
+                return super.parseUtf8(utf8, offset, length);
+            }
+        };
+        try (QueryServer server = QueryServer.start(LOOPBACK, failingService, ServerOptions.DEFAULT);
+             Socket socket = new Socket()) {
+            socket.connect(server.getAddress());
+            socket.getOutputStream().write("SELECT deep FROM t\nSELECT a FROM t\n".getBytes(StandardCharsets.US_ASCII));
+            socket.shutdownOutput();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            assertAll(
+                    () -> assertTrue(in.readLine().startsWith("{\"error\":{\"message\":\"The statement could not be parsed.")),
+                    () -> assertEquals(in.readLine(), JsonWriter.toJson(queryService.parse("SELECT a FROM t"))),
+                    () -> assertNull(in.readLine())
+            );
+        }
+    }
+
+    /**
+     * Clients send their statements without waiting for the answers, so the server holds them back
+     * once its queues and the socket buffers are full, and must still answer every statement in order.
+     */
+    @Test
+    void answerConcurrentClientsUnderLoad() throws Exception {
+        int clients = 16;
+        int statements = 2000;
+        ServerOptions options = ServerOptions.builder().maxInFlight(4).build();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (QueryServer server = QueryServer.start(LOOPBACK, queryService, options)) {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                results.add(executor.submit(() -> {
+                    try (Socket socket = new Socket()) {
+                        socket.connect(server.getAddress());
+                        CompletableFuture<Void> sent = CompletableFuture.runAsync(() -> {
+                            try {
+                                OutputStream out = socket.getOutputStream();
+                                for (int i = 0; i < statements; i++) {
+                                    out.write(("SELECT c" + client + " FROM t WHERE id = " + i + "\n").getBytes(StandardCharsets.US_ASCII));
+                                }
+                                socket.shutdownOutput();
+                            } catch (IOException ex) {
+                                throw new RuntimeException(ex);
+                            }
+                        }, executor);
+                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                        int answered = 0;
+                        String line;
+                        while ((line = in.readLine()) != null) {
+                            assertTrue(line.contains("\"c" + client + "\"") && line.contains("\"" + answered + "\""), line);
+                            answered++;
+                        }
+                        sent.join();
+                        return answered;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(result.get(), statements);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
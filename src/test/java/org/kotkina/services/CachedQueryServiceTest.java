@@ -0,0 +1,88 @@
+package org.kotkina.services;
+
+import org.junit.jupiter.api.Test;
+import org.kotkina.cache.CacheStats;
+import org.kotkina.cache.QueryNormalizer;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.Query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedQueryServiceTest {
+
+    @Test
+    void parseFromCache() {
+        CachedQueryService queryService = new CachedQueryService(10);
+
+        Query query1 = queryService.parse("SELECT p.id FROM person p WHERE p.name = 'Ann';");
+        Query query2 = queryService.parse("select   p.id\n from person p -- comment\n where p.name = 'Ann'");
+        Query query3 = queryService.parse("SELECT p.id FROM person p WHERE p.name = 'ann'");
+        CacheStats stats = queryService.stats();
+
+        assertAll(
+                () -> assertSame(query1, query2),
+                () -> assertNotSame(query1, query3),
+                () -> assertEquals(stats.getHits(), 1),
+                () -> assertEquals(stats.getMisses(), 2),
+                () -> assertEquals(stats.getSize(), 2)
+        );
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        CachedQueryService queryService = new CachedQueryService(2);
+
+        Query a = queryService.parse("SELECT a FROM t");
+        queryService.parse("SELECT b FROM t");
+        queryService.parse("SELECT a FROM t");
+        queryService.parse("SELECT c FROM t");
+        Query a2 = queryService.parse("SELECT a FROM t");
+        queryService.parse("SELECT b FROM t");
+        CacheStats stats = queryService.stats();
+
+        assertAll(
+                () -> assertSame(a, a2),
+                () -> assertEquals(stats.getHits(), 2),
+                () -> assertEquals(stats.getMisses(), 4),
+                () -> assertEquals(stats.getEvictions(), 2),
+                () -> assertEquals(stats.getSize(), 2)
+        );
+    }
+
+    @Test
+    void keepHotQueriesUnderChurn() {
+        CachedQueryService queryService = new CachedQueryService(4);
+
+        Query hot = queryService.parse("SELECT hot FROM t");
+        for (int i = 0; i < 100; i++) {
+            assertSame(queryService.parse("SELECT hot FROM t"), hot);
+            queryService.parse("SELECT c" + i + " FROM t");
+        }
+        CacheStats stats = queryService.stats();
+
+        assertAll(
+                () -> assertEquals(stats.getHits(), 100),
+                () -> assertEquals(stats.getEvictions(), 97),
+                () -> assertEquals(stats.getSize(), 4)
+        );
+    }
+
+    @Test
+    void doNotCacheErrors() {
+        CachedQueryService queryService = new CachedQueryService(2);
+
+        assertThrows(InvalidQueryException.class, () -> queryService.parse("SELECT FROM t"));
+        assertThrows(InvalidQueryException.class, () -> queryService.parse("SELECT FROM t"));
+        assertThrows(InvalidQueryException.class, () -> queryService.parse(null));
+        assertEquals(queryService.stats().getSize(), 0);
+    }
+
+    @Test
+    void normalize() {
+        assertAll(
+                () -> assertEquals(QueryNormalizer.normalize("  select *\n\tfrom t ; "), "SELECT * FROM T"),
+                () -> assertEquals(QueryNormalizer.normalize("select 'It''s' \"Mixed\" from t"), "SELECT 'It''s' \"Mixed\" FROM T"),
+                () -> assertEquals(QueryNormalizer.normalize("select /* hint */ a -- tail"), "SELECT A")
+        );
+    }
+}
@@ -0,0 +1,137 @@
+package org.kotkina.services;
+
+import org.junit.jupiter.api.Test;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.Query;
+import org.kotkina.parser.IdentifierPool;
+import org.kotkina.stream.ParseResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 200;
+
+    private final List<String> queries = queries();
+
+    @Test
+    void shareQueryService() throws Exception {
+        assertConcurrentParsingMatches(new QueryService(new IdentifierPool(1000)));
+    }
+
+    @Test
+    void shareCachedQueryService() throws Exception {
+        assertConcurrentParsingMatches(new CachedQueryService(16));
+    }
+
+    @Test
+    void shareTemplateQueryService() throws Exception {
+        assertConcurrentParsingMatches(new TemplateQueryService(16));
+    }
+
+    @Test
+    void parseAllInOrder() {
+        ExecutorService executor = ParseExecutors.virtualThreads();
+        try {
+            QueryService queryService = new QueryService(null, executor);
+            List<ParseResult> results = queryService.parseAll(queries);
+
+            assertEquals(results.size(), queries.size());
+            for (int i = 0; i < queries.size(); i++) {
+                assertEquals(results.get(i).getStatement().getText(), queries.get(i));
+                assertEquals(results.get(i).isSuccess() ? results.get(i).getQuery().toString() : results.get(i).getError(),
+                        expected(queries.get(i)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void parseAsync() {
+        ExecutorService executor = ParseExecutors.fixed(2);
+        try {
+            QueryService queryService = new QueryService(null, executor);
+            CompletableFuture<Query> query = queryService.parseAsync("SELECT a FROM t");
+            CompletableFuture<Query> invalid = queryService.parseAsync("SELECT a FROM");
+
+            assertAll(
+                    () -> assertEquals(query.join().toString(), new QueryService().parse("SELECT a FROM t").toString()),
+                    () -> assertInstanceOf(InvalidQueryException.class,
+                            assertThrows(CompletionException.class, invalid::join).getCause())
+            );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void assertConcurrentParsingMatches(QueryService queryService) throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (String query : queries) {
+            expected.add(expected(query));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int shift = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<String> mismatches = new ArrayList<>();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        int i = (round + shift) % queries.size();
+                        String actual = parse(queryService, queries.get(i));
+                        if (!actual.equals(expected.get(i))) {
+                            mismatches.add(queries.get(i) + " -> " + actual);
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            start.countDown();
+
+            for (Future<List<String>> future : futures) {
+                assertEquals(future.get(), List.of());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String expected(String query) {
+        return parse(new QueryService(), query);
+    }
+
+    private static String parse(QueryService queryService, String query) {
+        try {
+            return queryService.parse(query).toString();
+        } catch (InvalidQueryException ex) {
+            return ex.getMessage();
+        }
+    }
+
+    private static List<String> queries() {
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            queries.add("SELECT p.name, p.id AS id" + i + " FROM person p WHERE p.age > " + i + " AND p.name = 'n" + i + "'");
+            queries.add("SELECT a, COUNT(*) FROM t" + i + " LEFT JOIN u ON u.id = t" + i + ".id GROUP BY a HAVING COUNT(*) > " + i);
+            queries.add("SELECT * FROM book ORDER BY title DESC LIMIT " + (i + 1) + " OFFSET " + i);
+            queries.add("SELECT x FROM (SELECT x FROM y WHERE z IN (" + i + ", " + (i + 1) + ")) s");
+            queries.add("SELECT a FROM t WHERE b = ");
+            queries.add("SELECT a FROM t LIMIT 'x" + i + "'");
+        }
+        return queries;
+    }
+}
@@ -6,8 +6,17 @@ import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.kotkina.errors.InvalidQueryException;
 import org.kotkina.models.*;
-
+import org.kotkina.models.expression.ColumnReference;
+import org.kotkina.parser.IdentifierPool;
+import org.kotkina.stream.ParseResult;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -61,6 +70,117 @@ class QueryServiceTest {
         );
     }
 
+    @Test
+    void parseWithIdentifierPool() {
+        QueryService pooledService = new QueryService(new IdentifierPool(100));
+        SelectQuery query1 = (SelectQuery) pooledService.parse("SELECT p.id FROM person p WHERE p.id = 1");
+        SelectQuery query2 = (SelectQuery) pooledService.parse("SELECT p.id FROM person p WHERE p.id = 2");
+        ColumnReference reference1 = (ColumnReference) query1.getColumns().get(0).getExpression();
+        ColumnReference reference2 = (ColumnReference) query2.getColumns().get(0).getExpression();
+
+        assertAll(
+                () -> assertSame(query1.getColumns().get(0).getName(), query2.getColumns().get(0).getName()),
+                () -> assertSame(query1.getFromSources().get(0).getTable(), query2.getFromSources().get(0).getTable()),
+                () -> assertSame(query1.getFromSources().get(0).getAlias(), query2.getFromSources().get(0).getAlias()),
+                () -> assertSame(reference1.getQualifier(), reference2.getQualifier()),
+                () -> assertNotEquals(query1, query2)
+        );
+    }
+
+    @Test
+    void parseCharSequenceInPlace() {
+        String text = "SELECT p.name AS n, COUNT(*) FROM person p WHERE p.age > 18 GROUP BY p.name ORDER BY n DESC";
+        char[] buffer = ("-- padding\n" + text + "\n-- padding").toCharArray();
+
+        Query expected = queryService.parse(text);
+        Query fromBuilder = queryService.parse(new StringBuilder(text));
+        Query fromArray = queryService.parse(buffer, 11, text.length());
+        Query fromBuffer = queryService.parse(CharBuffer.wrap(buffer, 11, text.length()));
+
+        assertAll(
+                () -> assertEquals(fromBuilder, expected),
+                () -> assertEquals(fromArray, expected),
+                () -> assertEquals(fromBuffer, expected),
+                () -> assertEquals(fromArray.toString(), expected.toString()),
+                () -> assertThrows(InvalidQueryException.class, () -> queryService.parse(buffer, 0, 10)),
+                () -> assertThrows(InvalidQueryException.class, () -> queryService.parse(new StringBuilder(" \t")))
+        );
+    }
+
+    @Test
+    void parseUtf8Bytes() {
+        String ascii = "SELECT a.id, 'text' FROM author a WHERE a.id IN (1, 2) LIMIT 5";
+        String unicode = "SELECT \"\u0438\u043c\u044f\" FROM t WHERE note = '\u00e9t\u00e9 \ud83d\ude00'";
+        byte[] padded = ("xx" + ascii + "yy").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(256).put(unicode.getBytes(StandardCharsets.UTF_8)).flip();
+
+        assertAll(
+                () -> assertEquals(queryService.parseUtf8(padded, 2, ascii.length()), queryService.parse(ascii)),
+                () -> assertEquals(queryService.parseUtf8(ByteBuffer.wrap(unicode.getBytes(StandardCharsets.UTF_8))), queryService.parse(unicode)),
+                () -> assertEquals(queryService.parseUtf8(direct), queryService.parse(unicode)),
+                () -> assertEquals(direct.position(), 0),
+                () -> assertEquals(queryService.parseUtf8(ByteBuffer.allocateDirect(256).put(padded).flip().position(2).limit(2 + ascii.length())),
+                        queryService.parse(ascii))
+        );
+    }
+
+    @Test
+    void parseSelectQueryWithLimitValues() {
+        SelectQuery query = (SelectQuery) queryService.parse("SELECT * FROM book LIMIT 200 OFFSET 0");
+
+        assertAll(
+                () -> assertTrue(query.hasLimit()),
+                () -> assertEquals(query.getLimitValue(), 200),
+                () -> assertTrue(query.hasOffset()),
+                () -> assertEquals(query.getOffsetValue(), 0),
+                () -> assertThrows(UnsupportedOperationException.class, () -> query.getColumns().add(new Column("x", null, null)))
+        );
+    }
+
+    @Test
+    void parseStatements() {
+        String input = "SELECT * FROM a;\nSELECT FROM b;\n  SELECT x FROM c WHERE y = ';'";
+        List<ParseResult> results = queryService.parseStatements(new StringReader(input)).toList();
+
+        assertAll(
+                () -> assertEquals(results.size(), 3),
+                () -> assertTrue(results.get(0).isSuccess()),
+                () -> assertFalse(results.get(1).isSuccess()),
+                () -> assertEquals(results.get(1).getStatement().getLine(), 2),
+                () -> assertEquals(results.get(1).getError(), "Error in SELECT clause: "),
+                () -> assertEquals(results.get(2).getStatement().getLine(), 3),
+                () -> assertEquals(results.get(2).getStatement().getColumn(), 3),
+                () -> assertEquals(((SelectQuery) results.get(2).getQuery()).getWhereClauses().get(0).getCondition(), "y = ';'")
+        );
+    }
+
+    @Test
+    void parseStatementsLazily() {
+        Reader input = new Reader() {
+            private final char[] statement = "SELECT id FROM t WHERE id = 1;\n".toCharArray();
+            private final long total = 100_000L * statement.length;
+            private long position;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (position == total) return -1;
+                int count = (int) Math.min(length, total - position);
+                for (int i = 0; i < count; i++) {
+                    buffer[offset + i] = statement[(int) (position++ % statement.length)];
+                }
+                return count;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try (Stream<ParseResult> results = queryService.parseStatements(input)) {
+            assertEquals(results.filter(ParseResult::isSuccess).count(), 100_000);
+        }
+    }
+
     @ParameterizedTest
     @NullAndEmptySource
     @ValueSource(strings = {"", "  ", "\t", "\n", "select"})
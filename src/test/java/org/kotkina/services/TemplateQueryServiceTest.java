@@ -0,0 +1,139 @@
+package org.kotkina.services;
+
+import org.junit.jupiter.api.Test;
+import org.kotkina.cache.Fingerprint;
+import org.kotkina.errors.InvalidQueryException;
+import org.kotkina.models.SelectQuery;
+import org.kotkina.models.expression.Literal;
+import org.kotkina.models.expression.Parameter;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateQueryServiceTest {
+
+    private static final String QUERY = """
+            SELECT p.name, p.age + 1 next_age
+            FROM person p
+            LEFT JOIN (SELECT * FROM document WHERE type_id = %1$s) d ON d.person_id = p.id
+            WHERE p.id = %1$s AND p.name LIKE %2$s AND p.age BETWEEN %1$s AND 99
+            GROUP BY p.name, p.age + 1
+            HAVING COUNT(*) > %1$s
+            ORDER BY p.age - %1$s DESC
+            LIMIT %1$s
+            OFFSET 10""";
+
+    private final QueryService queryService = new QueryService();
+
+    @Test
+    void fingerprintIgnoresLiterals() {
+        TemplateQueryService templateService = new TemplateQueryService(10);
+        Fingerprint fingerprint1 = templateService.fingerprint("SELECT * FROM t WHERE id = 17 AND name = 'a' LIMIT 5");
+        Fingerprint fingerprint2 = templateService.fingerprint("select *\n from t  where id=18 and name = 'b''c' limit 10;");
+        Fingerprint fingerprint3 = templateService.fingerprint("SELECT * FROM t WHERE id = 17 OR name = 'a' LIMIT 5");
+
+        assertAll(
+                () -> assertNotEquals(fingerprint1.getHash(), fingerprint2.getHash()),
+                () -> assertEquals(fingerprint1.getHash(), templateService.fingerprint("SELECT * FROM t WHERE id = 1 AND name = '' LIMIT 1").getHash()),
+                () -> assertEquals(fingerprint2.getHash(), templateService.fingerprint("SELECT * FROM t WHERE id = 1 AND name = '' LIMIT 1;").getHash()),
+                () -> assertNotEquals(fingerprint1.getHash(), fingerprint3.getHash()),
+                () -> assertEquals(fingerprint1.getTemplate(), "SELECT * FROM t WHERE id = ? AND name = ? LIMIT ?"),
+                () -> assertEquals(fingerprint2.getLiterals(), List.of(new Literal(Literal.Kind.NUMBER, "18"),
+                        new Literal(Literal.Kind.STRING, "'b''c'"), new Literal(Literal.Kind.NUMBER, "10")))
+        );
+    }
+
+    @Test
+    void parseFromTemplate() {
+        TemplateQueryService templateService = new TemplateQueryService(10);
+
+        SelectQuery first = (SelectQuery) templateService.parse(QUERY.formatted("17", "'A%'"));
+        SelectQuery second = (SelectQuery) templateService.parse(QUERY.formatted("18", "'B%'"));
+
+        assertAll(
+                () -> assertEquals(templateService.stats().getHits(), 1),
+                () -> assertEquals(templateService.stats().getMisses(), 1),
+                () -> assertEquals(first.toString(), queryService.parse(QUERY.formatted("17", "'A%'")).toString()),
+                () -> assertEquals(second.toString(), queryService.parse(QUERY.formatted("18", "'B%'")).toString()),
+                () -> assertEquals(second.getWhere(), ((SelectQuery) queryService.parse(QUERY.formatted("18", "'B%'"))).getWhere()),
+                () -> assertEquals(second.getLimit(), 18),
+                () -> assertEquals(second.getOffset(), 10)
+        );
+    }
+
+    @Test
+    void keepPlaceholdersInComments() {
+        TemplateQueryService templateService = new TemplateQueryService(10);
+        List<String> queries = List.of(
+                "SELECT a FROM t WHERE a = /* ? */ 1",
+                "SELECT a -- ?\n, b + 2 FROM t WHERE a = 1 /* ? */ AND b = 'x' ORDER BY /* ? */ b - 3",
+                "SELECT \"?\" + 1 FROM t WHERE a = /* '?' */ 3");
+
+        for (String query : queries) {
+            assertAll(
+                    () -> assertEquals(templateService.parse(query), queryService.parse(query)),
+                    () -> assertEquals(templateService.parse(query).toString(), queryService.parse(query).toString())
+            );
+        }
+    }
+
+    @Test
+    void parseParameterizedQuery() {
+        TemplateQueryService templateService = new TemplateQueryService(10);
+        SelectQuery query = (SelectQuery) templateService.parse("SELECT * FROM t WHERE id = ? AND name = 'a' LIMIT ?");
+
+        assertAll(
+                () -> assertEquals(query.getWhereClauses().get(0).getCondition(), "id = ?"),
+                () -> assertEquals(query.getWhereClauses().get(1).getCondition(), "name = 'a'"),
+                () -> assertEquals(query.getLimitParameter(), new Parameter(1)),
+                () -> assertNull(query.getLimit()),
+                () -> assertEquals(templateService.stats().getMisses(), 0)
+        );
+    }
+
+    @Test
+    void bindInvalidLimit() {
+        TemplateQueryService templateService = new TemplateQueryService(10);
+        templateService.parse("SELECT * FROM t LIMIT 5");
+
+        assertThrows(InvalidQueryException.class, () -> templateService.parse("SELECT * FROM t LIMIT 'x'"));
+        assertThrows(InvalidQueryException.class, () -> templateService.parse("SELECT * FROM t LIMIT 5.5"));
+    }
+
+    @Test
+    void parseQueriesDifferingInCaseAndWhitespace() {
+        TemplateQueryService templateService = new TemplateQueryService(10);
+        String first = "SELECT p.Name FROM person p WHERE p.id = 1 ORDER BY p.Name";
+        String second = "select  p.name\nfrom person p where p.ID = 2 order by p.name";
+        templateService.parse(first);
+
+        assertAll(
+                () -> assertEquals(templateService.parse(second), queryService.parse(second)),
+                () -> assertEquals(templateService.parse(second.replace("2", "3")), queryService.parse(second.replace("2", "3"))),
+                () -> assertEquals(templateService.stats().getHits(), 1),
+                () -> assertEquals(assertThrows(InvalidQueryException.class, () -> templateService.parse("SELECT a FROM t WHERE 1 = 'x' AND")).getMessage(),
+                        assertThrows(InvalidQueryException.class, () -> queryService.parse("SELECT a FROM t WHERE 1 = 'x' AND")).getMessage())
+        );
+    }
+
+    @Test
+    void ignoreHashCollisions() {
+        TemplateQueryService templateService = new TemplateQueryService(10) {
+            @Override
+            public Fingerprint fingerprint(String query) {
+                Fingerprint fingerprint = super.fingerprint(query);
+                return new Fingerprint(0, fingerprint.getTemplate(), fingerprint.getLiterals(), fingerprint.isParameterized());
+            }
+        };
+        String first = "SELECT a FROM t WHERE id = 1";
+        String second = "SELECT a FROM t WHERE id = 1 AND name = 'x' LIMIT 5";
+
+        assertAll(
+                () -> assertEquals(templateService.parse(first), queryService.parse(first)),
+                () -> assertEquals(templateService.parse(second), queryService.parse(second)),
+                () -> assertEquals(templateService.parse(first.replace("1", "2")), queryService.parse(first.replace("1", "2"))),
+                () -> assertEquals(templateService.stats().getMisses(), 2)
+        );
+    }
+}
@@ -0,0 +1,109 @@
+package org.kotkina.stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kotkina.services.QueryService;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkParserTest {
+
+    private final QueryService queryService = new QueryService();
+    private Path file;
+    private String input;
+
+    @BeforeEach
+    void writeFile() throws IOException {
+        StringBuilder text = new StringBuilder("-- generated; statements\n");
+        for (int i = 0; i < 2000; i++) {
+            switch (i % 5) {
+                case 0 -> text.append("SELECT id, 'name;").append(i).append("' FROM t WHERE id = ").append(i).append(";\n");
+                case 1 -> text.append("/* comment; */ SELECT \"\u0438\u043c\u044f\" FROM \"\u0442\u0430\u0431\u043b\u0438\u0446\u0430\" WHERE note = '\ud83d\ude00';  ");
+                case 2 -> text.append("SELECT a FROM b WHERE ;\n");
+                case 3 -> text.append("SELECT ").append("column_name, ".repeat(10)).append("x FROM t;\r\n");
+                default -> text.append("SELECT * FROM t LIMIT ").append(i).append(" -- done;\n;;");
+            }
+        }
+        input = text.append("-;\nSELECT 1 FROM t\n/").toString();
+        file = Files.createTempFile("bulk", ".sql");
+        Files.writeString(file, input, StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void parseInOrder() throws IOException {
+        List<ParseResult> expected = new ArrayList<>();
+        new StatementSplitter(new StringReader(input), 100)
+                .forEachRemaining(statement -> expected.add(queryService.parseStatement(statement)));
+
+        List<ParseResult> results = new ArrayList<>();
+        BulkStats stats;
+        try (BulkParser parser = new BulkParser(queryService, new ForkJoinPool(4), 4, true, 100, 256)) {
+            stats = parser.parse(file, true, results::add);
+        }
+
+        assertEquals(expected.size(), results.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), results.get(i));
+        }
+        assertAll(
+                () -> assertEquals(stats.getStatements(), expected.size()),
+                () -> assertEquals(stats.getErrors(), expected.stream().filter(result -> !result.isSuccess()).count()),
+                () -> assertEquals(stats.getBytes(), Files.size(file)),
+                () -> assertTrue(results.stream().anyMatch(result -> result.getStatement().isTruncated()))
+        );
+    }
+
+    @Test
+    void parseUnordered() throws IOException {
+        List<ParseResult> ordered = new ArrayList<>();
+        List<ParseResult> unordered = Collections.synchronizedList(new ArrayList<>());
+        try (BulkParser parser = new BulkParser(queryService, 4)) {
+            parser.parse(file, true, ordered::add);
+            parser.parse(file, false, unordered::add);
+        }
+
+        unordered.sort(Comparator.comparingLong(result -> result.getStatement().getOffset()));
+        assertEquals(ordered.size(), unordered.size());
+        for (int i = 0; i < ordered.size(); i++) {
+            assertSame(ordered.get(i), unordered.get(i));
+        }
+    }
+
+    @Test
+    void parseEmptyFile() throws IOException {
+        Files.writeString(file, " -- nothing\n");
+        List<ParseResult> results = new ArrayList<>();
+        try (BulkParser parser = new BulkParser(queryService, 2)) {
+            assertEquals(parser.parse(file, true, results::add).getStatements(), 0);
+        }
+        assertTrue(results.isEmpty());
+    }
+
+    private static void assertSame(ParseResult expected, ParseResult actual) {
+        assertAll(
+                () -> assertEquals(expected.getStatement().getText(), actual.getStatement().getText()),
+                () -> assertEquals(expected.getStatement().getOffset(), actual.getStatement().getOffset()),
+                () -> assertEquals(expected.getStatement().getLine(), actual.getStatement().getLine()),
+                () -> assertEquals(expected.getStatement().getColumn(), actual.getStatement().getColumn()),
+                () -> assertEquals(expected.getStatement().isTruncated(), actual.getStatement().isTruncated()),
+                () -> assertEquals(expected.toString(), actual.toString())
+        );
+    }
+}
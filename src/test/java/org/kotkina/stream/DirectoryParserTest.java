@@ -0,0 +1,81 @@
+package org.kotkina.stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kotkina.serialization.JsonWriter;
+import org.kotkina.services.QueryService;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryParserTest {
+
+    private final QueryService queryService = new QueryService();
+
+    @Test
+    void writeLinePerStatement(@TempDir Path directory) throws IOException {
+        Files.createDirectories(directory.resolve("nested"));
+        Files.writeString(directory.resolve("first.sql"), "SELECT a FROM t;\nSELECT FROM t;", StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve("nested/second.SQL"), "SELECT 'line\nbreak \"\u00e9\"' FROM u", StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve("notes.txt"), "SELECT a FROM t", StandardCharsets.UTF_8);
+        StringWriter out = new StringWriter();
+
+        DirectoryStats stats;
+        try (DirectoryParser parser = new DirectoryParser(queryService, 2)) {
+            stats = parser.parse(directory, out);
+        }
+        List<String> lines = List.of(out.toString().split("\n"));
+
+        assertAll(
+                () -> assertEquals(stats.getFiles(), 2),
+                () -> assertEquals(stats.getStatements(), 3),
+                () -> assertEquals(stats.getErrorsByClause(), Map.of("SELECT", 1L)),
+                () -> assertEquals(lines.size(), 3),
+                () -> assertTrue(lines.contains("{\"file\":\"first.sql\",\"line\":1,\"column\":1,\"offset\":0,\"query\":"
+                        + JsonWriter.toJson(queryService.parse("SELECT a FROM t")) + "}")),
+                () -> assertTrue(lines.contains("{\"file\":\"first.sql\",\"line\":2,\"column\":1,\"offset\":17,\"error\":"
+                        + "{\"message\":\"Error in SELECT clause: \",\"clause\":\"SELECT\",\"offset\":7,\"expected\":\"expression\"}}")),
+                () -> assertTrue(lines.contains("{\"file\":\"nested/second.SQL\",\"line\":1,\"column\":1,\"offset\":0,\"query\":"
+                        + JsonWriter.toJson(queryService.parse("SELECT 'line\nbreak \"\u00e9\"' FROM u")) + "}"))
+        );
+    }
+
+    @Test
+    void parseLargeFileInBatches(@TempDir Path directory) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append(i % 7 == 0 ? "SELECT a FROM t WHERE ;\n" : "SELECT c" + i + " FROM t;\n");
+        }
+        Files.writeString(directory.resolve("large.sql"), text, StandardCharsets.UTF_8);
+        StringWriter out = new StringWriter();
+
+        DirectoryStats stats;
+        try (DirectoryParser parser = new DirectoryParser(queryService, 4)) {
+            stats = parser.parse(directory, out);
+        }
+        List<Integer> lineNumbers = new ArrayList<>();
+        for (String line : out.toString().split("\n")) {
+            int start = line.indexOf("\"line\":") + 7;
+            lineNumbers.add(Integer.parseInt(line.substring(start, line.indexOf(',', start))));
+        }
+        lineNumbers.sort(null);
+
+        assertAll(
+                () -> assertEquals(stats.getStatements(), 5000),
+                () -> assertEquals(stats.getErrors(), 715),
+                () -> assertEquals(stats.getErrorsByClause(), Map.of("WHERE", 715L)),
+                () -> assertEquals(lineNumbers.get(0), 1),
+                () -> assertEquals(lineNumbers.get(4999), 5000),
+                () -> assertEquals(Set.copyOf(lineNumbers).size(), 5000)
+        );
+    }
+}
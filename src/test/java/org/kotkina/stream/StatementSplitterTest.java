@@ -0,0 +1,74 @@
+package org.kotkina.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementSplitterTest {
+
+    @Test
+    void splitStatements() {
+        List<Statement> statements = split("""
+                -- header; with a semicolon
+                SELECT 'a;b' FROM t;
+                  SELECT "x;y" /* ; */ FROM u ;;
+
+                /* leading; comment */ SELECT `z;` FROM v -- trailing;
+                ; SELECT -1 FROM w""");
+
+        assertAll(
+                () -> assertEquals(statements.size(), 4),
+                () -> assertEquals(statements.get(0).getText(), "SELECT 'a;b' FROM t"),
+                () -> assertEquals(statements.get(0).getLine(), 2),
+                () -> assertEquals(statements.get(0).getColumn(), 1),
+                () -> assertEquals(statements.get(1).getText(), "SELECT \"x;y\" /* ; */ FROM u "),
+                () -> assertEquals(statements.get(1).getLine(), 3),
+                () -> assertEquals(statements.get(1).getColumn(), 3),
+                () -> assertEquals(statements.get(2).getText(), "SELECT `z;` FROM v -- trailing;\n"),
+                () -> assertEquals(statements.get(2).getLine(), 5),
+                () -> assertEquals(statements.get(2).getColumn(), 24),
+                () -> assertEquals(statements.get(3).getText(), "SELECT -1 FROM w"),
+                () -> assertEquals(statements.get(3).getOffset(), 140)
+        );
+    }
+
+    @Test
+    void splitEscapedQuotes() {
+        List<Statement> statements = split("SELECT 'It''s; fine' FROM t; SELECT 1");
+
+        assertAll(
+                () -> assertEquals(statements.size(), 2),
+                () -> assertEquals(statements.get(0).getText(), "SELECT 'It''s; fine' FROM t")
+        );
+    }
+
+    @Test
+    void splitEmptyInput() {
+        assertTrue(split(" ;\n -- only a comment\n /* and another */ ;").isEmpty());
+    }
+
+    @Test
+    void truncateLongStatements() {
+        StatementSplitter splitter = new StatementSplitter(new StringReader("SELECT 1234567890 FROM t; SELECT 1"), 10);
+        Statement first = splitter.next();
+        Statement second = splitter.next();
+
+        assertAll(
+                () -> assertTrue(first.isTruncated()),
+                () -> assertEquals(first.getText(), "SELECT 123"),
+                () -> assertFalse(second.isTruncated()),
+                () -> assertEquals(second.getText(), "SELECT 1"),
+                () -> assertFalse(splitter.hasNext())
+        );
+    }
+
+    private List<Statement> split(String input) {
+        List<Statement> statements = new ArrayList<>();
+        new StatementSplitter(new StringReader(input)).forEachRemaining(statements::add);
+        return statements;
+    }
+}
@@ -0,0 +1,127 @@
+package org.kotkina.visitor;
+
+import org.junit.jupiter.api.Test;
+import org.kotkina.models.Clause;
+import org.kotkina.models.Keyword;
+import org.kotkina.models.Query;
+import org.kotkina.models.SelectQuery;
+import org.kotkina.models.expression.ColumnReference;
+import org.kotkina.models.expression.Expression;
+import org.kotkina.models.expression.SubqueryExpression;
+import org.kotkina.services.QueryService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryWalkerTest {
+
+    private final QueryService queryService = new QueryService();
+
+    @Test
+    void visitInClauseOrder() {
+        Query query = queryService.parse("SELECT a, max(b) FROM t INNER JOIN u ON u.id = t.id WHERE c = 1 AND d > 2"
+                + " GROUP BY e HAVING count(f) > 1 ORDER BY g LIMIT ?");
+        List<String> visited = new ArrayList<>();
+        QueryWalker.walk(query, new QueryVisitor() {
+            @Override
+            public void visitClause(Clause clause, Keyword keyword) {
+                visited.add(keyword + " " + clause.getCondition());
+            }
+
+            @Override
+            public void visitColumnReference(ColumnReference column, Keyword clause) {
+                visited.add(clause + ":" + column);
+            }
+        });
+
+        assertEquals(visited, List.of("ON u.id = t.id", "ON:u.id", "ON:t.id", "SELECT:a", "SELECT:b",
+                "WHERE c = 1", "WHERE d > 2", "WHERE:c", "WHERE:d", "GROUP:e", "HAVING count(f) > 1", "HAVING:f", "ORDER:g"));
+    }
+
+    @Test
+    void skipVisitedNodes() {
+        Query query = queryService.parse("SELECT a FROM t WHERE b IN (SELECT c FROM u) AND EXISTS (SELECT d FROM v)");
+        List<String> columns = new ArrayList<>();
+        QueryWalker.walk(query, new QueryVisitor() {
+            @Override
+            public boolean visitExpression(Expression expression, Keyword clause) {
+                return !(expression instanceof SubqueryExpression);
+            }
+
+            @Override
+            public boolean visitSelect(SelectQuery select) {
+                return select == query || select.getColumns().get(0).getName().equals("d");
+            }
+
+            @Override
+            public void visitColumnReference(ColumnReference column, Keyword clause) {
+                columns.add(column.getName());
+            }
+        });
+
+        assertEquals(columns, List.of("a", "b", "d"));
+    }
+
+    @Test
+    void collectReferencedTables() {
+        Set<String> tables = ReferencedTables.of(queryService.parse(
+                "WITH recent AS (SELECT * FROM book WHERE year > 2020)"
+                        + " SELECT a.name FROM public.author a INNER JOIN recent r ON r.author_id = a.id"
+                        + " LEFT JOIN (SELECT author_id FROM award) w ON w.author_id = a.id"
+                        + " WHERE a.id IN (SELECT author_id FROM review UNION SELECT author_id FROM book)"));
+
+        assertEquals(List.copyOf(tables), List.of("book", "public.author", "award", "review"));
+    }
+
+    @Test
+    void treatRecursiveQueriesAsQueries() {
+        Set<String> recursive = ReferencedTables.of(queryService.parse(
+                "WITH RECURSIVE tree AS (SELECT id FROM category UNION ALL SELECT c.id FROM category c INNER JOIN tree t ON c.parent = t.id)"
+                        + " SELECT * FROM tree"));
+        Set<String> shadowed = ReferencedTables.of(queryService.parse(
+                "WITH t AS (SELECT * FROM t) SELECT * FROM t"));
+
+        assertAll(
+                () -> assertEquals(recursive, Set.of("category")),
+                () -> assertEquals(shadowed, Set.of("t"))
+        );
+    }
+
+    @Test
+    void resolveColumnAliases() {
+        Set<ResolvedColumn> columns = ReferencedColumns.of(queryService.parse(
+                "SELECT p.name, d.*, count(*) AS n, sum(s.total) FROM public.person p"
+                        + " LEFT JOIN document d ON d.person_id = p.id"
+                        + " LEFT JOIN (SELECT person_id, sum(cost) AS total FROM payment GROUP BY person_id) s ON s.person_id = p.id"
+                        + " WHERE person.age > 1 AND EXISTS (SELECT 1 FROM visit WHERE visit_date > p.created)"
+                        + " GROUP BY p.name ORDER BY n, title"));
+
+        assertEquals(List.copyOf(columns), List.of(
+                new ResolvedColumn("document", "person_id"), new ResolvedColumn("public.person", "id"),
+                new ResolvedColumn("payment", "person_id"), new ResolvedColumn("payment", "cost"),
+                new ResolvedColumn(null, "person_id"), new ResolvedColumn("public.person", "name"),
+                new ResolvedColumn("document", "*"), new ResolvedColumn(null, "total"),
+                new ResolvedColumn(null, "age"), new ResolvedColumn("visit", "visit_date"),
+                new ResolvedColumn("public.person", "created"), new ResolvedColumn(null, "title")));
+    }
+
+    @Test
+    void resolveQualifiersWithoutCase() {
+        Set<ResolvedColumn> columns = ReferencedColumns.of(queryService.parse(
+                "SELECT B.ssn, Public.Person.name, \"P\".age FROM public.person b WHERE B.tenant_id = 1"
+                        + " AND b.id IN (SELECT R.id FROM \"Recent\" r)"));
+        Set<String> tables = ReferencedTables.of(queryService.parse(
+                "WITH Recent AS (SELECT id FROM book) SELECT * FROM recent, \"Recent\""));
+
+        assertAll(
+                () -> assertEquals(List.copyOf(columns), List.of(
+                        new ResolvedColumn("public.person", "ssn"), new ResolvedColumn(null, "name"),
+                        new ResolvedColumn(null, "age"), new ResolvedColumn("public.person", "tenant_id"),
+                        new ResolvedColumn("public.person", "id"), new ResolvedColumn("\"Recent\"", "id"))),
+                () -> assertEquals(tables, Set.of("book", "\"Recent\""))
+        );
+    }
+}